@@ -0,0 +1,138 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.benchmarks.cluster;
+
+import io.journalkeeper.core.BootStrap;
+import io.journalkeeper.core.api.RaftClient;
+import io.journalkeeper.core.api.RaftJournal;
+import io.journalkeeper.core.api.RaftServer;
+import io.journalkeeper.core.api.ResponseConfig;
+import io.journalkeeper.core.api.State;
+import io.journalkeeper.core.api.StateResult;
+import io.journalkeeper.core.api.UpdateRequest;
+import io.journalkeeper.utils.net.NetworkingUtils;
+import io.journalkeeper.utils.test.ByteUtils;
+import io.journalkeeper.utils.test.TestPathUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在一个进程内启动多节点的集群，测试不同{@link ResponseConfig}下update()的吞吐量和时延分布。
+ * 客户端通过LEADER所在节点的BootStrap访问集群，本地节点不经过网络；节点之间的复制使用RPC。
+ * 使用SampleTime模式运行可以得到p99等时延百分位。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(16)
+@Fork(1)
+public class ClusterUpdateBenchmark {
+    @Param({"3"})
+    public int nodes;
+
+    @Param({"ONE_WAY", "RECEIVE", "PERSISTENCE", "REPLICATION", "ALL"})
+    public ResponseConfig responseConfig;
+
+    @Param({"1024"})
+    public int entrySize;
+
+    private Path path;
+    private List<BootStrap> servers;
+    private RaftClient client;
+    private UpdateRequest updateRequest;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        path = TestPathUtils.prepareBaseDir("ClusterUpdateBenchmark");
+        List<URI> serverURIs = new ArrayList<>(nodes);
+        for (int i = 0; i < nodes; i++) {
+            serverURIs.add(URI.create("jk://localhost:" + NetworkingUtils.findRandomOpenPortOnAllLocalInterfaces()));
+        }
+        servers = new ArrayList<>(nodes);
+        for (int i = 0; i < nodes; i++) {
+            Properties properties = new Properties();
+            properties.setProperty("working_dir", path.resolve("server" + i).toString());
+            properties.setProperty("disable_logo", "true");
+            BootStrap bootStrap = new BootStrap(RaftServer.Roll.VOTER, NoopState::new, properties);
+            bootStrap.getServer().init(serverURIs.get(i), serverURIs);
+            bootStrap.getServer().recover();
+            bootStrap.getServer().start();
+            servers.add(bootStrap);
+        }
+        servers.get(0).getAdminClient().waitForClusterReady();
+        // 使用LEADER所在节点的本地客户端，避免把请求转发到LEADER的额外开销
+        URI leaderUri = servers.get(0).getAdminClient().getClusterConfiguration().get().getLeader();
+        client = servers.stream()
+                .filter(server -> leaderUri.equals(server.getServer().serverUri()))
+                .findAny()
+                .orElseThrow(() -> new IllegalStateException("No leader found in cluster: " + serverURIs + "!"))
+                .getClient();
+        updateRequest = new UpdateRequest(ByteUtils.createFixedSizeBytes(entrySize));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (BootStrap server : servers) {
+            server.shutdown();
+        }
+        TestPathUtils.destroyBaseDir(path.toFile());
+    }
+
+    @Benchmark
+    public byte[] update() throws Exception {
+        return client.update(updateRequest, responseConfig).get();
+    }
+
+    /**
+     * 不做任何操作的状态机，只测试JournalKeeper本身的开销。
+     */
+    private static class NoopState implements State {
+        @Override
+        public StateResult execute(byte[] entry, int partition, long index, int batchSize, RaftJournal journal) {
+            return new StateResult(null);
+        }
+
+        @Override
+        public byte[] query(byte[] query, RaftJournal journal) {
+            return new byte[0];
+        }
+
+        @Override
+        public void recover(Path path, Properties properties) {
+        }
+    }
+}
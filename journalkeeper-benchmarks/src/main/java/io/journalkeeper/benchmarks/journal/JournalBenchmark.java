@@ -0,0 +1,205 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.benchmarks.journal;
+
+import io.journalkeeper.core.api.JournalEntry;
+import io.journalkeeper.core.api.JournalEntryParser;
+import io.journalkeeper.core.entry.DefaultJournalEntryParser;
+import io.journalkeeper.core.journal.Journal;
+import io.journalkeeper.core.journal.JournalSnapshot;
+import io.journalkeeper.persistence.BufferPool;
+import io.journalkeeper.persistence.PersistenceFactory;
+import io.journalkeeper.utils.spi.ServiceSupport;
+import io.journalkeeper.utils.test.ByteUtils;
+import io.journalkeeper.utils.test.TestPathUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Journal写入、按全局索引读取和按分区索引读取的性能。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JournalBenchmark {
+    private static final int PARTITIONS = 4;
+    // 读取测试预先写入的entry数量
+    private static final int PRELOAD_COUNT = 64 * 1024;
+    private static final int RANGE_SIZE = 16;
+    private static final JournalEntryParser journalEntryParser = new DefaultJournalEntryParser();
+
+    /**
+     * 写入测试的Journal，每次迭代使用一个新的Journal，避免占用过多的磁盘空间。
+     */
+    @State(Scope.Benchmark)
+    public static class AppendState {
+        @Param({"128", "1024", "16384"})
+        public int entrySize;
+        private Path path;
+        private Journal journal;
+        private JournalEntry entry;
+        private Thread flushThread;
+        private volatile boolean stopped;
+
+        @Setup(Level.Iteration)
+        public void setup() throws IOException {
+            path = TestPathUtils.prepareBaseDir("JournalAppendBenchmark");
+            journal = createJournal(path);
+            entry = createEntry(ByteUtils.createFixedSizeBytes(entrySize), 0);
+            stopped = false;
+            flushThread = new Thread(() -> {
+                while (!stopped) {
+                    journal.flush();
+                    try {
+                        Thread.sleep(10L);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, "FlushThread");
+            flushThread.setDaemon(true);
+            flushThread.start();
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException, InterruptedException {
+            stopped = true;
+            flushThread.join();
+            journal.close();
+            TestPathUtils.destroyBaseDir(path.toFile());
+        }
+    }
+
+    /**
+     * 读取测试的Journal，预先写入{@link #PRELOAD_COUNT}条entry，平均分布在{@link #PARTITIONS}个分区中。
+     */
+    @State(Scope.Benchmark)
+    public static class ReadState {
+        @Param({"128", "1024", "16384"})
+        public int entrySize;
+        private Path path;
+        private Journal journal;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            path = TestPathUtils.prepareBaseDir("JournalReadBenchmark");
+            journal = createJournal(path);
+            byte[] payload = ByteUtils.createFixedSizeBytes(entrySize);
+            for (int i = 0; i < PRELOAD_COUNT; i++) {
+                journal.append(createEntry(payload, i % PARTITIONS));
+                if (i % 1024 == 0) {
+                    journal.flush();
+                }
+            }
+            journal.commit(journal.maxIndex());
+            journal.flush();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            journal.close();
+            TestPathUtils.destroyBaseDir(path.toFile());
+        }
+    }
+
+    private static JournalEntry createEntry(byte[] payload, int partition) {
+        JournalEntry entry = journalEntryParser.createJournalEntry(payload);
+        entry.setPartition(partition);
+        entry.setBatchSize(1);
+        entry.setTerm(1);
+        return entry;
+    }
+
+    private static Journal createJournal(Path path) throws IOException {
+        Journal journal = new Journal(
+                ServiceSupport.load(PersistenceFactory.class),
+                ServiceSupport.load(BufferPool.class),
+                journalEntryParser);
+        Map<Integer, Long> partitionMinIndices = IntStream.range(0, PARTITIONS).boxed()
+                .collect(Collectors.toMap(Function.identity(), p -> 0L));
+        journal.recover(path, 0L, new JournalSnapshot() {
+            @Override
+            public long minIndex() {
+                return 0L;
+            }
+
+            @Override
+            public long minOffset() {
+                return 0L;
+            }
+
+            @Override
+            public Map<Integer, Long> partitionMinIndices() {
+                return partitionMinIndices;
+            }
+        }, new Properties());
+        return journal;
+    }
+
+    @Benchmark
+    public long append(AppendState state) {
+        return state.journal.append(state.entry);
+    }
+
+    @Benchmark
+    public JournalEntry read(ReadState state) {
+        return state.journal.read(ThreadLocalRandom.current().nextLong(PRELOAD_COUNT));
+    }
+
+    @Benchmark
+    public List<byte[]> readRaw(ReadState state) {
+        return state.journal.readRaw(ThreadLocalRandom.current().nextLong(PRELOAD_COUNT - RANGE_SIZE), RANGE_SIZE);
+    }
+
+    @Benchmark
+    public JournalEntry readByPartition(ReadState state) {
+        return state.journal.readByPartition(
+                ThreadLocalRandom.current().nextInt(PARTITIONS),
+                ThreadLocalRandom.current().nextLong(PRELOAD_COUNT / PARTITIONS));
+    }
+
+    @Benchmark
+    public List<JournalEntry> batchReadByPartition(ReadState state) {
+        return state.journal.batchReadByPartition(
+                ThreadLocalRandom.current().nextInt(PARTITIONS),
+                ThreadLocalRandom.current().nextLong(PRELOAD_COUNT / PARTITIONS - RANGE_SIZE), RANGE_SIZE);
+    }
+}
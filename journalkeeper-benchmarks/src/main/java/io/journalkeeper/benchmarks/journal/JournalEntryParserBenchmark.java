@@ -0,0 +1,90 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.benchmarks.journal;
+
+import io.journalkeeper.core.api.JournalEntry;
+import io.journalkeeper.core.api.JournalEntryParser;
+import io.journalkeeper.core.entry.DefaultJournalEntryParser;
+import io.journalkeeper.utils.test.ByteUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JournalEntryParser解析、序列化和校验entry的性能。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JournalEntryParserBenchmark {
+    @Param({"128", "1024", "16384"})
+    public int entrySize;
+
+    private final JournalEntryParser journalEntryParser = new DefaultJournalEntryParser();
+    private byte[] payload;
+    private byte[] serializedEntry;
+    private byte[] headerBytes;
+
+    @Setup
+    public void setup() {
+        payload = ByteUtils.createFixedSizeBytes(entrySize);
+        JournalEntry entry = journalEntryParser.createJournalEntry(payload);
+        entry.setPartition(1);
+        entry.setBatchSize(1);
+        entry.setTerm(1);
+        serializedEntry = entry.getSerializedBytes();
+        headerBytes = Arrays.copyOf(serializedEntry, journalEntryParser.headerLength());
+    }
+
+    @Benchmark
+    public JournalEntry parse() {
+        return journalEntryParser.parse(serializedEntry);
+    }
+
+    @Benchmark
+    public JournalEntry parseHeader() {
+        return journalEntryParser.parseHeader(headerBytes);
+    }
+
+    @Benchmark
+    public byte[] createAndSerialize() {
+        JournalEntry entry = journalEntryParser.createJournalEntry(payload);
+        entry.setPartition(1);
+        entry.setBatchSize(1);
+        entry.setTerm(1);
+        return entry.getSerializedBytes();
+    }
+
+    @Benchmark
+    public boolean verifyChecksum() {
+        return journalEntryParser.parse(serializedEntry).verifyChecksum();
+    }
+}
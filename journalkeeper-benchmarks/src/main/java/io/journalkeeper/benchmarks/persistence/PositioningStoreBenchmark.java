@@ -0,0 +1,134 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.benchmarks.persistence;
+
+import io.journalkeeper.persistence.BufferView;
+import io.journalkeeper.persistence.local.journal.PositioningStore;
+import io.journalkeeper.utils.test.ByteUtils;
+import io.journalkeeper.utils.test.TestPathUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PositioningStore追加写入和随机读取的性能。
+ * 与Journal一致，刷盘由独立的线程完成，写入测试不包含刷盘的时间。
+ * 每次迭代结束后截掉写入测试追加的数据，避免占用过多的磁盘空间。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PositioningStoreBenchmark {
+    // 预先写入供读取测试使用的数据量
+    private static final int PRELOAD_BYTES = 64 * 1024 * 1024;
+
+    @Param({"128", "1024", "16384"})
+    public int entrySize;
+
+    private Path path;
+    private PositioningStore store;
+    private byte[] entry;
+    private long readableMax;
+    private Thread flushThread;
+    private volatile boolean stopped = false;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        path = TestPathUtils.prepareBaseDir("PositioningStoreBenchmark");
+        store = new PositioningStore();
+        Properties properties = new Properties();
+        properties.setProperty("file_data_size", String.valueOf(128 * 1024 * 1024));
+        store.recover(path, properties);
+        entry = ByteUtils.createFixedSizeBytes(entrySize);
+        for (int i = 0; i < PRELOAD_BYTES / entrySize; i++) {
+            store.append(entry);
+            if (i % 1024 == 0) {
+                store.flush();
+            }
+        }
+        store.flush();
+        readableMax = store.max();
+
+        flushThread = new Thread(() -> {
+            while (!stopped) {
+                try {
+                    store.flush();
+                    Thread.sleep(10L);
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, "FlushThread");
+        flushThread.setDaemon(true);
+        flushThread.start();
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncate() throws IOException {
+        store.truncate(readableMax);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, InterruptedException {
+        stopped = true;
+        flushThread.join();
+        store.close();
+        TestPathUtils.destroyBaseDir(path.toFile());
+    }
+
+    @Benchmark
+    public long append() throws IOException {
+        return store.append(entry);
+    }
+
+    @Benchmark
+    public byte[] read() throws IOException {
+        return store.read(randomPosition(), entrySize);
+    }
+
+    @Benchmark
+    public int readView() throws IOException {
+        try (BufferView view = store.readView(randomPosition(), entrySize)) {
+            return view.buffer().remaining();
+        }
+    }
+
+    private long randomPosition() {
+        return ThreadLocalRandom.current().nextLong(readableMax / entrySize) * entrySize;
+    }
+}
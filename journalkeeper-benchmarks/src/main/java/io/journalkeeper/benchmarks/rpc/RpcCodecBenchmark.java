@@ -0,0 +1,213 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.benchmarks.rpc;
+
+import io.journalkeeper.core.api.ResponseConfig;
+import io.journalkeeper.core.api.UpdateRequest;
+import io.journalkeeper.rpc.client.AddPullWatchResponse;
+import io.journalkeeper.rpc.client.CompleteTransactionRequest;
+import io.journalkeeper.rpc.client.LastAppliedResponse;
+import io.journalkeeper.rpc.client.PullEventsRequest;
+import io.journalkeeper.rpc.client.QueryStateRequest;
+import io.journalkeeper.rpc.client.QueryStateResponse;
+import io.journalkeeper.rpc.client.UpdateClusterStateRequest;
+import io.journalkeeper.rpc.client.UpdateClusterStateResponse;
+import io.journalkeeper.rpc.client.UpdateVotersRequest;
+import io.journalkeeper.rpc.codec.JournalKeeperCodec;
+import io.journalkeeper.rpc.codec.RpcTypes;
+import io.journalkeeper.rpc.header.JournalKeeperHeader;
+import io.journalkeeper.rpc.payload.GenericPayload;
+import io.journalkeeper.rpc.remoting.transport.command.Command;
+import io.journalkeeper.rpc.remoting.transport.command.Direction;
+import io.journalkeeper.rpc.server.AsyncAppendEntriesRequest;
+import io.journalkeeper.rpc.server.AsyncAppendEntriesResponse;
+import io.journalkeeper.rpc.server.DisableLeaderWriteRequest;
+import io.journalkeeper.rpc.server.GetServerEntriesRequest;
+import io.journalkeeper.rpc.server.GetServerEntriesResponse;
+import io.journalkeeper.rpc.server.GetServerStateRequest;
+import io.journalkeeper.rpc.server.GetServerStateResponse;
+import io.journalkeeper.rpc.server.InstallSnapshotRequest;
+import io.journalkeeper.rpc.server.InstallSnapshotResponse;
+import io.journalkeeper.rpc.server.RequestVoteRequest;
+import io.journalkeeper.rpc.server.RequestVoteResponse;
+import io.journalkeeper.utils.test.ByteUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * RPC命令编码和解码的性能，包括命令头和各类型的请求、响应。
+ * 批量的请求和响应（更新、复制、读取entries）每批包含{@link #BATCH_SIZE}条数据。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RpcCodecBenchmark {
+    private static final int BATCH_SIZE = 32;
+    private static final URI SERVER_URI = URI.create("jk://192.168.1.1:30000");
+
+    @Param({
+            "UPDATE_CLUSTER_STATE_REQUEST", "UPDATE_CLUSTER_STATE_RESPONSE",
+            "QUERY_CLUSTER_STATE_REQUEST", "QUERY_CLUSTER_STATE_RESPONSE",
+            "LAST_APPLIED_RESPONSE",
+            "UPDATE_VOTERS_REQUEST",
+            "ADD_PULL_WATCH_RESPONSE", "PULL_EVENTS_REQUEST",
+            "COMPLETE_TRANSACTION_REQUEST",
+            "ASYNC_APPEND_ENTRIES_REQUEST", "ASYNC_APPEND_ENTRIES_RESPONSE",
+            "REQUEST_VOTE_REQUEST", "REQUEST_VOTE_RESPONSE",
+            "GET_SERVER_ENTRIES_REQUEST", "GET_SERVER_ENTRIES_RESPONSE",
+            "GET_SERVER_STATE_REQUEST", "GET_SERVER_STATE_RESPONSE",
+            "DISABLE_LEADER_WRITE_REQUEST",
+            "INSTALL_SNAPSHOT_REQUEST", "INSTALL_SNAPSHOT_RESPONSE"
+    })
+    public String rpcType;
+
+    @Param({"1024"})
+    public int entrySize;
+
+    private final JournalKeeperCodec codec = new JournalKeeperCodec();
+    private Command command;
+    private ByteBuf encodeBuffer;
+    private ByteBuf encoded;
+
+    @Setup
+    public void setup() throws Exception {
+        command = createCommand(rpcType, entrySize);
+        encodeBuffer = Unpooled.buffer(BATCH_SIZE * entrySize * 2);
+        encoded = Unpooled.buffer(BATCH_SIZE * entrySize * 2);
+        codec.encode(command, encoded);
+    }
+
+    @TearDown
+    public void tearDown() {
+        encodeBuffer.release();
+        encoded.release();
+    }
+
+    @Benchmark
+    public int encode() throws Exception {
+        encodeBuffer.clear();
+        codec.encode(command, encodeBuffer);
+        return encodeBuffer.writerIndex();
+    }
+
+    @Benchmark
+    public Object decode() throws Exception {
+        encoded.readerIndex(0);
+        return codec.decode(encoded);
+    }
+
+    private static Command createCommand(String rpcType, int entrySize) throws Exception {
+        byte[] entry = ByteUtils.createFixedSizeBytes(entrySize);
+        List<byte[]> entries = Collections.nCopies(BATCH_SIZE, entry);
+        Object payload;
+        switch (rpcType) {
+            case "UPDATE_CLUSTER_STATE_REQUEST":
+                payload = new UpdateClusterStateRequest(
+                        IntStream.range(0, BATCH_SIZE).mapToObj(i -> new UpdateRequest(entry, 0, 1)).collect(Collectors.toList()),
+                        false, ResponseConfig.REPLICATION);
+                break;
+            case "UPDATE_CLUSTER_STATE_RESPONSE":
+                payload = new UpdateClusterStateResponse(Collections.nCopies(BATCH_SIZE, new byte[16]), 666L);
+                break;
+            case "QUERY_CLUSTER_STATE_REQUEST":
+                payload = new QueryStateRequest(new byte[64], 666L);
+                break;
+            case "QUERY_CLUSTER_STATE_RESPONSE":
+                payload = new QueryStateResponse(entry, 666L);
+                break;
+            case "LAST_APPLIED_RESPONSE":
+                payload = new LastAppliedResponse(666L);
+                break;
+            case "UPDATE_VOTERS_REQUEST":
+                payload = new UpdateVotersRequest(Arrays.asList(SERVER_URI, SERVER_URI, SERVER_URI),
+                        Arrays.asList(SERVER_URI, SERVER_URI, SERVER_URI, SERVER_URI));
+                break;
+            case "ADD_PULL_WATCH_RESPONSE":
+                payload = new AddPullWatchResponse(666L, 1000L);
+                break;
+            case "PULL_EVENTS_REQUEST":
+                payload = new PullEventsRequest(666L, 888L);
+                break;
+            case "COMPLETE_TRANSACTION_REQUEST":
+                payload = new CompleteTransactionRequest(UUID.randomUUID(), true);
+                break;
+            case "ASYNC_APPEND_ENTRIES_REQUEST":
+                payload = new AsyncAppendEntriesRequest(8, SERVER_URI, 666L, 7, entries, 665L, 700L);
+                break;
+            case "ASYNC_APPEND_ENTRIES_RESPONSE":
+                payload = new AsyncAppendEntriesResponse(true, 666L, 8, BATCH_SIZE);
+                break;
+            case "REQUEST_VOTE_REQUEST":
+                payload = new RequestVoteRequest(8, SERVER_URI, 666L, 7, false, false);
+                break;
+            case "REQUEST_VOTE_RESPONSE":
+                payload = new RequestVoteResponse(8, true);
+                break;
+            case "GET_SERVER_ENTRIES_REQUEST":
+                payload = new GetServerEntriesRequest(666L, BATCH_SIZE);
+                break;
+            case "GET_SERVER_ENTRIES_RESPONSE":
+                payload = new GetServerEntriesResponse(entries, 0L, 666L);
+                break;
+            case "GET_SERVER_STATE_REQUEST":
+                payload = new GetServerStateRequest(666L, 1);
+                break;
+            case "GET_SERVER_STATE_RESPONSE":
+                payload = new GetServerStateResponse(666L, 7, 0L, entry, false, 1);
+                break;
+            case "DISABLE_LEADER_WRITE_REQUEST":
+                payload = new DisableLeaderWriteRequest(1000L, 8);
+                break;
+            case "INSTALL_SNAPSHOT_REQUEST":
+                payload = new InstallSnapshotRequest(8, SERVER_URI, 666L, 7, 0, entry, false);
+                break;
+            case "INSTALL_SNAPSHOT_RESPONSE":
+                payload = new InstallSnapshotResponse(8);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown rpc type: " + rpcType);
+        }
+        int type = RpcTypes.class.getField(rpcType).getInt(null);
+        Direction direction = type > 0 ? Direction.REQUEST : Direction.RESPONSE;
+        JournalKeeperHeader header = new JournalKeeperHeader(JournalKeeperHeader.DEFAULT_VERSION, direction, type, SERVER_URI);
+        return new Command(header, new GenericPayload<>(payload));
+    }
+}
@@ -15,8 +15,9 @@ package io.journalkeeper.coordinating.client;
 
 import io.journalkeeper.coordinating.state.domain.StateTypes;
 import io.journalkeeper.utils.event.Event;
+import io.journalkeeper.utils.event.EventFilter;
 import io.journalkeeper.utils.event.EventType;
-import io.journalkeeper.utils.event.EventWatcher;
+import io.journalkeeper.utils.event.FilteredEventWatcher;
 
 import java.nio.charset.Charset;
 import java.util.Map;
@@ -28,7 +29,7 @@ import java.util.Objects;
  *
  * date: 2019/6/11
  */
-public class EventWatcherAdapter implements EventWatcher {
+public class EventWatcherAdapter implements FilteredEventWatcher {
 
     private byte[] key;
     private CoordinatingEventListener listener;
@@ -42,6 +43,14 @@ public class EventWatcherAdapter implements EventWatcher {
         this.listener = listener;
     }
 
+    @Override
+    public EventFilter eventFilter() {
+        if (key == null) {
+            return EventFilter.ofEventTypes(EventType.ON_STATE_CHANGE);
+        }
+        return EventFilter.ofValues(EventType.ON_STATE_CHANGE, "key", new String(key, Charset.forName("UTF-8")));
+    }
+
     @Override
     public void onEvent(Event event) {
         if (event.getEventType() != EventType.ON_STATE_CHANGE) {
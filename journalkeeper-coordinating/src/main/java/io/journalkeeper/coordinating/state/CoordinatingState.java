@@ -21,9 +21,11 @@ import io.journalkeeper.coordinating.state.domain.WriteRequest;
 import io.journalkeeper.coordinating.state.domain.WriteResponse;
 import io.journalkeeper.coordinating.state.store.KVStore;
 import io.journalkeeper.coordinating.state.store.KVStoreManager;
+import io.journalkeeper.core.api.CheckpointState;
 import io.journalkeeper.core.serialize.WrappedState;
 import io.journalkeeper.core.serialize.WrappedStateResult;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.HashMap;
@@ -36,7 +38,7 @@ import java.util.Properties;
  *
  * date: 2019/5/30
  */
-public class CoordinatingState implements WrappedState<WriteRequest, WriteResponse, ReadRequest, ReadResponse> {
+public class CoordinatingState implements WrappedState<WriteRequest, WriteResponse, ReadRequest, ReadResponse>, CheckpointState {
 
     private Properties properties;
     private KVStore kvStore;
@@ -74,6 +76,11 @@ public class CoordinatingState implements WrappedState<WriteRequest, WriteRespon
         return handler.handle(request);
     }
 
+    @Override
+    public void checkpoint(Path destPath) throws IOException {
+        kvStore.checkpoint(destPath);
+    }
+
     @Override
     public void close() {
         kvStore.close();
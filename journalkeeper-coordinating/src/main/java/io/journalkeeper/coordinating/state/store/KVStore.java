@@ -13,6 +13,8 @@
  */
 package io.journalkeeper.coordinating.state.store;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 
 /**
@@ -38,4 +40,11 @@ public interface KVStore {
     void close();
 
     void flush();
+
+    /**
+     * 在destPath创建当前数据的检查点，之后的写入不影响检查点
+     * @param destPath 检查点目录，必须不存在
+     * @throws IOException 发生IO异常时抛出
+     */
+    void checkpoint(Path destPath) throws IOException;
 }
\ No newline at end of file
@@ -16,6 +16,7 @@ package io.journalkeeper.coordinating.state.store.rocksdb;
 import io.journalkeeper.coordinating.exception.CoordinatingException;
 import io.journalkeeper.coordinating.state.exception.CoordinatingStateException;
 import io.journalkeeper.coordinating.state.store.KVStore;
+import org.rocksdb.Checkpoint;
 import org.rocksdb.FlushOptions;
 import org.rocksdb.Options;
 import org.rocksdb.RocksDB;
@@ -23,6 +24,7 @@ import org.rocksdb.RocksDBException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Objects;
@@ -139,4 +141,16 @@ public class RocksDBKVStore implements KVStore {
             throw new CoordinatingException(e);
         }
     }
+
+    /**
+     * 使用RocksDB Checkpoint创建检查点，SST文件通过硬链接引用，只复制少量元数据文件
+     */
+    @Override
+    public void checkpoint(Path destPath) throws IOException {
+        try (Checkpoint checkpoint = Checkpoint.create(rocksDB)) {
+            checkpoint.createCheckpoint(destPath.toString());
+        } catch (RocksDBException e) {
+            throw new IOException(e);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.core.api;
+
+import java.util.List;
+
+/**
+ * 支持批量执行的状态机，可选实现。
+ *
+ * 状态机实现这个接口后，JournalKeeper会把一段连续的、已提交的用户分区entry一次交给状态机执行，
+ * 每批只获取一次状态锁。批量执行时JournalKeeper用一次范围读取读出这批entry，
+ * entry内容可以直接从entry中获取，也可以通过对应的{@link EntryFuture}读取。
+ * 每批中每个分区触发一次ON_STATE_CHANGE事件，
+ * 事件数据为这批执行结果中该分区各事件数据按顺序合并的结果。
+ * 状态机可以用一个WriteBatch或者一个数据库事务执行一批entry。
+ * 一批entry中夹杂的内部entry会把这批entry分成多段，每段调用一次execute，
+ * 后面的段执行失败时，前面的段已经执行成功，它们的结果照常返回给客户端。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+public interface BatchState extends State {
+    /**
+     * 在状态state上批量执行命令，要求：
+     * <ul>
+     *     <li>原子性：这批命令要么全部执行成功，要么全部不执行</li>
+     *     <li>幂等性</li>
+     * </ul>
+     * 成功返回执行结果，否则抛异常。
+     *
+     * @param entryHeaders 待执行的连续的entry，只包含用户分区的entry
+     * @param entryFutures 用于读取entry内容，与entryHeaders一一对应
+     * @param index 第一个entry在Journal中的索引序号，第i个entry的索引序号为index + i
+     * @param journal 当前的journal
+     * @return 执行结果，与entryHeaders一一对应。See {@link StateResult}
+     */
+    List<StateResult> execute(List<JournalEntry> entryHeaders, List<EntryFuture> entryFutures, long index, RaftJournal journal);
+}
@@ -0,0 +1,40 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.core.api;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * 支持检查点的状态机，可选实现。{@link State}和包装的状态机都可以实现这个接口。
+ *
+ * 创建快照时，JournalKeeper默认在状态锁内复制状态机的全部文件，复制期间不能执行新的entry。
+ * 状态机实现这个接口后，JournalKeeper改为调用{@link #checkpoint(Path)}生成快照中的状态数据，
+ * 状态机可以用硬链接引用不可变的文件，或者使用存储引擎自带的检查点功能（例如RocksDB Checkpoint），
+ * 只复制少量可变的文件，从而缩短创建快照时执行entry暂停的时间。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+public interface CheckpointState {
+    /**
+     * 在destPath创建当前状态的检查点。调用期间JournalKeeper不会在这个状态机上执行新的entry，
+     * 检查点必须包含已执行的全部entry，并且之后状态机的变更不能影响检查点中的文件。
+     * 用检查点目录调用{@link #recover(Path, java.util.Properties)}必须能恢复出与当前一致的状态。
+     *
+     * @param destPath 检查点目录，调用时目录不存在或者为空
+     * @throws IOException 发生IO异常时抛出
+     */
+    void checkpoint(Path destPath) throws IOException;
+}
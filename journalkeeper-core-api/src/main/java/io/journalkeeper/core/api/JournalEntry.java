@@ -42,4 +42,12 @@ public interface JournalEntry {
 
     long getTimestamp();
 
+    /**
+     * 校验Entry的校验和
+     * @return 校验通过，或者不支持校验和时返回true
+     */
+    default boolean verifyChecksum() {
+        return true;
+    }
+
 }
@@ -20,6 +20,14 @@ package io.journalkeeper.core.api;
 public interface JournalEntryParser {
     int headerLength();
 
+    /**
+     * 兼容多个Header版本时，最短的Header长度
+     * @return 最短的Header长度，默认与{@link #headerLength()}相同
+     */
+    default int minHeaderLength() {
+        return headerLength();
+    }
+
     JournalEntry parse(byte[] bytes);
 
     default JournalEntry parseHeader(byte[] headerBytes) {
@@ -155,6 +155,22 @@ public interface PartitionedJournalStore extends Watchable {
      */
     CompletableFuture<List<JournalEntry>> get(int partition, long index, int size);
 
+    /**
+     * 长轮询查询日志。如果没有足够的日志，请求在服务端挂起，直到分区上有新的日志被提交，
+     * 读到的日志条数达到size或者总长度达到minBytes，或者等待maxWaitMs超时之后返回。
+     * 消费者追上写入进度之后，不需要反复调用{@link #get(int, long, int)}轮询。
+     * @param partition 分区
+     * @param index 查询起始位置。
+     * @param size 查询条数。
+     * @param maxWaitMs 最长等待时间，单位MS，应小于客户端RPC的超时时间。不大于0时立即返回。
+     * @param minBytes 读到的日志总长度达到这个值时返回，不大于0时读到任意日志就返回。
+     *
+     * @return 读到的日志，超时时可能为空。
+     * @throws IndexOverflowException 参数index不能大于当前maxIndex。
+     * @throws IndexUnderflowException 参数index不能小于当前minIndex。
+     */
+    CompletableFuture<List<JournalEntry>> fetch(int partition, long index, int size, long maxWaitMs, int minBytes);
+
     /**
      * 查询每个分区当前最小已提交日志索引序号。
      * @return 每个分区当前最小已提交日志索引序号。
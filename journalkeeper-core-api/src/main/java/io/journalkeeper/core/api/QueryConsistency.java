@@ -2,7 +2,7 @@ package io.journalkeeper.core.api;
 
 /**
  * 读一致性模型。JournalKeeper支持3种读一致性：
- * STRICT：强一致，只在LEADER节点读取数据，保证强一致，可用性最低，性能最低。
+ * STRICT：强一致，在LEADER节点读取数据，或者在FOLLOWER节点通过ReadIndex向LEADER确认后读取数据，保证强一致，可用性最低，性能最低。
  *
  * SEQUENTIAL：顺序一致，在所有节点读取数据，不保证每次读到的都是最新的数据，其它客户端写入的数据不一定会被马上读到，
  * 但可以保证每次读到的数据至少和上次读写的一样新，可以避免脏读。由于所有节点都可以提供读服务，性能和可用性都比较高。
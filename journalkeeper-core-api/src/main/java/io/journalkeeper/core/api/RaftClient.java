@@ -171,5 +171,16 @@ public interface RaftClient extends Watchable, ClusterReadyAware, ServerConfigAw
      */
     CompletableFuture<byte[]> query(byte[] query, QueryConsistency consistency);
 
+    /**
+     * 直接读取分区上已提交的日志，不经过状态机。
+     * @param partition 分区
+     * @param index 起始分区索引序号
+     * @param size 最多读取的条数
+     * @return 未反序列化的日志。如果起始位置在批量日志中间，返回整个批量日志。
+     * @throws io.journalkeeper.exceptions.IndexOverflowException 起始位置大于分区的最大索引序号时抛出
+     * @throws io.journalkeeper.exceptions.IndexUnderflowException 起始位置小于分区的最小索引序号时抛出
+     */
+    CompletableFuture<List<byte[]>> getPartitionEntries(int partition, long index, int size);
+
     void stop();
 }
@@ -18,6 +18,7 @@ import io.journalkeeper.exceptions.StateExecutionException;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
@@ -26,6 +27,8 @@ import java.util.concurrent.Future;
  *
  * 可选实现：
  * {@link java.io.Flushable}：将状态机中未持久化的输入写入磁盘；
+ * {@link BatchState}：批量执行一段连续的entry；
+ * {@link CheckpointState}：创建快照时生成状态的检查点，代替复制全部状态文件；
  *
  * @author LiYue
  * Date: 2019-03-20
@@ -79,6 +82,17 @@ public interface State {
      */
     byte[] query(byte[] query, RaftJournal journal);
 
+    /**
+     * 异步查询。状态机可以挂起查询，等到满足条件（例如有新的日志被执行）之后再返回结果，
+     * 用于实现长轮询等查询。默认直接调用{@link #query(byte[], RaftJournal)}。
+     * @param query 查询条件
+     * @param journal 当前的journal
+     * @return 查询结果
+     */
+    default CompletableFuture<byte[]> queryAsync(byte[] query, RaftJournal journal) {
+        return CompletableFuture.completedFuture(query(query, journal));
+    }
+
     /**
      * 从磁盘中恢复状态机中的状态数据，在状态机启动的时候调用。
      * @param path 存放state文件的路径
@@ -0,0 +1,35 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.exceptions;
+
+/**
+ * 客户端批量写入的缓冲区已满，请求没有发送到服务端。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class ClientBufferFullException extends RuntimeException {
+    public ClientBufferFullException() {
+        super();
+    }
+
+    public ClientBufferFullException(String msg) {
+        super(msg);
+    }
+
+    public ClientBufferFullException(Throwable throwable) {
+        super(throwable);
+    }
+
+}
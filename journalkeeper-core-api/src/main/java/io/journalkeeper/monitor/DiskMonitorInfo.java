@@ -23,6 +23,8 @@ public class DiskMonitorInfo {
     private Path path;
     private long free;
     private long total;
+    private long flushWaitCount;
+    private long flushWaitTimeNs;
 
     public Path getPath() {
         return path;
@@ -48,12 +50,30 @@ public class DiskMonitorInfo {
         this.total = total;
     }
 
+    public long getFlushWaitCount() {
+        return flushWaitCount;
+    }
+
+    public void setFlushWaitCount(long flushWaitCount) {
+        this.flushWaitCount = flushWaitCount;
+    }
+
+    public long getFlushWaitTimeNs() {
+        return flushWaitTimeNs;
+    }
+
+    public void setFlushWaitTimeNs(long flushWaitTimeNs) {
+        this.flushWaitTimeNs = flushWaitTimeNs;
+    }
+
     @Override
     public String toString() {
         return "DiskMonitorInfo{" +
                 "path=" + path +
                 ", free=" + free +
                 ", total=" + total +
+                ", flushWaitCount=" + flushWaitCount +
+                ", flushWaitTimeNs=" + flushWaitTimeNs +
                 '}';
     }
 }
@@ -0,0 +1,110 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.monitor;
+
+/**
+ * 时延统计，时延单位为纳秒。
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class LatencyMonitorInfo {
+    // 名称
+    private String name;
+    // 统计周期内的请求数
+    private long requests;
+    private long avg;
+    private long tp50;
+    private long tp90;
+    private long tp99;
+    private long tp999;
+    private long max;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public void setRequests(long requests) {
+        this.requests = requests;
+    }
+
+    public long getAvg() {
+        return avg;
+    }
+
+    public void setAvg(long avg) {
+        this.avg = avg;
+    }
+
+    public long getTp50() {
+        return tp50;
+    }
+
+    public void setTp50(long tp50) {
+        this.tp50 = tp50;
+    }
+
+    public long getTp90() {
+        return tp90;
+    }
+
+    public void setTp90(long tp90) {
+        this.tp90 = tp90;
+    }
+
+    public long getTp99() {
+        return tp99;
+    }
+
+    public void setTp99(long tp99) {
+        this.tp99 = tp99;
+    }
+
+    public long getTp999() {
+        return tp999;
+    }
+
+    public void setTp999(long tp999) {
+        this.tp999 = tp999;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public void setMax(long max) {
+        this.max = max;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyMonitorInfo{" +
+                "name='" + name + '\'' +
+                ", requests=" + requests +
+                ", avg=" + avg +
+                ", tp50=" + tp50 +
+                ", tp90=" + tp90 +
+                ", tp99=" + tp99 +
+                ", tp999=" + tp999 +
+                ", max=" + max +
+                '}';
+    }
+}
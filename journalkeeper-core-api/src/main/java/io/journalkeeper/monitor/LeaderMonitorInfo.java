@@ -31,6 +31,8 @@ public class LeaderMonitorInfo {
     private boolean writeEnabled = false;
     // 从节点信息
     private Collection<LeaderFollowerMonitorInfo> followers;
+    // 写入请求各阶段的时延：排队、写入、复制、刷盘、执行和响应。未开启Metric时为空。
+    private Collection<LatencyMonitorInfo> writeStages;
 
     public StateServer.ServerState getState() {
         return state;
@@ -64,6 +66,14 @@ public class LeaderMonitorInfo {
         this.followers = followers;
     }
 
+    public Collection<LatencyMonitorInfo> getWriteStages() {
+        return writeStages;
+    }
+
+    public void setWriteStages(Collection<LatencyMonitorInfo> writeStages) {
+        this.writeStages = writeStages;
+    }
+
     @Override
     public String toString() {
         return "LeaderMonitorInfo{" +
@@ -71,6 +81,7 @@ public class LeaderMonitorInfo {
                 ", requestQueueSize=" + requestQueueSize +
                 ", writeEnabled=" + writeEnabled +
                 ", followers=" + followers +
+                ", writeStages=" + writeStages +
                 '}';
     }
 }
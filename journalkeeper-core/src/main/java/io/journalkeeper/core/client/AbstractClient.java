@@ -105,6 +105,13 @@ public abstract class AbstractClient implements ClusterReadyAware, ServerConfigA
     }
 
     public void stop() {
+        doStop();
         clientRpc.stop();
     }
+
+    /**
+     * 停止RPC之前调用，子类在这里释放自己的资源
+     */
+    protected void doStop() {
+    }
 }
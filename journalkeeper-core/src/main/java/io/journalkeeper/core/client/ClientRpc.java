@@ -21,6 +21,7 @@ import io.journalkeeper.utils.retry.CompletableRetry;
 
 import java.net.URI;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * @author LiYue
@@ -37,5 +38,13 @@ public interface ClientRpc extends ServerConfigAware, Watchable {
 
     void setPreferredServer(URI preferredServer);
 
+    /**
+     * 客户端定时任务使用的线程池
+     * @return 线程池，返回null时不支持客户端批量写入
+     */
+    default ScheduledExecutorService getScheduledExecutor() {
+        return null;
+    }
+
     void stop();
 }
@@ -21,9 +21,12 @@ import io.journalkeeper.core.api.transaction.JournalKeeperTransactionContext;
 import io.journalkeeper.core.api.transaction.TransactionContext;
 import io.journalkeeper.core.api.transaction.TransactionId;
 import io.journalkeeper.core.api.transaction.UUIDTransactionId;
+import io.journalkeeper.exceptions.IndexOverflowException;
+import io.journalkeeper.exceptions.IndexUnderflowException;
 import io.journalkeeper.rpc.client.ClientServerRpc;
 import io.journalkeeper.rpc.client.CompleteTransactionRequest;
 import io.journalkeeper.rpc.client.CreateTransactionRequest;
+import io.journalkeeper.rpc.client.GetPartitionEntriesRequest;
 import io.journalkeeper.rpc.client.GetOpeningTransactionsResponse;
 import io.journalkeeper.rpc.client.QueryStateRequest;
 import io.journalkeeper.rpc.client.QueryStateResponse;
@@ -32,6 +35,7 @@ import io.journalkeeper.rpc.client.UpdateClusterStateResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -46,23 +50,66 @@ import java.util.stream.Collectors;
  * Date: 2019-03-25
  */
 public class DefaultRaftClient extends AbstractClient implements RaftClient {
+    public final static boolean DEFAULT_CLIENT_BATCH_ENABLE = false;
+    public final static long DEFAULT_CLIENT_BATCH_LINGER_MS = 5L;
+    public final static int DEFAULT_CLIENT_BATCH_MAX_BYTES = 1024 * 1024;
+    public final static int DEFAULT_CLIENT_BATCH_MAX_IN_FLIGHT = 8;
+    public final static long DEFAULT_CLIENT_BATCH_BUFFER_BYTES = 32L * 1024 * 1024;
+    public final static String CLIENT_BATCH_ENABLE_KEY = "client_batch_enable";
+    public final static String CLIENT_BATCH_LINGER_MS_KEY = "client_batch_linger_ms";
+    public final static String CLIENT_BATCH_MAX_BYTES_KEY = "client_batch_max_bytes";
+    public final static String CLIENT_BATCH_MAX_IN_FLIGHT_KEY = "client_batch_max_in_flight";
+    public final static String CLIENT_BATCH_BUFFER_BYTES_KEY = "client_batch_buffer_bytes";
+
     private static final Logger logger = LoggerFactory.getLogger(DefaultRaftClient.class);
     private final AtomicLong lastApplied = new AtomicLong(-1L);
+    /**
+     * 开启客户端批量写入时，合并并发的update请求，否则为null
+     */
+    private final UpdateBatcher updateBatcher;
     public DefaultRaftClient(ClientRpc clientRpc,
                              Properties properties) {
         super(clientRpc);
+        boolean batchEnabled = Boolean.parseBoolean(properties.getProperty(CLIENT_BATCH_ENABLE_KEY, String.valueOf(DEFAULT_CLIENT_BATCH_ENABLE)));
+        if (batchEnabled && null == clientRpc.getScheduledExecutor()) {
+            logger.warn("Client batch disabled, cause: no scheduled executor provided by {}.", clientRpc.getClass().getName());
+            batchEnabled = false;
+        }
+        if (batchEnabled) {
+            updateBatcher = new UpdateBatcher(clientRpc.getScheduledExecutor(), this::updateClusterState,
+                    Long.parseLong(properties.getProperty(CLIENT_BATCH_LINGER_MS_KEY, String.valueOf(DEFAULT_CLIENT_BATCH_LINGER_MS))),
+                    Integer.parseInt(properties.getProperty(CLIENT_BATCH_MAX_BYTES_KEY, String.valueOf(DEFAULT_CLIENT_BATCH_MAX_BYTES))),
+                    Integer.parseInt(properties.getProperty(CLIENT_BATCH_MAX_IN_FLIGHT_KEY, String.valueOf(DEFAULT_CLIENT_BATCH_MAX_IN_FLIGHT))),
+                    Long.parseLong(properties.getProperty(CLIENT_BATCH_BUFFER_BYTES_KEY, String.valueOf(DEFAULT_CLIENT_BATCH_BUFFER_BYTES))));
+        } else {
+            updateBatcher = null;
+        }
     }
 
     @Override
     public CompletableFuture<List<byte[]>> update(List<UpdateRequest> entries, boolean includeHeader, ResponseConfig responseConfig) {
+        if (null != updateBatcher) {
+            return updateBatcher.update(entries, includeHeader, responseConfig);
+        }
+        return updateClusterState(entries, includeHeader, responseConfig)
+                .thenApply(UpdateClusterStateResponse::getResults);
+    }
+
+    @Override
+    protected void doStop() {
+        if (null != updateBatcher) {
+            updateBatcher.stop();
+        }
+    }
+
+    private CompletableFuture<UpdateClusterStateResponse> updateClusterState(List<UpdateRequest> entries, boolean includeHeader, ResponseConfig responseConfig) {
         return
                 clientRpc.invokeClientLeaderRpc(rpc -> rpc.updateClusterState(new UpdateClusterStateRequest(entries, includeHeader, responseConfig)))
                         .thenApply(this::checkResponse)
                         .thenApply(response -> {
                             maybeUpdateLastApplied(response.getLastApplied());
                             return response;
-                        })
-                        .thenApply(UpdateClusterStateResponse::getResults);
+                        });
     }
 
 
@@ -90,7 +137,8 @@ public class DefaultRaftClient extends AbstractClient implements RaftClient {
     @Override
     public CompletableFuture<byte[]> query(byte[] query) {
 
-        return clientRpc.invokeClientLeaderRpc(leaderRpc -> leaderRpc.queryClusterState(new QueryStateRequest(query)))
+        // 任一选民节点都可以处理强一致查询，FOLLOWER通过ReadIndex保证读到集群的最新状态
+        return clientRpc.invokeClientServerRpc(rpc -> rpc.queryClusterState(new QueryStateRequest(query)))
                 .thenApply(super::checkResponse)
                 .thenApply(response -> {
                     maybeUpdateLastApplied(response.getLastApplied());
@@ -99,6 +147,39 @@ public class DefaultRaftClient extends AbstractClient implements RaftClient {
                 .thenApply(QueryStateResponse::getResult);
     }
 
+    @Override
+    public CompletableFuture<List<byte[]>> getPartitionEntries(int partition, long index, int size) {
+        return clientRpc.invokeClientLeaderRpc(rpc -> rpc.getPartitionEntries(new GetPartitionEntriesRequest(partition, index, size)))
+                .thenApply(response -> {
+                    try {
+                        switch (response.getStatusCode()) {
+                            case INDEX_OVERFLOW:
+                                throw new IndexOverflowException();
+                            case INDEX_UNDERFLOW:
+                                throw new IndexUnderflowException();
+                            default:
+                                checkResponse(response);
+                        }
+                        return response.getEntries().stream()
+                                .map(DefaultRaftClient::toBytes)
+                                .collect(Collectors.toList());
+                    } finally {
+                        // 本地调用时，响应中的日志直接引用服务端存储的缓存页，复制后需要释放
+                        response.close();
+                    }
+                });
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0
+                && buffer.remaining() == buffer.array().length) {
+            return buffer.array();
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
     @Override
     public CompletableFuture<TransactionContext> createTransaction(Map<String, String> context) {
         return clientRpc.invokeClientLeaderRpc(rpc -> rpc.createTransaction(new CreateTransactionRequest(context)))
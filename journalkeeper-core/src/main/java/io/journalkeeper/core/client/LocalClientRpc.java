@@ -76,6 +76,11 @@ public class LocalClientRpc implements ClientRpc {
         return invokeClientServerRpc(invoke);
     }
 
+    @Override
+    public ScheduledExecutorService getScheduledExecutor() {
+        return scheduledExecutor;
+    }
+
     @Override
     public URI getPreferredServer() {
         return localServer.serverUri();
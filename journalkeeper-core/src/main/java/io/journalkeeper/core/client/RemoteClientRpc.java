@@ -136,6 +136,11 @@ public class RemoteClientRpc implements ClientRpc {
         this.clientServerRpcAccessPoint.stop();
     }
 
+    @Override
+    public ScheduledExecutorService getScheduledExecutor() {
+        return scheduledExecutor;
+    }
+
     @Override
     public URI getPreferredServer() {
         return preferredServer;
@@ -0,0 +1,273 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.core.client;
+
+import io.journalkeeper.core.api.ResponseConfig;
+import io.journalkeeper.core.api.UpdateRequest;
+import io.journalkeeper.exceptions.ClientBufferFullException;
+import io.journalkeeper.rpc.client.UpdateClusterStateResponse;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 客户端批量写入，把并发的update请求合并成一个UpdateClusterStateRequest发送。
+ *
+ * includeHeader和responseConfig相同的请求合并到同一批，一批中的日志超过maxBatchBytes，
+ * 或者这批的第一个请求等待超过lingerMs之后发送。同时发送的批次不超过maxInFlight个，
+ * 已合并但尚未收到响应的日志总大小不超过bufferBytes，超出时请求以{@link ClientBufferFullException}失败。
+ * 收到响应后，每个请求按照自己在这一批中的位置取出对应的执行结果。
+ * 停止之后，还没有发送的批次中的请求以{@link IllegalStateException}失败，已经发送的批次等待响应。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+class UpdateBatcher {
+    private final ScheduledExecutorService scheduledExecutor;
+    private final BatchSender batchSender;
+    private final long lingerMs;
+    private final int maxBatchBytes;
+    private final int maxInFlight;
+    private final long bufferBytes;
+
+    // 以下属性由this保护
+    // 正在合并请求的批次
+    private final Map<BatchKey, Batch> openBatches = new HashMap<>();
+    // 已经合并完成，等待发送的批次
+    private final Deque<Batch> readyBatches = new ArrayDeque<>();
+    private int inFlight = 0;
+    private long bufferedBytes = 0L;
+    private boolean stopped = false;
+
+    UpdateBatcher(ScheduledExecutorService scheduledExecutor, BatchSender batchSender,
+                  long lingerMs, int maxBatchBytes, int maxInFlight, long bufferBytes) {
+        this.scheduledExecutor = scheduledExecutor;
+        this.batchSender = batchSender;
+        this.lingerMs = lingerMs;
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxInFlight = maxInFlight;
+        this.bufferBytes = bufferBytes;
+    }
+
+    /**
+     * 把请求合并到批次中
+     * @param entries 待写入的日志
+     * @param includeHeader entry中是否包含Header
+     * @param responseConfig 响应级别
+     * @return 这些日志的执行结果，与entries一一对应
+     */
+    CompletableFuture<List<byte[]>> update(List<UpdateRequest> entries, boolean includeHeader, ResponseConfig responseConfig) {
+        int bytes = 0;
+        for (UpdateRequest entry : entries) {
+            bytes += entry.getEntry().length;
+        }
+        CompletableFuture<List<byte[]>> future = new CompletableFuture<>();
+        List<Batch> toSend;
+        synchronized (this) {
+            if (stopped) {
+                future.completeExceptionally(new IllegalStateException("Client batcher is stopped!"));
+                return future;
+            }
+            if (bufferedBytes > 0 && bufferedBytes + bytes > bufferBytes) {
+                future.completeExceptionally(new ClientBufferFullException(
+                        String.format("Client batch buffer is full, buffered bytes: %d.", bufferedBytes)));
+                return future;
+            }
+
+            BatchKey key = new BatchKey(includeHeader, responseConfig);
+            Batch batch = openBatches.get(key);
+            if (null != batch && batch.bytes + bytes > maxBatchBytes) {
+                seal(batch);
+                batch = null;
+            }
+            if (null == batch) {
+                try {
+                    batch = openBatch(key);
+                } catch (RejectedExecutionException e) {
+                    // 还没有占用缓冲区，直接失败
+                    future.completeExceptionally(e);
+                }
+            }
+            if (null != batch) {
+                bufferedBytes += bytes;
+                batch.add(entries, bytes, future);
+                if (batch.bytes >= maxBatchBytes) {
+                    seal(batch);
+                }
+            }
+            toSend = pollReadyBatches();
+        }
+        toSend.forEach(this::send);
+        return future;
+    }
+
+    /**
+     * 停止合并请求，正在合并和等待发送的批次中的请求都以{@link IllegalStateException}失败。
+     */
+    void stop() {
+        List<Batch> toFail;
+        synchronized (this) {
+            stopped = true;
+            toFail = new ArrayList<>(openBatches.values());
+            openBatches.clear();
+            toFail.addAll(readyBatches);
+            readyBatches.clear();
+            for (Batch batch : toFail) {
+                if (null != batch.lingerFuture) {
+                    batch.lingerFuture.cancel(false);
+                }
+                bufferedBytes -= batch.bytes;
+            }
+        }
+        IllegalStateException e = new IllegalStateException("Client batcher is stopped!");
+        toFail.forEach(batch -> batch.complete(null, e));
+    }
+
+    private Batch openBatch(BatchKey key) {
+        Batch batch = new Batch(key);
+        batch.lingerFuture = scheduledExecutor.schedule(() -> onLinger(batch), lingerMs, TimeUnit.MILLISECONDS);
+        openBatches.put(key, batch);
+        return batch;
+    }
+
+    private void onLinger(Batch batch) {
+        List<Batch> toSend;
+        synchronized (this) {
+            if (openBatches.get(batch.key) == batch) {
+                seal(batch);
+            }
+            toSend = pollReadyBatches();
+        }
+        toSend.forEach(this::send);
+    }
+
+    private void seal(Batch batch) {
+        openBatches.remove(batch.key);
+        if (null != batch.lingerFuture) {
+            batch.lingerFuture.cancel(false);
+        }
+        readyBatches.addLast(batch);
+    }
+
+    private List<Batch> pollReadyBatches() {
+        if (readyBatches.isEmpty() || inFlight >= maxInFlight) {
+            return Collections.emptyList();
+        }
+        List<Batch> batches = new ArrayList<>();
+        while (!readyBatches.isEmpty() && inFlight < maxInFlight) {
+            batches.add(readyBatches.pollFirst());
+            inFlight++;
+        }
+        return batches;
+    }
+
+    private void send(Batch batch) {
+        CompletableFuture<UpdateClusterStateResponse> responseFuture;
+        try {
+            responseFuture = batchSender.send(batch.entries, batch.key.includeHeader, batch.key.responseConfig);
+        } catch (Throwable t) {
+            responseFuture = new CompletableFuture<>();
+            responseFuture.completeExceptionally(t);
+        }
+        responseFuture.whenComplete((response, throwable) -> {
+            List<Batch> toSend;
+            synchronized (this) {
+                inFlight--;
+                bufferedBytes -= batch.bytes;
+                toSend = pollReadyBatches();
+            }
+            toSend.forEach(this::send);
+            batch.complete(response, throwable);
+        });
+    }
+
+    interface BatchSender {
+        CompletableFuture<UpdateClusterStateResponse> send(List<UpdateRequest> entries, boolean includeHeader, ResponseConfig responseConfig);
+    }
+
+    private static class BatchKey {
+        private final boolean includeHeader;
+        private final ResponseConfig responseConfig;
+
+        BatchKey(boolean includeHeader, ResponseConfig responseConfig) {
+            this.includeHeader = includeHeader;
+            this.responseConfig = responseConfig;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            BatchKey batchKey = (BatchKey) o;
+            return includeHeader == batchKey.includeHeader &&
+                    responseConfig == batchKey.responseConfig;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(includeHeader, responseConfig);
+        }
+    }
+
+    private static class Batch {
+        private final BatchKey key;
+        private final List<UpdateRequest> entries = new ArrayList<>();
+        // 每个请求在entries中的起始位置和对应的Future
+        private final List<Integer> offsets = new ArrayList<>();
+        private final List<CompletableFuture<List<byte[]>>> futures = new ArrayList<>();
+        private int bytes = 0;
+        private ScheduledFuture<?> lingerFuture;
+
+        Batch(BatchKey key) {
+            this.key = key;
+        }
+
+        void add(List<UpdateRequest> requestEntries, int requestBytes, CompletableFuture<List<byte[]>> future) {
+            offsets.add(entries.size());
+            futures.add(future);
+            entries.addAll(requestEntries);
+            bytes += requestBytes;
+        }
+
+        void complete(UpdateClusterStateResponse response, Throwable throwable) {
+            for (int i = 0; i < futures.size(); i++) {
+                CompletableFuture<List<byte[]>> future = futures.get(i);
+                if (null != throwable) {
+                    future.completeExceptionally(throwable);
+                    continue;
+                }
+                List<byte[]> results = response.getResults();
+                int from = offsets.get(i);
+                int to = i + 1 < offsets.size() ? offsets.get(i + 1) : entries.size();
+                if (null == results || results.size() < to) {
+                    // 响应级别为RECEIVE或者PERSISTENCE时，不返回执行结果
+                    future.complete(results == null ? null : Collections.emptyList());
+                } else {
+                    future.complete(new ArrayList<>(results.subList(from, to)));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.core.entry;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.zip.Checksum;
+
+/**
+ * CRC32C（Castagnoli）校验和。
+ * JDK 9及以上版本使用有硬件加速的java.util.zip.CRC32C，
+ * JDK 8使用查表法的纯Java实现，两者计算结果完全相同，不同JDK版本的节点之间可以互相校验。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+final class Crc32c {
+    private static final MethodHandle JDK_CRC32C_CONSTRUCTOR = lookupJdkCrc32c();
+    // 每个线程复用一个实例，避免每次计算校验和都通过MethodHandle创建新的实例
+    private static final ThreadLocal<Checksum> THREAD_LOCAL_CRC32C = ThreadLocal.withInitial(Crc32c::create);
+
+    private Crc32c() {
+    }
+
+    /**
+     * 创建一个CRC32C实例，非线程安全。
+     * @return CRC32C实例
+     */
+    static Checksum create() {
+        if (null != JDK_CRC32C_CONSTRUCTOR) {
+            try {
+                return (Checksum) JDK_CRC32C_CONSTRUCTOR.invoke();
+            } catch (Throwable ignored) {
+            }
+        }
+        return new PureJavaCrc32c();
+    }
+
+    /**
+     * 获取当前线程复用的CRC32C实例，返回之前已经重置，只能在当前线程中使用，不能保存。
+     * @return 已重置的CRC32C实例
+     */
+    static Checksum threadLocal() {
+        Checksum checksum = THREAD_LOCAL_CRC32C.get();
+        checksum.reset();
+        return checksum;
+    }
+
+    private static MethodHandle lookupJdkCrc32c() {
+        try {
+            return MethodHandles.publicLookup().findConstructor(
+                    Class.forName("java.util.zip.CRC32C"), MethodType.methodType(void.class));
+        } catch (Throwable ignored) {
+            return null;
+        }
+    }
+
+    private static class PureJavaCrc32c implements Checksum {
+        // CRC32C多项式0x1EDC6F41的反转形式
+        private static final int POLYNOMIAL = 0x82F63B78;
+        private static final int[] TABLE = new int[256];
+
+        static {
+            for (int i = 0; i < TABLE.length; i++) {
+                int crc = i;
+                for (int j = 0; j < 8; j++) {
+                    crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+                }
+                TABLE[i] = crc;
+            }
+        }
+
+        private int crc = 0xFFFFFFFF;
+
+        @Override
+        public void update(int b) {
+            crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xFF];
+        }
+
+        @Override
+        public void update(byte[] b, int off, int len) {
+            int localCrc = crc;
+            for (int i = off; i < off + len; i++) {
+                localCrc = (localCrc >>> 8) ^ TABLE[(localCrc ^ b[i]) & 0xFF];
+            }
+            crc = localCrc;
+        }
+
+        @Override
+        public long getValue() {
+            return (~crc) & 0xFFFFFFFFL;
+        }
+
+        @Override
+        public void reset() {
+            crc = 0xFFFFFFFF;
+        }
+    }
+}
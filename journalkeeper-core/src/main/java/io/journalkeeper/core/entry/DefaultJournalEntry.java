@@ -19,21 +19,40 @@ import io.journalkeeper.core.journal.ParseJournalException;
 
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.zip.Checksum;
 
 /**
  * @author LiYue
  * Date: 2019/10/12
  */
 public class DefaultJournalEntry implements JournalEntry {
-    public final static short MAGIC_CODE = ByteBuffer.wrap(new byte[]{(byte) 0XF4, (byte) 0X3C}).getShort();
+    /**
+     * Header版本2，Header中包含CHECKSUM
+     */
+    public final static short MAGIC_CODE = ByteBuffer.wrap(new byte[]{(byte) 0XF4, (byte) 0X3D}).getShort();
+    /**
+     * Header版本1，没有CHECKSUM，读取时跳过校验
+     */
+    public final static short LEGACY_MAGIC_CODE = ByteBuffer.wrap(new byte[]{(byte) 0XF4, (byte) 0X3C}).getShort();
+    /**
+     * Header版本1的长度，版本1的Header与版本2的Header去掉末尾的CHECKSUM相同
+     */
+    public final static int LEGACY_HEADER_LENGTH = JournalEntryParseSupport.CHECKSUM;
 
     // 包含Header和Payload
     private final byte[] serializedBytes;
     private final ByteBuffer serializedBuffer;
     private int offset = 0;
+    // Header变化后，需要在序列化时重新计算校验和
+    private boolean checksumDirty;
 
     DefaultJournalEntry(byte[] serializedBytes, boolean checkMagic, boolean checkLength) {
+        this(serializedBytes, checkMagic, checkLength, false);
+    }
+
+    DefaultJournalEntry(byte[] serializedBytes, boolean checkMagic, boolean checkLength, boolean checksumDirty) {
         this.serializedBytes = serializedBytes;
+        this.checksumDirty = checksumDirty;
         this.serializedBuffer = ByteBuffer.wrap(serializedBytes);
         if (checkMagic) {
             checkMagic();
@@ -56,13 +75,29 @@ public class DefaultJournalEntry implements JournalEntry {
     }
 
     private void checkMagic() {
-        short magic = JournalEntryParseSupport.getShort(serializedBuffer(), JournalEntryParseSupport.MAGIC);
-        if (magicCode() != magic) {
+        short magic = magic();
+        if (MAGIC_CODE != magic && LEGACY_MAGIC_CODE != magic) {
             throw new ParseJournalException(String.format("Check magic failed, magic: %s, current: %s, content: %s",
-                    magicCode(), magic, new String(serializedBytes)));
+                    MAGIC_CODE, magic, new String(serializedBytes)));
         }
     }
 
+    private short magic() {
+        return JournalEntryParseSupport.getShort(serializedBuffer(), JournalEntryParseSupport.MAGIC);
+    }
+
+    /**
+     * 是否是版本1的Header
+     * @return 版本1的Header没有CHECKSUM，返回true
+     */
+    public boolean isLegacy() {
+        return LEGACY_MAGIC_CODE == magic();
+    }
+
+    private int headerLength() {
+        return isLegacy() ? LEGACY_HEADER_LENGTH : JournalEntryParseSupport.getHeaderLength();
+    }
+
     @Override
     public int getBatchSize() {
         return JournalEntryParseSupport.getShort(serializedBuffer(), JournalEntryParseSupport.BATCH_SIZE);
@@ -70,6 +105,7 @@ public class DefaultJournalEntry implements JournalEntry {
 
     public void setBatchSize(int batchSize) {
         JournalEntryParseSupport.setShort(serializedBuffer(), JournalEntryParseSupport.BATCH_SIZE, (short) batchSize);
+        checksumDirty = true;
     }
 
     @Override
@@ -79,6 +115,7 @@ public class DefaultJournalEntry implements JournalEntry {
 
     public void setPartition(int partition) {
         JournalEntryParseSupport.setShort(serializedBuffer(), JournalEntryParseSupport.PARTITION, (short) partition);
+        checksumDirty = true;
     }
 
     @Override
@@ -97,21 +134,43 @@ public class DefaultJournalEntry implements JournalEntry {
 
     public void setTerm(int term) {
         JournalEntryParseSupport.setInt(serializedBuffer(), JournalEntryParseSupport.TERM, term);
+        checksumDirty = true;
     }
 
     @Override
     public BytesFragment getPayload() {
+        int headerLength = headerLength();
         return new BytesFragment(
                 serializedBytes,
-                JournalEntryParseSupport.getHeaderLength(),
-                serializedBytes.length - JournalEntryParseSupport.getHeaderLength());
+                headerLength,
+                serializedBytes.length - headerLength);
     }
 
     @Override
     public final byte[] getSerializedBytes() {
+        if (checksumDirty && !isLegacy()) {
+            JournalEntryParseSupport.setInt(serializedBuffer(), JournalEntryParseSupport.CHECKSUM, calculateChecksum());
+            checksumDirty = false;
+        }
         return serializedBytes;
     }
 
+    @Override
+    public boolean verifyChecksum() {
+        // 版本1的Header没有CHECKSUM，跳过校验
+        return checksumDirty || isLegacy() ||
+                JournalEntryParseSupport.getInt(serializedBuffer(), JournalEntryParseSupport.CHECKSUM) == calculateChecksum();
+    }
+
+    private int calculateChecksum() {
+        Checksum checksum = Crc32c.threadLocal();
+        int checksumOffset = JournalEntryParseSupport.CHECKSUM;
+        int checksumEnd = checksumOffset + Integer.BYTES;
+        checksum.update(serializedBytes, 0, checksumOffset);
+        checksum.update(serializedBytes, checksumEnd, serializedBytes.length - checksumEnd);
+        return (int) checksum.getValue();
+    }
+
     @Override
     public int getLength() {
         return JournalEntryParseSupport.getInt(serializedBuffer(), JournalEntryParseSupport.LENGTH);
@@ -138,8 +197,4 @@ public class DefaultJournalEntry implements JournalEntry {
     public int hashCode() {
         return Arrays.hashCode(serializedBytes);
     }
-
-    private short magicCode() {
-        return MAGIC_CODE;
-    }
 }
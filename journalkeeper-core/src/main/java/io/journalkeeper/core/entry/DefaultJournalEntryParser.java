@@ -28,6 +28,11 @@ public class DefaultJournalEntryParser implements JournalEntryParser {
         return JournalEntryParseSupport.getHeaderLength();
     }
 
+    @Override
+    public int minHeaderLength() {
+        return DefaultJournalEntry.LEGACY_HEADER_LENGTH;
+    }
+
     @Override
     public JournalEntry parseHeader(byte[] headerBytes) {
         return new DefaultJournalEntry(headerBytes, true, false);
@@ -52,7 +57,7 @@ public class DefaultJournalEntryParser implements JournalEntryParser {
         for (int i = 0; i < payload.length; i++) {
             rawEntry[headerLength + i] = payload[i];
         }
-        return new DefaultJournalEntry(rawEntry, false, false);
+        return new DefaultJournalEntry(rawEntry, false, false, true);
 
     }
 }
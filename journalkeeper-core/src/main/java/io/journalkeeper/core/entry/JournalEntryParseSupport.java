@@ -42,6 +42,8 @@ public class JournalEntryParseSupport extends EntryParser {
     final static int MAGIC = createAttribute("MAGIC", FIXED_LENGTH_2);
     final static int BATCH_SIZE = createAttribute("BATCH_SIZE", FIXED_LENGTH_2);
     public final static int TIMESTAMP = createAttribute("TIMESTAMP", FIXED_LENGTH_8);
+    // CRC32C校验和，覆盖除本字段以外的整条Entry
+    final static int CHECKSUM = createAttribute("CHECKSUM", FIXED_LENGTH_4);
     final static int ENTRY = createAttribute("ENTRY", VARIABLE_LENGTH);
 
 
@@ -0,0 +1,262 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.core.journal;
+
+import io.journalkeeper.persistence.BufferView;
+import io.journalkeeper.persistence.JournalPersistence;
+import io.journalkeeper.utils.buffer.DirectBufferUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.locks.StampedLock;
+
+import static io.journalkeeper.core.journal.Journal.INDEX_STORAGE_SIZE;
+
+/**
+ * 带尾部缓存的索引存储。
+ * 在堆外内存中用一个环形的long数组缓存最近写入的capacity条索引，
+ * 读取缓存范围内的索引时不访问底层存储。
+ * 写入、截断和压缩时同步更新缓存，写入只允许单线程，读取可以多线程并发。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+class CachedIndexPersistence implements JournalPersistence {
+    private final JournalPersistence persistence;
+    private final int capacity;
+    private final ByteBuffer cache;
+    private final StampedLock lock = new StampedLock();
+    // 缓存的索引范围：[head, tail)
+    private long head = 0L;
+    private long tail = 0L;
+    // 关闭之后缓存的堆外内存已经释放，不能再写入
+    private boolean closed = false;
+
+    CachedIndexPersistence(JournalPersistence persistence, int capacity) {
+        this.persistence = persistence;
+        this.capacity = capacity;
+        this.cache = ByteBuffer.allocateDirect(capacity * INDEX_STORAGE_SIZE);
+    }
+
+    @Override
+    public long min() {
+        return persistence.min();
+    }
+
+    @Override
+    public long physicalMin() {
+        return persistence.physicalMin();
+    }
+
+    @Override
+    public long max() {
+        return persistence.max();
+    }
+
+    @Override
+    public long flushed() {
+        return persistence.flushed();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        persistence.flush();
+    }
+
+    @Override
+    public void truncate(long givenMax) throws IOException {
+        persistence.truncate(givenMax);
+        long stamp = lock.writeLock();
+        try {
+            long index = givenMax / INDEX_STORAGE_SIZE;
+            if (index <= head) {
+                head = tail = 0L;
+            } else if (index < tail) {
+                tail = index;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public long compact(long givenMin) throws IOException {
+        long compacted = persistence.compact(givenMin);
+        long stamp = lock.writeLock();
+        try {
+            long index = persistence.min() / INDEX_STORAGE_SIZE;
+            if (index >= tail) {
+                head = tail = 0L;
+            } else if (index > head) {
+                head = index;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return compacted;
+    }
+
+    @Override
+    public long append(byte[] entry) throws IOException {
+        long startIndex = persistence.max() / INDEX_STORAGE_SIZE;
+        long max = persistence.append(entry);
+        cache(startIndex, entry);
+        return max;
+    }
+
+    @Override
+    public long append(List<byte[]> entries) throws IOException {
+        long startIndex = persistence.max() / INDEX_STORAGE_SIZE;
+        long max = persistence.append(entries);
+        for (byte[] entry : entries) {
+            cache(startIndex, entry);
+            startIndex += entry.length / INDEX_STORAGE_SIZE;
+        }
+        return max;
+    }
+
+    private void cache(long startIndex, byte[] entry) {
+        if (entry.length % INDEX_STORAGE_SIZE != 0) {
+            invalidate();
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(entry);
+        long stamp = lock.writeLock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (startIndex != tail) {
+                // 不连续的写入，丢弃之前的缓存
+                head = tail = startIndex;
+            }
+            while (buffer.hasRemaining()) {
+                cache.putLong(slot(tail), buffer.getLong());
+                tail++;
+            }
+            if (tail - head > capacity) {
+                head = tail - capacity;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void invalidate() {
+        long stamp = lock.writeLock();
+        try {
+            head = tail = 0L;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private int slot(long index) {
+        return (int) (index % capacity) * INDEX_STORAGE_SIZE;
+    }
+
+    /**
+     * 从缓存中读取[index, index + count)范围内的索引，只有全部命中时才返回。
+     * @return 全部命中时返回索引，否则返回null
+     */
+    private long[] readCache(long index, int count) {
+        long stamp = lock.tryOptimisticRead();
+        long[] values = readCacheUnsafe(index, count);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                values = readCacheUnsafe(index, count);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return values;
+    }
+
+    private long[] readCacheUnsafe(long index, int count) {
+        long h = head, t = tail;
+        if (count <= 0 || index < h || index + count > t) {
+            return null;
+        }
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = cache.getLong(slot(index + i));
+        }
+        return values;
+    }
+
+    @Override
+    public byte[] read(long position, int length) throws IOException {
+        if (position % INDEX_STORAGE_SIZE == 0 && length % INDEX_STORAGE_SIZE == 0) {
+            long[] values = readCache(position / INDEX_STORAGE_SIZE, length / INDEX_STORAGE_SIZE);
+            if (null != values) {
+                ByteBuffer buffer = ByteBuffer.allocate(length);
+                for (long value : values) {
+                    buffer.putLong(value);
+                }
+                return buffer.array();
+            }
+        }
+        return persistence.read(position, length);
+    }
+
+    @Override
+    public BufferView readView(long position, int length) throws IOException {
+        return persistence.readView(position, length);
+    }
+
+    @Override
+    public Long readLong(long position) throws IOException {
+        if (position % INDEX_STORAGE_SIZE == 0) {
+            long[] values = readCache(position / INDEX_STORAGE_SIZE, 1);
+            if (null != values) {
+                return values[0];
+            }
+        }
+        return persistence.readLong(position);
+    }
+
+    @Override
+    public void recover(Path path, long min, Properties properties) throws IOException {
+        invalidate();
+        persistence.recover(path, min, properties);
+    }
+
+    @Override
+    public void delete() throws IOException {
+        invalidate();
+        persistence.delete();
+    }
+
+    @Override
+    public Path getBasePath() {
+        return persistence.getBasePath();
+    }
+
+    @Override
+    public void close() throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            closed = true;
+            head = tail = 0L;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        DirectBufferUtils.releaseIfDirect(cache);
+        persistence.close();
+    }
+}
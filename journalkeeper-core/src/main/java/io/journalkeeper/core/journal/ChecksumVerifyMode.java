@@ -0,0 +1,50 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.core.journal;
+
+/**
+ * Journal校验Entry校验和的时机，每一级都包含前一级。
+ * @author agent
+ * Date: 2026-10-19
+ */
+public enum ChecksumVerifyMode {
+    /**
+     * 不校验
+     */
+    NONE,
+    /**
+     * 恢复Journal时校验末尾的Entry，校验失败的Entry会被截掉
+     */
+    RECOVERY,
+    /**
+     * 同时在写入从其它节点复制过来的Entry之前校验
+     */
+    REPLICATION,
+    /**
+     * 同时在每次读取Entry时校验（零拷贝视图除外）
+     */
+    READ;
+
+    boolean verifyOnRecovery() {
+        return compareTo(RECOVERY) >= 0;
+    }
+
+    boolean verifyOnReplication() {
+        return compareTo(REPLICATION) >= 0;
+    }
+
+    boolean verifyOnRead() {
+        return compareTo(READ) >= 0;
+    }
+}
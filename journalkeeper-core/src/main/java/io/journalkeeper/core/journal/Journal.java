@@ -17,14 +17,18 @@ package io.journalkeeper.core.journal;
 import io.journalkeeper.core.api.JournalEntry;
 import io.journalkeeper.core.api.JournalEntryParser;
 import io.journalkeeper.core.api.RaftJournal;
+import io.journalkeeper.core.metric.DummyMetric;
 import io.journalkeeper.exceptions.IndexOverflowException;
 import io.journalkeeper.exceptions.IndexUnderflowException;
 import io.journalkeeper.exceptions.JournalException;
+import io.journalkeeper.metric.JMetric;
 import io.journalkeeper.persistence.BufferPool;
+import io.journalkeeper.persistence.BufferView;
 import io.journalkeeper.persistence.JournalPersistence;
 import io.journalkeeper.persistence.PersistenceFactory;
 import io.journalkeeper.persistence.TooManyBytesException;
 import io.journalkeeper.utils.ThreadSafeFormat;
+import io.journalkeeper.utils.threads.NamedThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,6 +49,10 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -89,6 +97,12 @@ public class Journal implements RaftJournal, Flushable, Closeable {
     private final PersistenceFactory persistenceFactory;
     private final BufferPool bufferPool;
     private final JournalEntryParser journalEntryParser;
+    private final ChecksumVerifyMode checksumVerifyMode;
+    private final JMetric verifyChecksumMetric;
+    private final int flushThreads;
+    private final int partitionIndexCacheSize;
+    // 并行刷盘的线程池，为null时串行刷盘
+    private ExecutorService flushExecutor = null;
     private Path basePath = null;
     private Properties indexProperties;
     private Properties journalProperties;
@@ -99,6 +113,20 @@ public class Journal implements RaftJournal, Flushable, Closeable {
     private ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
 
     public Journal(PersistenceFactory persistenceFactory, BufferPool bufferPool, JournalEntryParser journalEntryParser) {
+        this(persistenceFactory, bufferPool, journalEntryParser, ChecksumVerifyMode.RECOVERY, new DummyMetric(), 1, 0);
+    }
+
+    /**
+     * @param flushThreads 并行刷盘的线程数，不大于1时Journal、全局索引和分区索引串行刷盘
+     * @param partitionIndexCacheSize 每个分区在堆外内存中缓存的最近的分区索引数量，为0时不缓存
+     */
+    public Journal(PersistenceFactory persistenceFactory, BufferPool bufferPool, JournalEntryParser journalEntryParser,
+                   ChecksumVerifyMode checksumVerifyMode, JMetric verifyChecksumMetric, int flushThreads,
+                   int partitionIndexCacheSize) {
+        this.checksumVerifyMode = checksumVerifyMode;
+        this.flushThreads = flushThreads;
+        this.partitionIndexCacheSize = partitionIndexCacheSize;
+        this.verifyChecksumMetric = verifyChecksumMetric;
         this.indexPersistence = persistenceFactory.createJournalPersistenceInstance();
         this.journalPersistence = persistenceFactory.createJournalPersistenceInstance();
         this.persistenceFactory = persistenceFactory;
@@ -175,7 +203,7 @@ public class Journal implements RaftJournal, Flushable, Closeable {
             for (Map.Entry<Integer, Long> entry : partitionMinIndices.entrySet()) {
                 int partition = entry.getKey();
                 if (!partitionMap.containsKey(partition)) {
-                    JournalPersistence partitionPersistence = persistenceFactory.createJournalPersistenceInstance();
+                    JournalPersistence partitionPersistence = createPartitionPersistence();
                     partitionPersistence.recover(basePath.resolve(PARTITION_PATH).resolve(String.valueOf(partition)),
                             partitionMinIndices.get(partition) * INDEX_STORAGE_SIZE,
                             indexProperties);
@@ -240,7 +268,7 @@ public class Journal implements RaftJournal, Flushable, Closeable {
 
             for (Map.Entry<Integer, Long> entry : partitionMinIndices.entrySet()) {
                 int partition = entry.getKey();
-                JournalPersistence partitionPersistence = persistenceFactory.createJournalPersistenceInstance();
+                JournalPersistence partitionPersistence = createPartitionPersistence();
                 partitionPersistence.recover(basePath.resolve(PARTITION_PATH).resolve(String.valueOf(partition)),
                         partitionMinIndices.get(partition) * INDEX_STORAGE_SIZE,
                         indexProperties);
@@ -285,16 +313,14 @@ public class Journal implements RaftJournal, Flushable, Closeable {
             indices.add(++index);
         }
 
-        try {
+        withReadLock(() -> {
             // 写入Journal header
             journalPersistence.append(entryBuffers);
 
             // 写入全局索引
             indexPersistence.append(indicesBuffer.array());
-
-        } catch (IOException e) {
-            throw new JournalException(e);
-        }
+            return null;
+        });
 
         return indices;
     }
@@ -322,7 +348,12 @@ public class Journal implements RaftJournal, Flushable, Closeable {
 
     public JournalEntry readEntryHeaderByOffset(long offset) {
         return withReadLock(() -> {
-            byte[] headerBytes = journalPersistence.read(offset, journalEntryParser.headerLength());
+            // 版本1的Header较短，末尾的Entry可能不足一个版本2的Header长度
+            int headerLength = journalEntryParser.headerLength();
+            if (offset < journalPersistence.max() && journalPersistence.max() - offset < headerLength) {
+                headerLength = (int) (journalPersistence.max() - offset);
+            }
+            byte[] headerBytes = journalPersistence.read(offset, headerLength);
             return journalEntryParser.parseHeader(headerBytes);
         });
     }
@@ -362,6 +393,12 @@ public class Journal implements RaftJournal, Flushable, Closeable {
     }
 
 
+    private JournalPersistence createPartitionPersistence() {
+        JournalPersistence partitionPersistence = persistenceFactory.createJournalPersistenceInstance();
+        return partitionIndexCacheSize > 0 ?
+                new CachedIndexPersistence(partitionPersistence, partitionIndexCacheSize) : partitionPersistence;
+    }
+
     private JournalPersistence getPartitionPersistence(int partition) {
         JournalPersistence partitionPersistence = partitionMap.get(partition);
         if (null == partitionPersistence) {
@@ -384,6 +421,12 @@ public class Journal implements RaftJournal, Flushable, Closeable {
             offset += storageEntries.get(i).length;
         }
 
+        if (checksumVerifyMode.verifyOnReplication()) {
+            for (int i = 0; i < offsets.length; i++) {
+                verifyChecksum(storageEntries.get(i), offsets[i]);
+            }
+        }
+
         withReadLock(() -> {
             // 写入Journal
             for (byte[] storageEntry : storageEntries) {
@@ -416,7 +459,10 @@ public class Journal implements RaftJournal, Flushable, Closeable {
     @Override
     public JournalEntry readByPartition(int partition, long index) {
         JournalPersistence pp = getPartitionPersistence(partition);
-        long offset = readOffset(pp, index);
+        return readByPartitionOffset(pp, index, readOffset(pp, index));
+    }
+
+    private JournalEntry readByPartitionOffset(JournalPersistence pp, long index, long offset) {
         long journalOffset;
         int relIndex;
         if (offset < 0) {
@@ -435,12 +481,19 @@ public class Journal implements RaftJournal, Flushable, Closeable {
 
     @Override
     public List<JournalEntry> batchReadByPartition(int partition, long startPartitionIndex, int maxSize) {
+        JournalPersistence pp = getPartitionPersistence(partition);
+        // 一次读出范围内的所有分区索引，避免逐条读取
+        int prefetchSize = (int) Math.max(0L, Math.min(maxSize, maxIndex(partition) - startPartitionIndex));
+        long[] offsets = withReadLock(() -> readOffsets(pp, startPartitionIndex, prefetchSize));
         List<JournalEntry> list = new LinkedList<>();
         int size = 0;
         long index = startPartitionIndex;
         while (size < maxSize) {
-            JournalEntry batchEntry = readByPartition(partition, index);
-            int count = batchEntry.getBatchSize() - batchEntry.getOffset();
+            int i = (int) (index - startPartitionIndex);
+            JournalEntry batchEntry = i < offsets.length ?
+                    readByPartitionOffset(pp, index, offsets[i]) : readByPartition(partition, index);
+            // batchSize为0的日志和写入分区索引时一样，按照1条计算
+            int count = Math.max(1, batchEntry.getBatchSize()) - batchEntry.getOffset();
             size += count;
             index += count;
             list.add(batchEntry);
@@ -448,6 +501,48 @@ public class Journal implements RaftJournal, Flushable, Closeable {
         return list;
     }
 
+    /**
+     * 批量读取分区上未反序列化的Entry，返回存储缓存页上的只读视图，不复制数据。
+     * 和{@link #batchReadByPartition(int, long, int)}一样，起始位置在批量Entry中间时返回整个批量Entry。
+     * 视图关闭之前，对应的缓存页不会被释放，使用完毕后必须调用{@link BufferView#close()}。
+     * @param partition 分区
+     * @param startPartitionIndex 起始分区索引序号
+     * @param maxSize 期望读取的条数，最多读到分区的最大索引序号
+     * @return 未反序列化的Entry的只读视图列表
+     */
+    public List<BufferView> batchReadRawViewByPartition(int partition, long startPartitionIndex, int maxSize) {
+        JournalPersistence pp = getPartitionPersistence(partition);
+        int prefetchSize = (int) Math.max(0L, Math.min(maxSize, maxIndex(partition) - startPartitionIndex));
+        long[] offsets = withReadLock(() -> readOffsets(pp, startPartitionIndex, prefetchSize));
+        List<BufferView> list = new ArrayList<>(prefetchSize);
+        try {
+            int size = 0;
+            long index = startPartitionIndex;
+            while (size < prefetchSize) {
+                int i = (int) (index - startPartitionIndex);
+                long offset = offsets[i];
+                long journalOffset;
+                int relIndex;
+                if (offset < 0) {
+                    journalOffset = readOffset(pp, index + offset);
+                    relIndex = (int) (-1 * offset);
+                } else {
+                    journalOffset = offset;
+                    relIndex = 0;
+                }
+                JournalEntry header = readEntryHeaderByOffset(journalOffset);
+                list.add(withReadLock(() -> readViewByOffset(journalOffset, header.getLength())));
+                int count = Math.max(1, header.getBatchSize()) - relIndex;
+                size += count;
+                index += count;
+            }
+        } catch (Throwable t) {
+            list.forEach(BufferView::close);
+            throw t;
+        }
+        return list;
+    }
+
 
     public JournalEntry read(long index) {
         return journalEntryParser.parse(readRaw(index));
@@ -464,11 +559,65 @@ public class Journal implements RaftJournal, Flushable, Closeable {
     }
 
     private byte[] readRawByOffset(long offset) {
-        return withReadLock(() -> {
+        byte[] rawEntry = withReadLock(() -> {
             int length = readEntryLengthByOffset(offset);
             return journalPersistence
                     .read(offset, length);
         });
+        if (checksumVerifyMode.verifyOnRead()) {
+            verifyChecksum(rawEntry, offset);
+        }
+        return rawEntry;
+    }
+
+    /**
+     * 校验Entry的校验和，并记录校验的耗时和流量
+     * @param rawEntry 未反序列化的Entry
+     * @param offset Entry在Journal中的偏移量
+     * @throws ParseJournalException 校验失败时抛出
+     */
+    private void verifyChecksum(byte[] rawEntry, long offset) {
+        long start = System.nanoTime();
+        boolean verified = journalEntryParser.parse(rawEntry).verifyChecksum();
+        verifyChecksumMetric.mark(System.nanoTime() - start, rawEntry.length);
+        if (!verified) {
+            throw new ParseJournalException(
+                    String.format("Journal entry checksum mismatch, offset: %d, length: %d!", offset, rawEntry.length));
+        }
+    }
+
+    /**
+     * 读取指定索引位置上未反序列化的Entry，返回存储缓存页上的只读视图，不复制数据。
+     * 视图关闭之前，对应的缓存页不会被释放，使用完毕后必须调用{@link BufferView#close()}。
+     * @param index 索引位置
+     * @return 未反序列化的Entry的只读视图
+     * @throws IndexUnderflowException 如果 index 小于 minIndex()
+     * @throws IndexOverflowException 如果index 不小于 maxIndex()
+     */
+    public BufferView readRawView(long index) {
+        checkIndex(index);
+        long offset = readOffset(index);
+        return withReadLock(() -> {
+            int length = readEntryLengthByOffset(offset);
+            return readViewByOffset(offset, length);
+        });
+    }
+
+    /**
+     * 读取Journal中指定位置的只读视图
+     * @param offset 起始偏移量
+     * @param length 读取长度
+     * @return 只读视图，不会返回null
+     * @throws JournalException 偏移量对应的文件不存在时抛出
+     */
+    private BufferView readViewByOffset(long offset, int length) throws IOException {
+        BufferView view = journalPersistence.readView(offset, length);
+        if (null == view) {
+            throw new JournalException(
+                    String.format("No journal file contains offset: %d, length: %d, journal offset range: [%d, %d)!",
+                            offset, length, journalPersistence.min(), journalPersistence.max()));
+        }
+        return view;
     }
 
     private int readEntryLengthByOffset(long offset) {
@@ -484,13 +633,9 @@ public class Journal implements RaftJournal, Flushable, Closeable {
     }
 
     public List<JournalEntry> batchRead(long index, int size) {
-        checkIndex(index);
-        List<JournalEntry> list = new ArrayList<>(size);
-        long i = index;
-        while (list.size() < size && i < maxIndex()) {
-            list.add(read(i++));
-        }
-        return list;
+        return readRaw(index, size).stream()
+                .map(journalEntryParser::parse)
+                .collect(Collectors.toList());
     }
 
 
@@ -504,12 +649,73 @@ public class Journal implements RaftJournal, Flushable, Closeable {
      */
     public List<byte[]> readRaw(long index, int size) {
         checkIndex(index);
-        List<byte[]> list = new ArrayList<>(size);
-        long i = index;
-        while (list.size() < size && i < maxIndex()) {
-            list.add(readRaw(i++));
+        return withReadLock(() -> {
+            long maxIndex = maxIndex();
+            int count = (int) Math.min(size, maxIndex - index);
+            if (count <= 0) {
+                return new ArrayList<>();
+            }
+            // 一次读出[index, index + count]的所有偏移量，相邻偏移量之差就是Entry的长度；
+            // 如果最后一条就是当前最大的Entry，需要读它的Header获取长度
+            boolean hasNext = index + count < maxIndex;
+            long[] offsets = readOffsets(indexPersistence, index, hasNext ? count + 1 : count);
+            long endOffset = hasNext ? offsets[count] :
+                    offsets[count - 1] + readEntryLengthByOffset(offsets[count - 1]);
+
+            List<byte[]> list = new ArrayList<>(count);
+            int i = 0;
+            while (i < count) {
+                int start = i;
+                long viewOffset = offsets[i];
+                // Entry不会跨文件，视图最多读到当前文件的末尾，剩余的部分下一轮继续读
+                try (BufferView view = readViewByOffset(viewOffset,
+                        (int) Math.min(Integer.MAX_VALUE, endOffset - viewOffset))) {
+                    ByteBuffer buffer = view.buffer();
+                    while (i < count) {
+                        long entryEnd = i + 1 < count ? offsets[i + 1] : endOffset;
+                        int relPosition = (int) (offsets[i] - viewOffset);
+                        int length = (int) (entryEnd - offsets[i]);
+                        if (relPosition + length > buffer.limit()) {
+                            break;
+                        }
+                        byte[] entry = new byte[length];
+                        buffer.position(relPosition);
+                        buffer.get(entry);
+                        if (checksumVerifyMode.verifyOnRead()) {
+                            verifyChecksum(entry, offsets[i]);
+                        }
+                        list.add(entry);
+                        i++;
+                    }
+                }
+                if (i == start) {
+                    // 视图中没有一条完整的Entry，退化为逐条读取
+                    list.add(readRawByOffset(offsets[i++]));
+                }
+            }
+            return list;
+        });
+    }
+
+    /**
+     * 从索引存储中一次读取连续的多个偏移量
+     */
+    private long[] readOffsets(JournalPersistence indexPersistence, long index, int count) throws IOException {
+        long[] offsets = new long[count];
+        int i = 0;
+        while (i < count) {
+            // 读取结果不会跨越文件，可能少于请求的长度
+            byte[] bytes = indexPersistence.read((index + i) * INDEX_STORAGE_SIZE, (count - i) * INDEX_STORAGE_SIZE);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            if (buffer.remaining() < INDEX_STORAGE_SIZE) {
+                offsets[i] = readOffset(indexPersistence, index + i);
+                i++;
+            }
+            while (buffer.remaining() >= INDEX_STORAGE_SIZE) {
+                offsets[i++] = buffer.getLong();
+            }
         }
-        return list;
+        return offsets;
     }
 
     /**
@@ -592,23 +798,26 @@ public class Journal implements RaftJournal, Flushable, Closeable {
 
     /**
      * 从指定path恢复Journal。
-     * 1. 删除journal或者index文件末尾可能存在的不完整的数据。
+     * 1. 删除journal或者index文件末尾可能存在的不完整的数据，只允许删除未提交的数据，
+     *    已提交的数据不完整或者校验失败时，抛出异常，恢复失败。
      * 2. 以Journal为准，修复全局索引和分区索引：删除多余的索引，并创建缺失的索引。
      * @param path 恢复目录
      * @param commitIndex 当前journal提交全局索引
      * @param journalSnapshot 快照
      * @param properties 属性
      * @throws IOException 发生IO异常时抛出
+     * @throws JournalException 已提交的数据损坏时抛出
      */
     public void recover(Path path, long commitIndex, JournalSnapshot journalSnapshot, Properties properties) throws IOException {
         this.basePath = path;
+        if (flushThreads > 1 && null == flushExecutor) {
+            flushExecutor = Executors.newFixedThreadPool(flushThreads, new NamedThreadFactory("Journal-Flush", true));
+        }
         Path indexPath = path.resolve(INDEX_PATH);
         Path partitionPath = path.resolve(PARTITION_PATH);
         journalProperties = replacePropertiesNames(properties,
                 JOURNAL_PROPERTIES_PATTERN, DEFAULT_JOURNAL_PROPERTIES);
         journalPersistence.recover(path, journalSnapshot.minOffset(), journalProperties);
-        // 截掉末尾半条数据
-        truncateJournalTailPartialEntry();
 
         indexProperties = replacePropertiesNames(properties,
                 INDEX_PROPERTIES_PATTERN, DEFAULT_INDEX_PROPERTIES);
@@ -616,6 +825,12 @@ public class Journal implements RaftJournal, Flushable, Closeable {
         // 截掉末尾半条数据
         indexPersistence.truncate(indexPersistence.max() - indexPersistence.max() % INDEX_STORAGE_SIZE);
 
+        // 截掉末尾半条数据，以及校验失败的数据
+        long committedOffset = committedJournalOffset(commitIndex);
+        //noinspection StatementWithEmptyBody
+        while (!truncateJournalTailPartialEntry(committedOffset)) {
+        }
+
         // 删除多余的索引
         truncateExtraIndices();
 
@@ -652,7 +867,7 @@ public class Journal implements RaftJournal, Flushable, Closeable {
         for (Map.Entry<Integer, Long> entry : partitionIndices.entrySet()) {
             int partition = entry.getKey();
             long lastIncludedIndex = entry.getValue();
-            JournalPersistence pp = persistenceFactory.createJournalPersistenceInstance();
+            JournalPersistence pp = createPartitionPersistence();
             pp.recover(partitionPath.resolve(String.valueOf(partition)), lastIncludedIndex * INDEX_STORAGE_SIZE, properties);
             // 截掉末尾半条数据
             pp.truncate(pp.max() - pp.max() % INDEX_STORAGE_SIZE);
@@ -782,11 +997,52 @@ public class Journal implements RaftJournal, Flushable, Closeable {
         indexPersistence.truncate(position + INDEX_STORAGE_SIZE);
     }
 
-    private void truncateJournalTailPartialEntry() throws IOException {
+    /**
+     * 恢复时计算已提交数据在Journal中的位置，截断Journal时不允许截掉这个位置之前的数据。
+     * 以索引中记录的位置为准：
+     * 1. 索引中有未提交的Entry时，返回第一条未提交Entry的位置；
+     * 2. 索引中的Entry都已提交时，最后一条Entry的结束位置未知，返回它的开始位置 + 1，保证这条Entry不会被截掉。
+     * @param commitIndex 元数据中记录的提交全局索引
+     * @return 不允许截断的最小位置
+     */
+    private long committedJournalOffset(long commitIndex) {
+        long indexMin = indexPersistence.min() / INDEX_STORAGE_SIZE;
+        long indexMax = indexPersistence.max() / INDEX_STORAGE_SIZE;
+        long committedOffset;
+        if (commitIndex <= indexMin || indexMax <= indexMin) {
+            committedOffset = journalPersistence.min();
+        } else if (commitIndex < indexMax) {
+            committedOffset = readOffset(commitIndex);
+        } else {
+            committedOffset = readOffset(indexMax - 1) + 1;
+        }
+        // 索引中的位置超出了Journal的范围，说明索引本身需要修复，这里只保护Journal中已有的数据
+        return Math.max(journalPersistence.min(), Math.min(committedOffset, journalPersistence.max()));
+    }
+
+    private void truncateJournal(long position, long committedOffset) throws IOException {
+        if (position < committedOffset) {
+            throw new JournalException(String.format(
+                    "Committed journal entries are corrupted, refuse to truncate journal at offset %s, " +
+                            "committed offset: %s, path: %s!",
+                    ThreadSafeFormat.formatWithComma(position),
+                    ThreadSafeFormat.formatWithComma(committedOffset),
+                    basePath));
+        }
+        journalPersistence.truncate(position);
+    }
+
+    /**
+     * 截掉Journal末尾不完整的Entry
+     * @param committedOffset 已提交数据的位置，不允许截掉这个位置之前的数据
+     * @return 末尾的Entry完整并且通过校验时返回true，截掉一条校验失败的Entry后返回false，需要再次检查
+     * @throws JournalException 需要截掉已提交的数据时抛出
+     */
+    private boolean truncateJournalTailPartialEntry(long committedOffset) throws IOException {
 
         // 找最后的连续2条记录
 
-        long position = journalPersistence.max() - journalEntryParser.headerLength();
+        long position = journalPersistence.max() - journalEntryParser.minHeaderLength();
         long lastEntryPosition = -1; // 最后连续2条记录中后面那条的位置
         JournalEntry lastEntryHeader = null;
         while (position >= journalPersistence.min()) {
@@ -799,15 +1055,13 @@ public class Journal implements RaftJournal, Flushable, Closeable {
                     lastEntryHeader = header;
                     if (lastEntryPosition == journalPersistence.min()) {
                         // 只有一条完整的记录也认为OK，保留之。
-                        truncatePartialEntry(lastEntryPosition, lastEntryHeader);
-                        return;
+                        return truncatePartialEntry(lastEntryPosition, lastEntryHeader, committedOffset);
                     }
                 } else {
                     // 这是倒数第二条
                     if (position + header.getLength() == lastEntryPosition) {
                         // 找到最后2条中位置较小的那条，并且较小那条的位置+长度==较大那条的位置
-                        truncatePartialEntry(lastEntryPosition, lastEntryHeader);
-                        return;
+                        return truncatePartialEntry(lastEntryPosition, lastEntryHeader, committedOffset);
                     } else { // 之前找到的那个第一条是假的（小概率会出现Entry中恰好也有连续2个字节等于MAGIC）
                         lastEntryPosition = position;
                         lastEntryHeader = header;
@@ -819,18 +1073,32 @@ public class Journal implements RaftJournal, Flushable, Closeable {
         }
 
         // 找到最小位置了，啥也没找到，直接清空所有数据。
-        journalPersistence.truncate(journalPersistence.min());
+        truncateJournal(journalPersistence.min(), committedOffset);
+        return true;
     }
 
-    private void truncatePartialEntry(long lastEntryPosition, JournalEntry lastEntryHeader) throws IOException {
+    private boolean truncatePartialEntry(long lastEntryPosition, JournalEntry lastEntryHeader, long committedOffset) throws IOException {
         // 判断最后一条是否完整
         if (lastEntryPosition + lastEntryHeader.getLength() <= journalPersistence.max()) {
+            if (checksumVerifyMode.verifyOnRecovery()) {
+                long start = System.nanoTime();
+                boolean verified = lastEntryHeader.verifyChecksum();
+                verifyChecksumMetric.mark(System.nanoTime() - start, lastEntryHeader.getLength());
+                if (!verified) {
+                    // 校验失败，截掉这条数据，继续检查前一条
+                    logger.warn("Journal entry checksum mismatch, truncate journal at offset {}, path: {}.",
+                            lastEntryPosition, basePath);
+                    truncateJournal(lastEntryPosition, committedOffset);
+                    return false;
+                }
+            }
             // 完整，截掉后面的部分
-            journalPersistence.truncate(lastEntryPosition + lastEntryHeader.getLength());
+            truncateJournal(lastEntryPosition + lastEntryHeader.getLength(), committedOffset);
         } else {
             // 不完整，直接截掉这条数据
-            journalPersistence.truncate(lastEntryPosition);
+            truncateJournal(lastEntryPosition, committedOffset);
         }
+        return true;
     }
 
     /**
@@ -842,16 +1110,16 @@ public class Journal implements RaftJournal, Flushable, Closeable {
         do {
             if(readWriteLock.readLock().tryLock()) {
                 try {
-                    flushed = Stream.concat(Stream.of(journalPersistence, indexPersistence), partitionMap.values().stream())
+                    List<JournalPersistence> dirtyPersistenceList =
+                            Stream.concat(Stream.of(journalPersistence, indexPersistence), partitionMap.values().stream())
                             .filter(p -> p.flushed() < p.max())
-                            .peek(p -> {
-                                try {
-                                    p.flush();
-                                } catch (IOException e) {
-                                    logger.warn("Flush {} exception: ", p.getBasePath(), e);
-                                    throw new JournalException(e);
-                                }
-                            }).count();
+                            .collect(Collectors.toList());
+                    flushed = dirtyPersistenceList.size();
+                    if (null == flushExecutor || dirtyPersistenceList.size() <= 1) {
+                        dirtyPersistenceList.forEach(this::flush);
+                    } else {
+                        flushInParallel(dirtyPersistenceList);
+                    }
                 } finally {
                     readWriteLock.readLock().unlock();
                 }
@@ -861,6 +1129,40 @@ public class Journal implements RaftJournal, Flushable, Closeable {
         } while (flushed > 0);
     }
 
+    /**
+     * Journal、全局索引和各分区索引互不依赖，在线程池中并行刷盘，全部完成后返回。
+     */
+    private void flushInParallel(List<JournalPersistence> dirtyPersistenceList) {
+        List<Future<?>> futures = new ArrayList<>(dirtyPersistenceList.size());
+        for (JournalPersistence persistence : dirtyPersistenceList) {
+            futures.add(flushExecutor.submit(() -> flush(persistence)));
+        }
+        JournalException exception = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exception = new JournalException(e);
+            } catch (ExecutionException e) {
+                exception = e.getCause() instanceof JournalException ?
+                        (JournalException) e.getCause() : new JournalException(e.getCause());
+            }
+        }
+        if (null != exception) {
+            throw exception;
+        }
+    }
+
+    private void flush(JournalPersistence persistence) {
+        try {
+            persistence.flush();
+        } catch (IOException e) {
+            logger.warn("Flush {} exception: ", persistence.getBasePath(), e);
+            throw new JournalException(e);
+        }
+    }
+
     boolean isDirty() {
         return Stream.concat(Stream.of(journalPersistence, indexPersistence), partitionMap.values().stream())
                 .anyMatch(p -> p.flushed() < p.max());
@@ -976,7 +1278,7 @@ public class Journal implements RaftJournal, Flushable, Closeable {
     private void addPartition(int partition, long minIndex) throws IOException {
         synchronized (partitionMap) {
             if (!partitionMap.containsKey(partition)) {
-                JournalPersistence partitionPersistence = persistenceFactory.createJournalPersistenceInstance();
+                JournalPersistence partitionPersistence = createPartitionPersistence();
                 partitionPersistence.recover(
                         basePath.resolve(PARTITION_PATH).resolve(String.valueOf(partition)),
                         minIndex * INDEX_STORAGE_SIZE,
@@ -1004,7 +1306,10 @@ public class Journal implements RaftJournal, Flushable, Closeable {
         }
         indexPersistence.close();
         journalPersistence.close();
-
+        if (null != flushExecutor) {
+            flushExecutor.shutdown();
+            flushExecutor = null;
+        }
     }
 
     // For monitor only
@@ -1035,19 +1340,65 @@ public class Journal implements RaftJournal, Flushable, Closeable {
         Map<Integer, Long> partitionIndices = new HashMap<>(partitionMap.size());
         for (Map.Entry<Integer, JournalPersistence> entry : partitionMap.entrySet()) {
             int partition = entry.getKey();
-            JournalPersistence partitionPersistence = entry.getValue();
-            long index = maxIndex(partition);
-            while (--index >= minIndex(partition)) {
-                long offset = readOffset(partitionPersistence, index);
-                if (offset < journalOffset) {
+            partitionIndices.put(partition, calcPartitionIndex(partition, entry.getValue(), journalOffset));
+        }
+        return partitionIndices;
+    }
 
-                    break;
-                }
+    /**
+     * 计算单个分区在Journal指定位置之前的日志数量，即这个位置对应的分区索引序号。
+     * 从分区的最大索引序号向前查找，适合位置靠近Journal尾部的情况。
+     * @param partition 分区
+     * @param journalOffset Journal中的位置
+     * @return 分区索引序号
+     */
+    public long calcPartitionIndex(int partition, long journalOffset) {
+        return calcPartitionIndex(partition, getPartitionPersistence(partition), journalOffset);
+    }
+
+    private long calcPartitionIndex(int partition, JournalPersistence partitionPersistence, long journalOffset) {
+        long index = maxIndex(partition);
+        while (--index >= minIndex(partition)) {
+            long offset = readOffset(partitionPersistence, index);
+            if (offset < journalOffset) {
+
+                break;
             }
+        }
+        return index + 1;
+    }
 
-            partitionIndices.put(partition, index + 1);
+    /**
+     * 查询分区日志的全局索引序号。
+     * 全局索引中的位置是递增的，折半查找位置和分区日志相同的全局索引。
+     * @param partition 分区
+     * @param partitionIndex 分区索引序号，在批量日志中间时返回这个批量日志的全局索引序号
+     * @param fromIndex 全局索引序号的查找下限，按顺序查询时传入上一条日志的全局索引序号可以缩小查找范围
+     * @return 全局索引序号
+     * @throws JournalException 在[fromIndex, maxIndex())中找不到这条日志时抛出
+     */
+    public long indexOfPartitionEntry(int partition, long partitionIndex, long fromIndex) {
+        JournalPersistence pp = getPartitionPersistence(partition);
+        long offset = readOffset(pp, partitionIndex);
+        if (offset < 0) {
+            offset = readOffset(pp, partitionIndex + offset);
         }
-        return partitionIndices;
+        long left = Math.max(fromIndex, minIndex());
+        long right = maxIndex() - 1;
+        while (left <= right) {
+            long mid = left + (right - left) / 2;
+            long midOffset = readOffset(mid);
+            if (midOffset == offset) {
+                return mid;
+            } else if (midOffset < offset) {
+                left = mid + 1;
+            } else {
+                right = mid - 1;
+            }
+        }
+        throw new JournalException(
+                String.format("No journal entry of partition %d, partition index %d found in index range [%d, %d)!",
+                        partition, partitionIndex, Math.max(fromIndex, minIndex()), maxIndex()));
     }
 
     private <T> T withReadLock(Callable<T> callable) {
@@ -0,0 +1,38 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.core.serialize;
+
+import io.journalkeeper.core.api.CheckpointState;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * 包装实现了{@link CheckpointState}的状态机，创建快照时使用状态机的检查点。
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class CheckpointStateWrapper<E, ER, Q, QR> extends StateWrapper<E, ER, Q, QR> implements CheckpointState {
+    private final CheckpointState checkpointState;
+
+    public CheckpointStateWrapper(WrappedState<E, ER, Q, QR> wrappedState, SerializeExtensionPoint serializeExtensionPoint) {
+        super(wrappedState, serializeExtensionPoint);
+        this.checkpointState = (CheckpointState) wrappedState;
+    }
+
+    @Override
+    public void checkpoint(Path destPath) throws IOException {
+        checkpointState.checkpoint(destPath);
+    }
+}
@@ -2,6 +2,7 @@ package io.journalkeeper.core.serialize;
 
 import io.journalkeeper.core.BootStrap;
 import io.journalkeeper.core.api.AdminClient;
+import io.journalkeeper.core.api.CheckpointState;
 import io.journalkeeper.core.api.RaftServer;
 import io.journalkeeper.utils.spi.ServiceSupport;
 import org.slf4j.Logger;
@@ -54,10 +55,16 @@ public class WrappedBootStrap<E, ER, Q, QR> {
         this.serializeExtensionPoint = loadSerializer(properties.getProperty(SERIALIZER_CONFIG_KEY, null));
         logger.info("Using serializer: {}.", serializeExtensionPoint.getClass().getCanonicalName());
         this.bootStrap = new BootStrap(roll,
-                () -> new StateWrapper<>(wrappedStateFactory.createState(), serializeExtensionPoint)
+                () -> wrapState(wrappedStateFactory.createState())
                 , properties);
     }
 
+    private StateWrapper<E, ER, Q, QR> wrapState(WrappedState<E, ER, Q, QR> wrappedState) {
+        return wrappedState instanceof CheckpointState ?
+                new CheckpointStateWrapper<>(wrappedState, serializeExtensionPoint) :
+                new StateWrapper<>(wrappedState, serializeExtensionPoint);
+    }
+
     private SerializeExtensionPoint loadSerializer(String serializer) {
         if (serializer != null && !serializer.isEmpty()) {
             return ServiceSupport.load(SerializeExtensionPoint.class, serializer);
@@ -16,6 +16,7 @@ package io.journalkeeper.core.server;
 import io.journalkeeper.base.ReplicableIterator;
 import io.journalkeeper.core.Logo;
 import io.journalkeeper.core.api.ClusterConfiguration;
+import io.journalkeeper.core.api.EntryFuture;
 import io.journalkeeper.core.api.JournalEntry;
 import io.journalkeeper.core.api.JournalEntryParser;
 import io.journalkeeper.core.api.RaftServer;
@@ -33,6 +34,7 @@ import io.journalkeeper.core.state.EntryFutureImpl;
 import io.journalkeeper.core.state.Snapshot;
 import io.journalkeeper.exceptions.JournalException;
 import io.journalkeeper.exceptions.RecoverException;
+import io.journalkeeper.core.journal.ChecksumVerifyMode;
 import io.journalkeeper.core.journal.Journal;
 import io.journalkeeper.core.journal.JournalSnapshot;
 import io.journalkeeper.core.metric.DummyMetric;
@@ -46,15 +48,20 @@ import io.journalkeeper.exceptions.IndexUnderflowException;
 import io.journalkeeper.exceptions.NoSuchSnapshotException;
 import io.journalkeeper.metric.JMetric;
 import io.journalkeeper.metric.JMetricFactory;
+import io.journalkeeper.metric.JMetricFactoryManager;
 import io.journalkeeper.metric.JMetricSupport;
 import io.journalkeeper.persistence.BufferPool;
+import io.journalkeeper.persistence.BufferView;
 import io.journalkeeper.persistence.LockablePersistence;
 import io.journalkeeper.persistence.MetadataPersistence;
 import io.journalkeeper.persistence.PersistenceFactory;
 import io.journalkeeper.persistence.ServerMetadata;
+import io.journalkeeper.rpc.client.AddPullWatchRequest;
 import io.journalkeeper.rpc.client.AddPullWatchResponse;
 import io.journalkeeper.rpc.client.ConvertRollRequest;
 import io.journalkeeper.rpc.client.ConvertRollResponse;
+import io.journalkeeper.rpc.client.GetPartitionEntriesRequest;
+import io.journalkeeper.rpc.client.GetPartitionEntriesResponse;
 import io.journalkeeper.rpc.client.GetServersResponse;
 import io.journalkeeper.rpc.client.PullEventsRequest;
 import io.journalkeeper.rpc.client.PullEventsResponse;
@@ -77,6 +84,7 @@ import io.journalkeeper.utils.files.FileUtils;
 import io.journalkeeper.utils.spi.ServiceLoadException;
 import io.journalkeeper.utils.spi.ServiceSupport;
 import io.journalkeeper.utils.threads.AsyncLoopThread;
+import io.journalkeeper.utils.threads.NamedThreadFactory;
 import io.journalkeeper.utils.threads.ThreadBuilder;
 import io.journalkeeper.utils.threads.Threads;
 import io.journalkeeper.utils.threads.ThreadsFactory;
@@ -95,6 +103,7 @@ import java.util.Comparator;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
@@ -106,7 +115,9 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadLocalRandom;
@@ -143,11 +154,14 @@ public abstract class AbstractServer
     private static final String SNAPSHOTS_PATH = "snapshots";
     private static final String METADATA_PATH = "metadata";
     private static final String METADATA_FILE = "metadata";
+    private static final String TRANSACTION_CHECKPOINT_FILE = "transactions";
     private static final String LOCK_FILE = "lock";
     private static final String PARTIAL_SNAPSHOT_PATH = "partial_snapshot";
     private static final int COMPACT_PERIOD_SEC = 60;
     private final static JMetric DUMMY_METRIC = new DummyMetric();
     private final static String METRIC_APPLY_ENTRIES = "APPLY_ENTRIES";
+    private final static String METRIC_VERIFY_CHECKSUM = "VERIFY_CHECKSUM";
+    private final static String METRIC_CREATE_SNAPSHOT = "CREATE_SNAPSHOT";
     /**
      * 节点上的最新状态 和 被状态机执行的最大日志条目的索引值（从 0 开始递增）
      */
@@ -159,6 +173,15 @@ public abstract class AbstractServer
      */
     protected final NavigableMap<Long, Snapshot> snapshots = new ConcurrentSkipListMap<>();
     protected final PartialSnapshot partialSnapshot;
+    /**
+     * 创建快照时，状态在执行entry的线程上复制，之后的工作在这个线程中按顺序执行
+     */
+    private final ExecutorService snapshotExecutor =
+            Executors.newSingleThreadExecutor(new NamedThreadFactory("JournalKeeper-Snapshot", true));
+    /**
+     * 所有正在创建的快照都加入snapshots后完成
+     */
+    private volatile CompletableFuture<Void> pendingSnapshotsFuture = CompletableFuture.completedFuture(null);
     protected final BufferPool bufferPool;
     protected final Map<URI, ServerRpc> remoteServers = new HashMap<>();
     protected final EventBus eventBus;
@@ -171,6 +194,10 @@ public abstract class AbstractServer
     private  JMetricFactory metricFactory;
     private  Map<String, JMetric> metricMap;
     private final JMetric applyEntriesMetric;
+    /**
+     * 等待状态机执行到指定位置的SEQUENTIAL查询
+     */
+    private final AppliedIndexWaiters appliedIndexWaiters;
     private final AtomicInteger nextSnapshotIteratorId = new AtomicInteger();
     private LockablePersistence lockablePersistence;
     /**
@@ -232,7 +259,10 @@ public abstract class AbstractServer
         // init metrics
         if (config.isEnableMetric()) {
             try {
-                this.metricFactory = ServiceSupport.load(JMetricFactory.class);
+                this.metricFactory = null == config.getMetricFactory() ?
+                        JMetricFactoryManager.getFactory() :
+                        ServiceSupport.load(JMetricFactory.class, config.getMetricFactory());
+                logger.info("Using JMetricFactory: {}.", metricFactory.getClass().getCanonicalName());
                 this.metricMap = new ConcurrentHashMap<>();
                 if (config.getPrintMetricIntervalSec() > 0) {
                     this.threads.createThread(buildPrintMetricThread());
@@ -250,13 +280,16 @@ public abstract class AbstractServer
         applyEntriesMetric = getMetric(METRIC_APPLY_ENTRIES);
 
 
-        this.eventBus = new EventBus(config.getRpcTimeoutMs());
+        this.eventBus = new EventBus(config.getRpcTimeoutMs(), scheduledExecutor);
+        this.appliedIndexWaiters = new AppliedIndexWaiters(scheduledExecutor, config.getQueryWaitAppliedTimeoutMs());
         persistenceFactory = ServiceSupport.load(PersistenceFactory.class);
         metadataPersistence = persistenceFactory.createMetadataPersistenceInstance();
         bufferPool = ServiceSupport.load(BufferPool.class);
         journal = new Journal(
                 persistenceFactory,
-                bufferPool, journalEntryParser);
+                bufferPool, journalEntryParser,
+                config.getChecksumVerifyMode(), getMetric(METRIC_VERIFY_CHECKSUM),
+                config.getJournalFlushThreads(), config.getPartitionIndexCacheSize());
         this.state = new JournalKeeperState(stateFactory, metadataPersistence);
 
         this.partialSnapshot = new PartialSnapshot(partialSnapshotPath());
@@ -411,6 +444,10 @@ public abstract class AbstractServer
         return workingDir().resolve(METADATA_PATH).resolve(METADATA_FILE);
     }
 
+    protected Path transactionCheckpointFile() {
+        return workingDir().resolve(METADATA_PATH).resolve(TRANSACTION_CHECKPOINT_FILE);
+    }
+
     private Path lockFilePath() {
         return workingDir().resolve(LOCK_FILE);
     }
@@ -426,17 +463,69 @@ public abstract class AbstractServer
      */
     private void applyEntries() {
         while (state.lastApplied() < journal.commitIndex()) {
-            applyEntriesMetric.start();
-            long offset = journal.readOffset(state.lastApplied());
-            JournalEntry entryHeader = journal.readEntryHeaderByOffset(offset);
-            StateResult stateResult = state.applyEntry(entryHeader, new EntryFutureImpl(journal, offset), journal);
-            afterStateChanged(stateResult.getUserResult());
-
-            if(config.isEnableEvents()) {
-                stateResult.putEventData("lastApplied", String.valueOf(state.lastApplied()));
-                fireEvent(EventType.ON_STATE_CHANGE, stateResult.getEventData());
+            if (state.isBatchApplySupported()) {
+                applyEntriesInBatch();
+            } else {
+                applyEntry();
+            }
+            appliedIndexWaiters.release(state.lastApplied());
+        }
+        // 安装快照等操作也会改变lastApplied
+        appliedIndexWaiters.release(state.lastApplied());
+    }
+
+    private void applyEntry() {
+        applyEntriesMetric.start();
+        long offset = journal.readOffset(state.lastApplied());
+        JournalEntry entryHeader = journal.readEntryHeaderByOffset(offset);
+        StateResult stateResult = state.applyEntry(entryHeader, new EntryFutureImpl(journal, offset), journal);
+        afterStateChanged(stateResult.getLastApplied(), stateResult.getUserResult());
+        if(config.isEnableEvents()) {
+            stateResult.putEventData("lastApplied", String.valueOf(state.lastApplied()));
+            fireEvent(EventType.ON_STATE_CHANGE, stateResult.getEventData());
+        }
+        applyEntriesMetric.end(() -> (long) entryHeader.getLength());
+    }
+
+    /**
+     * 批量执行一段连续的已提交entry，一次范围读取读出这批entry。
+     * 每批中每个分区只触发一次ON_STATE_CHANGE事件。
+     * 执行中途失败时，已经执行的entry的结果和事件照常处理，没执行的entry下次重试。
+     */
+    private void applyEntriesInBatch() {
+        applyEntriesMetric.start();
+        long index = state.lastApplied();
+        int size = (int) Math.min(journal.commitIndex() - index, config.getApplyBatchSize());
+        List<JournalEntry> entries = journal.batchRead(index, size);
+        List<EntryFuture> entryFutures = new ArrayList<>(entries.size());
+        for (JournalEntry entry : entries) {
+            entryFutures.add(() -> entry.getPayload().getBytes());
+        }
+        List<StateResult> stateResults = new ArrayList<>(entries.size());
+        try {
+            state.applyEntries(entries, entryFutures, journal, stateResults);
+        } finally {
+            afterEntriesApplied(entries, stateResults);
+            applyEntriesMetric.end(() -> entries.stream().limit(stateResults.size()).mapToLong(JournalEntry::getLength).sum());
+        }
+    }
+
+    private void afterEntriesApplied(List<JournalEntry> entries, List<StateResult> stateResults) {
+        Map<Integer, Map<String, String>> partitionEventData = config.isEnableEvents() ? new LinkedHashMap<>() : null;
+        for (int i = 0; i < stateResults.size(); i++) {
+            StateResult stateResult = stateResults.get(i);
+            afterStateChanged(stateResult.getLastApplied(), stateResult.getUserResult());
+            if (null != partitionEventData) {
+                partitionEventData.computeIfAbsent(entries.get(i).getPartition(), partition -> new HashMap<>())
+                        .putAll(stateResult.getEventData());
+            }
+        }
+        if (null != partitionEventData) {
+            String lastApplied = String.valueOf(state.lastApplied());
+            for (Map<String, String> eventData : partitionEventData.values()) {
+                eventData.put("lastApplied", lastApplied);
+                fireEvent(EventType.ON_STATE_CHANGE, eventData);
             }
-            applyEntriesMetric.end(() -> (long) entryHeader.getLength());
         }
     }
 
@@ -492,29 +581,27 @@ public abstract class AbstractServer
 
     /**
      * 当状态变化后触发事件
+     * @param lastApplied 执行这条entry之后的lastApplied
      * @param updateResult 状态机执行结果
      */
-    protected void afterStateChanged(byte[] updateResult) {
+    protected void afterStateChanged(long lastApplied, byte[] updateResult) {
     }
 
     /**
      * 如果需要，保存一次快照
      */
 
+    /**
+     * 如果状态机尚未执行到请求的位置，挂起请求直到状态机执行到请求的位置再查询，
+     * 等待超时后返回RETRY_LATER。
+     */
     @Override
     public CompletableFuture<QueryStateResponse> queryServerState(QueryStateRequest request) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                if (request.getIndex() > 0 && state.lastApplied() < request.getIndex()) {
-                    return new QueryStateResponse(new IllegalStateException());
-                } else {
-                    StateQueryResult queryResult = state.query(request.getQuery(), journal);
-                    return new QueryStateResponse(queryResult.getResult(), queryResult.getLastApplied());
-                }
-            } catch (Throwable throwable) {
-                return new QueryStateResponse(throwable);
-            }
-        }, asyncExecutor);
+        return appliedIndexWaiters.waitFor(request.getIndex(), state::lastApplied)
+                .thenComposeAsync(aVoid -> state.queryAsync(request.getQuery(), journal), asyncExecutor)
+                .thenApply(queryResult -> new QueryStateResponse(queryResult.getResult(), queryResult.getLastApplied()))
+                .exceptionally(exception -> new QueryStateResponse(
+                        exception instanceof CompletionException ? exception.getCause() : exception));
     }
 
     /**
@@ -576,6 +663,47 @@ public abstract class AbstractServer
         }, asyncExecutor);
     }
 
+    /**
+     * 直接从Journal中读取分区上状态机已经执行的日志，不经过状态机。
+     * 响应中的日志是存储缓存页上的只读视图，响应发送完成后释放。
+     */
+    @Override
+    public CompletableFuture<GetPartitionEntriesResponse> getPartitionEntries(GetPartitionEntriesRequest request) {
+        return CompletableFuture.supplyAsync(() -> {
+            int partition = request.getPartition();
+            long index = request.getIndex();
+            // 和经过状态机的查询一样，只能读到状态机已经执行的日志
+            long maxIndex = appliedPartitionIndex(partition);
+            if (index > maxIndex) {
+                throw new IndexOverflowException();
+            }
+            if (index < journal.minIndex(partition)) {
+                throw new IndexUnderflowException();
+            }
+            int size = (int) Math.min(request.getSize(), maxIndex - index);
+            List<BufferView> views = journal.batchReadRawViewByPartition(partition, index, size);
+            return new GetPartitionEntriesResponse(
+                    views.stream().map(BufferView::buffer).collect(Collectors.toList()),
+                    () -> views.forEach(BufferView::close));
+        }, asyncExecutor)
+                .exceptionally(exception -> new GetPartitionEntriesResponse(
+                        exception instanceof CompletionException ? exception.getCause() : exception));
+    }
+
+    /**
+     * 状态机已经执行到的分区索引序号，即分区中全局索引序号小于lastApplied的日志数量
+     */
+    private long appliedPartitionIndex(int partition) {
+        long lastApplied = state.lastApplied();
+        if (lastApplied >= journal.maxIndex()) {
+            return journal.maxIndex(partition);
+        }
+        if (lastApplied <= journal.minIndex()) {
+            return journal.minIndex(partition);
+        }
+        return journal.calcPartitionIndex(partition, journal.readOffset(lastApplied));
+    }
+
     private void createSnapShot(InternalEntryType type, byte[] internalEntry) {
         if (type == InternalEntryType.TYPE_CREATE_SNAPSHOT) {
             createSnapshot();
@@ -585,6 +713,19 @@ public abstract class AbstractServer
     private void recoverSnapShot(InternalEntryType type, byte[] internalEntry) {
         RecoverSnapshotEntry recoverSnapshotEntry = InternalEntriesSerializeSupport.parse(internalEntry);
         Snapshot targetSnapshot = snapshots.get(recoverSnapshotEntry.getIndex());
+        if (targetSnapshot == null) {
+            // 目标快照可能还在创建中，在执行entry的线程上只等待有限的时间
+            try {
+                waitForPendingSnapshots().get(config.getRpcTimeoutMs(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                logger.warn("Wait for pending snapshots timeout!");
+            } catch (ExecutionException e) {
+                logger.warn("Wait for pending snapshots exception!", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            targetSnapshot = snapshots.get(recoverSnapshotEntry.getIndex());
+        }
         if (targetSnapshot == null) {
             logger.warn("recover snapshot failed, snapshot not exist, index: {}", recoverSnapshotEntry.getIndex());
             return;
@@ -639,6 +780,11 @@ public abstract class AbstractServer
                         Config.ENABLE_METRIC_KEY,
                         String.valueOf(Config.DEFAULT_ENABLE_METRIC))));
 
+        config.setMetricFactory(
+                properties.getProperty(
+                        Config.METRIC_FACTORY_KEY,
+                        Config.DEFAULT_METRIC_FACTORY));
+
         config.setDisableLogo(Boolean.parseBoolean(
                 properties.getProperty(
                         Config.DISABLE_LOGO_KEY,
@@ -654,6 +800,36 @@ public abstract class AbstractServer
                         Config.ENABLE_EVENTS_KEY,
                         String.valueOf(Config.DEFAULT_ENABLE_EVENTS))));
 
+        config.setApplyBatchSize(Integer.parseInt(
+                properties.getProperty(
+                        Config.APPLY_BATCH_SIZE_KEY,
+                        String.valueOf(Config.DEFAULT_APPLY_BATCH_SIZE))));
+
+        config.setChecksumVerifyMode(ChecksumVerifyMode.valueOf(
+                properties.getProperty(
+                        Config.CHECKSUM_VERIFY_MODE_KEY,
+                        Config.DEFAULT_CHECKSUM_VERIFY_MODE.name()).toUpperCase()));
+
+        config.setJournalFlushThreads(Integer.parseInt(
+                properties.getProperty(
+                        Config.JOURNAL_FLUSH_THREADS_KEY,
+                        String.valueOf(Config.DEFAULT_JOURNAL_FLUSH_THREADS))));
+
+        config.setPartitionIndexCacheSize(Integer.parseInt(
+                properties.getProperty(
+                        Config.PARTITION_INDEX_CACHE_SIZE_KEY,
+                        String.valueOf(Config.DEFAULT_PARTITION_INDEX_CACHE_SIZE))));
+
+        config.setSnapshotTransferWindow(Integer.parseInt(
+                properties.getProperty(
+                        Config.SNAPSHOT_TRANSFER_WINDOW_KEY,
+                        String.valueOf(Config.DEFAULT_SNAPSHOT_TRANSFER_WINDOW))));
+
+        config.setQueryWaitAppliedTimeoutMs(Long.parseLong(
+                properties.getProperty(
+                        Config.QUERY_WAIT_APPLIED_TIMEOUT_MS_KEY,
+                        String.valueOf(Config.DEFAULT_QUERY_WAIT_APPLIED_TIMEOUT_MS))));
+
         return config;
     }
 
@@ -669,9 +845,9 @@ public abstract class AbstractServer
     }
 
     @Override
-    public CompletableFuture<AddPullWatchResponse> addPullWatch() {
+    public CompletableFuture<AddPullWatchResponse> addPullWatch(AddPullWatchRequest request) {
         return CompletableFuture.supplyAsync(() ->
-                new AddPullWatchResponse(eventBus.addPullWatch(), eventBus.pullIntervalMs()), asyncExecutor);
+                new AddPullWatchResponse(eventBus.addPullWatch(request.getEventFilters()), eventBus.pullIntervalMs()), asyncExecutor);
     }
 
     @Override
@@ -683,12 +859,13 @@ public abstract class AbstractServer
 
     @Override
     public CompletableFuture<PullEventsResponse> pullEvents(PullEventsRequest request) {
-        return CompletableFuture.supplyAsync(() -> {
+        return CompletableFuture.runAsync(() -> {
             if (request.getAckSequence() >= 0) {
                 eventBus.ackPullEvents(request.getPullWatchId(), request.getAckSequence());
             }
-            return new PullEventsResponse(eventBus.pullEvents(request.getPullWatchId()));
-        }, asyncExecutor);
+        }, asyncExecutor)
+                .thenCompose(v -> eventBus.pullEvents(request.getPullWatchId(), request.getLongPollTimeoutMs()))
+                .thenApplyAsync(PullEventsResponse::new, asyncExecutor);
     }
 
     @Override
@@ -703,13 +880,32 @@ public abstract class AbstractServer
         return workingDir().resolve(PARTIAL_SNAPSHOT_PATH);
     }
 
+    /**
+     * 在执行entry的线程上复制当前状态，复制期间不能执行新的entry，
+     * 标记快照完成、计算快照对应的Journal位置和加入snapshots在snapshotExecutor中执行。
+     */
     private void createSnapshot() {
         long lastApplied = state.lastApplied();
         logger.info("Creating snapshot at index: {}...", lastApplied);
         Path snapshotPath = snapshotsPath().resolve(String.valueOf(lastApplied));
         try {
             FileUtils.deleteFolder(snapshotPath);
-            state.dump(snapshotPath);
+            // 创建快照期间不能执行新的entry，记录暂停的时长和复制的字节数
+            long t0 = System.nanoTime();
+            long copiedBytes = state.dump(snapshotPath);
+            long pauseNs = System.nanoTime() - t0;
+            getMetric(METRIC_CREATE_SNAPSHOT).mark(pauseNs, copiedBytes);
+            logger.info("State dumped to snapshot: {}, paused: {}ms, copied: {} bytes.",
+                    snapshotPath, TimeUnit.NANOSECONDS.toMillis(pauseNs), ThreadSafeFormat.formatWithComma(copiedBytes));
+            pendingSnapshotsFuture = pendingSnapshotsFuture.thenRunAsync(
+                    () -> completeSnapshot(lastApplied, snapshotPath), snapshotExecutor);
+        } catch (IOException e) {
+            logger.warn("Create snapshot exception! Snapshot: {}.", snapshotPath, e);
+        }
+    }
+
+    private void completeSnapshot(long lastApplied, Path snapshotPath) {
+        try {
             Snapshot.markComplete(snapshotPath);
             Snapshot snapshot = new Snapshot(stateFactory, metadataPersistence);
             snapshot.recover(snapshotPath, properties);
@@ -717,12 +913,19 @@ public abstract class AbstractServer
 
             snapshots.put(snapshot.lastApplied(), snapshot);
             logger.info("Snapshot at index: {} created, {}.", lastApplied, snapshot);
-
-        } catch (IOException e) {
-            logger.warn("Create snapshot exception! Snapshot: {}.", snapshotPath, e);
+        } catch (Throwable t) {
+            logger.warn("Create snapshot exception! Snapshot: {}.", snapshotPath, t);
         }
     }
 
+    /**
+     * 等待正在创建的快照都加入snapshots
+     * @return 所有正在创建的快照都加入snapshots后完成
+     */
+    protected CompletableFuture<Void> waitForPendingSnapshots() {
+        return pendingSnapshotsFuture;
+    }
+
     @Override
     public CompletableFuture<GetServerStateResponse> getServerState(GetServerStateRequest request) {
         return CompletableFuture.supplyAsync(() -> {
@@ -737,17 +940,28 @@ public abstract class AbstractServer
                         ReplicableIterator iterator = snapshot.iterator();
                         iteratorId = nextSnapshotIteratorId.getAndIncrement();
                         snapshotIteratorMap.put(iteratorId, iterator);
-                        scheduledExecutor.schedule(() -> snapshotIteratorMap.remove(iteratorId), 1, TimeUnit.MINUTES);
+                        scheduledExecutor.schedule(() -> removeSnapshotIterator(iteratorId), 1, TimeUnit.MINUTES);
                     } else {
                         throw new NoSuchSnapshotException();
                     }
                 }
                 ReplicableIterator iterator = snapshotIteratorMap.get(iteratorId);
                 if (null != iterator) {
-                    return new GetServerStateResponse(
-                            iterator.lastIncludedIndex(), iterator.lastIncludedTerm(),
-                            iterator.offset(), iterator.nextTrunk(), !iterator.hasMoreTrunks(), iteratorId
-                    );
+                    // 请求方会同时发送多个请求读取同一个迭代器
+                    synchronized (iterator) {
+                        if (iterator.hasMoreTrunks()) {
+                            return new GetServerStateResponse(
+                                    iterator.lastIncludedIndex(), iterator.lastIncludedTerm(),
+                                    iterator.offset(), iterator.nextTrunk(), !iterator.hasMoreTrunks(), iteratorId
+                            );
+                        } else {
+                            // 数据已经全部读完，多发送的请求返回空的数据块
+                            return new GetServerStateResponse(
+                                    iterator.lastIncludedIndex(), iterator.lastIncludedTerm(),
+                                    iterator.offset(), new byte[0], true, iteratorId
+                            );
+                        }
+                    }
                 } else {
                     throw new NoSuchSnapshotException();
                 }
@@ -758,6 +972,20 @@ public abstract class AbstractServer
         }, asyncExecutor).exceptionally(GetServerStateResponse::new);
     }
 
+    private void removeSnapshotIterator(int iteratorId) {
+        ReplicableIterator iterator = snapshotIteratorMap.remove(iteratorId);
+        if (iterator instanceof Closeable) {
+            // 与读取数据块使用同一个锁，避免关闭正在读取的迭代器
+            synchronized (iterator) {
+                try {
+                    ((Closeable) iterator).close();
+                } catch (IOException e) {
+                    logger.warn("Close snapshot iterator exception!", e);
+                }
+            }
+        }
+    }
+
     @Override
     public final void start() {
         if (this.serverState != ServerState.CREATED) {
@@ -833,6 +1061,7 @@ public abstract class AbstractServer
             if (this.serverState == ServerState.RUNNING) {
                 this.serverState = ServerState.STOPPING;
                 doStop();
+                appliedIndexWaiters.failAll();
                 remoteServers.values().forEach(ServerRpc::stop);
                 waitJournalApplied();
                 threads.stopThread(threadName(STATE_MACHINE_THREAD));
@@ -841,6 +1070,12 @@ public abstract class AbstractServer
                     threads.stopThread(threadName(PRINT_METRIC_THREAD));
                 }
 
+                try {
+                    waitForPendingSnapshots().get(config.getRpcTimeoutMs(), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    logger.warn("Wait for pending snapshots timeout!");
+                }
+                snapshotExecutor.shutdown();
                 stopAndWaitScheduledFeature(compactJournalFuture, 1000L);
                 stopAndWaitScheduledFeature(flushStateFuture, 1000L);
                 if (persistenceFactory instanceof Closeable) {
@@ -1059,6 +1294,10 @@ public abstract class AbstractServer
         return config.getRpcTimeoutMs();
     }
 
+    protected int getSnapshotTransferWindow() {
+        return Math.max(1, config.getSnapshotTransferWindow());
+    }
+
     public void compact(long indexExclusive) {
         Long index = snapshots.floorKey(indexExclusive);
         if (null != index) {
@@ -1082,12 +1321,26 @@ public abstract class AbstractServer
                 ), journal
         );
 
+        long maxCompactionIndex = maxCompactionIndex();
+        if (index > maxCompactionIndex) {
+            Long floorIndex = snapshots.floorKey(maxCompactionIndex);
+            index = null == floorIndex ? snapshots.firstKey() : floorIndex;
+        }
+
         if (index > snapshots.firstKey()) {
             compactJournalToSnapshot(index);
         }
 
     }
 
+    /**
+     * 定期删除日志时，允许删除的日志的最大位置，只能删除到不大于这个位置的快照
+     * @return 全局索引序号
+     */
+    protected long maxCompactionIndex() {
+        return Long.MAX_VALUE;
+    }
+
     private void compactJournalToSnapshot(long index) {
         logger.info("Compact journal to index: {}...", index);
         try {
@@ -1165,6 +1418,7 @@ public abstract class AbstractServer
     }
 
     void installSnapshot(long offset, long lastIncludedIndex, int lastIncludedTerm, byte[] data, boolean isDone) throws IOException, TimeoutException {
+        waitForPendingSnapshots().join();
         synchronized (partialSnapshot) {
             logger.info("Install snapshot, offset: {}, lastIncludedIndex: {}, lastIncludedTerm: {}, data length: {}, isDone: {}... " +
                             "journal minIndex: {}, maxIndex: {}, commitIndex: {}...",
@@ -1184,6 +1438,7 @@ public abstract class AbstractServer
             partialSnapshot.installTrunk(offset, data, snapshotPath);
 
             if (isDone) {
+                partialSnapshot.checkComplete(offset + data.length);
                 logger.info("All snapshot files received, discard any existing snapshot with a same or smaller index...");
                 // discard any existing snapshot with a same or smaller index
                 NavigableMap<Long, Snapshot> headMap = snapshots.headMap(lastApplied, true);
@@ -1259,20 +1514,35 @@ public abstract class AbstractServer
         public final static long DEFAULT_FLUSH_INTERVAL_MS = 50L;
         public final static int DEFAULT_GET_STATE_BATCH_SIZE = 1024 * 1024;
         public final static boolean DEFAULT_ENABLE_METRIC = false;
+        // 为null时默认使用内置的无锁实现，见JMetricFactoryManager#getFactory()
+        public final static String DEFAULT_METRIC_FACTORY = null;
         public final static boolean DEFAULT_DISABLE_LOGO = false;
         public final static int DEFAULT_PRINT_METRIC_INTERVAL_SEC = 0;
         public final static int DEFAULT_JOURNAL_RETENTION_MIN = 0;
         public final static boolean DEFAULT_ENABLE_EVENTS = true;
+        public final static int DEFAULT_APPLY_BATCH_SIZE = 256;
+        public final static ChecksumVerifyMode DEFAULT_CHECKSUM_VERIFY_MODE = ChecksumVerifyMode.RECOVERY;
+        public final static int DEFAULT_JOURNAL_FLUSH_THREADS = 4;
+        public final static int DEFAULT_PARTITION_INDEX_CACHE_SIZE = 4096;
+        public final static int DEFAULT_SNAPSHOT_TRANSFER_WINDOW = 4;
+        public final static long DEFAULT_QUERY_WAIT_APPLIED_TIMEOUT_MS = 500L;
         public final static String SNAPSHOT_INTERVAL_SEC_KEY = "snapshot_interval_sec";
         public final static String RPC_TIMEOUT_MS_KEY = "rpc_timeout_ms";
         public final static String FLUSH_INTERVAL_MS_KEY = "flush_interval_ms";
         public final static String WORKING_DIR_KEY = "working_dir";
         public final static String GET_STATE_BATCH_SIZE_KEY = "get_state_batch_size";
         public final static String ENABLE_METRIC_KEY = "enable_metric";
+        public final static String METRIC_FACTORY_KEY = "metric_factory";
         public final static String DISABLE_LOGO_KEY = "disable_logo";
         public final static String PRINT_METRIC_INTERVAL_SEC_KEY = "print_metric_interval_sec";
         public final static String JOURNAL_RETENTION_MIN_KEY = "journal_retention_min";
         public final static String ENABLE_EVENTS_KEY = "enable_events";
+        public final static String APPLY_BATCH_SIZE_KEY = "apply_batch_size";
+        public final static String CHECKSUM_VERIFY_MODE_KEY = "checksum_verify_mode";
+        public final static String JOURNAL_FLUSH_THREADS_KEY = "journal_flush_threads";
+        public final static String PARTITION_INDEX_CACHE_SIZE_KEY = "partition_index_cache_size";
+        public final static String SNAPSHOT_TRANSFER_WINDOW_KEY = "snapshot_transfer_window";
+        public final static String QUERY_WAIT_APPLIED_TIMEOUT_MS_KEY = "query_wait_applied_timeout_ms";
 
         private int snapshotIntervalSec = DEFAULT_SNAPSHOT_INTERVAL_SEC;
         private long rpcTimeoutMs = DEFAULT_RPC_TIMEOUT_MS;
@@ -1280,10 +1550,17 @@ public abstract class AbstractServer
         private Path workingDir = Paths.get(System.getProperty("user.dir")).resolve("journalkeeper");
         private int getStateBatchSize = DEFAULT_GET_STATE_BATCH_SIZE;
         private boolean enableMetric = DEFAULT_ENABLE_METRIC;
+        private String metricFactory = DEFAULT_METRIC_FACTORY;
         private boolean disableLogo = DEFAULT_DISABLE_LOGO;
         private int printMetricIntervalSec = DEFAULT_PRINT_METRIC_INTERVAL_SEC;
         private int journalRetentionMin = DEFAULT_JOURNAL_RETENTION_MIN;
         private boolean enableEvents = DEFAULT_ENABLE_EVENTS;
+        private int applyBatchSize = DEFAULT_APPLY_BATCH_SIZE;
+        private ChecksumVerifyMode checksumVerifyMode = DEFAULT_CHECKSUM_VERIFY_MODE;
+        private int journalFlushThreads = DEFAULT_JOURNAL_FLUSH_THREADS;
+        private int partitionIndexCacheSize = DEFAULT_PARTITION_INDEX_CACHE_SIZE;
+        private int snapshotTransferWindow = DEFAULT_SNAPSHOT_TRANSFER_WINDOW;
+        private long queryWaitAppliedTimeoutMs = DEFAULT_QUERY_WAIT_APPLIED_TIMEOUT_MS;
         int getSnapshotIntervalSec() {
             return snapshotIntervalSec;
         }
@@ -1332,6 +1609,14 @@ public abstract class AbstractServer
             this.enableMetric = enableMetric;
         }
 
+        public String getMetricFactory() {
+            return metricFactory;
+        }
+
+        public void setMetricFactory(String metricFactory) {
+            this.metricFactory = metricFactory;
+        }
+
         public int getPrintMetricIntervalSec() {
             return printMetricIntervalSec;
         }
@@ -1363,5 +1648,53 @@ public abstract class AbstractServer
         public void setEnableEvents(boolean enableEvents) {
             this.enableEvents = enableEvents;
         }
+
+        public int getApplyBatchSize() {
+            return applyBatchSize;
+        }
+
+        public void setApplyBatchSize(int applyBatchSize) {
+            this.applyBatchSize = applyBatchSize;
+        }
+
+        public ChecksumVerifyMode getChecksumVerifyMode() {
+            return checksumVerifyMode;
+        }
+
+        public void setChecksumVerifyMode(ChecksumVerifyMode checksumVerifyMode) {
+            this.checksumVerifyMode = checksumVerifyMode;
+        }
+
+        public int getJournalFlushThreads() {
+            return journalFlushThreads;
+        }
+
+        public void setJournalFlushThreads(int journalFlushThreads) {
+            this.journalFlushThreads = journalFlushThreads;
+        }
+
+        public int getPartitionIndexCacheSize() {
+            return partitionIndexCacheSize;
+        }
+
+        public void setPartitionIndexCacheSize(int partitionIndexCacheSize) {
+            this.partitionIndexCacheSize = partitionIndexCacheSize;
+        }
+
+        public int getSnapshotTransferWindow() {
+            return snapshotTransferWindow;
+        }
+
+        public void setSnapshotTransferWindow(int snapshotTransferWindow) {
+            this.snapshotTransferWindow = snapshotTransferWindow;
+        }
+
+        public long getQueryWaitAppliedTimeoutMs() {
+            return queryWaitAppliedTimeoutMs;
+        }
+
+        public void setQueryWaitAppliedTimeoutMs(long queryWaitAppliedTimeoutMs) {
+            this.queryWaitAppliedTimeoutMs = queryWaitAppliedTimeoutMs;
+        }
     }
 }
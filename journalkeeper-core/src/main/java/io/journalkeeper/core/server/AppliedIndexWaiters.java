@@ -0,0 +1,132 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.core.server;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 等待状态机执行到指定位置的请求，按照等待的位置排序。
+ *
+ * 状态机每执行一批日志后调用{@link #release(long)}，唤醒所有等待位置不大于lastApplied的请求；
+ * 超过等待时间仍未执行到等待位置的请求以{@link IllegalStateException}结束，
+ * 客户端收到RETRY_LATER后重试。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+class AppliedIndexWaiters {
+    private final ScheduledExecutorService scheduledExecutor;
+    private final long timeoutMs;
+    // 由this保护
+    private final NavigableMap<Long, List<CompletableFuture<Void>>> waiters = new TreeMap<>();
+    // 最小的等待位置，没有等待的请求时为Long.MAX_VALUE，状态机线程据此无锁判断是否需要唤醒
+    private volatile long minWaitingIndex = Long.MAX_VALUE;
+
+    AppliedIndexWaiters(ScheduledExecutorService scheduledExecutor, long timeoutMs) {
+        this.scheduledExecutor = scheduledExecutor;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * 等待状态机执行到指定位置
+     * @param index 等待的位置，lastApplied不小于这个位置时返回
+     * @param lastApplied 状态机当前的执行位置
+     * @return 执行到等待位置时完成；超时或者停止时以{@link IllegalStateException}异常结束。
+     */
+    CompletableFuture<Void> waitFor(long index, LongSupplier lastApplied) {
+        if (lastApplied.getAsLong() >= index) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (timeoutMs <= 0L) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalStateException());
+            return future;
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        synchronized (this) {
+            waiters.computeIfAbsent(index, k -> new LinkedList<>()).add(future);
+            if (index < minWaitingIndex) {
+                minWaitingIndex = index;
+            }
+        }
+        ScheduledFuture<?> timeoutFuture = scheduledExecutor.schedule(() -> timeout(index, future), timeoutMs, TimeUnit.MILLISECONDS);
+        future.whenComplete((v, t) -> timeoutFuture.cancel(false));
+        // 加入等待队列之前状态机可能已经执行到了等待位置
+        release(lastApplied.getAsLong());
+        return future;
+    }
+
+    /**
+     * 唤醒所有等待位置不大于lastApplied的请求
+     * @param lastApplied 状态机当前的执行位置
+     */
+    void release(long lastApplied) {
+        if (lastApplied < minWaitingIndex) {
+            return;
+        }
+        List<CompletableFuture<Void>> released = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<Long, List<CompletableFuture<Void>>>> iterator =
+                    waiters.headMap(lastApplied, true).entrySet().iterator();
+            while (iterator.hasNext()) {
+                released.addAll(iterator.next().getValue());
+                iterator.remove();
+            }
+            updateMinWaitingIndex();
+        }
+        released.forEach(future -> future.complete(null));
+    }
+
+    private void timeout(long index, CompletableFuture<Void> future) {
+        synchronized (this) {
+            List<CompletableFuture<Void>> futures = waiters.get(index);
+            if (null == futures || !futures.remove(future)) {
+                return;
+            }
+            if (futures.isEmpty()) {
+                waiters.remove(index);
+                updateMinWaitingIndex();
+            }
+        }
+        future.completeExceptionally(new IllegalStateException());
+    }
+
+    /**
+     * 结束所有等待的请求
+     */
+    void failAll() {
+        List<CompletableFuture<Void>> failed = new ArrayList<>();
+        synchronized (this) {
+            waiters.values().forEach(failed::addAll);
+            waiters.clear();
+            updateMinWaitingIndex();
+        }
+        failed.forEach(future -> future.completeExceptionally(new IllegalStateException()));
+    }
+
+    private void updateMinWaitingIndex() {
+        minWaitingIndex = waiters.isEmpty() ? Long.MAX_VALUE : waiters.firstKey();
+    }
+}
@@ -27,15 +27,15 @@ import io.journalkeeper.core.entry.internal.InternalEntryType;
 import io.journalkeeper.core.entry.internal.LeaderAnnouncementEntry;
 import io.journalkeeper.core.journal.Journal;
 import io.journalkeeper.core.state.ApplyInternalEntryInterceptor;
-import io.journalkeeper.core.state.ApplyReservedEntryInterceptor;
 import io.journalkeeper.core.state.ConfigState;
 import io.journalkeeper.core.state.JournalKeeperState;
 import io.journalkeeper.core.state.Snapshot;
 import io.journalkeeper.core.transaction.JournalTransactionManager;
 import io.journalkeeper.exceptions.IndexUnderflowException;
+import io.journalkeeper.exceptions.InstallSnapshotException;
 import io.journalkeeper.exceptions.NotLeaderException;
 import io.journalkeeper.metric.JMetric;
-import io.journalkeeper.rpc.client.ClientServerRpc;
+import io.journalkeeper.monitor.LatencyMonitorInfo;
 import io.journalkeeper.rpc.client.UpdateClusterStateRequest;
 import io.journalkeeper.rpc.client.UpdateClusterStateResponse;
 import io.journalkeeper.rpc.server.AsyncAppendEntriesRequest;
@@ -52,12 +52,16 @@ import io.journalkeeper.utils.threads.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
@@ -66,6 +70,7 @@ import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -115,7 +120,29 @@ class Leader extends ServerStateMachine implements StateServer {
     private final AtomicLong journalFlushIndex = new AtomicLong(0L);
     private final Threads threads;
     private final long heartbeatIntervalMs;
+    /**
+     * 只为通知FOLLOWER新的commitIndex而发送空的复制请求的最小间隔，
+     * 有数据复制或者心跳时，commitIndex随请求一起发送
+     */
+    private final long commitNotifyIntervalMs;
     private final int replicationBatchSize;
+    /**
+     * 每个FOLLOWER最多允许同时在途（已发送但未收到响应）的复制请求数量
+     */
+    private final int replicationPipelineWindow;
+    /**
+     * 安装快照时最多允许同时在途的数据块数量
+     */
+    private final int snapshotTransferWindow;
+    /**
+     * 合并写入（group commit）时，一次最多合并的请求数量和字节数
+     */
+    private final int groupCommitMaxRequests;
+    private final long groupCommitMaxBytes;
+    /**
+     * 写入请求分阶段耗时统计
+     */
+    private final WriteTracer writeTracer;
     private final long rpcTimeoutMs;
     private final Journal journal;
     /**
@@ -133,7 +160,6 @@ class Leader extends ServerStateMachine implements StateServer {
     private final AtomicBoolean writeEnabled = new AtomicBoolean(true);
     private final JournalEntryParser journalEntryParser;
     private final JournalTransactionManager journalTransactionManager;
-    private final ApplyReservedEntryInterceptor journalTransactionInterceptor;
     private final ApplyInternalEntryInterceptor leaderAnnouncementInterceptor;
     private final NavigableMap<Long, Snapshot> snapshots;
     private final int snapshotIntervalSec;
@@ -152,21 +178,27 @@ class Leader extends ServerStateMachine implements StateServer {
            int currentTerm,
            URI serverUri,
            int cacheRequests, long heartbeatIntervalMs, long rpcTimeoutMs, int replicationBatchSize,
+           int replicationPipelineWindow, int snapshotTransferWindow,
+           int groupCommitMaxRequests, long groupCommitMaxBytes,
+           int writeTraceSampleRate, long slowWriteThresholdMs,
            int snapshotIntervalSec,
            Threads threads,
            ServerRpcProvider serverRpcProvider,
-           ClientServerRpc server,
            ScheduledExecutorService scheduledExecutor,
            VoterConfigManager voterConfigManager,
            MetricProvider metricProvider,
            JournalEntryParser journalEntryParser,
-           long transactionTimeoutMs, NavigableMap<Long, Snapshot> snapshots) {
+           JournalTransactionManager journalTransactionManager, NavigableMap<Long, Snapshot> snapshots) {
 
         super(true);
         this.pendingUpdateStateRequests = new LinkedBlockingQueue<>(cacheRequests);
         this.state = state;
         this.serverUri = serverUri;
         this.replicationBatchSize = replicationBatchSize;
+        this.replicationPipelineWindow = Math.max(1, replicationPipelineWindow);
+        this.snapshotTransferWindow = Math.max(1, snapshotTransferWindow);
+        this.groupCommitMaxRequests = Math.max(1, groupCommitMaxRequests);
+        this.groupCommitMaxBytes = groupCommitMaxBytes;
         this.rpcTimeoutMs = rpcTimeoutMs;
         this.currentTerm = currentTerm;
         this.immutableSnapshots = immutableSnapshots;
@@ -176,6 +208,7 @@ class Leader extends ServerStateMachine implements StateServer {
         this.scheduledExecutor = scheduledExecutor;
         this.voterConfigManager = voterConfigManager;
         this.metricProvider = metricProvider;
+        this.writeTracer = new WriteTracer(metricProvider, writeTraceSampleRate, slowWriteThresholdMs);
         this.journalEntryParser = journalEntryParser;
         this.snapshots = snapshots;
         this.replicationCallbacks = new RingBufferBelt(rpcTimeoutMs, cacheRequests);
@@ -183,8 +216,8 @@ class Leader extends ServerStateMachine implements StateServer {
         this.appendEntriesRpcMetricMap = new HashMap<>(2);
         this.journal = journal;
         this.heartbeatIntervalMs = heartbeatIntervalMs;
-        this.journalTransactionManager = new JournalTransactionManager(journal, server, scheduledExecutor, transactionTimeoutMs);
-        this.journalTransactionInterceptor = (entryHeader, entryFuture, index) -> journalTransactionManager.applyEntry(entryHeader, entryFuture);
+        this.commitNotifyIntervalMs = heartbeatIntervalMs / 10;
+        this.journalTransactionManager = journalTransactionManager;
         this.leaderAnnouncementInterceptor = (type, internalEntry) -> {
             if (type == InternalEntryType.TYPE_LEADER_ANNOUNCEMENT) {
                 LeaderAnnouncementEntry leaderAnnouncementEntry = InternalEntriesSerializeSupport.parse(internalEntry);
@@ -234,21 +267,61 @@ class Leader extends ServerStateMachine implements StateServer {
     }
 
     /**
-     * 串行写入日志
+     * 串行写入日志。
+     * 每次从队列中取出一个请求后，继续取出队列中已经排队的请求（不超过请求数量和字节数的上限），
+     * 合并成一批，调用一次{@link Journal#append(List)}写入，然后逐个设置回调，
+     * 并且每批只唤醒一次复制线程和刷盘线程。
+     * 配置变更请求需要单独处理，不参与合并。
      */
     private void appendJournalEntry() throws Exception {
 
         UpdateStateRequestResponse rr = pendingUpdateStateRequests.take();
+        if (isVoterConfigCandidate(rr.getRequest())) {
+            appendVoterConfigCandidate(rr);
+            return;
+        }
+
+        List<UpdateStateRequestResponse> group = new ArrayList<>();
+        group.add(rr);
+        long groupBytes = requestBytes(rr.getRequest());
+        UpdateStateRequestResponse next;
+        // 只有当前线程消费这个队列，所以peek到的请求一定可以poll出来
+        while (group.size() < groupCommitMaxRequests && groupBytes < groupCommitMaxBytes &&
+                null != (next = pendingUpdateStateRequests.peek()) &&
+                !isVoterConfigCandidate(next.getRequest())) {
+            pendingUpdateStateRequests.poll();
+            group.add(next);
+            groupBytes += requestBytes(next.getRequest());
+        }
+        doAppendJournalEntries(group);
+    }
+
+    /**
+     * 可能是配置变更的请求：只包含一条写入内部分区的日志。
+     */
+    private boolean isVoterConfigCandidate(UpdateClusterStateRequest request) {
+        return request.getRequests().size() == 1 && request.getRequests().get(0).getPartition() == INTERNAL_PARTITION;
+    }
+
+    private long requestBytes(UpdateClusterStateRequest request) {
+        long bytes = 0L;
+        for (UpdateRequest updateRequest : request.getRequests()) {
+            bytes += updateRequest.getEntry().length;
+        }
+        return bytes;
+    }
+
+    private void appendVoterConfigCandidate(UpdateStateRequestResponse rr) throws Exception {
         final UpdateClusterStateRequest request = rr.getRequest();
         final ResponseFuture responseFuture = rr.getResponseFuture();
         try {
 
-            if (request.getRequests().size() == 1 && voterConfigManager.maybeUpdateLeaderConfig(request.getRequests().get(0),
-                    state.getConfigState(), journal, () -> doAppendJournalEntryCallable(request, responseFuture),
+            if (voterConfigManager.maybeUpdateLeaderConfig(request.getRequests().get(0),
+                    state.getConfigState(), journal, () -> doAppendJournalEntryCallable(rr),
                     serverUri, this)) {
                 return;
             }
-            doAppendJournalEntry(request, responseFuture);
+            doAppendJournalEntries(Collections.singletonList(rr));
 
         } catch (Throwable t) {
             responseFuture.getResponseFuture().complete(new UpdateClusterStateResponse(t));
@@ -257,14 +330,46 @@ class Leader extends ServerStateMachine implements StateServer {
 
     }
 
-    private Void doAppendJournalEntryCallable(UpdateClusterStateRequest request, ResponseFuture responseFuture) throws InterruptedException {
-        doAppendJournalEntry(request, responseFuture);
+    private Void doAppendJournalEntryCallable(UpdateStateRequestResponse rr) throws InterruptedException {
+        doAppendJournalEntries(Collections.singletonList(rr));
         return null;
     }
 
-    private void doAppendJournalEntry(UpdateClusterStateRequest request, ResponseFuture responseFuture) throws InterruptedException {
+    private void doAppendJournalEntries(List<UpdateStateRequestResponse> group) throws InterruptedException {
         appendJournalMetric.start();
+        long appendStartNs = System.nanoTime();
+
+        List<JournalEntry> journalEntries = new ArrayList<>();
+        List<UpdateStateRequestResponse> accepted = new ArrayList<>(group.size());
+        for (UpdateStateRequestResponse rr : group) {
+            try {
+                journalEntries.addAll(createJournalEntries(rr.getRequest()));
+                accepted.add(rr);
+            } catch (Throwable t) {
+                // 只影响这一个请求，不影响同一批中的其它请求
+                logger.warn("Create journal entries exception, {}.", voterInfo(), t);
+                rr.getResponseFuture().getResponseFuture().complete(new UpdateClusterStateResponse(t));
+            }
+        }
+        if (journalEntries.isEmpty()) {
+            appendJournalMetric.end(0L);
+            return;
+        }
+
+        try {
+            appendAndCallback(journalEntries, accepted, appendStartNs);
+        } catch (Throwable t) {
+            for (UpdateStateRequestResponse rr : accepted) {
+                rr.getResponseFuture().getResponseFuture().complete(new UpdateClusterStateResponse(t));
+            }
+            throw t;
+        }
+        wakeupReplicationThreads();
+        threads.wakeupThread(threadName(FLUSH_JOURNAL_THREAD));
+        appendJournalMetric.end(() -> journalEntries.stream().mapToLong(JournalEntry::getLength).sum());
+    }
 
+    private List<JournalEntry> createJournalEntries(UpdateClusterStateRequest request) {
         List<JournalEntry> journalEntries = new ArrayList<>(request.getRequests().size());
         for (UpdateRequest serializedUpdateRequest : request.getRequests()) {
             JournalEntry entry;
@@ -284,10 +389,7 @@ class Leader extends ServerStateMachine implements StateServer {
             }
             journalEntries.add(entry);
         }
-        appendAndCallback(journalEntries, request.getResponseConfig(), responseFuture);
-        wakeupReplicationThreads();
-        threads.wakeupThread(threadName(FLUSH_JOURNAL_THREAD));
-        appendJournalMetric.end(() -> journalEntries.stream().mapToLong(JournalEntry::getLength).sum());
+        return journalEntries;
     }
 
     private void wakeupReplicationThreads() {
@@ -303,14 +405,30 @@ class Leader extends ServerStateMachine implements StateServer {
         }
     }
 
-    private void appendAndCallback(List<JournalEntry> journalEntries, ResponseConfig responseConfig, ResponseFuture responseFuture) throws InterruptedException {
+    private void appendAndCallback(List<JournalEntry> journalEntries, List<UpdateStateRequestResponse> requests,
+                                   long appendStartNs) throws InterruptedException {
+        List<Long> offsets;
         if (journalEntries.size() == 1) {
-            long offset = journal.append(journalEntries.get(0));
-            setCallback(responseConfig, responseFuture, offset);
+            offsets = Collections.singletonList(journal.append(journalEntries.get(0)));
         } else {
-            List<Long> offsets = journal.append(journalEntries);
-            for (Long offset : offsets) {
-                setCallback(responseConfig, responseFuture, offset);
+            offsets = journal.append(journalEntries);
+        }
+        // 日志按照请求的顺序写入，每个请求对应连续的若干条日志
+        long appendedNs = System.nanoTime();
+        int requestEnd = 0;
+        for (UpdateStateRequestResponse rr : requests) {
+            requestEnd += rr.getRequest().getRequests().size();
+            writeTracer.onAppended(rr.getStart(), appendStartNs, appendedNs, offsets.get(requestEnd - 1),
+                    rr.getRequest().getResponseConfig(), rr.getResponseFuture().getResponseFuture());
+        }
+        // 先记录跟踪，再设置回调，保证响应的时间不早于跟踪记录的各阶段时间
+        writeTracer.onProgress(journal.commitIndex(), journalFlushIndex.get(), state.lastApplied());
+
+        Iterator<Long> offsetIterator = offsets.iterator();
+        for (UpdateStateRequestResponse rr : requests) {
+            UpdateClusterStateRequest request = rr.getRequest();
+            for (int i = 0; i < request.getRequests().size(); i++) {
+                setCallback(request.getResponseConfig(), rr.getResponseFuture(), offsetIterator.next());
             }
         }
     }
@@ -403,6 +521,7 @@ class Leader extends ServerStateMachine implements StateServer {
                     logger.debug("Set commitIndex {} to {}, {}.", journal.commitIndex(), N, voterInfo());
                 }
                 journal.commit(N);
+                writeTracer.onCommitted(N);
                 onCommitted();
             }
         }
@@ -426,38 +545,65 @@ class Leader extends ServerStateMachine implements StateServer {
         }
     }
 
+    /**
+     * 给FOLLOWER安装快照。
+     * 第一个数据块在FOLLOWER上开始一次新的安装，最后一个数据块触发FOLLOWER完成安装，
+     * 这两个数据块都需要等待之前发出的请求全部成功后再发送并等待响应；
+     * 中间的数据块FOLLOWER按位置写入，不要求顺序，最多同时发送{@link #snapshotTransferWindow}个请求。
+     */
     private void installSnapshot(ReplicationDestination follower, Snapshot snapshot) {
 
+        ReplicableIterator iterator = null;
         try {
             logger.info("Install snapshot to {} ...", follower.getUri());
             ServerRpc rpc = serverRpcProvider.getServerRpc(follower.getUri()).get(heartbeatIntervalMs, TimeUnit.MILLISECONDS);
-            int offset = 0;
-            ReplicableIterator iterator = snapshot.iterator();
+            Deque<CompletableFuture<InstallSnapshotResponse>> pendingResponses = new ArrayDeque<>(snapshotTransferWindow);
+            iterator = snapshot.iterator();
             while (iterator.hasMoreTrunks()) {
+                long offset = iterator.offset();
                 byte[] trunk = iterator.nextTrunk();
+                boolean done = !iterator.hasMoreTrunks();
+                boolean inOrder = offset == 0L || done;
+                while (!pendingResponses.isEmpty() && (inOrder || pendingResponses.size() >= snapshotTransferWindow)) {
+                    checkInstallSnapshotResponse(pendingResponses.poll().get());
+                }
                 InstallSnapshotRequest request = new InstallSnapshotRequest(
                         currentTerm, serverUri, snapshot.lastIncludedIndex(), snapshot.lastIncludedTerm(),
-                        offset, trunk, !iterator.hasMoreTrunks()
+                        offset, trunk, done
                 );
-                InstallSnapshotResponse response = rpc.installSnapshot(request).get();
-                if (!response.success()) {
-                    logger.warn("Install snapshot to {} failed! Cause: {}.", follower.getUri(), response.errorString());
-                    return;
+                CompletableFuture<InstallSnapshotResponse> responseFuture = rpc.installSnapshot(request);
+                if (inOrder) {
+                    checkInstallSnapshotResponse(responseFuture.get());
+                } else {
+                    pendingResponses.add(responseFuture);
                 }
-                offset += trunk.length;
             }
             logger.info("Install snapshot to {} success!", follower.getUri());
         } catch (Throwable t) {
             logger.warn("Install snapshot to {} failed!", follower.getUri(), t);
+        } finally {
+            if (iterator instanceof Closeable) {
+                try {
+                    ((Closeable) iterator).close();
+                } catch (IOException e) {
+                    logger.warn("Close snapshot iterator exception!", e);
+                }
+            }
+        }
+    }
+
+    private void checkInstallSnapshotResponse(InstallSnapshotResponse response) {
+        if (!response.success()) {
+            throw new InstallSnapshotException(response.errorString());
         }
     }
 
     private void callback() {
         long callbackIndex = journalFlushIndex.get();
-        if (callbackIndex > callbackBarrier.get()) {
-            flushCallbacks.callbackBefore(callbackBarrier.get());
-        }
+        // 合并写入时，一批日志的回调可能多于回调队列的剩余空间，
+        // 等待期间需要持续回调已经注册的部分，腾出空间，否则写入线程会一直阻塞
         while (callbackIndex > callbackBarrier.get()) {
+            flushCallbacks.callbackBefore(callbackBarrier.get());
             Thread.yield();
         }
         flushCallbacks.callbackBefore(callbackIndex);
@@ -527,8 +673,7 @@ class Leader extends ServerStateMachine implements StateServer {
         this.threads.startThread(threadName(LEADER_CALLBACK_THREAD));
         this.threads.startThread(threadName(LEADER_APPEND_ENTRY_THREAD));
 
-        journalTransactionManager.start();
-        state.addInterceptor(this.journalTransactionInterceptor);
+        journalTransactionManager.startLeading();
         state.addInterceptor(InternalEntryType.TYPE_LEADER_ANNOUNCEMENT, this.leaderAnnouncementInterceptor);
         if (snapshotIntervalSec > 0) {
             takeSnapshotFuture = scheduledExecutor.scheduleAtFixedRate(this::takeSnapshotPeriodically,
@@ -545,7 +690,7 @@ class Leader extends ServerStateMachine implements StateServer {
             JournalEntry journalEntry = journalEntryParser.createJournalEntry(payload);
             journalEntry.setTerm(currentTerm);
             journalEntry.setPartition(INTERNAL_PARTITION);
-            appendAndCallback(Collections.singletonList(journalEntry), null, null);
+            setCallback(null, null, journal.append(journalEntry));
         } catch (InterruptedException e) {
             logger.warn("Exception: ", e);
         }
@@ -576,8 +721,7 @@ class Leader extends ServerStateMachine implements StateServer {
         }
 
         state.removeInterceptor(InternalEntryType.TYPE_LEADER_ANNOUNCEMENT, leaderAnnouncementInterceptor);
-        state.removeInterceptor(this.journalTransactionInterceptor);
-        journalTransactionManager.stop();
+        journalTransactionManager.stopLeading();
         this.threads.stopThread(threadName(LEADER_APPEND_ENTRY_THREAD));
         this.followers.forEach(ReplicationDestination::stop);
 
@@ -590,6 +734,7 @@ class Leader extends ServerStateMachine implements StateServer {
         removeAppendEntriesRpcMetrics();
         metricProvider.removeMetric(MetricNames.METRIC_APPEND_JOURNAL);
         metricProvider.removeMetric(MetricNames.METRIC_UPDATE_CLUSTER_STATE);
+        writeTracer.removeMetrics();
         super.doStop();
 
     }
@@ -620,12 +765,14 @@ class Leader extends ServerStateMachine implements StateServer {
         while (lastApplied > callbackBarrier.get()) {
             Thread.yield();
         }
+        writeTracer.onApplied(lastApplied);
         replicationCallbacks.callback(lastApplied, result);
     }
 
     void onJournalFlushed() {
 
         journalFlushIndex.set(journal.maxIndex());
+        writeTracer.onFlushed(journalFlushIndex.get());
         if (serverState() == ServerState.RUNNING) {
             threads.wakeupThread(threadName(LEADER_APPEND_ENTRY_THREAD));
             threads.wakeupThread(threadName(LEADER_CALLBACK_THREAD));
@@ -706,6 +853,10 @@ class Leader extends ServerStateMachine implements StateServer {
         return writeEnabled.get();
     }
 
+    Collection<LatencyMonitorInfo> getWriteStageLatencies() {
+        return writeTracer.getStageLatencies();
+    }
+
     List<Leader.ReplicationDestination> getFollowers() {
         return Collections.unmodifiableList(followers);
     }
@@ -751,6 +902,10 @@ class Leader extends ServerStateMachine implements StateServer {
         ResponseFuture getResponseFuture() {
             return this.responseFuture;
         }
+
+        long getStart() {
+            return start;
+        }
     }
 
 
@@ -773,6 +928,19 @@ class Leader extends ServerStateMachine implements StateServer {
          */
         private long lastHeartbeatResponseTime;
         private long lastHeartbeatRequestTime = 0L;
+        /**
+         * 上次发给FOLLOWER的commitIndex
+         */
+        private long lastSentCommitIndex = 0L;
+        /**
+         * 是否已经安排了通知commitIndex的延时唤醒
+         */
+        private final AtomicBoolean commitNotifyScheduled = new AtomicBoolean(false);
+
+        /**
+         * 已经发出但还没处理响应的复制请求，按照发送顺序排列
+         */
+        private final Deque<InFlightRequest> inFlightRequests = new ArrayDeque<>();
 
         private final String replicationThreadName;
         private final JMetric metric;
@@ -808,74 +976,158 @@ class Leader extends ServerStateMachine implements StateServer {
         private void stop() {
             Leader.this.threads.stopThread(replicationThreadName);
             Leader.this.threads.removeThread(replicationThreadName);
+            inFlightRequests.clear();
         }
 
+        /**
+         * 流水线复制：在途请求数量小于{@link #replicationPipelineWindow}时，不等待上一个请求的响应，
+         * 直接读取并发送下一批日志。响应按照发送顺序处理：
+         * 1. 复制成功，更新matchIndex；
+         * 2. 日志不匹配，丢弃所有在途请求，回退nextIndex后重新发送；
+         * 3. 没收到响应或者请求失败，丢弃所有在途请求，从失败请求的位置开始，等下一个心跳超时之后重试。
+         * {@link #replicationPipelineWindow}为1时，退化为每次发送后等待响应的串行复制。
+         */
         private void replication() {
             long maxIndex;
             while (serverState() == ServerState.RUNNING &&
-                    !Thread.currentThread().isInterrupted() &&
-                    (nextIndex < (maxIndex = journal.maxIndex()) // 还有需要复制的数据
-                    ||
-                    System.currentTimeMillis() - lastHeartbeatRequestTime >= heartbeatIntervalMs) // 距离上次复制/心跳已经超过一个心跳超时了
-            ) {
-                long start = metric == null ? 0L : System.nanoTime();
+                    !Thread.currentThread().isInterrupted()) {
 
-                // 如果有必要，先安装第一个快照
-                Map.Entry<Long, Snapshot> fistSnapShotEntry = snapshots.firstEntry();
-                maybeInstallSnapshotFirst(fistSnapShotEntry);
-
-                // 读取需要复制的Entry
-                List<byte[]> entries;
-                if (nextIndex < maxIndex) { // 复制
-                    entries = journal.readRaw(nextIndex, Leader.this.replicationBatchSize);
-                } else { // 心跳
-                    entries = Collections.emptyList();
+                // 按顺序处理已经收到的响应
+                if (!handleResponses()) {
+                    // 等下一个心跳超时之后，再进入这个方法会自动重试
+                    break;
                 }
 
-                // 构建请求并发送
-                AsyncAppendEntriesRequest request =
-                        new AsyncAppendEntriesRequest(Leader.this.currentTerm, Leader.this.serverUri,
-                                nextIndex - 1, Leader.this.getPreLogTerm(nextIndex),
-                                entries, journal.commitIndex(), maxIndex);
-                AsyncAppendEntriesResponse response = null;
-                try {
-                    response = serverRpcProvider.getServerRpc(uri)
-                            .thenCompose(serverRpc -> serverRpc.asyncAppendEntries(request)).get();
-                    lastHeartbeatRequestTime = System.currentTimeMillis();
-                } catch (InterruptedException ie) {
-                    logger.warn("Replication was interrupted, from {} to {}.", Leader.this.serverUri, uri);
-                    Thread.currentThread().interrupt();
+                maxIndex = journal.maxIndex();
+                long sinceLastRequest = System.currentTimeMillis() - lastHeartbeatRequestTime;
+                boolean commitPending = journal.commitIndex() > lastSentCommitIndex;
+                if (inFlightRequests.size() < replicationPipelineWindow &&
+                        (nextIndex < maxIndex // 还有需要复制的数据
+                                ||
+                                inFlightRequests.isEmpty() && (
+                                        sinceLastRequest >= heartbeatIntervalMs || // 距离上次复制/心跳已经超过一个心跳超时了
+                                        commitPending && sinceLastRequest >= commitNotifyIntervalMs)) // commitIndex有更新，限速通知FOLLOWER执行状态机
+                ) {
+                    sendRequest(maxIndex);
+                } else if (inFlightRequests.size() >= replicationPipelineWindow) {
+                    // 在途请求已满，等待最早发出的请求的响应
+                    if (!waitForResponse(inFlightRequests.peekFirst())) {
+                        break;
+                    }
+                } else if (inFlightRequests.isEmpty() || !inFlightRequests.peekFirst().isDone()) {
+                    // 没有需要发送的数据，收到响应或者有新的日志写入时会唤醒复制线程
+                    if (inFlightRequests.isEmpty() && commitPending) {
+                        // 距离上次发送的时间太短，延时通知新的commitIndex
+                        scheduleCommitNotify(commitNotifyIntervalMs - sinceLastRequest);
+                    }
                     break;
-                } catch (ExecutionException e) {
-                    logger.warn("Replication execution exception, from {} to {}, cause: {}.", Leader.this.serverUri, uri, null == e.getCause()? e.getMessage() : e.getCause().getMessage());
-                } catch (Throwable t) {
-                    logger.warn("Replication exception, from {} to {}, cause: {}.", Leader.this.serverUri, uri, t.getMessage());
                 }
+            }
+        }
 
-                // 处理返回的响应
-                if(null != response && response.success()) { // 成功收到响应响应
-                    lastHeartbeatResponseTime = System.currentTimeMillis();
+        private void sendRequest(long maxIndex) {
+            long start = metric == null ? 0L : System.nanoTime();
+
+            if (inFlightRequests.isEmpty()) {
+                // 如果有必要，先安装第一个快照
+                maybeInstallSnapshotFirst(snapshots.firstEntry());
+            }
+
+            // 读取需要复制的Entry
+            List<byte[]> entries;
+            if (nextIndex < maxIndex) { // 复制
+                entries = journal.readRaw(nextIndex, Leader.this.replicationBatchSize);
+            } else { // 心跳
+                entries = Collections.emptyList();
+            }
+
+            // 构建请求并发送
+            AsyncAppendEntriesRequest request =
+                    new AsyncAppendEntriesRequest(Leader.this.currentTerm, Leader.this.serverUri,
+                            nextIndex - 1, Leader.this.getPreLogTerm(nextIndex),
+                            entries, journal.commitIndex(), maxIndex);
+            lastSentCommitIndex = request.getLeaderCommit();
+            CompletableFuture<AsyncAppendEntriesResponse> responseFuture = serverRpcProvider.getServerRpc(uri)
+                    .thenCompose(serverRpc -> serverRpc.asyncAppendEntries(request));
+            inFlightRequests.addLast(new InFlightRequest(nextIndex, request, responseFuture, start));
+            nextIndex += entries.size();
+            lastHeartbeatRequestTime = System.currentTimeMillis();
+
+            if (replicationPipelineWindow > 1) {
+                responseFuture.whenComplete((response, throwable) -> wakeup());
+            }
+        }
+
+        /**
+         * 按照发送顺序处理所有已经收到的响应。
+         * @return 复制失败需要等待重试时返回false，否则返回true。
+         */
+        private boolean handleResponses() {
+            while (!inFlightRequests.isEmpty() && inFlightRequests.peekFirst().isDone()) {
+                InFlightRequest inFlightRequest = inFlightRequests.pollFirst();
+                AsyncAppendEntriesResponse response = inFlightRequest.getResponse();
 
+                if (null != response && response.success()) { // 成功收到响应响应
+                    lastHeartbeatResponseTime = System.currentTimeMillis();
+                    int size = inFlightRequest.getRequest().getEntries().size();
                     if (response.isSuccess()) { // 复制成功
-                        if (entries.size() > 0) {
-                            nextIndex += entries.size();
-                            matchIndex = nextIndex;
+                        if (size > 0) {
+                            matchIndex = inFlightRequest.getStartIndex() + size;
                             isAnyFollowerNextIndexUpdated.compareAndSet(false, true);
                             Leader.this.threads.wakeupThread(Leader.this.threadName(LEADER_COMMIT_THREAD));
                         }
                     } else {
-                        // 不匹配，回退
-                        int rollbackSize = (int) Math.min(replicationBatchSize, nextIndex - fistSnapShotEntry.getKey());
-                        nextIndex -= rollbackSize;
+                        // 不匹配，丢弃所有在途请求，回退
+                        int rollbackSize = (int) Math.min(replicationBatchSize, inFlightRequest.getStartIndex() - snapshots.firstKey());
+                        rewind(inFlightRequest.getStartIndex() - rollbackSize);
                     }
                     if (null != metric) {
-                        metric.mark(() -> System.nanoTime() - start, () -> request.getEntries().stream().mapToLong(e -> e.length).sum());
+                        metric.mark(() -> System.nanoTime() - inFlightRequest.getStart(),
+                                () -> inFlightRequest.getRequest().getEntries().stream().mapToLong(e -> e.length).sum());
                     }
                 } else { // 没收到响应或者请求失败
-                    // 等下一个心跳超时之后，再进入这个方法会自动重试
-                    break;
+                    rewind(inFlightRequest.getStartIndex());
+                    return false;
                 }
+            }
+            return true;
+        }
 
+        private boolean waitForResponse(InFlightRequest inFlightRequest) {
+            try {
+                inFlightRequest.getResponseFuture().get();
+            } catch (InterruptedException ie) {
+                logger.warn("Replication was interrupted, from {} to {}.", Leader.this.serverUri, uri);
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException ignored) {
+                // 在处理响应时记录日志并重试
+            }
+            return true;
+        }
+
+        /**
+         * 丢弃所有在途请求，下次从index开始复制
+         */
+        private void rewind(long index) {
+            inFlightRequests.clear();
+            nextIndex = index;
+        }
+
+        private void scheduleCommitNotify(long delayMs) {
+            if (commitNotifyScheduled.compareAndSet(false, true)) {
+                scheduledExecutor.schedule(() -> {
+                    commitNotifyScheduled.set(false);
+                    wakeup();
+                }, delayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void wakeup() {
+            try {
+                Leader.this.threads.wakeupThread(replicationThreadName);
+            } catch (NoSuchElementException ignored) {
+                // follower maybe removed
             }
         }
 
@@ -914,6 +1166,55 @@ class Leader extends ServerStateMachine implements StateServer {
                     ", matchIndex=" + matchIndex +
                     '}';
         }
+
+        private class InFlightRequest {
+            private final long startIndex;
+            private final AsyncAppendEntriesRequest request;
+            private final CompletableFuture<AsyncAppendEntriesResponse> responseFuture;
+            private final long start;
+
+            InFlightRequest(long startIndex, AsyncAppendEntriesRequest request,
+                            CompletableFuture<AsyncAppendEntriesResponse> responseFuture, long start) {
+                this.startIndex = startIndex;
+                this.request = request;
+                this.responseFuture = responseFuture;
+                this.start = start;
+            }
+
+            long getStartIndex() {
+                return startIndex;
+            }
+
+            AsyncAppendEntriesRequest getRequest() {
+                return request;
+            }
+
+            CompletableFuture<AsyncAppendEntriesResponse> getResponseFuture() {
+                return responseFuture;
+            }
+
+            long getStart() {
+                return start;
+            }
+
+            boolean isDone() {
+                return responseFuture.isDone();
+            }
+
+            /**
+             * 获取已经完成的请求的响应，请求失败时返回null。
+             */
+            AsyncAppendEntriesResponse getResponse() {
+                try {
+                    return responseFuture.getNow(null);
+                } catch (CompletionException e) {
+                    logger.warn("Replication execution exception, from {} to {}, cause: {}.", Leader.this.serverUri, uri, null == e.getCause() ? e.getMessage() : e.getCause().getMessage());
+                } catch (Throwable t) {
+                    logger.warn("Replication exception, from {} to {}, cause: {}.", Leader.this.serverUri, uri, t.getMessage());
+                }
+                return null;
+            }
+        }
     }
 
 
@@ -24,6 +24,13 @@ class MetricNames {
     final static String METRIC_APPEND_JOURNAL = "APPEND_JOURNAL";
     final static String METRIC_APPEND_ENTRIES_RPC = "APPEND_ENTRIES_RPC";
     final static String METRIC_OBSERVER_REPLICATION = "OBSERVER_REPLICATION";
+    // 写入请求各阶段的耗时，见 WriteTracer
+    final static String METRIC_WRITE_STAGE_QUEUE = "WRITE_STAGE_QUEUE";
+    final static String METRIC_WRITE_STAGE_APPEND = "WRITE_STAGE_APPEND";
+    final static String METRIC_WRITE_STAGE_REPLICATE = "WRITE_STAGE_REPLICATE";
+    final static String METRIC_WRITE_STAGE_FLUSH = "WRITE_STAGE_FLUSH";
+    final static String METRIC_WRITE_STAGE_APPLY = "WRITE_STAGE_APPLY";
+    final static String METRIC_WRITE_STAGE_RESPOND = "WRITE_STAGE_RESPOND";
 
     public static String compose(String prefix, URI uri) {
         return prefix + "-" + uri.toString();
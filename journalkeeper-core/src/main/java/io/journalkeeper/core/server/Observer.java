@@ -60,14 +60,17 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
@@ -86,6 +89,22 @@ class Observer extends AbstractServer {
 
     private final CompletableRetry<URI> serverRpcRetry;
     private final Config config;
+    // 每次复制的最少日志数量
+    private static final int MIN_PULL_BATCH_SIZE = 16;
+    // 第一次复制的日志数量，之后按照响应的大小调整
+    private static final int INITIAL_PULL_BATCH_SIZE = 1024;
+    // 在途的复制请求，只在复制线程中访问
+    private final Deque<PendingPull> pendingPulls = new ArrayDeque<>();
+    // 下一个复制请求的起始位置
+    private long nextPullIndex = 0L;
+    // 当前每次复制的日志数量
+    private int pullBatchSize;
+    // 上一次复制返回了完整的一批日志，说明落后于上游节点，需要预取
+    private boolean prefetch = false;
+    // 丢弃在途的复制请求时递增，旧的请求不再重试，避免切换上游节点
+    private volatile int pullGeneration = 0;
+    // 累计发送的预取请求数量
+    private volatile long prefetchedPulls = 0L;
 
     Observer(StateFactory stateFactory,
              JournalEntryParser journalEntryParser,
@@ -95,6 +114,7 @@ class Observer extends AbstractServer {
         super(stateFactory, journalEntryParser, scheduledExecutor, asyncExecutor, serverRpcAccessPoint, properties);
         this.config = toConfig(properties);
         this.replicationMetric = getMetric(METRIC_OBSERVER_REPLICATION);
+        this.pullBatchSize = Math.max(1, Math.min(config.getPullBatchSize(), INITIAL_PULL_BATCH_SIZE));
         serverRpcRetry = new CompletableRetry<>(new ExponentialRetryPolicy(10L, 3000L, 10),
                 new RandomDestinationSelector<>(config.getParents()));
     }
@@ -105,6 +125,14 @@ class Observer extends AbstractServer {
                 properties.getProperty(
                         Config.PULL_BATCH_SIZE_KEY,
                         String.valueOf(Config.DEFAULT_PULL_BATCH_SIZE))));
+        config.setPullWindow(Math.max(1, Integer.parseInt(
+                properties.getProperty(
+                        Config.PULL_WINDOW_KEY,
+                        String.valueOf(Config.DEFAULT_PULL_WINDOW)))));
+        config.setPullTargetBytes(Long.parseLong(
+                properties.getProperty(
+                        Config.PULL_TARGET_BYTES_KEY,
+                        String.valueOf(Config.DEFAULT_PULL_TARGET_BYTES))));
 
         String parentsString = properties.getProperty(
                 Config.PARENTS_KEY,
@@ -144,57 +172,197 @@ class Observer extends AbstractServer {
         }, asyncExecutor, scheduledExecutor);
     }
 
+    /**
+     * 从上游节点复制日志。
+     * 最多同时发送{@link Config#getPullWindow()}个请求，在写入上一批日志的同时预取后面的日志。
+     * 预取的请求假设前面的请求都能返回完整的一批日志，如果返回的日志少于请求的数量，
+     * 说明已经追上了上游节点，丢弃所有预取的请求，下次从当前位置重新开始，
+     * 直到再次收到完整的一批日志之前不再预取。
+     */
     private void pullEntries() throws Throwable {
 
         replicationMetric.start();
         long traffic = 0L;
         if (journal.commitIndex() == 0L) {
+            cancelPendingPulls();
             installSnapshot(0L);
         }
-        GetServerEntriesResponse response =
-                invokeParentsRpc(
-                        rpc -> rpc.getServerEntries(new GetServerEntriesRequest(journal.commitIndex(), config.getPullBatchSize()))
-                ).get();
+        fillPullWindow();
+        PendingPull pull = pendingPulls.poll();
+        GetServerEntriesResponse response;
+        try {
+            response = pull.getResponseFuture().get();
+        } catch (Throwable t) {
+            cancelPendingPulls();
+            throw t;
+        }
 
         if (response.success()) {
+            if (pull.getIndex() == journal.maxIndex()) {
+                List<byte[]> entries = response.getEntries();
+                journal.appendBatchRaw(entries);
+
+                voterConfigManager.maybeUpdateNonLeaderConfig(entries, state.getConfigState());
+                journal.commit(journal.maxIndex());
+                // 唤醒状态机线程
+                threads.wakeupThread(threadName(STATE_MACHINE_THREAD));
+
+                traffic = entries.stream().mapToLong(bytes -> bytes.length).sum();
+                adjustPullBatchSize(pull, entries.size(), traffic);
+                if (entries.size() < pull.getMaxSize()) {
+                    cancelPendingPulls();
+                } else {
+                    prefetch = true;
+                }
+            } else {
+                // 前面的请求没有返回完整的一批日志，预取的位置已经不连续
+                cancelPendingPulls();
+            }
+        } else {
+            cancelPendingPulls();
+            if (response.getStatusCode() == StatusCode.INDEX_UNDERFLOW) {
+                installSnapshot(response.getMinIndex());
+            } else if (response.getStatusCode() != StatusCode.INDEX_OVERFLOW) {
+                logger.warn("Pull entry failed! {}", response.errorString());
+            }
+        }
+        long finalTraffic = traffic;
+        replicationMetric.end(() -> finalTraffic);
 
-            journal.appendBatchRaw(response.getEntries());
+    }
 
-            voterConfigManager.maybeUpdateNonLeaderConfig(response.getEntries(), state.getConfigState());
-//            commitIndex.addAndGet(response.getEntries().size());
-            journal.commit(journal.maxIndex());
-            // 唤醒状态机线程
-            threads.wakeupThread(threadName(STATE_MACHINE_THREAD));
+    private void fillPullWindow() {
+        if (pendingPulls.isEmpty()) {
+            nextPullIndex = journal.maxIndex();
+        }
+        int window = prefetch ? config.getPullWindow() : 1;
+        int generation = pullGeneration;
+        while (pendingPulls.size() < window) {
+            long index = nextPullIndex;
+            int maxSize = pullBatchSize;
+            CompletableFuture<GetServerEntriesResponse> responseFuture =
+                    pullFromParents(generation, new GetServerEntriesRequest(index, maxSize));
+            if (!pendingPulls.isEmpty()) {
+                prefetchedPulls++;
+            }
+            pendingPulls.add(new PendingPull(index, maxSize, responseFuture));
+            nextPullIndex += maxSize;
+        }
+    }
 
+    /**
+     * 从上游节点复制日志，请求被丢弃后不再发送和重试。
+     * 重试会切换上游节点，被丢弃的请求继续重试会让正在进行的复制也切换上游节点。
+     */
+    private CompletableFuture<GetServerEntriesResponse> pullFromParents(int generation, GetServerEntriesRequest request) {
+        return serverRpcRetry.retry(uri -> {
+            if (generation != pullGeneration) {
+                CompletableFuture<GetServerEntriesResponse> cancelled = new CompletableFuture<>();
+                cancelled.cancel(false);
+                return cancelled;
+            }
+            return serverRpcAccessPoint.getServerRpcAgent(uri).getServerEntries(request);
+        }, new CheckRetry<GetServerEntriesResponse>() {
+            @Override
+            public boolean checkException(Throwable exception) {
+                return generation == pullGeneration;
+            }
+
+            @Override
+            public boolean checkResult(GetServerEntriesResponse result) {
+                return !result.success() && generation == pullGeneration;
+            }
+        }, asyncExecutor, scheduledExecutor);
+    }
 
-        } else if (response.getStatusCode() == StatusCode.INDEX_UNDERFLOW) {
-            installSnapshot(response.getMinIndex());
-        } else if (response.getStatusCode() != StatusCode.INDEX_OVERFLOW) {
-            logger.warn("Pull entry failed! {}", response.errorString());
+    private void cancelPendingPulls() {
+        pullGeneration++;
+        for (PendingPull pull : pendingPulls) {
+            pull.getResponseFuture().cancel(false);
         }
-        replicationMetric.end(() -> response.getEntries().stream().mapToLong(bytes -> bytes.length).sum());
+        pendingPulls.clear();
+        prefetch = false;
+    }
 
+    /**
+     * 根据响应的大小和时延调整每次复制的日志数量：
+     * 按照平均日志大小，使每次响应的数据量接近{@link Config#getPullTargetBytes()}；
+     * 如果时延超过RPC超时时间的一半，减半。
+     * 上游节点只返回到它已执行的位置，追上之后每次都返回不完整的一批日志，
+     * 这样的响应同样可以估算平均日志大小，也用来调整，否则复制数量一直停留在上限，不会再收到完整的一批日志，也就不会预取。
+     * 每次复制的日志数量不超过{@link Config#getPullBatchSize()}。
+     */
+    private void adjustPullBatchSize(PendingPull pull, int entryCount, long traffic) {
+        if (entryCount == 0) {
+            return;
+        }
+        long targetSize = Math.max(1L, config.getPullTargetBytes() * entryCount / Math.max(1L, traffic));
+        if (System.nanoTime() - pull.getSendTimeNs() > TimeUnit.MILLISECONDS.toNanos(getRpcTimeoutMs()) / 2) {
+            targetSize = Math.min(targetSize, entryCount / 2);
+        }
+        pullBatchSize = (int) Math.max(Math.min(MIN_PULL_BATCH_SIZE, config.getPullBatchSize()),
+                Math.min(config.getPullBatchSize(), targetSize));
+    }
+
+    long getPrefetchedPulls() {
+        return prefetchedPulls;
     }
 
     private void installSnapshot(long index) throws InterruptedException, ExecutionException, IOException, TimeoutException {
         // Observer的提交位置已经落后目标节点太多，这时需要安装快照：
         // 复制远端服务器的最新状态到当前状态
+        // 第一个请求在远端创建快照迭代器，返回的数据块开始一次新的安装；
+        // 之后同时发送多个请求，中间的数据块乱序安装，最后一个数据块等其它数据块都安装后再安装。
         long lastIncludedIndex = index - 1;
-        int iteratorId = -1;
-        boolean done;
+        GetServerStateResponse first = getServerState(lastIncludedIndex, -1);
+        installSnapshot(first);
+        if (first.isDone()) {
+            return;
+        }
+        int iteratorId = first.getIteratorId();
+        int window = getSnapshotTransferWindow();
+        Deque<CompletableFuture<GetServerStateResponse>> pendingResponses = new ArrayDeque<>(window);
+        GetServerStateResponse last = null;
+        boolean exhausted = false;
         do {
-            int finalIteratorId = iteratorId;
-            GetServerStateResponse r = invokeParentsRpc(
-                    rpc -> rpc.getServerState(new GetServerStateRequest(lastIncludedIndex, finalIteratorId))
-            ).get();
-            if (r.success()) {
-                installSnapshot(r.getOffset(), r.getLastIncludedIndex(), r.getLastIncludedTerm(), r.getData(), r.isDone());
-                iteratorId = r.getIteratorId();
-                done = r.isDone();
+            while (!exhausted && pendingResponses.size() < window) {
+                pendingResponses.add(invokeParentsRpc(
+                        rpc -> rpc.getServerState(new GetServerStateRequest(lastIncludedIndex, iteratorId))
+                ));
+            }
+            GetServerStateResponse r = checkServerStateResponse(pendingResponses.poll().get());
+            if (r.isDone()) {
+                exhausted = true;
+                // 读完之后多发送的请求返回空的数据块
+                if (r.getData().length > 0) {
+                    last = r;
+                }
             } else {
-                throw new InstallSnapshotException(r.errorString());
+                installSnapshot(r);
             }
-        } while (!done);
+        } while (!pendingResponses.isEmpty() || !exhausted);
+
+        if (null == last) {
+            throw new InstallSnapshotException("The last trunk of the snapshot is missing!");
+        }
+        installSnapshot(last);
+    }
+
+    private GetServerStateResponse getServerState(long lastIncludedIndex, int iteratorId) throws InterruptedException, ExecutionException {
+        return checkServerStateResponse(invokeParentsRpc(
+                rpc -> rpc.getServerState(new GetServerStateRequest(lastIncludedIndex, iteratorId))
+        ).get());
+    }
+
+    private GetServerStateResponse checkServerStateResponse(GetServerStateResponse response) {
+        if (!response.success()) {
+            throw new InstallSnapshotException(response.errorString());
+        }
+        return response;
+    }
+
+    private void installSnapshot(GetServerStateResponse r) throws IOException, TimeoutException {
+        installSnapshot(r.getOffset(), r.getLastIncludedIndex(), r.getLastIncludedTerm(), r.getData(), r.isDone());
     }
 
     @Override
@@ -304,15 +472,50 @@ class Observer extends AbstractServer {
         return serverMetadata;
     }
 
+    private static class PendingPull {
+        private final long index;
+        private final int maxSize;
+        private final long sendTimeNs = System.nanoTime();
+        private final CompletableFuture<GetServerEntriesResponse> responseFuture;
+
+        PendingPull(long index, int maxSize, CompletableFuture<GetServerEntriesResponse> responseFuture) {
+            this.index = index;
+            this.maxSize = maxSize;
+            this.responseFuture = responseFuture;
+        }
+
+        long getIndex() {
+            return index;
+        }
+
+        int getMaxSize() {
+            return maxSize;
+        }
+
+        long getSendTimeNs() {
+            return sendTimeNs;
+        }
+
+        CompletableFuture<GetServerEntriesResponse> getResponseFuture() {
+            return responseFuture;
+        }
+    }
+
     private static class Config {
         private final static int DEFAULT_PULL_BATCH_SIZE = 4 * 1024 * 1024;
+        private final static int DEFAULT_PULL_WINDOW = 4;
+        private final static long DEFAULT_PULL_TARGET_BYTES = 4 * 1024 * 1024;
         private final static String PULL_BATCH_SIZE_KEY = "observer.pull_batch_size";
+        private final static String PULL_WINDOW_KEY = "observer.pull_window";
+        private final static String PULL_TARGET_BYTES_KEY = "observer.pull_target_bytes";
 
         private final static String PARENTS_KEY = "observer.parents";
         // TODO: 动态变更parents
         private List<URI> parents = Collections.emptyList();
 
         private int pullBatchSize = DEFAULT_PULL_BATCH_SIZE;
+        private int pullWindow = DEFAULT_PULL_WINDOW;
+        private long pullTargetBytes = DEFAULT_PULL_TARGET_BYTES;
 
         private int getPullBatchSize() {
             return pullBatchSize;
@@ -322,6 +525,22 @@ class Observer extends AbstractServer {
             this.pullBatchSize = pullBatchSize;
         }
 
+        private int getPullWindow() {
+            return pullWindow;
+        }
+
+        private void setPullWindow(int pullWindow) {
+            this.pullWindow = pullWindow;
+        }
+
+        private long getPullTargetBytes() {
+            return pullTargetBytes;
+        }
+
+        private void setPullTargetBytes(long pullTargetBytes) {
+            this.pullTargetBytes = pullTargetBytes;
+        }
+
         public List<URI> getParents() {
             return parents;
         }
@@ -44,13 +44,13 @@ import io.journalkeeper.utils.files.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
+import java.nio.file.StandardOpenOption;
 
 /**
  *
@@ -61,7 +61,8 @@ class PartialSnapshot {
     private static final Logger logger = LoggerFactory.getLogger(PartialSnapshot.class);
     private final Path partialSnapshotPath;
     private Path snapshotPath = null;
-    private long offset = 0;
+    // 已经安装的数据总长度
+    private long installedSize = 0;
 
     PartialSnapshot(Path partialSnapshotPath) {
         this.partialSnapshotPath = partialSnapshotPath;
@@ -71,8 +72,8 @@ class PartialSnapshot {
         return snapshotPath;
     }
 
-    public long getOffset() {
-        return offset;
+    public long getInstalledSize() {
+        return installedSize;
     }
 
     /**
@@ -81,6 +82,8 @@ class PartialSnapshot {
      * 状态数据先被安装在{@link #partialSnapshotPath}中，当全部状态数据安装完成后，
      * 再复制到{@link #snapshotPath}中
      * 所有数据都复制完成后，将状态。
+     * 偏移量为0的数据块开始一次新的安装，必须最先安装；
+     * 其它数据块按照文件内的位置写入，可以乱序安装。
      * @param offset 快照偏移量
      * @param data 快照数据
      * @param snapshotPath 安装路径
@@ -103,12 +106,6 @@ class PartialSnapshot {
                 );
             }
 
-            if (offset != getOffset()) {
-                throw new InstallSnapshotException(
-                        String.format("Partial snapshot offset not match! Partial snapshot: %s, request offset: %d.", this, offset)
-                );
-            }
-
         }
 
         ByteBuffer buffer = ByteBuffer.wrap(data);
@@ -120,7 +117,7 @@ class PartialSnapshot {
 
         Path filePath = this.partialSnapshotPath.resolve(filePathString);
 
-        if (offsetOfFile == 0) {
+        if (!Files.isDirectory(filePath.getParent())) {
             Files.createDirectories(filePath.getParent());
         }
 
@@ -129,21 +126,27 @@ class PartialSnapshot {
             logger.info("Creating snapshot directory: {}...", filePath);
             Files.createDirectories(filePath);
         } else {
-            logger.info("Installing snapshot file: {}...", filePath);
-            if(offsetOfFile == 0 || Files.size(filePath) == offsetOfFile) {
-                try (FileOutputStream output = new FileOutputStream(filePath.toFile(), true)) {
-                    output.write(data, buffer.position(), buffer.remaining());
+            logger.info("Installing snapshot file: {}, offset: {}...", filePath, offsetOfFile);
+            try (FileChannel fileChannel = FileChannel.open(filePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                long position = offsetOfFile;
+                while (buffer.hasRemaining()) {
+                    position += fileChannel.write(buffer, position);
                 }
-            } else {
-                throw new InstallSnapshotException(
-                        String.format(
-                                "Current file size %d should equal trunk offset %d! File: %s",
-                                Files.size(filePath), offsetOfFile, filePath.toString()
-                        )
-                );
             }
         }
-        this.offset += data.length;
+        this.installedSize += data.length;
+    }
+
+    /**
+     * 检查所有数据块是否都已经安装。
+     * @param snapshotSize 快照数据的总长度
+     */
+    void checkComplete(long snapshotSize) {
+        if (installedSize != snapshotSize) {
+            throw new InstallSnapshotException(
+                    String.format("Partial snapshot is incomplete! Partial snapshot: %s, snapshot size: %d.", this, snapshotSize)
+            );
+        }
     }
 
     private boolean isDirectory(ByteBuffer buffer) {
@@ -162,7 +165,7 @@ class PartialSnapshot {
         FileUtils.deleteFolder(snapshotPath);
         FileUtils.dump(partialSnapshotPath, snapshotPath);
         snapshotPath = null;
-        offset = 0;
+        installedSize = 0;
     }
 
     private void begin(Path path) throws IOException {
@@ -170,7 +173,7 @@ class PartialSnapshot {
             throw new IllegalArgumentException("Path can not be null!");
         }
         this.snapshotPath = path;
-        offset = 0;
+        installedSize = 0;
 
         if (Files.exists(partialSnapshotPath)) {
             FileUtils.deleteFolder(partialSnapshotPath);
@@ -186,7 +189,7 @@ class PartialSnapshot {
     public String toString() {
         return "PartialSnapshot{" +
                 "path=" + snapshotPath +
-                ", offset=" + offset +
+                ", installedSize=" + installedSize +
                 '}';
     }
 }
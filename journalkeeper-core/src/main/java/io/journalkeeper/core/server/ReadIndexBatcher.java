@@ -0,0 +1,85 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.core.server;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 合并FOLLOWER上并发的ReadIndex请求。
+ *
+ * FOLLOWER处理强一致查询之前，先向LEADER查询集群当前的提交位置（ReadIndex），
+ * LEADER确认自己仍然有效之后返回。为了保证线性一致，ReadIndex请求必须在查询到达之后发出，
+ * 所以查询不能复用已经发出的ReadIndex请求：同一时刻最多只有一个在途请求，
+ * 在途请求返回之前到达的所有查询合并为一个ReadIndex请求，在途请求返回后立即发出。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+class ReadIndexBatcher {
+    private final Supplier<CompletableFuture<Long>> readIndexSupplier;
+    // 由this保护
+    private boolean inFlight = false;
+    // 由this保护，等待下一个ReadIndex请求的查询共享这个Future
+    private CompletableFuture<Long> pending = null;
+
+    ReadIndexBatcher(Supplier<CompletableFuture<Long>> readIndexSupplier) {
+        this.readIndexSupplier = readIndexSupplier;
+    }
+
+    /**
+     * 获取ReadIndex
+     * @return LEADER确认的ReadIndex
+     */
+    CompletableFuture<Long> readIndex() {
+        synchronized (this) {
+            if (inFlight) {
+                if (null == pending) {
+                    pending = new CompletableFuture<>();
+                }
+                return pending;
+            }
+            inFlight = true;
+        }
+        CompletableFuture<Long> future = new CompletableFuture<>();
+        send(future);
+        return future;
+    }
+
+    private void send(CompletableFuture<Long> future) {
+        CompletableFuture<Long> readIndexFuture;
+        try {
+            readIndexFuture = readIndexSupplier.get();
+        } catch (Throwable t) {
+            readIndexFuture = new CompletableFuture<>();
+            readIndexFuture.completeExceptionally(t);
+        }
+        readIndexFuture.whenComplete((readIndex, throwable) -> {
+            CompletableFuture<Long> next;
+            synchronized (this) {
+                next = pending;
+                pending = null;
+                inFlight = null != next;
+            }
+            if (null != next) {
+                send(next);
+            }
+            if (null != throwable) {
+                future.completeExceptionally(throwable);
+            } else {
+                future.complete(readIndex);
+            }
+        });
+    }
+}
@@ -18,6 +18,7 @@ import io.journalkeeper.core.api.RaftServer;
 import io.journalkeeper.core.api.StateFactory;
 import io.journalkeeper.monitor.MonitorCollector;
 import io.journalkeeper.rpc.RpcAccessPointFactory;
+import io.journalkeeper.rpc.client.AddPullWatchRequest;
 import io.journalkeeper.rpc.client.AddPullWatchResponse;
 import io.journalkeeper.rpc.client.CheckLeadershipResponse;
 import io.journalkeeper.rpc.client.CompleteTransactionRequest;
@@ -27,6 +28,8 @@ import io.journalkeeper.rpc.client.ConvertRollResponse;
 import io.journalkeeper.rpc.client.CreateTransactionRequest;
 import io.journalkeeper.rpc.client.CreateTransactionResponse;
 import io.journalkeeper.rpc.client.GetOpeningTransactionsResponse;
+import io.journalkeeper.rpc.client.GetPartitionEntriesRequest;
+import io.journalkeeper.rpc.client.GetPartitionEntriesResponse;
 import io.journalkeeper.rpc.client.GetServerStatusResponse;
 import io.journalkeeper.rpc.client.GetServersResponse;
 import io.journalkeeper.rpc.client.GetSnapshotsResponse;
@@ -164,6 +167,11 @@ public class Server
         return server.querySnapshot(request);
     }
 
+    @Override
+    public CompletableFuture<GetPartitionEntriesResponse> getPartitionEntries(GetPartitionEntriesRequest request) {
+        return server.getPartitionEntries(request);
+    }
+
     @Override
     public CompletableFuture<GetServersResponse> getServers() {
         return server.getServers();
@@ -175,8 +183,8 @@ public class Server
     }
 
     @Override
-    public CompletableFuture<AddPullWatchResponse> addPullWatch() {
-        return server.addPullWatch();
+    public CompletableFuture<AddPullWatchResponse> addPullWatch(AddPullWatchRequest request) {
+        return server.addPullWatch(request);
     }
 
     @Override
@@ -91,6 +91,8 @@ public class ServerMonitorInfoProvider implements MonitoredServer {
             diskMonitorInfo.setPath(monitoredPersistence.getPath());
             diskMonitorInfo.setFree(monitoredPersistence.getFreeSpace());
             diskMonitorInfo.setTotal(monitoredPersistence.getTotalSpace());
+            diskMonitorInfo.setFlushWaitCount(monitoredPersistence.getFlushWaitCount());
+            diskMonitorInfo.setFlushWaitTimeNs(monitoredPersistence.getFlushWaitTimeNs());
         }
         return diskMonitorInfo;
     }
@@ -134,6 +136,7 @@ public class ServerMonitorInfoProvider implements MonitoredServer {
             leaderMonitorInfo.setState(leader.serverState());
             leaderMonitorInfo.setRequestQueueSize(leader.getRequestQueueSize());
             leaderMonitorInfo.setWriteEnabled(leader.isWriteEnabled());
+            leaderMonitorInfo.setWriteStages(leader.getWriteStageLatencies());
             @SuppressWarnings("unchecked")
             List<Leader.ReplicationDestination> replicationDestinations = leader.getFollowers();
             if (null != replicationDestinations) {
@@ -28,6 +28,7 @@ import io.journalkeeper.core.entry.internal.UpdateVotersS1Entry;
 import io.journalkeeper.exceptions.UpdateConfigurationException;
 import io.journalkeeper.core.journal.Journal;
 import io.journalkeeper.core.state.ConfigState;
+import io.journalkeeper.core.transaction.JournalTransactionManager;
 import io.journalkeeper.exceptions.NotLeaderException;
 import io.journalkeeper.persistence.ServerMetadata;
 import io.journalkeeper.rpc.client.CheckLeadershipResponse;
@@ -53,6 +54,7 @@ import io.journalkeeper.rpc.server.InstallSnapshotRequest;
 import io.journalkeeper.rpc.server.InstallSnapshotResponse;
 import io.journalkeeper.rpc.server.RequestVoteRequest;
 import io.journalkeeper.rpc.server.RequestVoteResponse;
+import io.journalkeeper.rpc.server.ServerRpc;
 import io.journalkeeper.rpc.server.ServerRpcAccessPoint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -103,6 +105,10 @@ class Voter extends AbstractServer implements CheckTermInterceptor {
      * 选民状态，在LEADER、FOLLOWER和CANDIDATE之间转换。初始值为FOLLOWER。
      */
     private final VoterStateMachine voterState = new VoterStateMachine();
+    /**
+     * 事务管理器，所有选民都维护事务状态，LEADER负责完成事务
+     */
+    private final JournalTransactionManager journalTransactionManager;
     /**
      * 在当前任期内收到选票的候选人地址（如果没有就为 null）
      */
@@ -125,6 +131,10 @@ class Voter extends AbstractServer implements CheckTermInterceptor {
 
     private Leader leader;
     private Follower follower;
+    /**
+     * FOLLOWER处理强一致查询时，合并向LEADER发出的ReadIndex请求
+     */
+    private final ReadIndexBatcher readIndexBatcher = new ReadIndexBatcher(this::requestReadIndex);
     // 下次发起选举的时间
     private long nextElectionTime = 0L;
 
@@ -139,6 +149,9 @@ class Voter extends AbstractServer implements CheckTermInterceptor {
         this.config = toConfig(properties);
 
         state.addInterceptor(InternalEntryType.TYPE_UPDATE_VOTERS_S1, this::applyUpdateVotersInternalEntry);
+        this.journalTransactionManager = new JournalTransactionManager(journal, state, this, scheduledExecutor,
+                config.getTransactionTimeoutMs(), metadataPersistence, transactionCheckpointFile());
+        state.addInterceptor(journalTransactionManager::applyEntry);
 
         electionTimeoutMs = config.getElectionTimeoutMs() + randomInterval(config.getElectionTimeoutMs());
     }
@@ -156,6 +169,12 @@ class Voter extends AbstractServer implements CheckTermInterceptor {
         }
     }
 
+    @Override
+    protected long maxCompactionIndex() {
+        // 保留未完成事务的日志
+        return journalTransactionManager.maxCompactionIndex();
+    }
+
     private Config toConfig(Properties properties) {
         Config config = new Config();
         config.setElectionTimeoutMs(Long.parseLong(
@@ -183,6 +202,26 @@ class Voter extends AbstractServer implements CheckTermInterceptor {
                 properties.getProperty(
                         Config.REPLICATION_BATCH_SIZE_KEY,
                         String.valueOf(Config.DEFAULT_REPLICATION_BATCH_SIZE))));
+        config.setReplicationPipelineWindow(Integer.parseInt(
+                properties.getProperty(
+                        Config.REPLICATION_PIPELINE_WINDOW_KEY,
+                        String.valueOf(Config.DEFAULT_REPLICATION_PIPELINE_WINDOW))));
+        config.setGroupCommitMaxRequests(Integer.parseInt(
+                properties.getProperty(
+                        Config.GROUP_COMMIT_MAX_REQUESTS_KEY,
+                        String.valueOf(Config.DEFAULT_GROUP_COMMIT_MAX_REQUESTS))));
+        config.setGroupCommitMaxBytes(Long.parseLong(
+                properties.getProperty(
+                        Config.GROUP_COMMIT_MAX_BYTES_KEY,
+                        String.valueOf(Config.DEFAULT_GROUP_COMMIT_MAX_BYTES))));
+        config.setWriteTraceSampleRate(Integer.parseInt(
+                properties.getProperty(
+                        Config.WRITE_TRACE_SAMPLE_RATE_KEY,
+                        String.valueOf(Config.DEFAULT_WRITE_TRACE_SAMPLE_RATE))));
+        config.setSlowWriteThresholdMs(Long.parseLong(
+                properties.getProperty(
+                        Config.SLOW_WRITE_THRESHOLD_MS_KEY,
+                        String.valueOf(Config.DEFAULT_SLOW_WRITE_THRESHOLD_MS))));
         config.setCacheRequests(Integer.parseInt(
                 properties.getProperty(
                         Config.CACHE_REQUESTS_KEY,
@@ -403,10 +442,12 @@ class Voter extends AbstractServer implements CheckTermInterceptor {
 
             this.leader = new Leader(journal, state, snapshots, currentTerm.get(),
                     uri, config.getCacheRequests(), config.getHeartbeatIntervalMs(), config.getRpcTimeoutMs(),
-                    config.getReplicationBatchSize(),
+                    config.getReplicationBatchSize(), config.getReplicationPipelineWindow(), getSnapshotTransferWindow(),
+                    config.getGroupCommitMaxRequests(), config.getGroupCommitMaxBytes(),
+                    config.getWriteTraceSampleRate(), config.getSlowWriteThresholdMs(),
                     config.getSnapshotIntervalSec(), threads,
-                    this, this, scheduledExecutor, voterConfigManager, this,
-                    this.journalEntryParser, config.getTransactionTimeoutMs(), snapshots);
+                    this, scheduledExecutor, voterConfigManager, this,
+                    this.journalEntryParser, journalTransactionManager, snapshots);
             leader.start();
             this.leaderUri = this.uri;
 
@@ -635,11 +676,27 @@ class Voter extends AbstractServer implements CheckTermInterceptor {
         }
     }
 
+    /**
+     * LEADER确认自己仍然有效后直接查询状态机；
+     * FOLLOWER先向LEADER获取ReadIndex，等状态机执行到ReadIndex之后在本地查询，
+     * 这样强一致查询可以分散到所有选民节点上。
+     */
     @Override
     public CompletableFuture<QueryStateResponse> queryClusterState(QueryStateRequest request) {
+        if (voterState() == VoterState.FOLLOWER) {
+            return readIndexBatcher.readIndex()
+                    .thenCompose(readIndex -> queryServerState(new QueryStateRequest(request.getQuery(), readIndex)))
+                    .exceptionally(exception -> {
+                        try {
+                            throw exception instanceof CompletionException ? exception.getCause() : exception;
+                        } catch (Throwable t) {
+                            return new QueryStateResponse(t);
+                        }
+                    });
+        }
         return waitLeadership()
-                .thenApplyAsync(aVoid -> state.query(request.getQuery(), journal).getResult(), asyncExecutor)
-                .thenApply(QueryStateResponse::new)
+                .thenComposeAsync(aVoid -> state.queryAsync(request.getQuery(), journal), asyncExecutor)
+                .thenApply(queryResult -> new QueryStateResponse(queryResult.getResult()))
                 .exceptionally(exception -> {
                     try {
                         throw exception instanceof CompletionException ? exception.getCause() : exception;
@@ -685,6 +742,31 @@ class Voter extends AbstractServer implements CheckTermInterceptor {
                 });
     }
 
+    /**
+     * 向LEADER查询ReadIndex，LEADER确认自己仍然有效后返回状态机已执行的位置，
+     * 所有已经响应给客户端的更新都不大于这个位置。
+     */
+    private CompletableFuture<Long> requestReadIndex() {
+        URI finalLeaderUri = leaderUri;
+        if (voterState() != VoterState.FOLLOWER || null == finalLeaderUri) {
+            CompletableFuture<Long> future = new CompletableFuture<>();
+            future.completeExceptionally(new NotLeaderException(finalLeaderUri));
+            return future;
+        }
+        return getServerRpc(finalLeaderUri)
+                .thenCompose(ServerRpc::lastApplied)
+                .thenApply(response -> {
+                    switch (response.getStatusCode()) {
+                        case SUCCESS:
+                            return response.getLastApplied();
+                        case NOT_LEADER:
+                            throw new NotLeaderException(response.getLeader());
+                        default:
+                            throw new IllegalStateException(response.errorString());
+                    }
+                });
+    }
+
     private CompletableFuture<Void> waitLeadership() {
         Leader finalLeader = leader;
         if (isLeaderAvailable(finalLeader)) {
@@ -822,8 +904,8 @@ class Voter extends AbstractServer implements CheckTermInterceptor {
     @Override
     public CompletableFuture<GetSnapshotsResponse> getSnapshots() {
         if (voterState.getState() == VoterState.LEADER && leader != null) {
-            return CompletableFuture.completedFuture(
-                    snapshots.values()
+            return waitForPendingSnapshots()
+                    .thenApply(v -> snapshots.values()
                             .stream()
                             .map((snapshot) ->
                                     new SnapshotEntry(snapshot.lastApplied(), snapshot.timestamp())).collect(Collectors.toList()))
@@ -846,6 +928,7 @@ class Voter extends AbstractServer implements CheckTermInterceptor {
 
     @Override
     public void doStart() {
+        journalTransactionManager.start();
         if (isSingleNodeCluster()) {
             convertToPreVoting();
             convertToCandidate();
@@ -880,6 +963,7 @@ class Voter extends AbstractServer implements CheckTermInterceptor {
             if (null != follower) {
                 follower.stop();
             }
+            journalTransactionManager.stop();
         } catch (Throwable t) {
             t.printStackTrace();
             logger.warn("Exception, {}: ", voterInfo(), t);
@@ -888,11 +972,11 @@ class Voter extends AbstractServer implements CheckTermInterceptor {
     }
 
     @Override
-    protected void afterStateChanged(byte[] updateResult) {
-        super.afterStateChanged(updateResult);
+    protected void afterStateChanged(long lastApplied, byte[] updateResult) {
+        super.afterStateChanged(lastApplied, updateResult);
         if (null != leader) {
             try {
-                leader.callback(state.lastApplied(), updateResult);
+                leader.callback(lastApplied, updateResult);
             } catch (Throwable e) {
                 logger.warn("Callback exception! {}", voterInfo(), e);
             }
@@ -1034,6 +1118,13 @@ class Voter extends AbstractServer implements CheckTermInterceptor {
         public final static long DEFAULT_HEARTBEAT_INTERVAL_MS = 100L;
         public final static long DEFAULT_ELECTION_TIMEOUT_MS = 300L;
         public final static int DEFAULT_REPLICATION_BATCH_SIZE = 128;
+        public final static int DEFAULT_REPLICATION_PIPELINE_WINDOW = 1;
+        public final static int DEFAULT_GROUP_COMMIT_MAX_REQUESTS = 1024;
+        public final static long DEFAULT_GROUP_COMMIT_MAX_BYTES = 4L * 1024 * 1024;
+        // 每N个写入请求跟踪一个，统计各阶段耗时，0为不跟踪
+        public final static int DEFAULT_WRITE_TRACE_SAMPLE_RATE = 1000;
+        // 被跟踪的写入请求总耗时超过这个值时打印各阶段的耗时，0为不打印
+        public final static long DEFAULT_SLOW_WRITE_THRESHOLD_MS = 0L;
         public final static int DEFAULT_CACHE_REQUESTS = 1024;
         public final static long DEFAULT_TRANSACTION_TIMEOUT_MS = 10L * 60 * 1000;
         public final static int DEFAULT_PRINT_STATE_INTERVAL_SEC = 0;
@@ -1042,6 +1133,11 @@ class Voter extends AbstractServer implements CheckTermInterceptor {
         public final static String HEARTBEAT_INTERVAL_KEY = "heartbeat_interval_ms";
         public final static String ELECTION_TIMEOUT_KEY = "election_timeout_ms";
         public final static String REPLICATION_BATCH_SIZE_KEY = "replication_batch_size";
+        public final static String REPLICATION_PIPELINE_WINDOW_KEY = "replication_pipeline_window";
+        public final static String GROUP_COMMIT_MAX_REQUESTS_KEY = "group_commit_max_requests";
+        public final static String GROUP_COMMIT_MAX_BYTES_KEY = "group_commit_max_bytes";
+        public final static String WRITE_TRACE_SAMPLE_RATE_KEY = "write_trace_sample_rate";
+        public final static String SLOW_WRITE_THRESHOLD_MS_KEY = "slow_write_threshold_ms";
         public final static String CACHE_REQUESTS_KEY = "cache_requests";
         public final static String TRANSACTION_TIMEOUT_MS_KEY = "transaction_timeout_ms";
         public final static String PRINT_STATE_INTERVAL_SEC_KEY = "print_state_interval_sec";
@@ -1050,6 +1146,11 @@ class Voter extends AbstractServer implements CheckTermInterceptor {
         private long heartbeatIntervalMs = DEFAULT_HEARTBEAT_INTERVAL_MS;
         private long electionTimeoutMs = DEFAULT_ELECTION_TIMEOUT_MS;  // 最小选举超时
         private int replicationBatchSize = DEFAULT_REPLICATION_BATCH_SIZE;
+        private int replicationPipelineWindow = DEFAULT_REPLICATION_PIPELINE_WINDOW;
+        private int groupCommitMaxRequests = DEFAULT_GROUP_COMMIT_MAX_REQUESTS;
+        private long groupCommitMaxBytes = DEFAULT_GROUP_COMMIT_MAX_BYTES;
+        private int writeTraceSampleRate = DEFAULT_WRITE_TRACE_SAMPLE_RATE;
+        private long slowWriteThresholdMs = DEFAULT_SLOW_WRITE_THRESHOLD_MS;
         private int cacheRequests = DEFAULT_CACHE_REQUESTS;
         private long transactionTimeoutMs = DEFAULT_TRANSACTION_TIMEOUT_MS;
         private int printStateIntervalSec = DEFAULT_PRINT_STATE_INTERVAL_SEC;
@@ -1062,6 +1163,46 @@ class Voter extends AbstractServer implements CheckTermInterceptor {
             this.replicationBatchSize = replicationBatchSize;
         }
 
+        public int getReplicationPipelineWindow() {
+            return replicationPipelineWindow;
+        }
+
+        public void setReplicationPipelineWindow(int replicationPipelineWindow) {
+            this.replicationPipelineWindow = replicationPipelineWindow;
+        }
+
+        public int getGroupCommitMaxRequests() {
+            return groupCommitMaxRequests;
+        }
+
+        public void setGroupCommitMaxRequests(int groupCommitMaxRequests) {
+            this.groupCommitMaxRequests = groupCommitMaxRequests;
+        }
+
+        public long getGroupCommitMaxBytes() {
+            return groupCommitMaxBytes;
+        }
+
+        public void setGroupCommitMaxBytes(long groupCommitMaxBytes) {
+            this.groupCommitMaxBytes = groupCommitMaxBytes;
+        }
+
+        public int getWriteTraceSampleRate() {
+            return writeTraceSampleRate;
+        }
+
+        public void setWriteTraceSampleRate(int writeTraceSampleRate) {
+            this.writeTraceSampleRate = writeTraceSampleRate;
+        }
+
+        public long getSlowWriteThresholdMs() {
+            return slowWriteThresholdMs;
+        }
+
+        public void setSlowWriteThresholdMs(long slowWriteThresholdMs) {
+            this.slowWriteThresholdMs = slowWriteThresholdMs;
+        }
+
 
         public long getHeartbeatIntervalMs() {
             return heartbeatIntervalMs;
@@ -13,6 +13,7 @@
  */
 package io.journalkeeper.core.server;
 
+import io.journalkeeper.core.api.BytesFragment;
 import io.journalkeeper.core.api.JournalEntry;
 import io.journalkeeper.core.api.JournalEntryParser;
 import io.journalkeeper.core.api.ResponseConfig;
@@ -132,10 +133,10 @@ public class VoterConfigManager {
         for (byte[] rawEntry : entries) {
             JournalEntry entryHeader = journalEntryParser.parseHeader(rawEntry);
             if (entryHeader.getPartition() == INTERNAL_PARTITION) {
-                int headerLength = journalEntryParser.headerLength();
-                InternalEntryType entryType = InternalEntriesSerializeSupport.parseEntryType(rawEntry, headerLength);
+                BytesFragment payload = journalEntryParser.parse(rawEntry).getPayload();
+                InternalEntryType entryType = InternalEntriesSerializeSupport.parseEntryType(rawEntry, payload.getOffset());
                 if (entryType == TYPE_UPDATE_VOTERS_S1) {
-                    UpdateVotersS1Entry updateVotersS1Entry = InternalEntriesSerializeSupport.parse(rawEntry, headerLength, rawEntry.length - headerLength);
+                    UpdateVotersS1Entry updateVotersS1Entry = InternalEntriesSerializeSupport.parse(rawEntry, payload.getOffset(), payload.getLength());
 
                     votersConfigStateMachine.toJointConsensus(updateVotersS1Entry.getConfigOld(), updateVotersS1Entry.getConfigNew(),
                             () -> null);
@@ -0,0 +1,262 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.core.server;
+
+import io.journalkeeper.core.api.ResponseConfig;
+import io.journalkeeper.metric.JMetric;
+import io.journalkeeper.metric.JMetricReport;
+import io.journalkeeper.monitor.LatencyMonitorInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.journalkeeper.core.server.MetricNames.METRIC_WRITE_STAGE_APPEND;
+import static io.journalkeeper.core.server.MetricNames.METRIC_WRITE_STAGE_APPLY;
+import static io.journalkeeper.core.server.MetricNames.METRIC_WRITE_STAGE_FLUSH;
+import static io.journalkeeper.core.server.MetricNames.METRIC_WRITE_STAGE_QUEUE;
+import static io.journalkeeper.core.server.MetricNames.METRIC_WRITE_STAGE_REPLICATE;
+import static io.journalkeeper.core.server.MetricNames.METRIC_WRITE_STAGE_RESPOND;
+
+/**
+ * LEADER上写入请求的分阶段耗时统计。
+ *
+ * 每{@link #sampleRate}个写入请求抽样跟踪一个，记录请求依次到达每个阶段的时间，分为：
+ * 排队（收到请求到开始写入日志）、写入（写入本地日志）、复制（写入本地日志到提交）、
+ * 刷盘（写入本地日志到刷盘完成）、执行（提交到状态机执行完成）和
+ * 响应（响应需要等待的最后一个阶段完成到返回响应）。
+ * 每个阶段的耗时分别记录在各自的Metric中，总耗时超过{@link #slowThresholdNs}的请求打印各阶段的耗时。
+ *
+ * 提交、刷盘和执行分别由不同的线程推进，每个阶段用一个按照日志位置排序的队列保存还没到达这个阶段的请求，
+ * 位置推进后从队列头部取出已经到达的请求，记录到达时间。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+class WriteTracer {
+    private static final Logger logger = LoggerFactory.getLogger(WriteTracer.class);
+    private static final String[] STAGE_METRIC_NAMES = {
+            METRIC_WRITE_STAGE_QUEUE, METRIC_WRITE_STAGE_APPEND, METRIC_WRITE_STAGE_REPLICATE,
+            METRIC_WRITE_STAGE_FLUSH, METRIC_WRITE_STAGE_APPLY, METRIC_WRITE_STAGE_RESPOND
+    };
+    private final MetricProvider metricProvider;
+    private final JMetric queueMetric, appendMetric, replicateMetric, flushMetric, applyMetric, respondMetric;
+    private final JMetric[] stageMetrics;
+    private final int sampleRate;
+    private final long slowThresholdNs;
+    private final boolean enabled;
+    private final Queue<WriteTrace> pendingCommit = new ConcurrentLinkedQueue<>();
+    private final Queue<WriteTrace> pendingFlush = new ConcurrentLinkedQueue<>();
+    private final Queue<WriteTrace> pendingApply = new ConcurrentLinkedQueue<>();
+    // 只在写入日志的线程中访问
+    private long sampleCounter = 0L;
+
+    /**
+     * @param metricProvider 提供各阶段的Metric
+     * @param sampleRate 每sampleRate个写入请求跟踪一个，小于等于0时不跟踪。
+     * @param slowThresholdMs 总耗时超过这个值的请求打印各阶段的耗时，小于等于0时不打印。
+     */
+    WriteTracer(MetricProvider metricProvider, int sampleRate, long slowThresholdMs) {
+        this.metricProvider = metricProvider;
+        this.sampleRate = sampleRate;
+        this.slowThresholdNs = slowThresholdMs > 0 ? TimeUnit.MILLISECONDS.toNanos(slowThresholdMs) : 0L;
+        this.enabled = sampleRate > 0 && (metricProvider.isMetricEnabled() || slowThresholdNs > 0);
+        this.queueMetric = metricProvider.getMetric(METRIC_WRITE_STAGE_QUEUE);
+        this.appendMetric = metricProvider.getMetric(METRIC_WRITE_STAGE_APPEND);
+        this.replicateMetric = metricProvider.getMetric(METRIC_WRITE_STAGE_REPLICATE);
+        this.flushMetric = metricProvider.getMetric(METRIC_WRITE_STAGE_FLUSH);
+        this.applyMetric = metricProvider.getMetric(METRIC_WRITE_STAGE_APPLY);
+        this.respondMetric = metricProvider.getMetric(METRIC_WRITE_STAGE_RESPOND);
+        this.stageMetrics = new JMetric[] {queueMetric, appendMetric, replicateMetric, flushMetric, applyMetric, respondMetric};
+    }
+
+    /**
+     * 请求的日志写入本地之后调用，只能在写入日志的线程中调用。
+     * 调用之后需要调用{@link #onProgress(long, long, long)}，补上写入之后、开始跟踪之前各阶段的推进。
+     * @param receivedNs 收到请求的时间
+     * @param appendStartNs 开始写入日志的时间
+     * @param appendedNs 写入日志完成的时间
+     * @param position 请求最后一条日志之后的位置，即{@link io.journalkeeper.core.journal.Journal#append}的返回值
+     * @param responseConfig 请求的响应级别
+     * @param responseFuture 请求的响应
+     */
+    void onAppended(long receivedNs, long appendStartNs, long appendedNs, long position,
+                    ResponseConfig responseConfig, CompletableFuture<?> responseFuture) {
+        if (!enabled || ++sampleCounter % sampleRate != 0) {
+            return;
+        }
+        WriteTrace trace = new WriteTrace(receivedNs, appendStartNs, appendedNs, position, responseConfig);
+        pendingCommit.add(trace);
+        pendingFlush.add(trace);
+        pendingApply.add(trace);
+        responseFuture.whenComplete((response, t) -> {
+            trace.respondedNs = System.nanoTime();
+            arrive(trace);
+        });
+    }
+
+    void onProgress(long commitIndex, long flushIndex, long lastApplied) {
+        onCommitted(commitIndex);
+        onFlushed(flushIndex);
+        onApplied(lastApplied);
+    }
+
+    void onCommitted(long commitIndex) {
+        WriteTrace trace;
+        while (null != (trace = poll(pendingCommit, commitIndex))) {
+            trace.committedNs = System.nanoTime();
+            arrive(trace);
+        }
+    }
+
+    void onFlushed(long flushIndex) {
+        WriteTrace trace;
+        while (null != (trace = poll(pendingFlush, flushIndex))) {
+            trace.flushedNs = System.nanoTime();
+            arrive(trace);
+        }
+    }
+
+    void onApplied(long lastApplied) {
+        WriteTrace trace;
+        while (null != (trace = poll(pendingApply, lastApplied))) {
+            trace.appliedNs = System.nanoTime();
+            arrive(trace);
+        }
+    }
+
+    /**
+     * 取出队列头部已经到达位置index的请求。
+     * 写入线程补记进度时，可能和推进这个阶段的线程同时取同一个请求，用remove保证只有一个线程能取到。
+     */
+    private WriteTrace poll(Queue<WriteTrace> queue, long index) {
+        WriteTrace trace;
+        while (null != (trace = queue.peek()) && trace.position <= index) {
+            if (queue.remove(trace)) {
+                return trace;
+            }
+        }
+        return null;
+    }
+
+    private void arrive(WriteTrace trace) {
+        if (trace.pendingStages.decrementAndGet() == 0) {
+            complete(trace);
+        }
+    }
+
+    private void complete(WriteTrace trace) {
+        long queueNs = trace.appendStartNs - trace.receivedNs;
+        long appendNs = trace.appendedNs - trace.appendStartNs;
+        long replicateNs = trace.committedNs - trace.appendedNs;
+        long flushNs = trace.flushedNs - trace.appendedNs;
+        long applyNs = Math.max(0L, trace.appliedNs - trace.committedNs);
+        long respondNs = -1L;
+        switch (trace.responseConfig) {
+            case REPLICATION:
+                respondNs = trace.respondedNs - trace.appliedNs;
+                break;
+            case PERSISTENCE:
+                respondNs = trace.respondedNs - trace.flushedNs;
+                break;
+            case ALL:
+                respondNs = trace.respondedNs - Math.max(trace.appliedNs, trace.flushedNs);
+                break;
+            default:
+                // RECEIVE 在写入之前就已经返回响应了
+        }
+        queueMetric.mark(queueNs, 0L);
+        appendMetric.mark(appendNs, 0L);
+        replicateMetric.mark(replicateNs, 0L);
+        flushMetric.mark(flushNs, 0L);
+        applyMetric.mark(applyNs, 0L);
+        if (respondNs >= 0L) {
+            respondMetric.mark(respondNs, 0L);
+        }
+
+        long totalNs = trace.respondedNs - trace.receivedNs;
+        if (slowThresholdNs > 0 && totalNs > slowThresholdNs) {
+            logger.warn("Slow write request, position: {}, responseConfig: {}, total: {}us, " +
+                            "queue: {}us, append: {}us, replicate: {}us, flush: {}us, apply: {}us, respond: {}us.",
+                    trace.position, trace.responseConfig, toMicros(totalNs),
+                    toMicros(queueNs), toMicros(appendNs), toMicros(replicateNs),
+                    toMicros(flushNs), toMicros(applyNs), toMicros(respondNs));
+        }
+    }
+
+    private static long toMicros(long ns) {
+        return ns < 0 ? -1L : TimeUnit.NANOSECONDS.toMicros(ns);
+    }
+
+    /**
+     * 各阶段的时延，未开启Metric时返回空。
+     */
+    Collection<LatencyMonitorInfo> getStageLatencies() {
+        if (!enabled || !metricProvider.isMetricEnabled()) {
+            return Collections.emptyList();
+        }
+        List<LatencyMonitorInfo> latencies = new ArrayList<>(stageMetrics.length);
+        for (JMetric metric : stageMetrics) {
+            JMetricReport report = metric.get();
+            double[] latency = report.latency();
+            LatencyMonitorInfo info = new LatencyMonitorInfo();
+            info.setName(metric.name());
+            info.setRequests(report.requestsTotal());
+            info.setAvg((long) latency[JMetricReport.TP_AVG]);
+            info.setTp50((long) latency[JMetricReport.TP_50]);
+            info.setTp90((long) latency[JMetricReport.TP_90]);
+            info.setTp99((long) latency[JMetricReport.TP_99]);
+            info.setTp999((long) latency[JMetricReport.TP_999]);
+            info.setMax((long) latency[JMetricReport.TP_MAX]);
+            latencies.add(info);
+        }
+        return latencies;
+    }
+
+    void removeMetrics() {
+        for (String name : STAGE_METRIC_NAMES) {
+            metricProvider.removeMetric(name);
+        }
+    }
+
+    private static class WriteTrace {
+        private final long receivedNs;
+        private final long appendStartNs;
+        private final long appendedNs;
+        private final long position;
+        private final ResponseConfig responseConfig;
+        // 还没到达的阶段：提交、刷盘、执行和响应
+        private final AtomicInteger pendingStages = new AtomicInteger(4);
+        private volatile long committedNs;
+        private volatile long flushedNs;
+        private volatile long appliedNs;
+        private volatile long respondedNs;
+
+        private WriteTrace(long receivedNs, long appendStartNs, long appendedNs, long position, ResponseConfig responseConfig) {
+            this.receivedNs = receivedNs;
+            this.appendStartNs = appendStartNs;
+            this.appendedNs = appendedNs;
+            this.position = position;
+            this.responseConfig = responseConfig;
+        }
+    }
+}
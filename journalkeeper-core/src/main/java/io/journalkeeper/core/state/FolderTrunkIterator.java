@@ -40,21 +40,24 @@ package io.journalkeeper.core.state;
 
 import io.journalkeeper.base.ReplicableIterator;
 
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.stream.Collectors;
 
 /**
+ * 将目录中的文件切分成数据块依次读出。
+ * 正在读取的文件保持打开，按位置读取，读完后关闭。
  * @author LiYue
  * Date: 2019/11/21
  */
-public class FolderTrunkIterator implements ReplicableIterator {
+public class FolderTrunkIterator implements ReplicableIterator, Closeable {
     private final Path root;
     private final List<Path> files;
     private final int maxTrunkSize;
@@ -63,6 +66,8 @@ public class FolderTrunkIterator implements ReplicableIterator {
     private int fileIndex = 0;
     private long offsetOfCurrentFile = 0;
     private long offset;
+    // 当前正在读取的文件
+    private FileChannel fileChannel = null;
 
     // 标记该文件是目录的魔法值
     public static final byte [] DIRECTORY_MAGIC_CODE = "Panda&XiGua".getBytes(StandardCharsets.UTF_8);
@@ -128,17 +133,23 @@ public class FolderTrunkIterator implements ReplicableIterator {
         if(Files.isDirectory(file)) {
             buffer.put(DIRECTORY_MAGIC_CODE);
         } else {
-            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r"); FileChannel fc = raf.getChannel()) {
-                fc.position(offsetOfCurrentFile);
-                while (buffer.hasRemaining()) {
-                    fc.read(buffer);
+            if (null == fileChannel) {
+                fileChannel = FileChannel.open(file, StandardOpenOption.READ);
+            }
+            long position = offsetOfCurrentFile;
+            while (buffer.hasRemaining()) {
+                int read = fileChannel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException(String.format("Unexpected end of file: %s, position: %d.", file, position));
                 }
+                position += read;
             }
         }
 
         offsetOfCurrentFile += sizeToRead;
 
         if (offsetOfCurrentFile == fileSize) {
+            closeFileChannel();
             fileIndex++;
             offsetOfCurrentFile = 0;
         }
@@ -150,4 +161,16 @@ public class FolderTrunkIterator implements ReplicableIterator {
     public boolean hasMoreTrunks() {
         return fileIndex < files.size();
     }
+
+    private void closeFileChannel() throws IOException {
+        if (null != fileChannel) {
+            fileChannel.close();
+            fileChannel = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeFileChannel();
+    }
 }
@@ -40,6 +40,8 @@ package io.journalkeeper.core.state;
 
 import io.journalkeeper.base.Replicable;
 import io.journalkeeper.base.ReplicableIterator;
+import io.journalkeeper.core.api.BatchState;
+import io.journalkeeper.core.api.CheckpointState;
 import io.journalkeeper.core.api.EntryFuture;
 import io.journalkeeper.core.api.JournalEntry;
 import io.journalkeeper.core.api.RaftJournal;
@@ -51,6 +53,7 @@ import io.journalkeeper.core.entry.internal.InternalEntryType;
 import io.journalkeeper.core.entry.internal.ScalePartitionsEntry;
 import io.journalkeeper.core.entry.internal.SetPreferredLeaderEntry;
 import io.journalkeeper.core.journal.JournalSnapshot;
+import io.journalkeeper.exceptions.StateExecutionException;
 import io.journalkeeper.exceptions.StateRecoverException;
 import io.journalkeeper.persistence.MetadataPersistence;
 import io.journalkeeper.utils.files.FileUtils;
@@ -66,6 +69,7 @@ import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -73,10 +77,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.StampedLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static io.journalkeeper.core.api.RaftJournal.INTERNAL_PARTITION;
 import static io.journalkeeper.core.api.RaftJournal.RESERVED_PARTITIONS_START;
@@ -236,29 +243,89 @@ public class JournalKeeperState implements Flushable {
     }
 
     public StateResult applyEntry(JournalEntry entryHeader, EntryFuture entryFuture, RaftJournal journal) {
-        int partition = entryHeader.getPartition();
-        int batchSize = entryHeader.getBatchSize();
-
-        StateResult result = new StateResult(null);
         long stamp = stateLock.writeLock();
         try {
-            if (partition < RESERVED_PARTITIONS_START) {
-                result = userState.execute(entryFuture, partition, lastApplied(), batchSize, journal);
-            } else if (partition == INTERNAL_PARTITION) {
-                applyInternalEntry(entryFuture.get());
-            } else {
+            return applyEntryUnsafe(entryHeader, entryFuture, journal);
+        }
+        finally {
+            stateLock.unlockWrite(stamp);
+        }
+    }
 
-                for (ApplyReservedEntryInterceptor reservedEntryInterceptor : reservedEntryInterceptors) {
-                    reservedEntryInterceptor.applyReservedEntry(entryHeader, entryFuture, lastApplied());
+    /**
+     * 批量执行一段连续的entry，只获取一次状态锁。
+     * 连续的用户分区entry一次交给{@link BatchState}执行，其它entry逐条执行。
+     * 每执行完一段，这段的执行结果就加入results，中途抛出异常时，
+     * results中是已经执行成功、lastApplied已经推进的entry的执行结果，调用方仍然需要处理这些结果。
+     * @param entryHeaders 从lastApplied开始的连续的entry
+     * @param entryFutures 用于读取entry内容，与entryHeaders一一对应
+     * @param journal 当前的journal
+     * @param results 执行结果，与entryHeaders的前results.size()条一一对应
+     */
+    public void applyEntries(List<JournalEntry> entryHeaders, List<EntryFuture> entryFutures, RaftJournal journal, List<StateResult> results) {
+        long stamp = stateLock.writeLock();
+        try {
+            int i = 0;
+            while (i < entryHeaders.size()) {
+                int end = i;
+                while (end < entryHeaders.size() && entryHeaders.get(end).getPartition() < RESERVED_PARTITIONS_START) {
+                    end++;
+                }
+                if (end > i) {
+                    List<JournalEntry> userEntries = entryHeaders.subList(i, end);
+                    List<StateResult> userResults = ((BatchState) userState).execute(userEntries, entryFutures.subList(i, end), lastApplied(), journal);
+                    if (null == userResults || userResults.size() != userEntries.size()) {
+                        throw new StateExecutionException(String.format(
+                                "Batch state returns %s results for %d entries!",
+                                null == userResults ? "null" : String.valueOf(userResults.size()), userEntries.size()));
+                    }
+                    for (int j = 0; j < userEntries.size(); j++) {
+                        StateResult result = userResults.get(j);
+                        if (null == result) {
+                            result = new StateResult(null);
+                        }
+                        internalState.setLastIncludedTerm(userEntries.get(j).getTerm());
+                        internalState.next();
+                        result.setLastApplied(lastApplied());
+                        results.add(result);
+                    }
+                    i = end;
+                } else {
+                    results.add(applyEntryUnsafe(entryHeaders.get(i), entryFutures.get(i), journal));
+                    i++;
                 }
             }
-            internalState.setLastIncludedTerm(entryHeader.getTerm());
-            internalState.next();
-            result.setLastApplied(lastApplied());
-        }
-        finally {
+        } finally {
             stateLock.unlockWrite(stamp);
         }
+    }
+
+    /**
+     * 用户状态机是否支持批量执行
+     * @return 用户状态机实现了{@link BatchState}时返回true
+     */
+    public boolean isBatchApplySupported() {
+        return userState instanceof BatchState;
+    }
+
+    private StateResult applyEntryUnsafe(JournalEntry entryHeader, EntryFuture entryFuture, RaftJournal journal) {
+        int partition = entryHeader.getPartition();
+        int batchSize = entryHeader.getBatchSize();
+
+        StateResult result = new StateResult(null);
+        if (partition < RESERVED_PARTITIONS_START) {
+            result = userState.execute(entryFuture, partition, lastApplied(), batchSize, journal);
+        } else if (partition == INTERNAL_PARTITION) {
+            applyInternalEntry(entryFuture.get());
+        } else {
+
+            for (ApplyReservedEntryInterceptor reservedEntryInterceptor : reservedEntryInterceptors) {
+                reservedEntryInterceptor.applyReservedEntry(entryHeader, entryFuture, lastApplied());
+            }
+        }
+        internalState.setLastIncludedTerm(entryHeader.getTerm());
+        internalState.next();
+        result.setLastApplied(lastApplied());
         return result;
     }
 
@@ -328,17 +395,63 @@ public class JournalKeeperState implements Flushable {
         return result;
     }
 
-    public void dump(Path destPath) throws IOException {
+    /**
+     * 异步查询，见{@link State#queryAsync(byte[], RaftJournal)}。
+     * 挂起的查询完成时，返回完成时的lastApplied。
+     * @param query 查询条件
+     * @param journal 当前的journal
+     * @return 查询结果
+     */
+    public CompletableFuture<StateQueryResult> queryAsync(byte[] query, RaftJournal journal) {
+        CompletableFuture<byte[]> future;
+        long stamp = stateLock.readLock();
+        try {
+            future = userState.queryAsync(query, journal);
+        } finally {
+            stateLock.unlockRead(stamp);
+        }
+        return future.thenApply(result -> new StateQueryResult(result, lastApplied()));
+    }
+
+    /**
+     * 把状态复制到destPath。
+     * 如果用户状态机实现了{@link CheckpointState}，用户状态通过检查点生成，只复制其它状态文件。
+     * @param destPath 目标目录
+     * @return 复制的字节数，不包括检查点中的文件
+     * @throws IOException 发生IO异常时抛出
+     */
+    public long dump(Path destPath) throws IOException {
         flush();
         try {
             stateFilesLock.readLock().lock();
-
-            FileUtils.dump(path, destPath);
+            State userState = this.userState;
+            if (userState instanceof CheckpointState) {
+                long copiedBytes = 0L;
+                Files.createDirectories(destPath);
+                try (Stream<Path> files = Files.list(path)) {
+                    for (Path file : files.collect(Collectors.toList())) {
+                        if (!file.getFileName().toString().equals(USER_STATE_PATH)) {
+                            copiedBytes += Files.isDirectory(file) ?
+                                    FileUtils.dump(file, destPath.resolve(file.getFileName())) :
+                                    copyFile(file, destPath.resolve(file.getFileName()));
+                        }
+                    }
+                }
+                ((CheckpointState) userState).checkpoint(destPath.resolve(USER_STATE_PATH));
+                return copiedBytes;
+            } else {
+                return FileUtils.dump(path, destPath);
+            }
         } finally {
             stateFilesLock.readLock().unlock();
         }
     }
 
+    private long copyFile(Path srcFile, Path destFile) throws IOException {
+        Files.copy(srcFile, destFile);
+        return Files.size(destFile);
+    }
+
     public List<URI> voters() {
         return internalState.getConfigState().voters();
     }
@@ -22,10 +22,13 @@ import io.journalkeeper.core.api.transaction.UUIDTransactionId;
 import io.journalkeeper.exceptions.JournalException;
 import io.journalkeeper.exceptions.TransactionException;
 import io.journalkeeper.core.journal.Journal;
+import io.journalkeeper.core.state.JournalKeeperState;
+import io.journalkeeper.persistence.MetadataPersistence;
 import io.journalkeeper.rpc.client.ClientServerRpc;
 import io.journalkeeper.rpc.client.UpdateClusterStateRequest;
 import io.journalkeeper.utils.state.ServerStateMachine;
 
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Map;
 import java.util.UUID;
@@ -34,6 +37,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 
 /**
+ * 事务管理器，每个选民节点都维护事务状态，只有LEADER负责创建和完成事务。
  * @author LiYue
  * Date: 2019/10/22
  */
@@ -46,10 +50,12 @@ public class JournalTransactionManager extends ServerStateMachine {
     private final Map<UUID, CompletableFuture<Void>> pendingCompleteTransactionFutures = new ConcurrentHashMap<>();
     private final TransactionEntrySerializer transactionEntrySerializer = new TransactionEntrySerializer();
 
-    public JournalTransactionManager(Journal journal, ClientServerRpc server,
-                                     ScheduledExecutorService scheduledExecutor, long transactionTimeoutMs) {
+    public JournalTransactionManager(Journal journal, JournalKeeperState state, ClientServerRpc server,
+                                     ScheduledExecutorService scheduledExecutor, long transactionTimeoutMs,
+                                     MetadataPersistence metadataPersistence, Path checkpointPath) {
         this.server = server;
-        this.transactionState = new JournalTransactionState(journal, transactionTimeoutMs, server, scheduledExecutor);
+        this.transactionState = new JournalTransactionState(journal, state, transactionTimeoutMs, server,
+                scheduledExecutor, metadataPersistence, checkpointPath);
     }
 
     @Override
@@ -64,8 +70,28 @@ public class JournalTransactionManager extends ServerStateMachine {
         super.doStop();
     }
 
+    /**
+     * 成为LEADER之后调用，开始负责完成事务
+     */
+    public void startLeading() {
+        transactionState.startLeading();
+    }
+
+    /**
+     * 不再是LEADER之后调用，等待完成的事务由客户端向新的LEADER查询
+     */
+    public void stopLeading() {
+        transactionState.stopLeading();
+        pendingCompleteTransactionFutures.keySet().forEach(transactionId -> {
+            CompletableFuture<Void> future = pendingCompleteTransactionFutures.remove(transactionId);
+            if (null != future) {
+                future.completeExceptionally(new TransactionException("Leader changed!"));
+            }
+        });
+    }
+
     public CompletableFuture<JournalKeeperTransactionContext> createTransaction(Map<String, String> context) {
-        int partition = transactionState.nextFreePartition();
+        int partition = transactionState.nextPartition();
         UUID transactionId = UUID.randomUUID();
         TransactionEntry entry = new TransactionEntry(transactionId, context);
         final long timestamp = entry.getTimestamp();
@@ -115,15 +141,23 @@ public class JournalTransactionManager extends ServerStateMachine {
         return transactionState.getPartition(transactionId);
     }
 
+    /**
+     * 允许删除的日志的最大位置，删除日志时不能删除这个位置及之后的日志，否则未完成的事务无法提交。
+     * @return 全局索引序号
+     */
+    public long maxCompactionIndex() {
+        return transactionState.maxCompactionIndex();
+    }
+
     public Collection<JournalKeeperTransactionContext> getOpeningTransactions() {
         return transactionState.getOpeningTransactions();
     }
 
-    public void applyEntry(JournalEntry entryHeader, EntryFuture entryFuture) {
+    public void applyEntry(JournalEntry entryHeader, EntryFuture entryFuture, long index) {
         int partition = entryHeader.getPartition();
         if (transactionState.isTransactionPartition(partition)) {
             TransactionEntry transactionEntry = transactionEntrySerializer.parse(entryFuture.get());
-            transactionState.applyEntry(transactionEntry, partition, pendingCompleteTransactionFutures);
+            transactionState.applyEntry(transactionEntry, partition, index, pendingCompleteTransactionFutures);
         }
     }
 }
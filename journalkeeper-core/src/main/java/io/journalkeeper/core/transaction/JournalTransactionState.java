@@ -18,8 +18,10 @@ import io.journalkeeper.core.api.JournalEntryParser;
 import io.journalkeeper.core.api.UpdateRequest;
 import io.journalkeeper.core.api.transaction.JournalKeeperTransactionContext;
 import io.journalkeeper.core.api.transaction.UUIDTransactionId;
-import io.journalkeeper.exceptions.TransactionException;
 import io.journalkeeper.core.journal.Journal;
+import io.journalkeeper.core.state.JournalKeeperState;
+import io.journalkeeper.exceptions.TransactionException;
+import io.journalkeeper.persistence.MetadataPersistence;
 import io.journalkeeper.rpc.client.ClientServerRpc;
 import io.journalkeeper.rpc.client.UpdateClusterStateRequest;
 import io.journalkeeper.rpc.client.UpdateClusterStateResponse;
@@ -27,15 +29,19 @@ import io.journalkeeper.utils.state.ServerStateMachine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.DelayQueue;
 import java.util.concurrent.Delayed;
 import java.util.concurrent.ScheduledExecutorService;
@@ -48,7 +54,19 @@ import static io.journalkeeper.core.transaction.JournalTransactionManager.TRANSA
 import static io.journalkeeper.core.transaction.JournalTransactionManager.TRANSACTION_PARTITION_START;
 
 /**
- * 事务状态，非持久化
+ * 事务状态。
+ *
+ * 每个节点都在内存中维护所有未完成事务的索引：事务的分区、上下文和每条事务日志的全局索引序号，
+ * 提交事务时按照索引直接读取事务日志，不需要扫描事务分区。
+ * 多个事务可以同时写入同一个事务分区，事务分区的数量不再限制同时打开的事务数量。
+ *
+ * 事务索引定期保存检查点{@link TransactionCheckpoint}，启动时从检查点开始重放事务分区的日志恢复事务索引。
+ * 删除旧日志时不能超过{@link #maxCompactionIndex()}，保证未完成事务的日志和检查点之后的日志不被删除。
+ * 只有LEADER负责完成事务、重试和回滚超时的事务。
+ *
+ * 升级：旧版本的LEADER提交事务时扫描整个事务分区，不区分事务，不能处理多个事务共用的事务分区。
+ * 滚动升级时先升级FOLLOWER，最后升级LEADER；如果升级过程中LEADER切换到了新版本的节点，
+ * 在所有节点升级完成之前不要创建新的事务。
  *
  * @author LiYue
  * Date: 2019/10/22
@@ -56,26 +74,47 @@ import static io.journalkeeper.core.transaction.JournalTransactionManager.TRANSA
 class JournalTransactionState extends ServerStateMachine {
     private static final Logger logger = LoggerFactory.getLogger(JournalTransactionState.class);
     private static final long RETRY_COMPLETE_TRANSACTION_INTERVAL_MS = 10000L;
+    private static final long SAVE_CHECKPOINT_INTERVAL_MS = 10000L;
+    private static final int READ_BATCH_SIZE = 1024;
     private final Journal journal;
-    private final Map<Integer /* partition */, TransactionEntryType /* last transaction entry type */> partitionStatusMap;
-    private final Map<UUID /* transaction id */, TransactionState /* transaction state */> openingTransactionMap;
+    private final JournalKeeperState state;
+    private final Map<UUID /* transaction id */, TransactionState /* transaction state */> openingTransactionMap = new ConcurrentHashMap<>();
     private final ClientServerRpc server;
     private final TransactionEntrySerializer transactionEntrySerializer = new TransactionEntrySerializer();
-    private final AtomicInteger nextFreePartition = new AtomicInteger(TRANSACTION_PARTITION_START);
+    private final AtomicInteger nextPartition = new AtomicInteger(0);
     private final DelayQueue<CompleteTransactionRetry> retryCompleteTransactions = new DelayQueue<>();
     private final ScheduledExecutorService scheduledExecutor;
+    private final MetadataPersistence metadataPersistence;
+    private final Path checkpointPath;
     private final long transactionTimeoutMs;
+    // 以下三个变量由this保护
+    /**
+     * 下一条需要写入事务索引的日志的索引序号，小于这个序号的日志已经写入索引
+     */
+    private long nextIndex = 0L;
+    /**
+     * 每个事务分区下一条需要写入事务索引的日志的分区索引序号，和nextIndex一起保存到检查点
+     */
+    private final Map<Integer, Long> nextPartitionIndices = new HashMap<>();
+    private long checkpointIndex = -1L;
+    /**
+     * 当前节点是否是LEADER，只有LEADER负责完成事务
+     */
+    private volatile boolean leader = false;
     private ScheduledFuture retryCompleteTransactionScheduledFuture = null;
     private ScheduledFuture checkOutdatedTransactionsScheduledFuture = null;
+    private ScheduledFuture saveCheckpointScheduledFuture = null;
 
-    JournalTransactionState(Journal journal, long transactionTimeoutMs, ClientServerRpc server, ScheduledExecutorService scheduledExecutor) {
+    JournalTransactionState(Journal journal, JournalKeeperState state, long transactionTimeoutMs, ClientServerRpc server,
+                            ScheduledExecutorService scheduledExecutor, MetadataPersistence metadataPersistence, Path checkpointPath) {
         super(false);
         this.journal = journal;
+        this.state = state;
         this.transactionTimeoutMs = transactionTimeoutMs;
         this.server = server;
         this.scheduledExecutor = scheduledExecutor;
-        this.partitionStatusMap = new HashMap<>(TRANSACTION_PARTITION_COUNT);
-        this.openingTransactionMap = new HashMap<>(TRANSACTION_PARTITION_COUNT);
+        this.metadataPersistence = metadataPersistence;
+        this.checkpointPath = checkpointPath;
     }
 
     @Override
@@ -94,6 +133,12 @@ class JournalTransactionState extends ServerStateMachine {
                 transactionTimeoutMs,
                 TimeUnit.MILLISECONDS
         );
+        saveCheckpointScheduledFuture = scheduledExecutor.scheduleWithFixedDelay(
+                this::saveCheckpoint,
+                SAVE_CHECKPOINT_INTERVAL_MS,
+                SAVE_CHECKPOINT_INTERVAL_MS,
+                TimeUnit.MILLISECONDS
+        );
     }
 
     @Override
@@ -104,116 +149,253 @@ class JournalTransactionState extends ServerStateMachine {
         if (null != checkOutdatedTransactionsScheduledFuture) {
             checkOutdatedTransactionsScheduledFuture.cancel(false);
         }
+        if (null != saveCheckpointScheduledFuture) {
+            saveCheckpointScheduledFuture.cancel(false);
+        }
+        saveCheckpoint();
         super.doStop();
     }
 
-    private void abortOutdatedTransactions() {
-        long currentTimestamp = System.currentTimeMillis();
-        openingTransactionMap.forEach((transactionId, state) -> {
-            int partition = state.getPartition();
-            long i = journal.maxIndex(partition);
-            while (--i >= journal.minIndex(partition)) {
-                JournalEntry journalEntry = journal.readByPartition(partition, i);
-                TransactionEntry transactionEntry = transactionEntrySerializer.parse(journalEntry.getPayload().getBytes());
+    /**
+     * 成为LEADER，开始负责完成事务。已经预提交（TRANSACTION_PRE_COMPLETE）但未完成的事务稍后重试。
+     */
+    void startLeading() {
+        leader = true;
+        openingTransactionMap.forEach((transactionId, transactionState) -> {
+            if (transactionState.isPreCompleted()) {
+                retryCompleteTransactions.put(new CompleteTransactionRetry(transactionId, transactionState.getPartition()));
+            }
+        });
+    }
 
-                if (!transactionId.equals(transactionEntry.getTransactionId())) {
-                    break;
-                }
+    void stopLeading() {
+        leader = false;
+        retryCompleteTransactions.clear();
+    }
 
-                if (transactionEntry.getType() == TransactionEntryType.TRANSACTION_START) {
-                    long transactionCreateTimestamp = transactionEntry.getTimestamp();
-                    if (transactionCreateTimestamp + transactionTimeoutMs < currentTimestamp) {
-                        logger.info("Abort outdated transaction: {}.", transactionId.toString());
-                        writeTransactionCompleteEntry(transactionId, false, partition);
-                    }
-                    break;
-                }
+    private void abortOutdatedTransactions() {
+        if (!leader) {
+            return;
+        }
+        long currentTimestamp = System.currentTimeMillis();
+        openingTransactionMap.forEach((transactionId, transactionState) -> {
+            if (!transactionState.isPreCompleted() &&
+                    transactionState.getContext().timestamp() + transactionTimeoutMs < currentTimestamp) {
+                logger.info("Abort outdated transaction: {}.", transactionId.toString());
+                writeTransactionCompleteEntry(transactionId, false, transactionState.getPartition());
             }
-
         });
     }
 
     private void retryCompleteTransactions() {
         CompleteTransactionRetry retry;
-        while ((retry = retryCompleteTransactions.poll()) != null) {
-            completeTransaction(retry.getTransactionId(), true, retry.getPartition());
+        while (leader && (retry = retryCompleteTransactions.poll()) != null) {
+            // 事务可能在重试之前已经完成了
+            TransactionState transactionState = openingTransactionMap.get(retry.getTransactionId());
+            if (null != transactionState) {
+                completeTransaction(retry.getTransactionId(), transactionState.isCommitOrAbort(), retry.getPartition());
+            }
         }
     }
 
-    private void recoverTransactionState() {
-        for (int i = 0; i < TRANSACTION_PARTITION_COUNT; i++) {
-            int partition = TRANSACTION_PARTITION_START + i;
-            if (journal.getPartitions().contains(partition) && journal.maxIndex(partition) > 0) {
-                logger.info("Recover transaction partition {}...", partition);
-                long index = journal.maxIndex(partition);
-                long minIndexOfPartition = journal.minIndex(partition);
-                boolean lastEntryOfTheTransaction = true;
-                while (index-- > minIndexOfPartition) {
-                    JournalEntry journalEntry = journal.readByPartition(partition, index);
-                    TransactionEntry transactionEntry = transactionEntrySerializer.parse(journalEntry.getPayload().getBytes());
-                    if (lastEntryOfTheTransaction) {
-                        partitionStatusMap.put(partition, transactionEntry.getType());
-
-                        // retry pre committed transaction
-                        if (transactionEntry.getType() == TransactionEntryType.TRANSACTION_PRE_COMPLETE) {
-                            retryCompleteTransactions.put(
-                                    new CompleteTransactionRetry(transactionEntry.getTransactionId(), partition)
-                            );
-                        }
-                        lastEntryOfTheTransaction = false;
-                    }
-
-                    if (transactionEntry.getType() == TransactionEntryType.TRANSACTION_START) {
-                        openingTransactionMap.put(
-                                transactionEntry.getTransactionId(),
-                                new TransactionState(partition, new JournalKeeperTransactionContext(
-                                        new UUIDTransactionId(transactionEntry.getTransactionId()),
-                                        transactionEntry.getContext(),
-                                        transactionEntry.getTimestamp()
-                                ))
-                        );
-                        break;
+    /**
+     * 恢复事务索引：先加载检查点，再从检查点记录的分区索引序号开始，逐个分区重放事务分区的日志，直到状态机的当前位置。
+     * 之后的日志由状态机执行时写入事务索引。
+     * 如果没有检查点，或者检查点之后的日志已经被删除，从事务分区的起始位置开始重放。
+     */
+    private synchronized void recoverTransactionState() {
+        TransactionCheckpoint checkpoint = loadCheckpoint();
+        Map<Integer, Long> startPartitionIndices = new HashMap<>();
+        if (null != checkpoint && checkpoint.getIndex() >= journal.minIndex() && checkpoint.getIndex() <= journal.maxIndex()) {
+            if (null != checkpoint.getTransactions()) {
+                for (TransactionCheckpoint.OpeningTransaction transaction : checkpoint.getTransactions()) {
+                    UUID transactionId = UUID.fromString(transaction.getTransactionId());
+                    TransactionState transactionState = new TransactionState(transaction.getPartition(),
+                            new JournalKeeperTransactionContext(
+                                    new UUIDTransactionId(transactionId),
+                                    transaction.getContext(),
+                                    transaction.getTimestamp()),
+                            transaction.getEntries());
+                    if (transaction.isPreCompleted()) {
+                        transactionState.preComplete(transaction.isCommitOrAbort());
                     }
+                    openingTransactionMap.put(transactionId, transactionState);
                 }
+            }
+            if (null != checkpoint.getPartitionIndices()) {
+                startPartitionIndices.putAll(checkpoint.getPartitionIndices());
             } else {
-                partitionStatusMap.put(partition, TransactionEntryType.TRANSACTION_COMPLETE);
+                // 旧版本的检查点没有记录分区索引序号，按照检查点的索引位置计算
+                for (int partition : transactionPartitions()) {
+                    startPartitionIndices.put(partition, partitionIndexOf(partition, checkpoint.getIndex()));
+                }
             }
+            nextIndex = checkpoint.getIndex();
+            checkpointIndex = checkpoint.getIndex();
+        } else {
+            nextIndex = journal.minIndex();
         }
+
+        long appliedIndex = state.lastApplied();
+        logger.info("Recover transaction state from checkpoint: {}, replay transaction partitions until index: {}...",
+                checkpointIndex, appliedIndex);
+        for (int partition : transactionPartitions()) {
+            long startIndex = Math.max(journal.minIndex(partition),
+                    startPartitionIndices.getOrDefault(partition, journal.minIndex(partition)));
+            long endIndex = partitionIndexOf(partition, appliedIndex);
+            nextPartitionIndices.put(partition, Math.max(startIndex, endIndex));
+            if (startIndex < endIndex) {
+                logger.info("Replay transaction partition {}: [{}, {})...", partition, startIndex, endIndex);
+                replayPartition(partition, startIndex, endIndex);
+            }
+        }
+        nextIndex = Math.max(nextIndex, appliedIndex);
+        logger.info("Transaction state recovered, opening transactions: {}.", openingTransactionMap.size());
     }
 
-    int nextFreePartition() {
-        int partition = nextPartition();
-        int start = partition;
-        synchronized (partitionStatusMap) {
-            while (partitionStatusMap.getOrDefault(partition, TransactionEntryType.TRANSACTION_COMPLETE) != TransactionEntryType.TRANSACTION_COMPLETE) {
-                partition = nextPartition();
-                if (partition == start) {
-                    throw new TransactionException("No free transaction partition!");
-                }
+    /**
+     * 重放一个事务分区[startIndex, endIndex)的日志，每次最多批量读取{@link #READ_BATCH_SIZE}条。
+     * 事务索引中记录的是全局索引序号，需要查询每条日志的全局索引序号。
+     */
+    private void replayPartition(int partition, long startIndex, long endIndex) {
+        long index = startIndex;
+        long globalIndex = journal.minIndex();
+        while (index < endIndex) {
+            List<JournalEntry> journalEntries = journal.batchReadByPartition(partition, index,
+                    (int) Math.min(READ_BATCH_SIZE, endIndex - index));
+            for (JournalEntry journalEntry : journalEntries) {
+                globalIndex = journal.indexOfPartitionEntry(partition, index, globalIndex);
+                TransactionEntry transactionEntry = transactionEntrySerializer.parse(journalEntry.getPayload().getBytes());
+                doApplyEntry(transactionEntry, partition, globalIndex, Collections.emptyMap());
+                index += Math.max(1, journalEntry.getBatchSize()) - journalEntry.getOffset();
             }
-            return partition;
         }
     }
 
+    /**
+     * 已经创建的事务分区
+     */
+    private List<Integer> transactionPartitions() {
+        return journal.getPartitions().stream()
+                .filter(this::isTransactionPartition)
+                .sorted()
+                .collect(Collectors.toList());
+    }
 
-    private int nextPartition() {
-        int partition = nextFreePartition.getAndIncrement();
-        nextFreePartition.compareAndSet(
-                TRANSACTION_PARTITION_START + TRANSACTION_PARTITION_COUNT,
-                TRANSACTION_PARTITION_START
-        );
+    /**
+     * 全局索引序号对应的分区索引序号，即分区中全局索引序号小于index的日志数量。
+     */
+    private long partitionIndexOf(int partition, long index) {
+        if (index <= journal.minIndex()) {
+            return journal.minIndex(partition);
+        }
+        if (index >= journal.maxIndex()) {
+            return journal.calcPartitionIndex(partition, journal.maxOffset());
+        }
+        return journal.calcPartitionIndex(partition, journal.readOffset(index));
+    }
+
+    private TransactionCheckpoint loadCheckpoint() {
+        try {
+            return metadataPersistence.load(checkpointPath, TransactionCheckpoint.class);
+        } catch (Exception e) {
+            logger.info("No transaction checkpoint loaded from {}, cause: {}.", checkpointPath, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * 保存事务索引的检查点，索引位置没有变化时不保存
+     */
+    private void saveCheckpoint() {
+        TransactionCheckpoint checkpoint;
+        synchronized (this) {
+            // 状态机先执行拦截器再更新lastApplied，所以lastApplied之前的日志都已经写入了事务索引
+            long index = Math.max(nextIndex, state.lastApplied());
+            if (index == checkpointIndex) {
+                return;
+            }
+            checkpoint = new TransactionCheckpoint();
+            checkpoint.setIndex(index);
+            checkpoint.setPartitionIndices(new HashMap<>(nextPartitionIndices));
+            checkpoint.setTransactions(openingTransactionMap.entrySet().stream()
+                    .map(entry -> entry.getValue().toCheckpoint(entry.getKey()))
+                    .collect(Collectors.toList()));
+        }
+        try {
+            metadataPersistence.save(checkpointPath, checkpoint);
+            synchronized (this) {
+                checkpointIndex = checkpoint.getIndex();
+            }
+        } catch (IOException e) {
+            logger.warn("Save transaction checkpoint exception, path: {}: ", checkpointPath, e);
+        }
+    }
+
+    /**
+     * 允许删除的日志的最大位置，删除日志时不能删除这个位置及之后的日志：
+     * 1. 未完成事务的TRANSACTION_ENTRY日志，提交事务时需要读取；
+     * 2. 已保存的检查点之后的日志，恢复时需要重放。
+     * @return 全局索引序号，还没有保存检查点时返回journal的minIndex
+     */
+    synchronized long maxCompactionIndex() {
+        if (checkpointIndex < 0) {
+            return journal.minIndex();
+        }
+        long index = checkpointIndex;
+        for (TransactionState transactionState : openingTransactionMap.values()) {
+            long[] entries = transactionState.getEntries();
+            if (entries.length > 0) {
+                index = Math.min(index, entries[0]);
+            }
+        }
+        return index;
+    }
 
-        return partition;
+    /**
+     * 轮流选择一个事务分区，多个事务可以共用同一个事务分区。
+     */
+    int nextPartition() {
+        return TRANSACTION_PARTITION_START + Math.floorMod(nextPartition.getAndIncrement(), TRANSACTION_PARTITION_COUNT);
     }
 
-    void applyEntry(TransactionEntry entry, int partition, Map<UUID, CompletableFuture<Void>> pendingCompleteTransactionFutures) {
-        if (partition < TRANSACTION_PARTITION_START || partition >= TRANSACTION_PARTITION_START + TRANSACTION_PARTITION_COUNT) {
+    /**
+     * 把一条事务分区的日志写入事务索引。
+     * @param entry 事务日志
+     * @param partition 事务分区
+     * @param index 日志的全局索引序号
+     * @param pendingCompleteTransactionFutures 等待事务完成的Future
+     */
+    void applyEntry(TransactionEntry entry, int partition, long index, Map<UUID, CompletableFuture<Void>> pendingCompleteTransactionFutures) {
+        if (!isTransactionPartition(partition)) {
             logger.warn("Ignore transaction entry, cause: partition {} is not a transaction partition.", partition);
             return;
         }
 
-        partitionStatusMap.put(partition, entry.getType());
+        boolean preCompleted;
+        synchronized (this) {
+            // 恢复时已经写入索引的日志
+            if (index < nextIndex) {
+                return;
+            }
+            nextIndex = index + 1;
+            // 事务分区的日志都是单条日志，每条日志占用一个分区索引序号
+            nextPartitionIndices.merge(partition, 1L, Long::sum);
+            preCompleted = doApplyEntry(entry, partition, index, pendingCompleteTransactionFutures);
+        }
 
+        if (preCompleted && leader) {
+            completeTransaction(entry.getTransactionId(), entry.isCommitOrAbort(), partition);
+        }
+    }
+
+    /**
+     * 更新事务索引，调用方需要持有this的锁。
+     * @return 事务是否已经预提交，需要LEADER完成事务
+     */
+    private boolean doApplyEntry(TransactionEntry entry, int partition, long index, Map<UUID, CompletableFuture<Void>> pendingCompleteTransactionFutures) {
+        boolean preCompleted = false;
+        TransactionState transactionState;
         switch (entry.getType()) {
             case TRANSACTION_START:
                 openingTransactionMap.put(
@@ -222,23 +404,38 @@ class JournalTransactionState extends ServerStateMachine {
                                 new UUIDTransactionId(entry.getTransactionId()),
                                 entry.getContext(),
                                 entry.getTimestamp()
-                        ))
+                        ), null)
                 );
                 break;
+            case TRANSACTION_ENTRY:
+                if (null != (transactionState = openingTransactionMap.get(entry.getTransactionId()))) {
+                    transactionState.addEntry(index);
+                } else {
+                    logger.warn("Ignore transaction entry, cause: transaction {} is not open, index: {}.",
+                            entry.getTransactionId().toString(), index);
+                }
+                break;
             case TRANSACTION_PRE_COMPLETE:
-                completeTransaction(entry.getTransactionId(), entry.isCommitOrAbort(), partition);
+                if (null != (transactionState = openingTransactionMap.get(entry.getTransactionId()))) {
+                    transactionState.preComplete(entry.isCommitOrAbort());
+                    preCompleted = true;
+                }
                 break;
             case TRANSACTION_COMPLETE:
-                openingTransactionMap.remove(entry.getTransactionId());
-                partitionStatusMap.remove(partition);
+                transactionState = openingTransactionMap.remove(entry.getTransactionId());
                 CompletableFuture<Void> future = pendingCompleteTransactionFutures.remove(entry.getTransactionId());
                 if (null != future) {
-                    future.complete(null);
+                    if (null != transactionState && transactionState.isCommitOrAbort() && !entry.isCommitOrAbort()) {
+                        // 请求提交的事务被回滚了
+                        future.completeExceptionally(new TransactionException(
+                                String.format("Transaction %s is aborted!", entry.getTransactionId().toString())));
+                    } else {
+                        future.complete(null);
+                    }
                 }
                 break;
         }
-
-
+        return preCompleted;
     }
 
     /**
@@ -246,86 +443,93 @@ class JournalTransactionState extends ServerStateMachine {
      * <p>
      * 1. 如果操作是回滚，直接写入TRANSACTION_COMPLETE日志；
      * 2. 如果操作是提交：
-     * 3. 这个事务中所有消息涉及到的每个分区：读出该分区的所有事务日志，组合成一个BatchEntry写入对应分区。
-     * 4. 上步骤中每条日志都写入成功后，写入TRANSACTION_COMPLETE日志，提交成功。
+     * 3. 按照事务索引读出这个事务的所有事务日志，还原成对应分区的日志，
+     * 和TRANSACTION_COMPLETE日志一起，用一个请求批量写入，这些日志在日志中连续存放，TRANSACTION_COMPLETE在最后。
+     * LEADER按批推进提交位置，事务的消息可能分几次提交，读取方可能先看到其中的一部分消息；
+     * TRANSACTION_COMPLETE提交时事务的所有消息都已经提交，等待提交事务的客户端这时才返回。
+     * 4. 如果写入失败，稍后重试。
      *
      * @param transactionId 事务ID。
      * @param commitOrAbort true：提条事务，false：回滚事务。
      */
     private void completeTransaction(UUID transactionId, boolean commitOrAbort, int partition) {
-
+        List<UpdateRequest> updateRequests = new ArrayList<>();
         if (commitOrAbort) {
-            TransactionEntry transactionEntry;
-            int entryCount = 0;
-            long i = journal.maxIndex(partition);
-            Map<Integer /* partition */, List<TransactionEntry> /* transaction entries */> transactionEntriesByPartition
-                    = new HashMap<>();
-            long minIndex = journal.minIndex(partition);
-            do {
-                JournalEntry journalEntry = journal.readByPartition(partition, --i);
-                transactionEntry = transactionEntrySerializer.parse(journalEntry.getPayload().getBytes());
-
-                if (!transactionId.equals(transactionEntry.getTransactionId()) ||
-                        transactionEntry.getType() == TransactionEntryType.TRANSACTION_START) {
-                    break;
-                }
+            List<TransactionEntry> transactionEntries;
+            try {
+                transactionEntries = readTransactionEntries(transactionId);
+            } catch (TransactionEntriesDeletedException e) {
+                // 事务日志已经被删除（例如安装了快照），不可能再提交，回滚事务
+                logger.error("Abort transaction {}, cause: {}", transactionId.toString(), e.getMessage());
+                writeTransactionCompleteEntry(transactionId, false, partition);
+                return;
+            } catch (Throwable e) {
+                logger.warn("Read entries of transaction {} exception, retry later: ", transactionId.toString(), e);
+                retryCompleteTransactions.add(new CompleteTransactionRetry(transactionId, partition));
+                return;
+            }
+            if (null == transactionEntries) {
+                logger.info("Transaction {} already completed.", transactionId.toString());
+                return;
+            }
+            for (TransactionEntry te : transactionEntries) {
+                updateRequests.add(new UpdateRequest(te.getEntry(), te.getPartition(), te.getBatchSize()));
+            }
+        }
+        int entries = updateRequests.size();
+        updateRequests.add(new UpdateRequest(serializeTransactionCompleteEntry(transactionId, commitOrAbort), partition, 1));
 
-                if (transactionEntry.getType() == TransactionEntryType.TRANSACTION_ENTRY) {
-                    entryCount++;
-                    List<TransactionEntry> list =
-                            transactionEntriesByPartition.computeIfAbsent(transactionEntry.getPartition(), p -> new LinkedList<>());
-                    list.add(transactionEntry);
-                }
+        server.updateClusterState(new UpdateClusterStateRequest(updateRequests))
+                .exceptionally(UpdateClusterStateResponse::new)
+                .thenAccept(response -> {
+                    if (response.success()) {
+                        logger.info("Transaction {} {}, entries: {}.", transactionId.toString(),
+                                commitOrAbort ? "committed" : "aborted", entries);
+                    } else {
+                        logger.warn("Transaction {} {} failed! Cause: {}.",
+                                transactionId.toString(),
+                                commitOrAbort ? "commit" : "abort",
+                                response.errorString());
+                        retryCompleteTransactions.add(
+                                new CompleteTransactionRetry(transactionId, partition)
+                        );
+                    }
+                });
+    }
 
-            } while (i > minIndex);
-
-            final AtomicInteger unFinishedRequests = new AtomicInteger(entryCount);
-
-            List<CompletableFuture> futures = new ArrayList<>(entryCount);
-
-            for (Map.Entry<Integer, List<TransactionEntry>> me : transactionEntriesByPartition.entrySet()) {
-                int bizPartition = me.getKey();
-                List<TransactionEntry> transactionEntries = me.getValue();
-
-                for (TransactionEntry te : transactionEntries) {
-                    futures.add(
-                            server
-                                    .updateClusterState(
-                                            new UpdateClusterStateRequest(
-                                                    new UpdateRequest(
-                                                            te.getEntry(), bizPartition, te.getBatchSize()
-                                                    )
-                                            )
-                                    )
-                                    .exceptionally(UpdateClusterStateResponse::new)
-                                    .thenAccept(response -> {
-                                        if (response.success()) {
-                                            unFinishedRequests.decrementAndGet();
-                                        } else {
-                                            logger.warn("Transaction commit {} failed! Cause: {}.",
-                                                    transactionId.toString(),
-                                                    response.errorString());
-                                        }
-                                    })
-                    );
-                }
+    /**
+     * 按照事务索引读取事务的所有TRANSACTION_ENTRY，索引序号连续的日志每次最多批量读取{@link #READ_BATCH_SIZE}条。
+     * @return 按照写入顺序排列的事务日志，如果事务已经完成返回null。
+     * @throws TransactionEntriesDeletedException 事务日志已经被删除时抛出
+     */
+    private List<TransactionEntry> readTransactionEntries(UUID transactionId) {
+        long[] indices;
+        synchronized (this) {
+            TransactionState transactionState = openingTransactionMap.get(transactionId);
+            if (null == transactionState) {
+                return null;
             }
-            CompletableFuture
-                    .allOf(futures.toArray(new CompletableFuture[entryCount]))
-                    .thenRun(() -> {
-                        if (unFinishedRequests.get() > 0) {
-                            retryCompleteTransactions.add(
-                                    new CompleteTransactionRetry(transactionId, partition)
-                            );
-                        } else {
-                            writeTransactionCompleteEntry(transactionId, true, partition);
-                        }
-                    });
-
-        } else {
-            writeTransactionCompleteEntry(transactionId, false, partition);
+            indices = transactionState.getEntries();
+        }
+        if (indices.length > 0 && indices[0] < journal.minIndex()) {
+            throw new TransactionEntriesDeletedException(String.format(
+                    "entries of transaction %s are deleted, first entry index: %d, journal min index: %d.",
+                    transactionId.toString(), indices[0], journal.minIndex()));
         }
 
+        List<TransactionEntry> transactionEntries = new ArrayList<>(indices.length);
+        int start = 0;
+        while (start < indices.length) {
+            int end = start + 1;
+            while (end < indices.length && end - start < READ_BATCH_SIZE && indices[end] == indices[end - 1] + 1) {
+                end++;
+            }
+            for (JournalEntry journalEntry : journal.batchRead(indices[start], end - start)) {
+                transactionEntries.add(transactionEntrySerializer.parse(journalEntry.getPayload().getBytes()));
+            }
+            start = end;
+        }
+        return transactionEntries;
     }
 
     JournalEntry wrapTransactionalEntry(JournalEntry entry, UUID transactionId, JournalEntryParser journalEntryParser) {
@@ -349,9 +553,13 @@ class JournalTransactionState extends ServerStateMachine {
         }
     }
 
-    private void writeTransactionCompleteEntry(UUID transactionId, boolean commitOrAbort, int partition) {
+    private byte[] serializeTransactionCompleteEntry(UUID transactionId, boolean commitOrAbort) {
         TransactionEntry entry = new TransactionEntry(transactionId, TransactionEntryType.TRANSACTION_COMPLETE, commitOrAbort);
-        byte[] serializedEntry = transactionEntrySerializer.serialize(entry);
+        return transactionEntrySerializer.serialize(entry);
+    }
+
+    private void writeTransactionCompleteEntry(UUID transactionId, boolean commitOrAbort, int partition) {
+        byte[] serializedEntry = serializeTransactionCompleteEntry(transactionId, commitOrAbort);
         server.updateClusterState(new UpdateClusterStateRequest(
                 new UpdateRequest(
                         serializedEntry, partition, 1
@@ -392,6 +600,12 @@ class JournalTransactionState extends ServerStateMachine {
         return partition >= TRANSACTION_PARTITION_START && partition < TRANSACTION_PARTITION_START + TRANSACTION_PARTITION_COUNT;
     }
 
+    private static class TransactionEntriesDeletedException extends TransactionException {
+        TransactionEntriesDeletedException(String message) {
+            super(message);
+        }
+    }
+
     private static class CompleteTransactionRetry implements Delayed {
         private final UUID transactionId;
         private final int partition;
@@ -441,21 +655,68 @@ class JournalTransactionState extends ServerStateMachine {
         }
     }
 
+
+    /**
+     * 未完成事务的索引，除了上下文以外，按照写入顺序记录这个事务所有TRANSACTION_ENTRY日志的全局索引序号。
+     * 只在{@link JournalTransactionState}的锁内修改。
+     */
     private static class TransactionState {
         private final int partition;
         private final JournalKeeperTransactionContext context;
+        private long[] entries;
+        private int size;
+        private volatile boolean preCompleted = false;
+        private volatile boolean commitOrAbort = false;
 
-        public TransactionState(int partition, JournalKeeperTransactionContext context) {
+        TransactionState(int partition, JournalKeeperTransactionContext context, long[] entries) {
             this.partition = partition;
             this.context = context;
+            this.entries = null == entries ? new long[8] : entries;
+            this.size = null == entries ? 0 : entries.length;
         }
 
-        public int getPartition() {
+        int getPartition() {
             return partition;
         }
 
-        public JournalKeeperTransactionContext getContext() {
+        JournalKeeperTransactionContext getContext() {
             return context;
         }
+
+        void addEntry(long index) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, Math.max(8, size << 1));
+            }
+            entries[size++] = index;
+        }
+
+        long[] getEntries() {
+            return Arrays.copyOf(entries, size);
+        }
+
+        void preComplete(boolean commitOrAbort) {
+            this.preCompleted = true;
+            this.commitOrAbort = commitOrAbort;
+        }
+
+        boolean isPreCompleted() {
+            return preCompleted;
+        }
+
+        boolean isCommitOrAbort() {
+            return commitOrAbort;
+        }
+
+        TransactionCheckpoint.OpeningTransaction toCheckpoint(UUID transactionId) {
+            TransactionCheckpoint.OpeningTransaction transaction = new TransactionCheckpoint.OpeningTransaction();
+            transaction.setTransactionId(transactionId.toString());
+            transaction.setPartition(partition);
+            transaction.setTimestamp(context.timestamp());
+            transaction.setContext(context.context());
+            transaction.setPreCompleted(preCompleted);
+            transaction.setCommitOrAbort(commitOrAbort);
+            transaction.setEntries(getEntries());
+            return transaction;
+        }
     }
 }
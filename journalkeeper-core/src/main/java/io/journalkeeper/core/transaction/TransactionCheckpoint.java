@@ -0,0 +1,129 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.core.transaction;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 事务索引的检查点，记录索引位置之前所有未完成的事务。
+ * 恢复时只需要从检查点的索引位置开始重放日志。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class TransactionCheckpoint {
+    /**
+     * 小于这个索引位置的日志都已经写入事务索引
+     */
+    private long index = 0L;
+    /**
+     * 事务分区在索引位置对应的分区索引序号，恢复时从这里开始重放每个事务分区的日志
+     */
+    private Map<Integer, Long> partitionIndices;
+    private List<OpeningTransaction> transactions;
+
+    public long getIndex() {
+        return index;
+    }
+
+    public void setIndex(long index) {
+        this.index = index;
+    }
+
+    public Map<Integer, Long> getPartitionIndices() {
+        return partitionIndices;
+    }
+
+    public void setPartitionIndices(Map<Integer, Long> partitionIndices) {
+        this.partitionIndices = partitionIndices;
+    }
+
+    public List<OpeningTransaction> getTransactions() {
+        return transactions;
+    }
+
+    public void setTransactions(List<OpeningTransaction> transactions) {
+        this.transactions = transactions;
+    }
+
+    public static class OpeningTransaction {
+        private String transactionId;
+        private int partition;
+        private long timestamp;
+        private Map<String, String> context;
+        private boolean preCompleted = false;
+        private boolean commitOrAbort = false;
+        /**
+         * 事务日志（TRANSACTION_ENTRY）的全局索引序号
+         */
+        private long[] entries;
+
+        public String getTransactionId() {
+            return transactionId;
+        }
+
+        public void setTransactionId(String transactionId) {
+            this.transactionId = transactionId;
+        }
+
+        public int getPartition() {
+            return partition;
+        }
+
+        public void setPartition(int partition) {
+            this.partition = partition;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public void setTimestamp(long timestamp) {
+            this.timestamp = timestamp;
+        }
+
+        public Map<String, String> getContext() {
+            return context;
+        }
+
+        public void setContext(Map<String, String> context) {
+            this.context = context;
+        }
+
+        public boolean isPreCompleted() {
+            return preCompleted;
+        }
+
+        public void setPreCompleted(boolean preCompleted) {
+            this.preCompleted = preCompleted;
+        }
+
+        public boolean isCommitOrAbort() {
+            return commitOrAbort;
+        }
+
+        public void setCommitOrAbort(boolean commitOrAbort) {
+            this.commitOrAbort = commitOrAbort;
+        }
+
+        public long[] getEntries() {
+            return entries;
+        }
+
+        public void setEntries(long[] entries) {
+            this.entries = entries;
+        }
+    }
+}
@@ -3,10 +3,16 @@ package io.journalkeeper.core;
 import io.journalkeeper.core.api.AdminClient;
 import io.journalkeeper.core.api.QueryConsistency;
 import io.journalkeeper.core.api.RaftServer;
+import io.journalkeeper.core.client.DefaultRaftClient;
+import io.journalkeeper.core.serialize.JavaSerializeExtensionPoint;
 import io.journalkeeper.core.serialize.WrappedBootStrap;
 import io.journalkeeper.core.serialize.WrappedRaftClient;
 import io.journalkeeper.core.serialize.WrappedState;
 import io.journalkeeper.core.serialize.WrappedStateFactory;
+import io.journalkeeper.rpc.StatusCode;
+import io.journalkeeper.rpc.client.QueryStateRequest;
+import io.journalkeeper.rpc.client.QueryStateResponse;
+import io.journalkeeper.rpc.server.ServerRpc;
 import io.journalkeeper.utils.test.TestPathUtils;
 import org.junit.Assert;
 import org.junit.Test;
@@ -17,9 +23,14 @@ import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
@@ -29,6 +40,7 @@ import java.util.stream.Collectors;
  */
 public class ConsistencyTest {
     private static final Logger logger = LoggerFactory.getLogger(ConsistencyTest.class);
+    private final JavaSerializeExtensionPoint serializer = new JavaSerializeExtensionPoint();
     private void stopServers(List<WrappedBootStrap<Integer, Integer, Integer, Integer>> kvServers) {
         for (WrappedBootStrap<Integer, Integer, Integer, Integer> serverBootStraps : kvServers) {
             try {
@@ -56,6 +68,52 @@ public class ConsistencyTest {
         }
     }
 
+    @Test
+    public void testStrictOnAllVoters() throws Exception {
+        Path path = TestPathUtils.prepareBaseDir("TestStrictOnAllVoters");
+        List<WrappedBootStrap<Integer, Integer, Integer, Integer>> serverBootStraps = createServers(3, path);
+        try {
+            WrappedRaftClient<Integer, Integer, Integer, Integer> writer = serverBootStraps.get(0).getClient();
+            for (int i = 0; i < 100; i++) {
+                Integer value = writer.update(1).get();
+                for (WrappedBootStrap<Integer, Integer, Integer, Integer> serverBootStrap : serverBootStraps) {
+                    Assert.assertEquals(value, serverBootStrap.getLocalClient().query(null, QueryConsistency.STRICT).get());
+                }
+            }
+        } finally {
+            stopServers(serverBootStraps);
+        }
+    }
+
+    @Test
+    public void testClientBatch() throws Exception {
+        Path path = TestPathUtils.prepareBaseDir("TestClientBatch");
+        List<WrappedBootStrap<Integer, Integer, Integer, Integer>> serverBootStraps = createServers(3, path);
+        List<URI> serverUris = serverBootStraps.stream().map(b -> b.getServer().serverUri()).collect(Collectors.toList());
+        Properties properties = new Properties();
+        properties.setProperty(DefaultRaftClient.CLIENT_BATCH_ENABLE_KEY, "true");
+        WrappedBootStrap<Integer, Integer, Integer, Integer> clientBootStrap = new WrappedBootStrap<Integer, Integer, Integer, Integer>(serverUris, properties);
+        WrappedRaftClient<Integer, Integer, Integer, Integer> client = clientBootStrap.getClient();
+        try {
+            int count = 1000;
+            List<CompletableFuture<Integer>> futures = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                futures.add(client.update(1));
+            }
+            // 每个请求都拿到自己那条日志的执行结果
+            Set<Integer> results = new HashSet<>();
+            for (CompletableFuture<Integer> future : futures) {
+                results.add(future.get());
+            }
+            Assert.assertEquals(count, results.size());
+            Assert.assertEquals(count, (int) Collections.max(results));
+            Assert.assertEquals(count, (int) client.query(null, QueryConsistency.STRICT).get());
+        } finally {
+            clientBootStrap.shutdown();
+            stopServers(serverBootStraps);
+        }
+    }
+
     @Test
     public void testAvailability() throws Exception {
         Path path = TestPathUtils.prepareBaseDir("TestSequential");
@@ -78,11 +136,125 @@ public class ConsistencyTest {
         }
     }
 
+    /**
+     * 请求的位置还没有执行到时，查询挂起，直到状态机执行到这个位置。
+     */
+    @Test
+    public void testSequentialWaitForApplied() throws Exception {
+        Path path = TestPathUtils.prepareBaseDir("TestSequentialWaitForApplied");
+        Properties extraProperties = new Properties();
+        extraProperties.setProperty("query_wait_applied_timeout_ms", String.valueOf(10000L));
+        List<WrappedBootStrap<Integer, Integer, Integer, Integer>> serverBootStraps = createServers(3, path, extraProperties);
+        try {
+            WrappedRaftClient<Integer, Integer, Integer, Integer> writer = serverBootStraps.get(0).getClient();
+            writer.update(1).get();
+            ServerRpc leader = (ServerRpc) findLeader(serverBootStraps).getServer();
+            ServerRpc follower = (ServerRpc) findFollower(serverBootStraps).getServer();
+            long lastApplied = queryServerState(leader, -1L).get().getLastApplied();
+
+            CompletableFuture<QueryStateResponse> future = queryServerState(follower, lastApplied + 1);
+            Thread.sleep(300L);
+            Assert.assertFalse(future.isDone());
+
+            writer.update(1).get();
+            QueryStateResponse response = future.get(5, TimeUnit.SECONDS);
+            Assert.assertTrue(response.success());
+            Assert.assertTrue(response.getLastApplied() >= lastApplied + 1);
+            Assert.assertEquals(2, (int) serializer.<Integer>parse(response.getResult()));
+        } finally {
+            stopServers(serverBootStraps);
+        }
+    }
+
+    /**
+     * 等待超时或者节点停止时，挂起的查询返回RETRY_LATER。
+     */
+    @Test
+    public void testSequentialWaitForAppliedFailed() throws Exception {
+        Path path = TestPathUtils.prepareBaseDir("TestSequentialWaitForAppliedFailed");
+        final long timeoutMs = 500L;
+        Properties extraProperties = new Properties();
+        extraProperties.setProperty("query_wait_applied_timeout_ms", String.valueOf(timeoutMs));
+        List<WrappedBootStrap<Integer, Integer, Integer, Integer>> serverBootStraps = createServers(3, path, extraProperties);
+        try {
+            serverBootStraps.get(0).getClient().update(1).get();
+            WrappedBootStrap<Integer, Integer, Integer, Integer> followerBootStrap = findFollower(serverBootStraps);
+            ServerRpc follower = (ServerRpc) followerBootStrap.getServer();
+            long lastApplied = queryServerState(follower, -1L).get().getLastApplied();
+
+            long start = System.currentTimeMillis();
+            QueryStateResponse response = queryServerState(follower, lastApplied + 100).get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(StatusCode.RETRY_LATER, response.getStatusCode());
+            Assert.assertTrue(System.currentTimeMillis() - start >= timeoutMs);
+
+            CompletableFuture<QueryStateResponse> future = queryServerState(follower, lastApplied + 100);
+            followerBootStrap.shutdown();
+            serverBootStraps.remove(followerBootStrap);
+            Assert.assertEquals(StatusCode.RETRY_LATER, future.get(5, TimeUnit.SECONDS).getStatusCode());
+        } finally {
+            stopServers(serverBootStraps);
+        }
+    }
+
+    /**
+     * 心跳间隔很长时，FOLLOWER也能及时得到LEADER的提交位置，不用等下一次心跳。
+     */
+    @Test
+    public void testFollowerCatchUpWithoutHeartbeat() throws Exception {
+        Path path = TestPathUtils.prepareBaseDir("TestFollowerCatchUpWithoutHeartbeat");
+        Properties extraProperties = new Properties();
+        extraProperties.setProperty("heartbeat_interval_ms", String.valueOf(2000L));
+        extraProperties.setProperty("election_timeout_ms", String.valueOf(5000L));
+        extraProperties.setProperty("query_wait_applied_timeout_ms", String.valueOf(10000L));
+        List<WrappedBootStrap<Integer, Integer, Integer, Integer>> serverBootStraps = createServers(3, path, extraProperties);
+        try {
+            ServerRpc leader = (ServerRpc) findLeader(serverBootStraps).getServer();
+            ServerRpc follower = (ServerRpc) findFollower(serverBootStraps).getServer();
+            WrappedRaftClient<Integer, Integer, Integer, Integer> writer = serverBootStraps.get(0).getClient();
+            for (int i = 0; i < 10; i++) {
+                writer.update(1).get();
+                long leaderApplied = queryServerState(leader, -1L).get().getLastApplied();
+                long start = System.currentTimeMillis();
+                QueryStateResponse response = queryServerState(follower, leaderApplied).get(5, TimeUnit.SECONDS);
+                Assert.assertTrue(response.success());
+                Assert.assertTrue(System.currentTimeMillis() - start < 1000L);
+            }
+        } finally {
+            stopServers(serverBootStraps);
+        }
+    }
+
+    private CompletableFuture<QueryStateResponse> queryServerState(ServerRpc server, long index) {
+        return server.queryServerState(new QueryStateRequest(serializer.serialize(0), index));
+    }
+
+    private WrappedBootStrap<Integer, Integer, Integer, Integer> findLeader(List<WrappedBootStrap<Integer, Integer, Integer, Integer>> serverBootStraps) throws Exception {
+        URI leaderUri = serverBootStraps.get(0).getAdminClient().getClusterConfiguration().get().getLeader();
+        return serverBootStraps.stream()
+                .filter(b -> leaderUri.equals(b.getServer().serverUri()))
+                .findAny().orElseThrow(IllegalStateException::new);
+    }
+
+    private WrappedBootStrap<Integer, Integer, Integer, Integer> findFollower(List<WrappedBootStrap<Integer, Integer, Integer, Integer>> serverBootStraps) throws Exception {
+        URI leaderUri = serverBootStraps.get(0).getAdminClient().getClusterConfiguration().get().getLeader();
+        return serverBootStraps.stream()
+                .filter(b -> !leaderUri.equals(b.getServer().serverUri()))
+                .findAny().orElseThrow(IllegalStateException::new);
+    }
+
     private List<WrappedBootStrap<Integer, Integer, Integer, Integer>> createServers(int nodes, Path path) throws IOException, ExecutionException, InterruptedException, TimeoutException {
         return createServers(nodes, path, RaftServer.Roll.VOTER, true);
     }
 
+    private List<WrappedBootStrap<Integer, Integer, Integer, Integer>> createServers(int nodes, Path path, Properties extraProperties) throws IOException, ExecutionException, InterruptedException, TimeoutException {
+        return createServers(nodes, path, RaftServer.Roll.VOTER, true, extraProperties);
+    }
+
     private List<WrappedBootStrap<Integer, Integer, Integer, Integer>> createServers(int nodes, Path path, RaftServer.Roll roll, boolean waitForLeader) throws IOException, ExecutionException, InterruptedException, TimeoutException {
+        return createServers(nodes, path, roll, waitForLeader, new Properties());
+    }
+
+    private List<WrappedBootStrap<Integer, Integer, Integer, Integer>> createServers(int nodes, Path path, RaftServer.Roll roll, boolean waitForLeader, Properties extraProperties) throws IOException, ExecutionException, InterruptedException, TimeoutException {
         logger.info("Create {} nodes servers", nodes);
         List<URI> serverURIs = new ArrayList<>(nodes);
         List<Properties> propertiesList = new ArrayList<>(nodes);
@@ -99,6 +271,7 @@ public class ConsistencyTest {
 //            properties.setProperty("enable_metric", "true");
 //            properties.setProperty("print_metric_interval_sec", "3");
             properties.setProperty("print_state_interval_sec", String.valueOf(5));
+            properties.putAll(extraProperties);
 
             propertiesList.add(properties);
         }
@@ -0,0 +1,310 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.core.client;
+
+import io.journalkeeper.core.api.ResponseConfig;
+import io.journalkeeper.core.api.UpdateRequest;
+import io.journalkeeper.exceptions.ClientBufferFullException;
+import io.journalkeeper.rpc.client.UpdateClusterStateResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 客户端批量写入的测试，用{@link Call}记录发给服务端的批次，由测试决定何时返回响应。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class UpdateBatcherTest {
+    private static final long LONG_LINGER_MS = 60000L;
+    private final BlockingQueue<Call> calls = new LinkedBlockingQueue<>();
+    private RejectableScheduledExecutor scheduledExecutor;
+
+    @Before
+    public void before() {
+        scheduledExecutor = new RejectableScheduledExecutor();
+    }
+
+    @After
+    public void after() {
+        scheduledExecutor.shutdownNow();
+    }
+
+    @Test
+    public void lingerTest() throws Exception {
+        final long lingerMs = 200L;
+        UpdateBatcher batcher = createBatcher(lingerMs, 1024, 8, 1024 * 1024);
+        long t0 = System.currentTimeMillis();
+        CompletableFuture<List<byte[]>> future1 = batcher.update(entries("a", "b"), false, ResponseConfig.REPLICATION);
+        CompletableFuture<List<byte[]>> future2 = batcher.update(entries("c"), false, ResponseConfig.REPLICATION);
+        Assert.assertTrue(calls.isEmpty());
+
+        // 等待lingerMs之后，两个请求合并成一批发送
+        Call call = pollCall();
+        Assert.assertTrue(System.currentTimeMillis() - t0 >= lingerMs);
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), call.payloads());
+
+        // 每个请求按照自己的位置取出执行结果
+        call.future.complete(new UpdateClusterStateResponse(results("ra", "rb", "rc"), 0L));
+        Assert.assertEquals(Arrays.asList("ra", "rb"), payloads(future1.get(1, TimeUnit.SECONDS)));
+        Assert.assertEquals(Collections.singletonList("rc"), payloads(future2.get(1, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    public void maxBatchBytesTest() throws Exception {
+        UpdateBatcher batcher = createBatcher(LONG_LINGER_MS, 10, 8, 1024 * 1024);
+        batcher.update(entries("aaaa"), false, ResponseConfig.REPLICATION);
+        batcher.update(entries("bbbb"), false, ResponseConfig.REPLICATION);
+        Assert.assertTrue(calls.isEmpty());
+
+        // 再加入这个请求会超过maxBatchBytes，之前合并的请求先发送
+        batcher.update(entries("cccc"), false, ResponseConfig.REPLICATION);
+        Assert.assertEquals(Arrays.asList("aaaa", "bbbb"), pollCall().payloads());
+        Assert.assertTrue(calls.isEmpty());
+
+        // 达到maxBatchBytes立即发送
+        batcher.update(entries("dddddd"), false, ResponseConfig.REPLICATION);
+        Assert.assertEquals(Arrays.asList("cccc", "dddddd"), pollCall().payloads());
+
+        // 不同的响应级别不合并到同一批
+        batcher.update(entries("eeee"), false, ResponseConfig.REPLICATION);
+        batcher.update(entries("ffffff"), false, ResponseConfig.ALL);
+        Assert.assertTrue(calls.isEmpty());
+        batcher.update(entries("gggggg"), false, ResponseConfig.REPLICATION);
+        Call call = pollCall();
+        Assert.assertEquals(ResponseConfig.REPLICATION, call.responseConfig);
+        Assert.assertEquals(Arrays.asList("eeee", "gggggg"), call.payloads());
+    }
+
+    @Test
+    public void maxInFlightTest() throws Exception {
+        UpdateBatcher batcher = createBatcher(LONG_LINGER_MS, 4, 2, 1024 * 1024);
+        for (String payload : Arrays.asList("aaaa", "bbbb", "cccc", "dddd")) {
+            batcher.update(entries(payload), false, ResponseConfig.REPLICATION);
+        }
+        Call call1 = pollCall();
+        Call call2 = pollCall();
+        Assert.assertEquals(Collections.singletonList("aaaa"), call1.payloads());
+        Assert.assertEquals(Collections.singletonList("bbbb"), call2.payloads());
+        // 同时发送的批次达到上限，后面的批次等待
+        Assert.assertNull(calls.poll(100, TimeUnit.MILLISECONDS));
+
+        call1.future.complete(new UpdateClusterStateResponse(results("ra"), 0L));
+        Assert.assertEquals(Collections.singletonList("cccc"), pollCall().payloads());
+        Assert.assertNull(calls.poll(100, TimeUnit.MILLISECONDS));
+
+        call2.future.complete(new UpdateClusterStateResponse(results("rb"), 0L));
+        Assert.assertEquals(Collections.singletonList("dddd"), pollCall().payloads());
+    }
+
+    @Test
+    public void bufferFullTest() throws Exception {
+        UpdateBatcher batcher = createBatcher(LONG_LINGER_MS, 8, 8, 10);
+        CompletableFuture<List<byte[]>> future1 = batcher.update(entries("aaaaaaaa"), false, ResponseConfig.REPLICATION);
+        Call call = pollCall();
+
+        // 还没有收到响应的日志占用缓冲区，超出时在客户端直接失败
+        CompletableFuture<List<byte[]>> future2 = batcher.update(entries("bbbbbbbb"), false, ResponseConfig.REPLICATION);
+        assertException(future2, ClientBufferFullException.class);
+        Assert.assertTrue(calls.isEmpty());
+
+        // 收到响应之后释放缓冲区
+        call.future.complete(new UpdateClusterStateResponse(results("ra"), 0L));
+        future1.get(1, TimeUnit.SECONDS);
+        batcher.update(entries("cccccccc"), false, ResponseConfig.REPLICATION);
+        Assert.assertEquals(Collections.singletonList("cccccccc"), pollCall().payloads());
+    }
+
+    @Test
+    public void failureTest() throws Exception {
+        UpdateBatcher batcher = createBatcher(LONG_LINGER_MS, 8, 8, 1024 * 1024);
+        CompletableFuture<List<byte[]>> future1 = batcher.update(entries("aaaa"), false, ResponseConfig.REPLICATION);
+        CompletableFuture<List<byte[]>> future2 = batcher.update(entries("bbbb"), false, ResponseConfig.REPLICATION);
+        Call call = pollCall();
+        Assert.assertEquals(Arrays.asList("aaaa", "bbbb"), call.payloads());
+
+        // 一批失败，这批中的所有请求都失败
+        call.future.completeExceptionally(new IllegalArgumentException());
+        assertException(future1, IllegalArgumentException.class);
+        assertException(future2, IllegalArgumentException.class);
+
+        // 发送时抛出的异常同样返回给所有请求
+        UpdateBatcher throwingBatcher = new UpdateBatcher(scheduledExecutor, (entries, includeHeader, responseConfig) -> {
+            throw new IllegalArgumentException();
+        }, LONG_LINGER_MS, 4, 8, 1024 * 1024);
+        assertException(throwingBatcher.update(entries("cccc"), false, ResponseConfig.REPLICATION), IllegalArgumentException.class);
+    }
+
+    @Test
+    public void resultsTest() throws Exception {
+        UpdateBatcher batcher = createBatcher(LONG_LINGER_MS, 8, 8, 1024 * 1024);
+
+        // RECEIVE不返回执行结果
+        CompletableFuture<List<byte[]>> future1 = batcher.update(entries("aaaa"), false, ResponseConfig.RECEIVE);
+        CompletableFuture<List<byte[]>> future2 = batcher.update(entries("bbbb"), false, ResponseConfig.RECEIVE);
+        pollCall().future.complete(new UpdateClusterStateResponse(null, 0L));
+        Assert.assertNull(future1.get(1, TimeUnit.SECONDS));
+        Assert.assertNull(future2.get(1, TimeUnit.SECONDS));
+
+        // PERSISTENCE返回空的执行结果
+        CompletableFuture<List<byte[]>> future3 = batcher.update(entries("cccc"), false, ResponseConfig.PERSISTENCE);
+        CompletableFuture<List<byte[]>> future4 = batcher.update(entries("dddd"), false, ResponseConfig.PERSISTENCE);
+        pollCall().future.complete(new UpdateClusterStateResponse(Collections.emptyList(), 0L));
+        Assert.assertTrue(future3.get(1, TimeUnit.SECONDS).isEmpty());
+        Assert.assertTrue(future4.get(1, TimeUnit.SECONDS).isEmpty());
+    }
+
+    @Test
+    public void stopTest() throws Exception {
+        UpdateBatcher batcher = createBatcher(LONG_LINGER_MS, 4, 1, 1024 * 1024);
+        CompletableFuture<List<byte[]>> sentFuture = batcher.update(entries("aaaa"), false, ResponseConfig.REPLICATION);
+        Call call = pollCall();
+        // 等待发送的批次
+        CompletableFuture<List<byte[]>> readyFuture = batcher.update(entries("bbbb"), false, ResponseConfig.REPLICATION);
+        // 正在合并的批次
+        CompletableFuture<List<byte[]>> openFuture = batcher.update(entries("cc"), false, ResponseConfig.REPLICATION);
+
+        batcher.stop();
+        assertException(readyFuture, IllegalStateException.class);
+        assertException(openFuture, IllegalStateException.class);
+        assertException(batcher.update(entries("dddd"), false, ResponseConfig.REPLICATION), IllegalStateException.class);
+
+        // 已经发送的批次继续等待响应
+        Assert.assertFalse(sentFuture.isDone());
+        call.future.complete(new UpdateClusterStateResponse(results("ra"), 0L));
+        Assert.assertEquals(Collections.singletonList("ra"), payloads(sentFuture.get(1, TimeUnit.SECONDS)));
+        Assert.assertNull(calls.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void scheduleRejectedTest() throws Exception {
+        UpdateBatcher batcher = createBatcher(LONG_LINGER_MS, 8, 8, 10);
+        scheduledExecutor.reject = true;
+        assertException(batcher.update(entries("aaaaaaaa"), false, ResponseConfig.REPLICATION), RejectedExecutionException.class);
+
+        // 失败的请求不占用缓冲区
+        scheduledExecutor.reject = false;
+        batcher.update(entries("bbbbbbbb"), false, ResponseConfig.REPLICATION);
+        Assert.assertEquals(Collections.singletonList("bbbbbbbb"), pollCall().payloads());
+    }
+
+    private UpdateBatcher createBatcher(long lingerMs, int maxBatchBytes, int maxInFlight, long bufferBytes) {
+        return new UpdateBatcher(scheduledExecutor, (entries, includeHeader, responseConfig) -> {
+            Call call = new Call(entries, responseConfig);
+            calls.add(call);
+            return call.future;
+        }, lingerMs, maxBatchBytes, maxInFlight, bufferBytes);
+    }
+
+    private Call pollCall() throws InterruptedException {
+        Call call = calls.poll(5, TimeUnit.SECONDS);
+        Assert.assertNotNull(call);
+        return call;
+    }
+
+    private static List<UpdateRequest> entries(String... payloads) {
+        List<UpdateRequest> entries = new ArrayList<>(payloads.length);
+        for (String payload : payloads) {
+            entries.add(new UpdateRequest(payload.getBytes()));
+        }
+        return entries;
+    }
+
+    private static List<byte[]> results(String... results) {
+        List<byte[]> list = new ArrayList<>(results.length);
+        for (String result : results) {
+            list.add(result.getBytes());
+        }
+        return list;
+    }
+
+    private static List<String> payloads(List<byte[]> bytesList) {
+        List<String> list = new ArrayList<>(bytesList.size());
+        for (byte[] bytes : bytesList) {
+            list.add(new String(bytes));
+        }
+        return list;
+    }
+
+    private static void assertException(CompletableFuture<?> future, Class<? extends Throwable> exceptionClass) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail("Should throw " + exceptionClass.getSimpleName() + "!");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(exceptionClass.isInstance(e.getCause()));
+        }
+    }
+
+    private static class Call {
+        private final List<UpdateRequest> entries;
+        private final ResponseConfig responseConfig;
+        private final CompletableFuture<UpdateClusterStateResponse> future = new CompletableFuture<>();
+
+        Call(List<UpdateRequest> entries, ResponseConfig responseConfig) {
+            this.entries = new ArrayList<>(entries);
+            this.responseConfig = responseConfig;
+        }
+
+        List<String> payloads() {
+            List<String> list = new ArrayList<>(entries.size());
+            for (UpdateRequest entry : entries) {
+                list.add(new String(entry.getEntry()));
+            }
+            return list;
+        }
+    }
+
+    /**
+     * 可以拒绝定时任务的线程池
+     */
+    private static class RejectableScheduledExecutor extends ScheduledThreadPoolExecutor {
+        private volatile boolean reject = false;
+
+        RejectableScheduledExecutor() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            if (reject) {
+                throw new RejectedExecutionException();
+            }
+            return super.schedule(command, delay, unit);
+        }
+
+        @Override
+        public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+            if (reject) {
+                throw new RejectedExecutionException();
+            }
+            return super.schedule(callable, delay, unit);
+        }
+    }
+}
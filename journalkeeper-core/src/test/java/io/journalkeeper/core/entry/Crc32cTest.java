@@ -0,0 +1,52 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.core.entry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Checksum;
+
+/**
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class Crc32cTest {
+
+    @Test
+    public void checkValueTest() {
+        // CRC32C标准校验值，JDK实现和纯Java实现必须一致
+        byte[] bytes = "123456789".getBytes(StandardCharsets.US_ASCII);
+        Checksum checksum = Crc32c.create();
+        checksum.update(bytes, 0, bytes.length);
+        Assert.assertEquals(0xE3069283L, checksum.getValue());
+
+        checksum.reset();
+        checksum.update(bytes, 0, 4);
+        checksum.update(bytes, 4, bytes.length - 4);
+        Assert.assertEquals(0xE3069283L, checksum.getValue());
+    }
+
+    @Test
+    public void threadLocalTest() {
+        byte[] bytes = "123456789".getBytes(StandardCharsets.US_ASCII);
+        Checksum checksum = Crc32c.threadLocal();
+        checksum.update(bytes, 0, 4);
+        // 再次获取时返回同一个已重置的实例
+        Assert.assertSame(checksum, Crc32c.threadLocal());
+        checksum.update(bytes, 0, bytes.length);
+        Assert.assertEquals(0xE3069283L, checksum.getValue());
+    }
+}
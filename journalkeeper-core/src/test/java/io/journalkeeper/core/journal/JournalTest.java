@@ -16,10 +16,14 @@ package io.journalkeeper.core.journal;
 import io.journalkeeper.core.api.JournalEntry;
 import io.journalkeeper.core.api.JournalEntryParser;
 import io.journalkeeper.core.entry.DefaultJournalEntryParser;
+import io.journalkeeper.core.metric.DummyMetric;
+import io.journalkeeper.exceptions.JournalException;
 import io.journalkeeper.metric.JMetric;
 import io.journalkeeper.metric.JMetricFactory;
 import io.journalkeeper.metric.JMetricSupport;
 import io.journalkeeper.persistence.BufferPool;
+import io.journalkeeper.persistence.BufferView;
+import io.journalkeeper.persistence.JournalPersistence;
 import io.journalkeeper.persistence.PersistenceFactory;
 import io.journalkeeper.utils.format.Format;
 import io.journalkeeper.utils.spi.ServiceSupport;
@@ -38,6 +42,7 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -472,6 +477,64 @@ public class JournalTest {
         }
     }
 
+    @Test
+    public void partitionIndexCacheTest() throws IOException {
+        journal.close();
+        journal = new Journal(
+                ServiceSupport.load(PersistenceFactory.class),
+                ServiceSupport.load(BufferPool.class), journalEntryParser,
+                ChecksumVerifyMode.RECOVERY, new DummyMetric(), 1, 100);
+        journal.recover(path, 0L, new JournalSnapshotImpl(partitions), new Properties());
+
+        int size = 256;
+        int batchSize = 23;
+        int partition = 0;
+        List<byte[]> entries = ByteUtils.createRandomSizeByteList(1024, size);
+        List<JournalEntry> storageEntries =
+                entries.stream()
+                        .map(entry -> journalEntryParser.createJournalEntry(entry))
+                        .peek(entry -> entry.setTerm(8))
+                        .peek(entry -> entry.setPartition(partition))
+                        .peek(entry -> entry.setBatchSize(batchSize))
+                        .collect(Collectors.toList());
+        for (JournalEntry storageEntry : storageEntries) {
+            journal.append(storageEntry);
+        }
+        journal.commit(journal.maxIndex());
+        Assert.assertEquals(size * batchSize, journal.maxIndex(partition));
+
+        // 缓存只保留最后100条分区索引，前面的索引从存储中读取，批量entry的首条索引可能不在缓存中
+        for (int i = 0; i < journal.maxIndex(partition); i++) {
+            JournalEntry batchEntries = journal.readByPartition(partition, i);
+            Assert.assertEquals(i % batchSize, batchEntries.getOffset());
+            Assert.assertEquals(storageEntries.get(i / batchSize).getPayload(), batchEntries.getPayload());
+        }
+
+        long startIndex = journal.maxIndex(partition) - 150;
+        List<JournalEntry> readEntries = journal.batchReadByPartition(partition, startIndex, 150);
+        long index = startIndex;
+        for (JournalEntry readEntry : readEntries) {
+            Assert.assertEquals(index % batchSize, readEntry.getOffset());
+            Assert.assertEquals(storageEntries.get((int) (index / batchSize)).getPayload(), readEntry.getPayload());
+            index += readEntry.getBatchSize() - readEntry.getOffset();
+        }
+        Assert.assertEquals(journal.maxIndex(partition), index);
+
+        // 删除分区时释放缓存，重新创建的分区使用新的缓存
+        journal.removePartition(partition);
+        journal.addPartition(partition);
+        for (JournalEntry storageEntry : storageEntries.subList(0, 10)) {
+            journal.append(storageEntry);
+        }
+        journal.commit(journal.maxIndex());
+        Assert.assertEquals(10 * batchSize, journal.maxIndex(partition));
+        for (int i = 0; i < journal.maxIndex(partition); i++) {
+            JournalEntry batchEntries = journal.readByPartition(partition, i);
+            Assert.assertEquals(i % batchSize, batchEntries.getOffset());
+            Assert.assertEquals(storageEntries.get(i / batchSize).getPayload(), batchEntries.getPayload());
+        }
+    }
+
     @Test
     public void writeReadRawTest() throws IOException {
         int maxLength = 1024;
@@ -499,6 +562,71 @@ public class JournalTest {
 
     }
 
+    @Test
+    public void rangeReadAcrossFilesTest() throws IOException, InterruptedException {
+        journal.close();
+        TestPathUtils.destroyBaseDir();
+        path = TestPathUtils.prepareBaseDir();
+        Properties properties = new Properties();
+        properties.setProperty("persistence.journal.file_data_size", String.valueOf(4 * 1024));
+        properties.setProperty("persistence.index.file_data_size", String.valueOf(100));
+        journal = createJournal(properties);
+
+        int size = 512;
+        int batchSize = 3;
+        List<JournalEntry> storageEntries = ByteUtils.createRandomSizeByteList(512, size).stream()
+                .map(entry -> journalEntryParser.createJournalEntry(entry))
+                .peek(entry -> entry.setTerm(8))
+                .peek(entry -> entry.setPartition(0))
+                .peek(entry -> entry.setBatchSize(batchSize))
+                .collect(Collectors.toList());
+        for (JournalEntry storageEntry : storageEntries) {
+            journal.append(storageEntry);
+        }
+        journal.commit(journal.maxIndex());
+
+        // 读取范围跨越多个日志文件和索引文件
+        for (int index = 0; index < size; index += 37) {
+            List<byte[]> rawEntries = journal.readRaw(index, 64);
+            Assert.assertEquals(Math.min(64, size - index), rawEntries.size());
+            for (int i = 0; i < rawEntries.size(); i++) {
+                Assert.assertArrayEquals(storageEntries.get(index + i).getSerializedBytes(), rawEntries.get(i));
+            }
+        }
+
+        for (int partitionIndex = 1; partitionIndex < size * batchSize - 64; partitionIndex += 41) {
+            List<JournalEntry> batchEntries = journal.batchReadByPartition(0, partitionIndex, 64);
+            Assert.assertEquals(partitionIndex % batchSize, batchEntries.get(0).getOffset());
+            for (int i = 0; i < batchEntries.size(); i++) {
+                Assert.assertEquals(storageEntries.get(partitionIndex / batchSize + i).getPayload(),
+                        batchEntries.get(i).getPayload());
+            }
+        }
+    }
+
+    @Test
+    public void readRawViewTest() {
+        int maxLength = 1024;
+        int size = 128;
+        List<byte[]> storageEntries = ByteUtils.createRandomSizeByteList(maxLength, size).stream()
+                .map(entry -> journalEntryParser.createJournalEntry(entry))
+                .peek(entry -> entry.setTerm(8))
+                .peek(entry -> entry.setPartition(0))
+                .map(this::serialize)
+                .collect(Collectors.toList());
+        journal.appendBatchRaw(storageEntries);
+
+        for (int i = 0; i < size; i++) {
+            try (BufferView view = journal.readRawView(i)) {
+                ByteBuffer buffer = view.buffer();
+                Assert.assertTrue(buffer.isReadOnly());
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                Assert.assertArrayEquals(storageEntries.get(i), bytes);
+            }
+        }
+    }
+
     private byte[] serialize(JournalEntry storageEntry) {
         return storageEntry.getSerializedBytes();
     }
@@ -677,6 +805,212 @@ public class JournalTest {
 
     }
 
+    @Test
+    public void checksumTest() {
+        JournalEntry entry = journalEntryParser.createJournalEntry("123456789".getBytes());
+        entry.setTerm(8);
+        entry.setPartition(2);
+        byte[] rawEntry = entry.getSerializedBytes();
+        Assert.assertTrue(journalEntryParser.parse(rawEntry).verifyChecksum());
+
+        // 修改Header或者Payload后校验失败
+        byte[] corrupted = Arrays.copyOf(rawEntry, rawEntry.length);
+        corrupted[corrupted.length - 1] ^= 0x01;
+        Assert.assertFalse(journalEntryParser.parse(corrupted).verifyChecksum());
+        JournalEntry modified = journalEntryParser.parse(Arrays.copyOf(rawEntry, rawEntry.length));
+        modified.setTerm(9);
+        Assert.assertTrue(journalEntryParser.parse(modified.getSerializedBytes()).verifyChecksum());
+    }
+
+    @Test
+    public void legacyEntryTest() throws IOException, InterruptedException {
+        // 版本1的Entry，最后一条的Payload只有1个字节，整条Entry比版本2的Header还短
+        List<byte[]> legacyPayloads = new ArrayList<>(ByteUtils.createFixedSizeByteList(128, 5));
+        legacyPayloads.add(new byte[]{(byte) 0x01});
+        List<byte[]> legacyEntries = legacyPayloads.stream()
+                .map(payload -> createLegacyEntry(payload, 8, 0))
+                .collect(Collectors.toList());
+        journal.appendBatchRaw(legacyEntries);
+        journal.flush();
+        journal.close();
+
+        // 重启后版本1的Entry不会被当作损坏的数据截掉
+        journal = createJournal();
+        Assert.assertEquals(legacyPayloads.size(), journal.maxIndex());
+
+        // 版本1和版本2的Entry混合存储
+        List<byte[]> payloads = new ArrayList<>(legacyPayloads);
+        List<byte[]> newPayloads = ByteUtils.createFixedSizeByteList(128, 5);
+        payloads.addAll(newPayloads);
+        journal.appendBatchRaw(newPayloads.stream()
+                .map(payload -> journalEntryParser.createJournalEntry(payload))
+                .peek(entry -> entry.setTerm(8))
+                .peek(entry -> entry.setPartition(0))
+                .map(this::serialize)
+                .collect(Collectors.toList()));
+        journal.commit(journal.maxIndex());
+
+        for (long index = journal.minIndex(); index < journal.maxIndex(); index++) {
+            JournalEntry entry = journal.read(index);
+            Assert.assertArrayEquals(payloads.get((int) index), entry.getPayload().getBytes());
+            Assert.assertEquals(8, entry.getTerm());
+            Assert.assertTrue(entry.verifyChecksum());
+        }
+        List<JournalEntry> entries = journal.batchReadByPartition(0, 0L, payloads.size());
+        Assert.assertEquals(payloads.size(), entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            Assert.assertArrayEquals(payloads.get(i), entries.get(i).getPayload().getBytes());
+        }
+    }
+
+    /**
+     * 按照版本1的格式构造Entry：LENGTH(4), PARTITION(2), TERM(4), MAGIC(2), BATCH_SIZE(2), TIMESTAMP(8), ENTRY
+     */
+    private byte[] createLegacyEntry(byte[] payload, int term, int partition) {
+        int headerLength = journalEntryParser.minHeaderLength();
+        ByteBuffer buffer = ByteBuffer.allocate(headerLength + payload.length);
+        buffer.putInt(headerLength + payload.length);
+        buffer.putShort((short) partition);
+        buffer.putInt(term);
+        buffer.put(new byte[]{(byte) 0XF4, (byte) 0X3C});
+        buffer.putShort((short) 1);
+        buffer.putLong(System.currentTimeMillis());
+        buffer.put(payload);
+        return buffer.array();
+    }
+
+    @Test
+    public void truncateCorruptedTailEntryTest() throws IOException, InterruptedException {
+        int entrySize = 128;
+        int size = 15;
+        List<byte[]> entries = ByteUtils.createFixedSizeByteList(entrySize, size);
+        List<byte[]> storageEntries =
+                entries.stream()
+                        .map(entry -> journalEntryParser.createJournalEntry(entry))
+                        .peek(entry -> entry.setTerm(8))
+                        .peek(entry -> entry.setPartition(0))
+                        .map(this::serialize)
+                        .collect(Collectors.toList());
+        journal.appendBatchRaw(storageEntries);
+        journal.flush();
+        journal.close();
+
+        // 修改最后一条Entry的最后一个字节，长度和MAGIC不变，只有校验和能发现
+        File lastFile = findLastFile(path);
+        try (RandomAccessFile raf = new RandomAccessFile(lastFile, "rw")) {
+            raf.seek(raf.length() - 1);
+            int b = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(b ^ 0x01);
+        }
+
+        journal = createJournal();
+        Assert.assertEquals(size - 1, journal.maxIndex());
+        for (long index = journal.minIndex(); index < journal.maxIndex(); index++) {
+            Assert.assertArrayEquals(entries.get((int) index), journal.read(index).getPayload().getBytes());
+        }
+    }
+
+    @Test
+    public void refuseTruncateCommittedEntryTest() throws IOException, InterruptedException {
+        int size = 15;
+        List<byte[]> entries = ByteUtils.createFixedSizeByteList(128, size);
+        List<byte[]> storageEntries =
+                entries.stream()
+                        .map(entry -> journalEntryParser.createJournalEntry(entry))
+                        .peek(entry -> entry.setTerm(8))
+                        .peek(entry -> entry.setPartition(0))
+                        .map(this::serialize)
+                        .collect(Collectors.toList());
+        journal.appendBatchRaw(storageEntries);
+        journal.flush();
+        journal.close();
+
+        File lastFile = findLastFile(path);
+        try (RandomAccessFile raf = new RandomAccessFile(lastFile, "rw")) {
+            raf.seek(raf.length() - 1);
+            int b = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(b ^ 0x01);
+        }
+
+        // 校验失败的Entry已经提交，不能截掉
+        try {
+            journal = createJournal(size);
+            Assert.fail();
+        } catch (JournalException ignored) {
+        }
+
+        // 校验失败的Entry没有提交，截掉之后正常恢复
+        journal = createJournal(size - 1);
+        Assert.assertEquals(size - 1, journal.maxIndex());
+        Assert.assertEquals(size - 1, journal.commitIndex());
+    }
+
+    @Test
+    public void verifyReplicatedEntriesTest() throws IOException {
+        journal.close();
+        journal = new Journal(
+                ServiceSupport.load(PersistenceFactory.class),
+                ServiceSupport.load(BufferPool.class), journalEntryParser,
+                ChecksumVerifyMode.REPLICATION, new DummyMetric(), 1, 0);
+        journal.recover(path, 0L, new JournalSnapshotImpl(partitions), new Properties());
+
+        List<byte[]> storageEntries = ByteUtils.createFixedSizeByteList(128, 3).stream()
+                .map(entry -> journalEntryParser.createJournalEntry(entry))
+                .map(this::serialize)
+                .collect(Collectors.toList());
+        storageEntries.get(2)[storageEntries.get(2).length - 1] ^= 0x01;
+        try {
+            journal.appendBatchRaw(storageEntries);
+            Assert.fail();
+        } catch (ParseJournalException ignored) {
+        }
+        Assert.assertEquals(0L, journal.maxIndex());
+
+        journal.appendBatchRaw(storageEntries.subList(0, 2));
+        Assert.assertEquals(2L, journal.maxIndex());
+    }
+
+    @Test
+    public void parallelFlushTest() throws IOException, InterruptedException {
+        journal.close();
+        Properties properties = new Properties();
+        journal = new Journal(
+                ServiceSupport.load(PersistenceFactory.class),
+                ServiceSupport.load(BufferPool.class), journalEntryParser,
+                ChecksumVerifyMode.RECOVERY, new DummyMetric(), 4, 0);
+        journal.recover(path, 0L, new JournalSnapshotImpl(partitions), properties);
+
+        int size = 1024;
+        List<byte[]> entries = ByteUtils.createRandomSizeByteList(256, size);
+        Integer[] partitionArray = partitions.toArray(new Integer[0]);
+        for (int i = 0; i < size; i++) {
+            JournalEntry entry = journalEntryParser.createJournalEntry(entries.get(i));
+            entry.setPartition(partitionArray[i % partitionArray.length]);
+            entry.setTerm(8);
+            journal.append(entry);
+        }
+        journal.commit(journal.maxIndex());
+        journal.flush();
+
+        Assert.assertEquals(journal.getJournalPersistence().max(), journal.getJournalPersistence().flushed());
+        Assert.assertEquals(journal.getIndexPersistence().max(), journal.getIndexPersistence().flushed());
+        for (JournalPersistence partitionPersistence : journal.getPartitionMap().values()) {
+            Assert.assertEquals(partitionPersistence.max(), partitionPersistence.flushed());
+        }
+        journal.close();
+
+        journal = createJournal(size, properties);
+        Assert.assertEquals(size, journal.maxIndex());
+        for (int i = 0; i < size; i++) {
+            Assert.assertArrayEquals(entries.get(i), journal.read(i).getPayload().getBytes());
+        }
+        for (int partition : partitions) {
+            Assert.assertEquals(size / partitionArray.length, journal.maxIndex(partition));
+        }
+    }
+
     @Test
     public void compactTest() throws Exception {
         int entrySize = 128;
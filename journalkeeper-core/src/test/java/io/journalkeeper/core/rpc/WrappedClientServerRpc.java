@@ -1,5 +1,6 @@
 package io.journalkeeper.core.rpc;
 
+import io.journalkeeper.rpc.client.AddPullWatchRequest;
 import io.journalkeeper.rpc.client.AddPullWatchResponse;
 import io.journalkeeper.rpc.client.CheckLeadershipResponse;
 import io.journalkeeper.rpc.client.ClientServerRpc;
@@ -10,6 +11,8 @@ import io.journalkeeper.rpc.client.ConvertRollResponse;
 import io.journalkeeper.rpc.client.CreateTransactionRequest;
 import io.journalkeeper.rpc.client.CreateTransactionResponse;
 import io.journalkeeper.rpc.client.GetOpeningTransactionsResponse;
+import io.journalkeeper.rpc.client.GetPartitionEntriesRequest;
+import io.journalkeeper.rpc.client.GetPartitionEntriesResponse;
 import io.journalkeeper.rpc.client.GetServerStatusResponse;
 import io.journalkeeper.rpc.client.GetServersResponse;
 import io.journalkeeper.rpc.client.GetSnapshotsResponse;
@@ -70,6 +73,11 @@ public class WrappedClientServerRpc implements ClientServerRpc {
         return clientServerRpc.queryClusterState(request);
     }
 
+    @Override
+    public CompletableFuture<GetPartitionEntriesResponse> getPartitionEntries(GetPartitionEntriesRequest request) {
+        return clientServerRpc.getPartitionEntries(request);
+    }
+
     @Override
     public CompletableFuture<GetServersResponse> getServers() {
         return clientServerRpc.getServers();
@@ -81,8 +89,8 @@ public class WrappedClientServerRpc implements ClientServerRpc {
     }
 
     @Override
-    public CompletableFuture<AddPullWatchResponse> addPullWatch() {
-        return clientServerRpc.addPullWatch();
+    public CompletableFuture<AddPullWatchResponse> addPullWatch(AddPullWatchRequest request) {
+        return clientServerRpc.addPullWatch(request);
     }
 
     @Override
@@ -0,0 +1,115 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.core.server;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class AppliedIndexWaitersTest {
+    private ScheduledExecutorService scheduledExecutor;
+    private final AtomicLong lastApplied = new AtomicLong(0L);
+
+    @Before
+    public void before() {
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void after() {
+        scheduledExecutor.shutdownNow();
+    }
+
+    @Test
+    public void releaseTest() throws Exception {
+        AppliedIndexWaiters waiters = new AppliedIndexWaiters(scheduledExecutor, 10000L);
+        lastApplied.set(5L);
+        // 已经执行到的位置直接返回
+        Assert.assertTrue(waiters.waitFor(5L, lastApplied::get).isDone());
+
+        CompletableFuture<Void> future10 = waiters.waitFor(10L, lastApplied::get);
+        CompletableFuture<Void> future20 = waiters.waitFor(20L, lastApplied::get);
+        CompletableFuture<Void> anotherFuture10 = waiters.waitFor(10L, lastApplied::get);
+        Assert.assertFalse(future10.isDone());
+
+        lastApplied.set(9L);
+        waiters.release(lastApplied.get());
+        Assert.assertFalse(future10.isDone());
+
+        lastApplied.set(15L);
+        waiters.release(lastApplied.get());
+        future10.get(1, TimeUnit.SECONDS);
+        anotherFuture10.get(1, TimeUnit.SECONDS);
+        Assert.assertFalse(future20.isDone());
+
+        lastApplied.set(20L);
+        waiters.release(lastApplied.get());
+        future20.get(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void timeoutTest() throws Exception {
+        final long timeoutMs = 200L;
+        AppliedIndexWaiters waiters = new AppliedIndexWaiters(scheduledExecutor, timeoutMs);
+        long start = System.currentTimeMillis();
+        CompletableFuture<Void> future = waiters.waitFor(10L, lastApplied::get);
+        assertIllegalState(future);
+        Assert.assertTrue(System.currentTimeMillis() - start >= timeoutMs);
+
+        // 超时的请求已经移除，再执行到这个位置时不会被唤醒
+        lastApplied.set(10L);
+        waiters.release(lastApplied.get());
+        assertIllegalState(future);
+
+        // 等待时间为0时不等待
+        assertIllegalState(new AppliedIndexWaiters(scheduledExecutor, 0L).waitFor(20L, lastApplied::get));
+    }
+
+    @Test
+    public void failAllTest() throws Exception {
+        AppliedIndexWaiters waiters = new AppliedIndexWaiters(scheduledExecutor, 10000L);
+        CompletableFuture<Void> future10 = waiters.waitFor(10L, lastApplied::get);
+        CompletableFuture<Void> future20 = waiters.waitFor(20L, lastApplied::get);
+        waiters.failAll();
+        assertIllegalState(future10);
+        assertIllegalState(future20);
+
+        // 结束之后新的等待不受影响
+        CompletableFuture<Void> future = waiters.waitFor(10L, lastApplied::get);
+        lastApplied.set(10L);
+        waiters.release(lastApplied.get());
+        future.get(1, TimeUnit.SECONDS);
+    }
+
+    private void assertIllegalState(CompletableFuture<Void> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail("Should throw IllegalStateException!");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
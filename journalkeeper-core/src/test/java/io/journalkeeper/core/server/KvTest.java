@@ -15,6 +15,7 @@ package io.journalkeeper.core.server;
 
 import io.journalkeeper.core.BootStrap;
 import io.journalkeeper.core.api.AdminClient;
+import io.journalkeeper.core.api.QueryConsistency;
 import io.journalkeeper.core.api.RaftServer;
 import io.journalkeeper.core.api.ServerStatus;
 import io.journalkeeper.core.api.VoterState;
@@ -38,9 +39,11 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
@@ -272,6 +275,88 @@ public class KvTest {
         }
     }
 
+    @Test
+    public void pipelinedReplicationTest() throws IOException, ExecutionException, InterruptedException, TimeoutException {
+        int nodes = 3;
+        Path path = TestPathUtils.prepareBaseDir("PipelinedReplicationTest");
+        List<URI> serverURIs = new ArrayList<>(nodes);
+        List<Properties> propertiesList = new ArrayList<>(nodes);
+        for (int i = 0; i < nodes; i++) {
+            URI uri = URI.create("local://test" + i);
+            serverURIs.add(uri);
+            Path workingDir = path.resolve("server" + i);
+            Properties properties = new Properties();
+            properties.setProperty("working_dir", workingDir.toString());
+            properties.setProperty("persistence.journal.file_data_size", String.valueOf(128 * 1024));
+            properties.setProperty("persistence.index.file_data_size", String.valueOf(16 * 1024));
+            properties.setProperty("disable_logo", "true");
+            properties.setProperty("replication_batch_size", String.valueOf(4));
+            properties.setProperty("replication_pipeline_window", String.valueOf(8));
+            propertiesList.add(properties);
+        }
+        List<WrappedBootStrap<String, String, String, String>> kvServers = createServers(serverURIs, propertiesList, RaftServer.Roll.VOTER, true);
+        try {
+            WrappedRaftClient<String, String, String, String> kvClient = kvServers.get(0).getClient();
+            AdminClient adminClient = kvServers.get(0).getAdminClient();
+            int count = 256;
+            List<CompletableFuture<String>> futures = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                futures.add(kvClient.update("SET key" + i + " " + i));
+            }
+            for (CompletableFuture<String> future : futures) {
+                Assert.assertNull(future.get());
+            }
+            for (int i = 0; i < count; i++) {
+                Assert.assertEquals(String.valueOf(i), kvClient.query("GET key" + i).get());
+            }
+
+            // 所有节点的日志最终都和LEADER一致
+            long leaderMaxIndex = adminClient.getServerStatus(adminClient.getClusterConfiguration().get().getLeader()).get().getMaxIndex();
+            for (URI uri : serverURIs) {
+                long t0 = System.currentTimeMillis();
+                while (System.currentTimeMillis() - t0 < 10000L && adminClient.getServerStatus(uri).get().getCommitIndex() < leaderMaxIndex) {
+                    Thread.sleep(50L);
+                }
+                Assert.assertTrue(adminClient.getServerStatus(uri).get().getCommitIndex() >= leaderMaxIndex);
+            }
+        } finally {
+            stopServers(kvServers);
+            TestPathUtils.destroyBaseDir(path.toFile());
+        }
+    }
+
+    @Test
+    public void groupCommitTest() throws IOException, ExecutionException, InterruptedException, TimeoutException {
+        Path path = TestPathUtils.prepareBaseDir("GroupCommitTest");
+        URI uri = URI.create("local://test0");
+        Properties properties = new Properties();
+        properties.setProperty("working_dir", path.resolve("server0").toString());
+        properties.setProperty("persistence.journal.file_data_size", String.valueOf(128 * 1024));
+        properties.setProperty("persistence.index.file_data_size", String.valueOf(16 * 1024));
+        properties.setProperty("disable_logo", "true");
+        properties.setProperty("group_commit_max_requests", String.valueOf(16));
+        List<WrappedBootStrap<String, String, String, String>> kvServers =
+                createServers(Collections.singletonList(uri), Collections.singletonList(properties), RaftServer.Roll.VOTER, true);
+        try {
+            WrappedRaftClient<String, String, String, String> kvClient = kvServers.get(0).getClient();
+            int count = 1024;
+            List<CompletableFuture<String>> futures = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                futures.add(kvClient.update("SET key" + i + " " + i));
+            }
+            for (CompletableFuture<String> future : futures) {
+                Assert.assertNull(future.get());
+            }
+            // 合并写入后，每个请求都被正确的执行和响应
+            for (int i = 0; i < count; i++) {
+                Assert.assertEquals(String.valueOf(i), kvClient.query("GET key" + i).get());
+            }
+        } finally {
+            stopServers(kvServers);
+            TestPathUtils.destroyBaseDir(path.toFile());
+        }
+    }
+
     @Test
     public void localClientTest() throws IOException, ExecutionException, InterruptedException, TimeoutException {
 
@@ -772,6 +857,144 @@ public class KvTest {
         TestPathUtils.destroyBaseDir(path.toFile());
     }
 
+    /**
+     * OBSERVER按窗口预取日志，期间停掉上游节点切换复制来源，写入的顺序和数据保持一致。
+     */
+    @Test
+    public void observerPullTest() throws Exception {
+        int serverCount = 3;
+        Path path = TestPathUtils.prepareBaseDir("observerPullTest");
+        List<WrappedBootStrap<String, String, String, String>> servers = createServers(serverCount, path);
+        List<URI> voters = servers.stream()
+                .map(WrappedBootStrap::getServer)
+                .map(RaftServer::serverUri)
+                .collect(Collectors.toList());
+        URI leaderUri = servers.get(0).getAdminClient().getClusterConfiguration().get().getLeader();
+        // 停掉follower时，通过leader读写
+        WrappedBootStrap<String, String, String, String> leader = servers.stream()
+                .filter(s -> s.getServer().serverUri().equals(leaderUri))
+                .findAny().orElseThrow(IllegalStateException::new);
+        WrappedRaftClient<String, String, String, String> kvClient = leader.getClient();
+        AdminClient adminClient = leader.getAdminClient();
+
+        // 写入足够多的数据，让OBSERVER进入预取
+        int keyCount = 0;
+        for (; keyCount < 1000; keyCount++) {
+            Assert.assertNull(kvClient.update("SET key" + keyCount + " value" + keyCount).get());
+            Assert.assertNull(kvClient.update("SET last value" + keyCount).get());
+        }
+
+        // 只从2个follower复制
+        List<WrappedBootStrap<String, String, String, String>> followers = servers.stream()
+                .filter(s -> !s.getServer().serverUri().equals(leaderUri))
+                .collect(Collectors.toList());
+        Assert.assertEquals(2, followers.size());
+
+        URI observerUri = URI.create("local://test" + serverCount);
+        List<URI> allServers = new ArrayList<>(voters);
+        allServers.add(observerUri);
+        Properties properties = new Properties();
+        properties.setProperty("working_dir", path.resolve("server" + serverCount).toString());
+        properties.setProperty("persistence.journal.file_data_size", String.valueOf(128 * 1024));
+        properties.setProperty("persistence.index.file_data_size", String.valueOf(16 * 1024));
+        properties.setProperty("disable_logo", "true");
+        properties.setProperty("observer.parents", String.join(",", followers.stream()
+                .map(s -> s.getServer().serverUri().toString()).toArray(String[]::new)));
+        properties.setProperty("observer.pull_batch_size", "16");
+        properties.setProperty("observer.pull_window", "4");
+        properties.setProperty("observer.pull_target_bytes", String.valueOf(2 * 1024));
+        WrappedBootStrap<String, String, String, String> observer = new WrappedBootStrap<>(RaftServer.Roll.OBSERVER, new KvStateFactory(), properties);
+        observer.getServer().init(observerUri, allServers);
+        observer.getServer().recover();
+        observer.getServer().start();
+
+        try {
+            waitForObserver(adminClient, leaderUri, observer, keyCount);
+
+            // 停掉一个上游节点，OBSERVER需要切换到另一个上游节点继续复制
+            WrappedBootStrap<String, String, String, String> toBeShutdown = followers.get(0);
+            logger.info("Shutdown parent: {}...", toBeShutdown.getServer().serverUri());
+            toBeShutdown.shutdown();
+            servers.remove(toBeShutdown);
+
+            for (int i = 0; i < 500; i++, keyCount++) {
+                Assert.assertNull(kvClient.update("SET key" + keyCount + " value" + keyCount).get());
+                Assert.assertNull(kvClient.update("SET last value" + keyCount).get());
+            }
+            waitForObserver(adminClient, leaderUri, observer, keyCount);
+        } finally {
+            observer.shutdown();
+            stopServers(servers);
+            TestPathUtils.destroyBaseDir(path.toFile());
+        }
+    }
+
+    /**
+     * 使用默认的复制配置，OBSERVER落后时也要进入预取。
+     */
+    @Test
+    public void observerDefaultPrefetchTest() throws Exception {
+        int serverCount = 3;
+        Path path = TestPathUtils.prepareBaseDir("observerDefaultPrefetchTest");
+        List<WrappedBootStrap<String, String, String, String>> servers = createServers(serverCount, path);
+        List<URI> voters = servers.stream()
+                .map(WrappedBootStrap::getServer)
+                .map(RaftServer::serverUri)
+                .collect(Collectors.toList());
+        URI leaderUri = servers.get(0).getAdminClient().getClusterConfiguration().get().getLeader();
+        WrappedBootStrap<String, String, String, String> leader = servers.stream()
+                .filter(s -> s.getServer().serverUri().equals(leaderUri))
+                .findAny().orElseThrow(IllegalStateException::new);
+        WrappedRaftClient<String, String, String, String> kvClient = leader.getClient();
+
+        int keyCount = 0;
+        for (; keyCount < 2000; keyCount++) {
+            Assert.assertNull(kvClient.update("SET key" + keyCount + " value" + keyCount).get());
+            Assert.assertNull(kvClient.update("SET last value" + keyCount).get());
+        }
+
+        URI observerUri = URI.create("local://test" + serverCount);
+        List<URI> allServers = new ArrayList<>(voters);
+        allServers.add(observerUri);
+        Properties properties = new Properties();
+        properties.setProperty("working_dir", path.resolve("server" + serverCount).toString());
+        properties.setProperty("persistence.journal.file_data_size", String.valueOf(128 * 1024));
+        properties.setProperty("persistence.index.file_data_size", String.valueOf(16 * 1024));
+        properties.setProperty("disable_logo", "true");
+        properties.setProperty("observer.parents", String.join(",", voters.stream()
+                .map(URI::toString).toArray(String[]::new)));
+        WrappedBootStrap<String, String, String, String> observer = new WrappedBootStrap<>(RaftServer.Roll.OBSERVER, new KvStateFactory(), properties);
+        observer.getServer().init(observerUri, allServers);
+        observer.getServer().recover();
+        observer.getServer().start();
+
+        try {
+            waitForObserver(leader.getAdminClient(), leaderUri, observer, keyCount);
+            Assert.assertTrue(((Observer) ((Server) observer.getServer()).getServer()).getPrefetchedPulls() > 0L);
+        } finally {
+            observer.shutdown();
+            stopServers(servers);
+            TestPathUtils.destroyBaseDir(path.toFile());
+        }
+    }
+
+    private void waitForObserver(AdminClient adminClient, URI leaderUri,
+                                 WrappedBootStrap<String, String, String, String> observer, int keyCount) throws Exception {
+        long leaderApplied = adminClient.getServerStatus(leaderUri).get().getLastApplied();
+        URI observerUri = observer.getServer().serverUri();
+        long t0 = System.currentTimeMillis();
+        while (observer.getAdminClient().getServerStatus(observerUri).get().getLastApplied() < leaderApplied) {
+            Assert.assertTrue("Observer not synced in time!", System.currentTimeMillis() - t0 < 30000L);
+            Thread.sleep(50L);
+        }
+        WrappedRaftClient<String, String, String, String> observerClient = observer.getLocalClient();
+        for (int i = 0; i < keyCount; i++) {
+            Assert.assertEquals("value" + i, observerClient.query("GET key" + i, QueryConsistency.NONE).get());
+        }
+        // 按顺序覆盖写入的值，必须是最后一次写入的值
+        Assert.assertEquals("value" + (keyCount - 1), observerClient.query("GET last", QueryConsistency.NONE).get());
+    }
+
     @Test
     public void preVoteTest() throws Exception {
         // 启动5个节点的集群
@@ -0,0 +1,106 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.core.server;
+
+import io.journalkeeper.core.state.FolderTrunkIterator;
+import io.journalkeeper.exceptions.InstallSnapshotException;
+import io.journalkeeper.utils.files.FileUtils;
+import io.journalkeeper.utils.test.ByteUtils;
+import io.journalkeeper.utils.test.TestPathUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 乱序安装快照数据块的测试。
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class PartialSnapshotTest {
+    private Path base = null;
+
+    @Before
+    public void before() throws IOException {
+        base = TestPathUtils.prepareBaseDir("PartialSnapshotTest");
+    }
+
+    @After
+    public void after() {
+        TestPathUtils.destroyBaseDir(base.toFile());
+    }
+
+    @Test
+    public void outOfOrderInstallTest() throws IOException {
+        Path source = base.resolve("source");
+        Files.createDirectories(source.resolve("empty_dir"));
+        Files.createDirectories(source.resolve("sub"));
+        Files.write(source.resolve("small"), ByteUtils.createRandomSizeBytes(100));
+        Files.write(source.resolve("sub").resolve("large"), ByteUtils.createFixedSizeBytes(1024 * 1024 + 17));
+        Files.write(source.resolve("sub").resolve("zero"), new byte[0]);
+
+        List<byte[]> trunks = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        long size = 0L;
+        try (FolderTrunkIterator iterator =
+                     new FolderTrunkIterator(source, FileUtils.listAllFiles(source), 4096, 666L, 8)) {
+            while (iterator.hasMoreTrunks()) {
+                offsets.add(iterator.offset());
+                byte[] trunk = iterator.nextTrunk();
+                trunks.add(trunk);
+                size += trunk.length;
+            }
+        }
+
+        // 第一块和最后一块保持顺序，中间的数据块打乱顺序
+        List<Integer> order = new ArrayList<>();
+        for (int i = 1; i < trunks.size() - 1; i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order, new Random(666L));
+        order.add(0, 0);
+        order.add(trunks.size() - 1);
+
+        Path target = base.resolve("target");
+        PartialSnapshot partialSnapshot = new PartialSnapshot(base.resolve("partial"));
+        for (int i = 0; i < order.size() - 1; i++) {
+            int trunkIndex = order.get(i);
+            partialSnapshot.installTrunk(offsets.get(trunkIndex), trunks.get(trunkIndex), target);
+        }
+
+        try {
+            partialSnapshot.checkComplete(size);
+            Assert.fail("Snapshot should be incomplete without the last trunk!");
+        } catch (InstallSnapshotException ignored) {
+        }
+
+        int last = trunks.size() - 1;
+        partialSnapshot.installTrunk(offsets.get(last), trunks.get(last), target);
+        partialSnapshot.checkComplete(size);
+        partialSnapshot.finish();
+
+        Assert.assertTrue(Files.isDirectory(target.resolve("empty_dir")));
+        for (String file : new String[]{"small", "sub/large", "sub/zero"}) {
+            Assert.assertArrayEquals(Files.readAllBytes(source.resolve(file)), Files.readAllBytes(target.resolve(file)));
+        }
+    }
+}
@@ -13,8 +13,10 @@
  */
 package io.journalkeeper.core.server;
 
+import io.journalkeeper.core.api.CheckpointState;
 import io.journalkeeper.core.serialize.WrappedBootStrap;
 import io.journalkeeper.core.serialize.WrappedRaftClient;
+import io.journalkeeper.core.state.KvState;
 import io.journalkeeper.core.state.KvStateFactory;
 import io.journalkeeper.utils.files.FileUtils;
 import org.junit.After;
@@ -23,11 +25,14 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * RecoverSnapshotTest
@@ -88,6 +93,41 @@ public class RecoverSnapshotTest {
         kvServer.shutdown();
     }
 
+    @Test
+    public void checkpointTakeAndRecoverTest() throws Exception {
+        URI uri = URI.create("local://test");
+        File root = new File(ROOT);
+        Properties properties = new Properties();
+        properties.setProperty("working_dir", root.toString());
+
+        AtomicInteger checkpoints = new AtomicInteger(0);
+        WrappedBootStrap<String, String, String, String> kvServer =
+                new WrappedBootStrap<>(() -> new CheckpointKvState(checkpoints), properties);
+        kvServer.getServer().init(uri, Collections.singletonList(uri));
+        kvServer.getServer().recover();
+        kvServer.getServer().start();
+        kvServer.getAdminClient().waitForClusterReady(1000 * 5);
+
+        WrappedRaftClient<String, String, String, String> client = kvServer.getClient();
+        Assert.assertNull(client.update("SET key_1 value_1").get());
+
+        kvServer.getAdminClient().takeSnapshot().get();
+        Assert.assertEquals(1, checkpoints.get());
+        Assert.assertEquals(2, kvServer.getAdminClient().getSnapshots().get().getSnapshots().size());
+
+        Assert.assertNull(client.update("SET key_2 value_2").get());
+        Assert.assertEquals("value_2", client.query("GET key_2").get());
+
+        // 恢复快照之前先为当前状态创建一个快照
+        kvServer.getAdminClient().recoverSnapshot(2).get();
+        Assert.assertEquals(2, checkpoints.get());
+        Assert.assertEquals(3, kvServer.getAdminClient().getSnapshots().get().getSnapshots().size());
+        Assert.assertEquals("value_1", client.query("GET key_1").get());
+        Assert.assertNull(client.query("GET key_2").get());
+
+        kvServer.shutdown();
+    }
+
     @Test
     public void clusterTakeAndRecoverTest() throws Exception {
         List<URI> uris = new ArrayList<>();
@@ -167,4 +207,29 @@ public class RecoverSnapshotTest {
         }
 
     }
-}
\ No newline at end of file
+
+    /**
+     * 通过检查点创建快照的KvState，检查点中的文件与直接复制状态文件相同
+     */
+    private static class CheckpointKvState extends KvState implements CheckpointState {
+        private final AtomicInteger checkpoints;
+        private Path statePath;
+
+        CheckpointKvState(AtomicInteger checkpoints) {
+            this.checkpoints = checkpoints;
+        }
+
+        @Override
+        public void recover(Path statePath, Properties properties) {
+            super.recover(statePath, properties);
+            this.statePath = statePath;
+        }
+
+        @Override
+        public void checkpoint(Path destPath) throws IOException {
+            flush();
+            FileUtils.dump(statePath, destPath);
+            checkpoints.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.core.server;
+
+import io.journalkeeper.core.api.RaftServer;
+import io.journalkeeper.core.api.ResponseConfig;
+import io.journalkeeper.core.monitor.SimpleMonitorCollector;
+import io.journalkeeper.core.serialize.WrappedBootStrap;
+import io.journalkeeper.core.serialize.WrappedRaftClient;
+import io.journalkeeper.core.state.KvStateFactory;
+import io.journalkeeper.metric.JMetric;
+import io.journalkeeper.metric.JMetricReport;
+import io.journalkeeper.monitor.LatencyMonitorInfo;
+import io.journalkeeper.monitor.MonitorCollector;
+import io.journalkeeper.monitor.ServerMonitorInfo;
+import io.journalkeeper.utils.spi.ServiceSupport;
+import io.journalkeeper.utils.test.TestPathUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static io.journalkeeper.core.server.MetricNames.METRIC_WRITE_STAGE_APPEND;
+import static io.journalkeeper.core.server.MetricNames.METRIC_WRITE_STAGE_APPLY;
+import static io.journalkeeper.core.server.MetricNames.METRIC_WRITE_STAGE_FLUSH;
+import static io.journalkeeper.core.server.MetricNames.METRIC_WRITE_STAGE_QUEUE;
+import static io.journalkeeper.core.server.MetricNames.METRIC_WRITE_STAGE_REPLICATE;
+import static io.journalkeeper.core.server.MetricNames.METRIC_WRITE_STAGE_RESPOND;
+
+/**
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class WriteTracerTest {
+
+    /**
+     * 请求的日志位置是写入之后的最大索引，提交、刷盘和执行的索引到达这个位置时才记录对应的阶段，
+     * 所有阶段都到达后才记录各阶段的耗时
+     */
+    @Test
+    public void traceStagesTest() {
+        RecordingMetricProvider metricProvider = new RecordingMetricProvider();
+        WriteTracer writeTracer = new WriteTracer(metricProvider, 1, 0L);
+
+        // 第一个请求写入了索引[0, 3)，第二个请求写入了索引[3, 5)
+        CompletableFuture<Void> firstResponse = new CompletableFuture<>();
+        CompletableFuture<Void> secondResponse = new CompletableFuture<>();
+        long now = System.nanoTime();
+        writeTracer.onAppended(now - 3000L, now - 2000L, now - 1000L, 3L, ResponseConfig.REPLICATION, firstResponse);
+        writeTracer.onAppended(now - 3000L, now - 2000L, now - 1000L, 5L, ResponseConfig.ALL, secondResponse);
+        writeTracer.onProgress(0L, 0L, 0L);
+
+        // 提交、刷盘和执行都没有到达第一个请求的位置
+        writeTracer.onCommitted(2L);
+        writeTracer.onFlushed(2L);
+        writeTracer.onApplied(2L);
+        firstResponse.complete(null);
+        metricProvider.assertMarks(0);
+
+        // 只有提交和刷盘到达
+        writeTracer.onCommitted(3L);
+        writeTracer.onFlushed(4L);
+        metricProvider.assertMarks(0);
+
+        // 执行到达第一个请求的位置，第一个请求的所有阶段都已到达
+        writeTracer.onApplied(3L);
+        metricProvider.assertMarks(1);
+        Assert.assertEquals(1000L, metricProvider.marks(METRIC_WRITE_STAGE_QUEUE).get(0).longValue());
+        Assert.assertEquals(1000L, metricProvider.marks(METRIC_WRITE_STAGE_APPEND).get(0).longValue());
+
+        // 第二个请求的响应在所有阶段到达之前返回，耗时在所有阶段到达之后才记录
+        secondResponse.complete(null);
+        writeTracer.onProgress(5L, 5L, 5L);
+        metricProvider.assertMarks(2);
+
+        // 各阶段的耗时都不是负数，响应不早于它等待的阶段
+        for (String name : new String[] {METRIC_WRITE_STAGE_QUEUE, METRIC_WRITE_STAGE_APPEND, METRIC_WRITE_STAGE_REPLICATE,
+                METRIC_WRITE_STAGE_FLUSH, METRIC_WRITE_STAGE_APPLY}) {
+            for (long latency : metricProvider.marks(name)) {
+                Assert.assertTrue(name + ": " + latency, latency >= 0L);
+            }
+        }
+
+        // 已经推进过的位置不会重复记录
+        writeTracer.onProgress(10L, 10L, 10L);
+        metricProvider.assertMarks(2);
+    }
+
+    /**
+     * 开始跟踪之前各阶段已经到达的，由写入线程补记
+     */
+    @Test
+    public void progressBeforeTraceTest() {
+        RecordingMetricProvider metricProvider = new RecordingMetricProvider();
+        WriteTracer writeTracer = new WriteTracer(metricProvider, 1, 0L);
+        CompletableFuture<Void> response = CompletableFuture.completedFuture(null);
+        long now = System.nanoTime();
+        writeTracer.onAppended(now, now, now, 1L, ResponseConfig.RECEIVE, response);
+        metricProvider.assertMarks(0);
+        writeTracer.onProgress(1L, 1L, 1L);
+        Assert.assertEquals(1, metricProvider.marks(METRIC_WRITE_STAGE_APPLY).size());
+        // RECEIVE在写入之前已经返回响应，不记录响应阶段
+        Assert.assertTrue(metricProvider.marks(METRIC_WRITE_STAGE_RESPOND).isEmpty());
+    }
+
+    @Test
+    public void sampleRateTest() {
+        RecordingMetricProvider metricProvider = new RecordingMetricProvider();
+        WriteTracer writeTracer = new WriteTracer(metricProvider, 3, 0L);
+        long now = System.nanoTime();
+        for (long position = 1; position <= 9; position++) {
+            writeTracer.onAppended(now, now, now, position, ResponseConfig.REPLICATION, CompletableFuture.completedFuture(null));
+        }
+        writeTracer.onProgress(9L, 9L, 9L);
+        metricProvider.assertMarks(3);
+    }
+
+    /**
+     * 写入请求经过LEADER的写入、提交、刷盘和执行，每个请求在各阶段都有记录
+     */
+    @Test
+    public void leaderWriteStagesTest() throws Exception {
+        Path path = TestPathUtils.prepareBaseDir("leaderWriteStagesTest");
+        Properties properties = new Properties();
+        properties.setProperty("working_dir", path.resolve("server0").toString());
+        properties.setProperty("persistence.journal.file_data_size", String.valueOf(128 * 1024));
+        properties.setProperty("persistence.index.file_data_size", String.valueOf(16 * 1024));
+        properties.setProperty("disable_logo", "true");
+        properties.setProperty("enable_metric", "true");
+        properties.setProperty("write_trace_sample_rate", "1");
+        URI uri = URI.create("local://test0");
+        WrappedBootStrap<String, String, String, String> server =
+                new WrappedBootStrap<>(RaftServer.Roll.VOTER, new KvStateFactory(), properties);
+        server.getServer().init(uri, Collections.singletonList(uri));
+        server.getServer().recover();
+        server.getServer().start();
+        try {
+            server.getAdminClient().waitForClusterReady();
+            WrappedRaftClient<String, String, String, String> client = server.getClient();
+            int requests = 100;
+            for (int i = 0; i < requests; i++) {
+                client.update("SET key" + i + " " + i).get();
+            }
+
+            SimpleMonitorCollector monitorCollector = ServiceSupport.load(MonitorCollector.class, SimpleMonitorCollector.class);
+            Map<String, LatencyMonitorInfo> stages = null;
+            long deadline = System.currentTimeMillis() + 5000L;
+            while (System.currentTimeMillis() < deadline) {
+                ServerMonitorInfo monitorInfo = monitorCollector.getMonitoredServer(uri).collect();
+                Collection<LatencyMonitorInfo> writeStages = monitorInfo.getVoter().getLeader().getWriteStages();
+                stages = writeStages.stream().collect(Collectors.toMap(LatencyMonitorInfo::getName, Function.identity()));
+                if (stages.values().stream().allMatch(stage -> stage.getRequests() == requests)) {
+                    break;
+                }
+                Thread.sleep(50L);
+            }
+            Assert.assertNotNull(stages);
+            for (String name : new String[] {METRIC_WRITE_STAGE_QUEUE, METRIC_WRITE_STAGE_APPEND, METRIC_WRITE_STAGE_REPLICATE,
+                    METRIC_WRITE_STAGE_FLUSH, METRIC_WRITE_STAGE_APPLY, METRIC_WRITE_STAGE_RESPOND}) {
+                Assert.assertTrue(name, stages.containsKey(name));
+                Assert.assertEquals(name, requests, stages.get(name).getRequests());
+            }
+        } finally {
+            server.shutdown();
+            TestPathUtils.destroyBaseDir(path.toFile());
+        }
+    }
+
+    /**
+     * 记录每个Metric的每次mark
+     */
+    private static class RecordingMetricProvider implements MetricProvider {
+        private final Map<String, List<Long>> marks = new ConcurrentHashMap<>();
+
+        @Override
+        public JMetric getMetric(String name) {
+            List<Long> latencies = marks.computeIfAbsent(name, k -> new CopyOnWriteArrayList<>());
+            return new JMetric() {
+                @Override
+                public void start() {}
+
+                @Override
+                public void end(long traffic) {}
+
+                @Override
+                public void mark(long latencyNs, long traffic) {
+                    latencies.add(latencyNs);
+                }
+
+                @Override
+                public void reset() {}
+
+                @Override
+                public JMetricReport get() {
+                    return null;
+                }
+
+                @Override
+                public String name() {
+                    return name;
+                }
+            };
+        }
+
+        @Override
+        public boolean isMetricEnabled() {
+            return true;
+        }
+
+        @Override
+        public void removeMetric(String name) {}
+
+        List<Long> marks(String name) {
+            return marks.getOrDefault(name, Collections.emptyList());
+        }
+
+        /**
+         * 除响应外的每个阶段都记录了{@code count}次
+         */
+        void assertMarks(int count) {
+            for (String name : new String[] {METRIC_WRITE_STAGE_QUEUE, METRIC_WRITE_STAGE_APPEND, METRIC_WRITE_STAGE_REPLICATE,
+                    METRIC_WRITE_STAGE_FLUSH, METRIC_WRITE_STAGE_APPLY}) {
+                Assert.assertEquals(name, count, marks(name).size());
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.core.state;
+
+import io.journalkeeper.core.api.BatchState;
+import io.journalkeeper.core.api.EntryFuture;
+import io.journalkeeper.core.api.JournalEntry;
+import io.journalkeeper.core.api.JournalEntryParser;
+import io.journalkeeper.core.api.RaftJournal;
+import io.journalkeeper.core.api.StateResult;
+import io.journalkeeper.core.entry.DefaultJournalEntryParser;
+import io.journalkeeper.exceptions.StateExecutionException;
+import io.journalkeeper.persistence.PersistenceFactory;
+import io.journalkeeper.utils.spi.ServiceSupport;
+import io.journalkeeper.utils.test.TestPathUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static io.journalkeeper.core.api.RaftJournal.RESERVED_PARTITIONS_START;
+
+/**
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class JournalKeeperStateTest {
+    private final JournalEntryParser journalEntryParser = new DefaultJournalEntryParser();
+    private final TestBatchState userState = new TestBatchState();
+    private Path path;
+    private JournalKeeperState state;
+
+    @Before
+    public void before() throws IOException {
+        path = TestPathUtils.prepareBaseDir();
+        state = new JournalKeeperState(() -> userState,
+                ServiceSupport.load(PersistenceFactory.class).createMetadataPersistenceInstance());
+        state.init(path, Collections.singletonList(URI.create("local://test")), Collections.singleton(0), null);
+        state.recover(path, new Properties());
+    }
+
+    @After
+    public void after() throws IOException {
+        state.close();
+        TestPathUtils.destroyBaseDir();
+    }
+
+    @Test
+    public void applyEntriesPartialFailureTest() {
+        // 保留分区的entry把这批entry分成两段
+        List<JournalEntry> entries = new ArrayList<>();
+        entries.add(createEntry("0", 0));
+        entries.add(createEntry("1", 0));
+        entries.add(createEntry("2", RESERVED_PARTITIONS_START + 1));
+        entries.add(createEntry("3", 0));
+        entries.add(createEntry("4", 0));
+        List<EntryFuture> entryFutures = entries.stream()
+                .map(entry -> (EntryFuture) () -> entry.getPayload().getBytes())
+                .collect(Collectors.toList());
+
+        // 第二段执行失败，第一段和保留分区entry的结果仍然返回
+        userState.failOnBatch = 2;
+        List<StateResult> results = new ArrayList<>();
+        try {
+            state.applyEntries(entries, entryFutures, null, results);
+            Assert.fail();
+        } catch (StateExecutionException ignored) {
+        }
+        Assert.assertEquals(3, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            Assert.assertEquals(i + 1, results.get(i).getLastApplied());
+        }
+        Assert.assertEquals("0", new String(results.get(0).getUserResult()));
+        Assert.assertEquals("1", new String(results.get(1).getUserResult()));
+        Assert.assertEquals(3L, state.lastApplied());
+
+        // 重试没执行的entry
+        userState.failOnBatch = -1;
+        results.clear();
+        state.applyEntries(entries.subList(3, 5), entryFutures.subList(3, 5), null, results);
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals("3", new String(results.get(0).getUserResult()));
+        Assert.assertEquals(5L, results.get(1).getLastApplied());
+        Assert.assertEquals(5L, state.lastApplied());
+    }
+
+    private JournalEntry createEntry(String payload, int partition) {
+        JournalEntry entry = journalEntryParser.createJournalEntry(payload.getBytes());
+        entry.setPartition(partition);
+        return entry;
+    }
+
+    private static class TestBatchState implements BatchState {
+        private int batches = 0;
+        private int failOnBatch = -1;
+
+        @Override
+        public List<StateResult> execute(List<JournalEntry> entryHeaders, List<EntryFuture> entryFutures, long index, RaftJournal journal) {
+            if (++batches == failOnBatch) {
+                throw new StateExecutionException("Batch failed!");
+            }
+            return entryFutures.stream()
+                    .map(entryFuture -> new StateResult(entryFuture.get()))
+                    .collect(Collectors.toList());
+        }
+
+        @Override
+        public StateResult execute(byte[] entry, int partition, long index, int batchSize, RaftJournal journal) {
+            return new StateResult(entry);
+        }
+
+        @Override
+        public byte[] query(byte[] query, RaftJournal journal) {
+            return new byte[0];
+        }
+
+        @Override
+        public void recover(Path path, Properties properties) {
+        }
+    }
+}
@@ -0,0 +1,513 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.core.transaction;
+
+import io.journalkeeper.core.api.JournalEntry;
+import io.journalkeeper.core.api.JournalEntryParser;
+import io.journalkeeper.core.api.UpdateRequest;
+import io.journalkeeper.core.api.transaction.UUIDTransactionId;
+import io.journalkeeper.core.entry.DefaultJournalEntryParser;
+import io.journalkeeper.core.journal.Journal;
+import io.journalkeeper.core.journal.JournalSnapshot;
+import io.journalkeeper.core.state.JournalKeeperState;
+import io.journalkeeper.exceptions.TransactionException;
+import io.journalkeeper.persistence.BufferPool;
+import io.journalkeeper.persistence.MetadataPersistence;
+import io.journalkeeper.persistence.PersistenceFactory;
+import io.journalkeeper.rpc.client.ClientServerRpc;
+import io.journalkeeper.rpc.client.UpdateClusterStateRequest;
+import io.journalkeeper.rpc.client.UpdateClusterStateResponse;
+import io.journalkeeper.utils.spi.ServiceSupport;
+import io.journalkeeper.utils.state.StateServer;
+import io.journalkeeper.utils.test.TestPathUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static io.journalkeeper.core.transaction.JournalTransactionManager.TRANSACTION_PARTITION_COUNT;
+import static io.journalkeeper.core.transaction.JournalTransactionManager.TRANSACTION_PARTITION_START;
+
+/**
+ * 事务索引的检查点和恢复，以及LEADER切换时完成事务的测试。
+ * 日志直接写入Journal，由测试代替状态机调用{@link JournalTransactionState#applyEntry}。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class JournalTransactionStateTest {
+    private static final int BIZ_PARTITION = 0;
+    private static final long TRANSACTION_TIMEOUT_MS = 600000L;
+    private final JournalEntryParser journalEntryParser = new DefaultJournalEntryParser();
+    private final TransactionEntrySerializer transactionEntrySerializer = new TransactionEntrySerializer();
+    /**
+     * 发给LEADER的写入请求
+     */
+    private final BlockingQueue<UpdateClusterStateRequest> updateRequests = new LinkedBlockingQueue<>();
+    private final List<JournalTransactionState> transactionStates = new ArrayList<>();
+    private Path path;
+    private Journal journal;
+    private ScheduledExecutorService scheduledExecutor;
+    private MetadataPersistence metadataPersistence;
+    private ClientServerRpc server;
+    private volatile long appliedIndex = 0L;
+
+    @Before
+    public void before() throws IOException {
+        path = TestPathUtils.prepareBaseDir();
+        PersistenceFactory persistenceFactory = ServiceSupport.load(PersistenceFactory.class);
+        journal = new Journal(persistenceFactory, ServiceSupport.load(BufferPool.class), journalEntryParser);
+        journal.recover(path.resolve("journal"), 0L, new EmptyJournalSnapshot(), new Properties());
+        metadataPersistence = persistenceFactory.createMetadataPersistenceInstance();
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        server = (ClientServerRpc) Proxy.newProxyInstance(ClientServerRpc.class.getClassLoader(),
+                new Class[]{ClientServerRpc.class},
+                (proxy, method, args) -> {
+                    if ("updateClusterState".equals(method.getName())) {
+                        updateRequests.add((UpdateClusterStateRequest) args[0]);
+                        return CompletableFuture.completedFuture(new UpdateClusterStateResponse());
+                    }
+                    return null;
+                });
+    }
+
+    @After
+    public void after() throws IOException {
+        for (JournalTransactionState transactionState : transactionStates) {
+            if (transactionState.serverState() == StateServer.ServerState.RUNNING) {
+                transactionState.stop();
+            }
+        }
+        scheduledExecutor.shutdownNow();
+        journal.close();
+        TestPathUtils.destroyBaseDir();
+    }
+
+    @Test
+    public void checkpointTest() throws Exception {
+        JournalTransactionState transactionState = startTransactionState();
+        UUID transactionId = UUID.randomUUID();
+        int partition = TRANSACTION_PARTITION_START + 1;
+        applyEntry(transactionState, new TransactionEntry(transactionId, Collections.singletonMap("key", "value")), partition);
+        appendBizEntry(1);
+        List<Long> entryIndices = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            entryIndices.add(applyEntry(transactionState, createTransactionEntry(transactionId, i), partition));
+            appendBizEntry(1);
+        }
+        transactionState.stop();
+
+        TransactionCheckpoint checkpoint = metadataPersistence.load(checkpointPath(), TransactionCheckpoint.class);
+        Assert.assertEquals(appliedIndex, checkpoint.getIndex());
+        Assert.assertEquals(4L, (long) checkpoint.getPartitionIndices().get(partition));
+        Assert.assertEquals(0L, (long) checkpoint.getPartitionIndices().get(TRANSACTION_PARTITION_START));
+        Assert.assertEquals(1, checkpoint.getTransactions().size());
+        TransactionCheckpoint.OpeningTransaction openingTransaction = checkpoint.getTransactions().get(0);
+        Assert.assertEquals(transactionId.toString(), openingTransaction.getTransactionId());
+        Assert.assertEquals(partition, openingTransaction.getPartition());
+        Assert.assertEquals("value", openingTransaction.getContext().get("key"));
+        Assert.assertArrayEquals(entryIndices.stream().mapToLong(Long::longValue).toArray(), openingTransaction.getEntries());
+
+        // 从检查点恢复，不需要重放日志
+        JournalTransactionState recoveredState = startTransactionState();
+        assertOpeningTransactions(recoveredState, transactionId);
+        recoveredState.startLeading();
+        applyEntry(recoveredState, new TransactionEntry(transactionId, TransactionEntryType.TRANSACTION_PRE_COMPLETE, true), partition);
+        assertCommitRequest(transactionId, partition, 0, 1, 2);
+    }
+
+    @Test
+    public void maxCompactionIndexTest() throws Exception {
+        JournalTransactionState transactionState = startTransactionState();
+        // 还没有保存检查点
+        Assert.assertEquals(journal.minIndex(), transactionState.maxCompactionIndex());
+        UUID transactionId = UUID.randomUUID();
+        int partition = TRANSACTION_PARTITION_START + 6;
+        applyEntry(transactionState, new TransactionEntry(transactionId, null), partition);
+        appendBizEntry(2);
+        long firstEntryIndex = applyEntry(transactionState, createTransactionEntry(transactionId, 0), partition);
+        appendBizEntry(2);
+        applyEntry(transactionState, createTransactionEntry(transactionId, 1), partition);
+        appendBizEntry(2);
+        transactionState.stop();
+
+        // 检查点之前未完成事务的日志不能删除
+        JournalTransactionState recoveredState = startTransactionState();
+        Assert.assertEquals(firstEntryIndex, recoveredState.maxCompactionIndex());
+
+        // 事务完成之后，可以删除到检查点的位置
+        applyEntry(recoveredState, new TransactionEntry(transactionId, TransactionEntryType.TRANSACTION_PRE_COMPLETE, false), partition);
+        applyEntry(recoveredState, new TransactionEntry(transactionId, TransactionEntryType.TRANSACTION_COMPLETE, false), partition);
+        TransactionCheckpoint checkpoint = metadataPersistence.load(checkpointPath(), TransactionCheckpoint.class);
+        Assert.assertEquals(checkpoint.getIndex(), recoveredState.maxCompactionIndex());
+    }
+
+    @Test
+    public void abortedCommitTest() throws Exception {
+        JournalTransactionState transactionState = startTransactionState();
+        UUID transactionId = UUID.randomUUID();
+        int partition = TRANSACTION_PARTITION_START + 7;
+        applyEntry(transactionState, new TransactionEntry(transactionId, null), partition);
+        long index = appendEntry(new TransactionEntry(transactionId, TransactionEntryType.TRANSACTION_PRE_COMPLETE, true), partition);
+        transactionState.applyEntry(new TransactionEntry(transactionId, TransactionEntryType.TRANSACTION_PRE_COMPLETE, true),
+                partition, index, Collections.emptyMap());
+
+        // 请求提交的事务被回滚，等待提交的客户端收到异常
+        Map<UUID, CompletableFuture<Void>> futures = new HashMap<>();
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        futures.put(transactionId, future);
+        TransactionEntry completeEntry = new TransactionEntry(transactionId, TransactionEntryType.TRANSACTION_COMPLETE, false);
+        index = appendEntry(completeEntry, partition);
+        transactionState.applyEntry(completeEntry, partition, index, futures);
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof TransactionException);
+        }
+        assertOpeningTransactions(transactionState);
+    }
+
+    /**
+     * 提交事务的日志连续写入，TRANSACTION_COMPLETE在最后。
+     * 提交位置可能停在事务的中间，这时只能看到事务的一部分消息，等待提交的客户端还不能返回；
+     * TRANSACTION_COMPLETE执行之后，事务的所有消息都已经提交。
+     */
+    @Test
+    public void partialCommitTest() throws Exception {
+        JournalTransactionState transactionState = startTransactionState();
+        transactionState.startLeading();
+        UUID transactionId = UUID.randomUUID();
+        int partition = TRANSACTION_PARTITION_START + 8;
+        final int count = 5;
+        applyEntry(transactionState, new TransactionEntry(transactionId, null), partition);
+        for (int i = 0; i < count; i++) {
+            applyEntry(transactionState, createTransactionEntry(transactionId, i), partition);
+        }
+        applyEntry(transactionState, new TransactionEntry(transactionId, TransactionEntryType.TRANSACTION_PRE_COMPLETE, true), partition);
+        UpdateClusterStateRequest request = updateRequests.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(request);
+        assertCommitRequest(request, transactionId, partition, 0, 1, 2, 3, 4);
+
+        // 像LEADER一样用一次写入保存这个请求的所有日志
+        List<JournalEntry> journalEntries = new ArrayList<>(request.getRequests().size());
+        for (UpdateRequest updateRequest : request.getRequests()) {
+            JournalEntry journalEntry = journalEntryParser.createJournalEntry(updateRequest.getEntry());
+            journalEntry.setPartition(updateRequest.getPartition());
+            journalEntry.setBatchSize(updateRequest.getBatchSize());
+            journalEntries.add(journalEntry);
+        }
+        long bizMaxIndex = journal.maxIndex(BIZ_PARTITION);
+        long firstIndex = journal.maxIndex();
+        journal.append(journalEntries);
+        long completeIndex = journal.maxIndex() - 1;
+        Assert.assertEquals(firstIndex + count, completeIndex);
+
+        // 只提交了事务的一部分消息
+        journal.commit(firstIndex + 2);
+        Assert.assertEquals(firstIndex + 2, journal.commitIndex());
+        Assert.assertEquals(bizMaxIndex + 2, journal.maxIndex(BIZ_PARTITION));
+        Assert.assertArrayEquals("1".getBytes(),
+                journal.readByPartition(BIZ_PARTITION, bizMaxIndex + 1).getPayload().getBytes());
+        Map<UUID, CompletableFuture<Void>> futures = new HashMap<>();
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        futures.put(transactionId, future);
+        Assert.assertFalse(future.isDone());
+        assertOpeningTransactions(transactionState, transactionId);
+
+        // TRANSACTION_COMPLETE提交并执行之后，客户端才返回
+        journal.commit(journal.maxIndex());
+        Assert.assertTrue(journal.commitIndex() > completeIndex);
+        Assert.assertEquals(bizMaxIndex + count, journal.maxIndex(BIZ_PARTITION));
+        TransactionEntry completeEntry = transactionEntrySerializer.parse(request.getRequests().get(count).getEntry());
+        transactionState.applyEntry(completeEntry, partition, completeIndex, futures);
+        future.get(1, TimeUnit.SECONDS);
+        assertOpeningTransactions(transactionState);
+    }
+
+    @Test
+    public void recoverFromCheckpointTest() throws Exception {
+        JournalTransactionState transactionState = startTransactionState();
+        UUID transactionId0 = UUID.randomUUID();
+        int partition0 = TRANSACTION_PARTITION_START;
+        applyEntry(transactionState, new TransactionEntry(transactionId0, null), partition0);
+        applyEntry(transactionState, createTransactionEntry(transactionId0, 0), partition0);
+        appendBizEntry(5);
+        transactionState.stop();
+
+        // 检查点之后的日志已经被状态机执行，但是没有写入检查点
+        UUID transactionId1 = UUID.randomUUID();
+        int partition1 = TRANSACTION_PARTITION_START + 2;
+        appendEntry(createTransactionEntry(transactionId0, 1), partition0);
+        appendBizEntry(5);
+        appendEntry(new TransactionEntry(transactionId1, null), partition1);
+        appendEntry(createTransactionEntry(transactionId1, 10), partition1);
+        appendEntry(createTransactionEntry(transactionId0, 2), partition0);
+        appendBizEntry(5);
+        appliedIndex = journal.commitIndex();
+
+        // 已经提交但是状态机还没有执行的日志不能重放
+        UUID transactionId2 = UUID.randomUUID();
+        appendEntry(new TransactionEntry(transactionId2, null), partition1);
+
+        JournalTransactionState recoveredState = startTransactionState();
+        assertOpeningTransactions(recoveredState, transactionId0, transactionId1);
+
+        // 状态机继续执行剩下的日志
+        recoveredState.applyEntry(transactionEntrySerializer.parse(journal.read(appliedIndex).getPayload().getBytes()),
+                partition1, appliedIndex, Collections.emptyMap());
+        appliedIndex++;
+        assertOpeningTransactions(recoveredState, transactionId0, transactionId1, transactionId2);
+
+        recoveredState.startLeading();
+        applyEntry(recoveredState, new TransactionEntry(transactionId0, TransactionEntryType.TRANSACTION_PRE_COMPLETE, true), partition0);
+        assertCommitRequest(transactionId0, partition0, 0, 1, 2);
+        applyEntry(recoveredState, new TransactionEntry(transactionId1, TransactionEntryType.TRANSACTION_PRE_COMPLETE, true), partition1);
+        assertCommitRequest(transactionId1, partition1, 10);
+    }
+
+    @Test
+    public void recoverWithoutCheckpointTest() throws Exception {
+        UUID transactionId0 = UUID.randomUUID();
+        UUID transactionId1 = UUID.randomUUID();
+        int partition0 = TRANSACTION_PARTITION_START + 3;
+        int partition1 = TRANSACTION_PARTITION_START + 4;
+        appendBizEntry(3);
+        appendEntry(new TransactionEntry(transactionId0, null), partition0);
+        appendEntry(new TransactionEntry(transactionId1, null), partition1);
+        for (int i = 0; i < 3; i++) {
+            appendEntry(createTransactionEntry(transactionId0, i), partition0);
+            appendBizEntry(2);
+            appendEntry(createTransactionEntry(transactionId1, 10 + i), partition1);
+        }
+        // 已经完成的事务
+        appendEntry(new TransactionEntry(transactionId1, TransactionEntryType.TRANSACTION_PRE_COMPLETE, false), partition1);
+        appendEntry(new TransactionEntry(transactionId1, TransactionEntryType.TRANSACTION_COMPLETE, false), partition1);
+        appliedIndex = journal.commitIndex();
+
+        JournalTransactionState transactionState = startTransactionState();
+        assertOpeningTransactions(transactionState, transactionId0);
+
+        transactionState.startLeading();
+        applyEntry(transactionState, new TransactionEntry(transactionId0, TransactionEntryType.TRANSACTION_PRE_COMPLETE, true), partition0);
+        assertCommitRequest(transactionId0, partition0, 0, 1, 2);
+    }
+
+    @Test
+    public void sharedPartitionTest() throws Exception {
+        JournalTransactionState transactionState = startTransactionState();
+        transactionState.startLeading();
+        int partition = transactionState.nextPartition();
+        for (int i = 1; i < TRANSACTION_PARTITION_COUNT; i++) {
+            transactionState.nextPartition();
+        }
+        // 事务分区轮流使用，第TRANSACTION_PARTITION_COUNT + 1个事务和第一个事务共用同一个分区
+        Assert.assertEquals(partition, transactionState.nextPartition());
+
+        UUID transactionId0 = UUID.randomUUID();
+        UUID transactionId1 = UUID.randomUUID();
+        applyEntry(transactionState, new TransactionEntry(transactionId0, null), partition);
+        applyEntry(transactionState, new TransactionEntry(transactionId1, null), partition);
+        for (int i = 0; i < 3; i++) {
+            applyEntry(transactionState, createTransactionEntry(transactionId0, i), partition);
+            appendBizEntry(1);
+            applyEntry(transactionState, createTransactionEntry(transactionId1, 10 + i), partition);
+        }
+        transactionState.stop();
+
+        appendEntry(createTransactionEntry(transactionId1, 13), partition);
+        appliedIndex = journal.commitIndex();
+        JournalTransactionState recoveredState = startTransactionState();
+        assertOpeningTransactions(recoveredState, transactionId0, transactionId1);
+        recoveredState.startLeading();
+
+        applyEntry(recoveredState, new TransactionEntry(transactionId0, TransactionEntryType.TRANSACTION_PRE_COMPLETE, true), partition);
+        assertCommitRequest(transactionId0, partition, 0, 1, 2);
+        applyEntry(recoveredState, new TransactionEntry(transactionId0, TransactionEntryType.TRANSACTION_COMPLETE, true), partition);
+        assertOpeningTransactions(recoveredState, transactionId1);
+
+        applyEntry(recoveredState, new TransactionEntry(transactionId1, TransactionEntryType.TRANSACTION_PRE_COMPLETE, false), partition);
+        UpdateClusterStateRequest request = updateRequests.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(request);
+        Assert.assertEquals(1, request.getRequests().size());
+        assertCompleteEntry(request.getRequests().get(0), transactionId1, partition, false);
+    }
+
+    @Test
+    public void leaderHandoverTest() throws Exception {
+        JournalTransactionState transactionState = startTransactionState();
+        int partition = TRANSACTION_PARTITION_START + 5;
+        UUID transactionId0 = UUID.randomUUID();
+        UUID transactionId1 = UUID.randomUUID();
+        applyEntry(transactionState, new TransactionEntry(transactionId0, null), partition);
+        applyEntry(transactionState, new TransactionEntry(transactionId1, null), partition);
+        applyEntry(transactionState, createTransactionEntry(transactionId0, 0), partition);
+        applyEntry(transactionState, createTransactionEntry(transactionId1, 10), partition);
+
+        // LEADER负责完成预提交的事务
+        transactionState.startLeading();
+        applyEntry(transactionState, new TransactionEntry(transactionId0, TransactionEntryType.TRANSACTION_PRE_COMPLETE, true), partition);
+        assertCommitRequest(transactionId0, partition, 0);
+
+        // 不再是LEADER之后，预提交的事务由新的LEADER完成
+        transactionState.stopLeading();
+        applyEntry(transactionState, new TransactionEntry(transactionId1, TransactionEntryType.TRANSACTION_PRE_COMPLETE, true), partition);
+        Assert.assertNull(updateRequests.poll(500, TimeUnit.MILLISECONDS));
+
+        // 重新成为LEADER，稍后重试完成已经预提交但未完成的事务
+        transactionState.startLeading();
+        UpdateClusterStateRequest request;
+        while ((request = updateRequests.poll(30, TimeUnit.SECONDS)) != null) {
+            TransactionEntry completeEntry = transactionEntrySerializer.parse(
+                    request.getRequests().get(request.getRequests().size() - 1).getEntry());
+            if (transactionId1.equals(completeEntry.getTransactionId())) {
+                break;
+            }
+        }
+        Assert.assertNotNull(request);
+        assertCommitRequest(request, transactionId1, partition, 10);
+    }
+
+    private JournalTransactionState startTransactionState() {
+        JournalKeeperState state = new JournalKeeperState(null, metadataPersistence) {
+            @Override
+            public long lastApplied() {
+                return appliedIndex;
+            }
+        };
+        JournalTransactionState transactionState = new JournalTransactionState(journal, state, TRANSACTION_TIMEOUT_MS,
+                server, scheduledExecutor, metadataPersistence, checkpointPath());
+        transactionStates.add(transactionState);
+        transactionState.start();
+        return transactionState;
+    }
+
+    private Path checkpointPath() {
+        return path.resolve("metadata").resolve("transaction");
+    }
+
+    private TransactionEntry createTransactionEntry(UUID transactionId, int i) {
+        return new TransactionEntry(transactionId, BIZ_PARTITION, 1, String.valueOf(i).getBytes());
+    }
+
+    /**
+     * 写入并提交一条事务分区的日志
+     * @return 日志的全局索引序号
+     */
+    private long appendEntry(TransactionEntry transactionEntry, int partition) throws IOException {
+        JournalEntry journalEntry = journalEntryParser.createJournalEntry(transactionEntrySerializer.serialize(transactionEntry));
+        journalEntry.setPartition(partition);
+        long maxIndex = journal.append(journalEntry);
+        journal.commit(maxIndex);
+        return maxIndex - 1;
+    }
+
+    private void appendBizEntry(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            JournalEntry journalEntry = journalEntryParser.createJournalEntry(new byte[128]);
+            journalEntry.setPartition(BIZ_PARTITION);
+            journal.commit(journal.append(journalEntry));
+        }
+        appliedIndex = journal.commitIndex();
+    }
+
+    /**
+     * 写入一条事务分区的日志，并且像状态机一样执行这条日志
+     * @return 日志的全局索引序号
+     */
+    private long applyEntry(JournalTransactionState transactionState, TransactionEntry transactionEntry, int partition) throws IOException {
+        long index = appendEntry(transactionEntry, partition);
+        transactionState.applyEntry(transactionEntry, partition, index, Collections.emptyMap());
+        appliedIndex = index + 1;
+        return index;
+    }
+
+    private void assertOpeningTransactions(JournalTransactionState transactionState, UUID... transactionIds) {
+        Assert.assertEquals(
+                Arrays.stream(transactionIds).collect(Collectors.toSet()),
+                transactionState.getOpeningTransactions().stream()
+                        .map(context -> ((UUIDTransactionId) context.transactionId()).getUuid())
+                        .collect(Collectors.toSet()));
+    }
+
+    private void assertCommitRequest(UUID transactionId, int partition, int... entries) throws InterruptedException {
+        UpdateClusterStateRequest request = updateRequests.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(request);
+        assertCommitRequest(request, transactionId, partition, entries);
+    }
+
+    private void assertCommitRequest(UpdateClusterStateRequest request, UUID transactionId, int partition, int... entries) {
+        Assert.assertEquals(entries.length + 1, request.getRequests().size());
+        for (int i = 0; i < entries.length; i++) {
+            UpdateRequest updateRequest = request.getRequests().get(i);
+            Assert.assertEquals(BIZ_PARTITION, updateRequest.getPartition());
+            Assert.assertArrayEquals(String.valueOf(entries[i]).getBytes(), updateRequest.getEntry());
+        }
+        assertCompleteEntry(request.getRequests().get(entries.length), transactionId, partition, true);
+    }
+
+    private void assertCompleteEntry(UpdateRequest updateRequest, UUID transactionId, int partition, boolean commitOrAbort) {
+        Assert.assertEquals(partition, updateRequest.getPartition());
+        TransactionEntry completeEntry = transactionEntrySerializer.parse(updateRequest.getEntry());
+        Assert.assertEquals(TransactionEntryType.TRANSACTION_COMPLETE, completeEntry.getType());
+        Assert.assertEquals(transactionId, completeEntry.getTransactionId());
+        Assert.assertEquals(commitOrAbort, completeEntry.isCommitOrAbort());
+    }
+
+    private static class EmptyJournalSnapshot implements JournalSnapshot {
+        private final Map<Integer, Long> partitionMinIndices = new HashMap<>();
+
+        EmptyJournalSnapshot() {
+            partitionMinIndices.put(BIZ_PARTITION, 0L);
+            for (int i = 0; i < TRANSACTION_PARTITION_COUNT; i++) {
+                partitionMinIndices.put(TRANSACTION_PARTITION_START + i, 0L);
+            }
+        }
+
+        @Override
+        public long minIndex() {
+            return 0L;
+        }
+
+        @Override
+        public long minOffset() {
+            return 0L;
+        }
+
+        @Override
+        public Map<Integer, Long> partitionMinIndices() {
+            return partitionMinIndices;
+        }
+    }
+}
@@ -55,9 +55,11 @@ public class JournalStoreClient implements PartitionedJournalStore, Transactiona
     private final Serializer<Long> appendResultSerializer;
     private final Serializer<JournalStoreQuery> querySerializer;
     private final Serializer<JournalStoreQueryResult> queryResultSerializer;
+    private final JournalEntryParser journalEntryParser;
 
     JournalStoreClient(RaftClient raftClient, JournalEntryParser journalEntryParser) {
         this.raftClient = raftClient;
+        this.journalEntryParser = journalEntryParser;
         this.appendResultSerializer = new LongSerializer();
         this.querySerializer = new JournalStoreQuerySerializer();
         this.queryResultSerializer = new JournalStoreQueryResultSerializer(journalEntryParser);
@@ -77,6 +79,7 @@ public class JournalStoreClient implements PartitionedJournalStore, Transactiona
         this.appendResultSerializer = new LongSerializer();
         this.querySerializer = new JournalStoreQuerySerializer();
         this.queryResultSerializer = new JournalStoreQueryResultSerializer(journalEntryParser);
+        this.journalEntryParser = journalEntryParser;
 
         BootStrap bootStrap = new BootStrap(
                 servers,
@@ -89,6 +92,7 @@ public class JournalStoreClient implements PartitionedJournalStore, Transactiona
         this.appendResultSerializer = new LongSerializer();
         this.querySerializer = new JournalStoreQuerySerializer();
         this.queryResultSerializer = new JournalStoreQueryResultSerializer(journalEntryParser);
+        this.journalEntryParser = journalEntryParser;
         BootStrap bootStrap = new BootStrap(
                 servers,
                 asyncExecutor, scheduledExecutor,
@@ -129,7 +133,53 @@ public class JournalStoreClient implements PartitionedJournalStore, Transactiona
     @Override
     public CompletableFuture<List<JournalEntry>> get(int partition, long index, int size) {
         ReservedPartition.validatePartition(partition);
-        return raftClient.query(querySerializer.serialize(JournalStoreQuery.createQueryEntries(partition, index, size)))
+        // 直接读取Journal，不经过状态机查询；服务端不支持（例如旧版本）时改用状态机查询
+        return raftClient.getPartitionEntries(partition, index, size)
+                .thenApply(entries -> entries.stream()
+                        .map(journalEntryParser::parse)
+                        .collect(Collectors.toList()))
+                .handle((entries, exception) -> {
+                    if (null == exception) {
+                        return CompletableFuture.completedFuture(entries);
+                    }
+                    Throwable cause = exception instanceof CompletionException ? exception.getCause() : exception;
+                    if (cause instanceof IndexOverflowException || cause instanceof IndexUnderflowException) {
+                        CompletableFuture<List<JournalEntry>> future = new CompletableFuture<>();
+                        future.completeExceptionally(cause);
+                        return future;
+                    }
+                    logger.debug("Get partition entries failed, query the state instead, cause: {}.", cause.toString());
+                    return queryEntries(JournalStoreQuery.createQueryEntries(partition, index, size));
+                })
+                .thenCompose(future -> future);
+    }
+
+    @Override
+    public CompletableFuture<List<JournalEntry>> fetch(int partition, long index, int size, long maxWaitMs, int minBytes) {
+        ReservedPartition.validatePartition(partition);
+        // 已经有足够的日志时直接读取返回，否则挂起在状态机上等待新的日志
+        return get(partition, index, size)
+                .thenCompose(entries -> maxWaitMs <= 0L || isEnough(entries, size, minBytes) ?
+                        CompletableFuture.completedFuture(entries) :
+                        queryEntries(JournalStoreQuery.createFetchEntries(partition, index, size, maxWaitMs, minBytes)));
+    }
+
+    private boolean isEnough(List<JournalEntry> entries, int size, int minBytes) {
+        if (entries.isEmpty()) {
+            return false;
+        }
+        if (entries.size() >= size) {
+            return true;
+        }
+        long bytes = 0L;
+        for (JournalEntry entry : entries) {
+            bytes += entry.getLength();
+        }
+        return bytes >= minBytes;
+    }
+
+    private CompletableFuture<List<JournalEntry>> queryEntries(JournalStoreQuery query) {
+        return raftClient.query(querySerializer.serialize(query))
                 .thenApply(queryResultSerializer::parse)
                 .thenApply(result -> {
                     if (result.getCode() == JournalStoreQueryResult.CODE_SUCCESS) {
@@ -201,7 +251,26 @@ public class JournalStoreClient implements PartitionedJournalStore, Transactiona
 
     @Override
     public void unWatch(EventWatcher eventWatcher) {
-        raftClient.watch(eventWatcher);
+        raftClient.unWatch(eventWatcher);
+    }
+
+    /**
+     * 只监听指定分区的日志变化事件 {@link io.journalkeeper.utils.event.EventType#ON_JOURNAL_CHANGE}，
+     * 远程监听时服务端只返回这些分区的事件。
+     * @param eventWatcher 事件监听器
+     * @param partitions 分区
+     */
+    public void watch(EventWatcher eventWatcher, int... partitions) {
+        raftClient.watch(new PartitionEventWatcher(eventWatcher, partitions));
+    }
+
+    /**
+     * 删除 {@link #watch(EventWatcher, int...)} 添加的监听器。
+     * @param eventWatcher 事件监听器
+     * @param partitions 添加监听时指定的分区
+     */
+    public void unWatch(EventWatcher eventWatcher, int... partitions) {
+        raftClient.unWatch(new PartitionEventWatcher(eventWatcher, partitions));
     }
 
     @Override
@@ -22,19 +22,28 @@ public class JournalStoreQuery {
     public static final int CMD_QUERY_ENTRIES = 0;
     public static final int CMD_QUERY_PARTITIONS = 1;
     public static final int CMD_QUERY_INDEX = 2;
+    public static final int CMD_FETCH_ENTRIES = 3;
     private final int cmd;
     private final int partition;
     private final long index;
     private final int size;
     private final long timestamp;
+    private final long maxWaitMs;
+    private final int minBytes;
 
 
     JournalStoreQuery(int cmd, int partition, long index, int size, long timestamp) {
+        this(cmd, partition, index, size, timestamp, 0L, 0);
+    }
+
+    JournalStoreQuery(int cmd, int partition, long index, int size, long timestamp, long maxWaitMs, int minBytes) {
         this.cmd = cmd;
         this.partition = partition;
         this.index = index;
         this.size = size;
         this.timestamp = timestamp;
+        this.maxWaitMs = maxWaitMs;
+        this.minBytes = minBytes;
     }
 
     private JournalStoreQuery(int cmd) {
@@ -49,6 +58,10 @@ public class JournalStoreQuery {
         return new JournalStoreQuery(CMD_QUERY_ENTRIES, partition, index, size, 0L);
     }
 
+    public static JournalStoreQuery createFetchEntries(int partition, long index, int size, long maxWaitMs, int minBytes) {
+        return new JournalStoreQuery(CMD_FETCH_ENTRIES, partition, index, size, 0L, maxWaitMs, minBytes);
+    }
+
     public static JournalStoreQuery createQueryPartitions() {
         return new JournalStoreQuery(CMD_QUERY_PARTITIONS);
     }
@@ -76,4 +89,12 @@ public class JournalStoreQuery {
     public long getTimestamp() {
         return timestamp;
     }
+
+    public long getMaxWaitMs() {
+        return maxWaitMs;
+    }
+
+    public int getMinBytes() {
+        return minBytes;
+    }
 }
@@ -109,8 +109,9 @@ public class JournalStoreQueryResultSerializer implements Serializer<JournalStor
         long index = buffer.getLong();
         int entriesSize = buffer.getShort();
         List<JournalEntry> entries = new ArrayList<>(entriesSize);
-        byte[] headerBytes = new byte[journalEntryParser.headerLength()];
         for (int i = 0; i < entriesSize; i++) {
+            // 兼容较短的旧版本Header
+            byte[] headerBytes = new byte[Math.min(journalEntryParser.headerLength(), buffer.remaining())];
             buffer.mark();
             buffer.get(headerBytes);
             buffer.reset();
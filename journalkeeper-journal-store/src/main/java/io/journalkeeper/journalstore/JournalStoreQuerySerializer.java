@@ -17,24 +17,42 @@ import io.journalkeeper.base.Serializer;
 
 import java.nio.ByteBuffer;
 
+/**
+ * 固定长度的查询条件，{@link JournalStoreQuery#CMD_FETCH_ENTRIES}命令在最后追加
+ * maxWaitMs（8 Bytes）和minBytes（4 Bytes）。
+ */
 public class JournalStoreQuerySerializer implements Serializer<JournalStoreQuery> {
     private static final int SIZE = Byte.BYTES + Short.BYTES + Long.BYTES + Integer.BYTES + Long.BYTES;
+    private static final int FETCH_SIZE = SIZE + Long.BYTES + Integer.BYTES;
 
     @Override
     public byte[] serialize(JournalStoreQuery query) {
-        byte[] bytes = new byte[SIZE];
+        boolean fetch = query.getCmd() == JournalStoreQuery.CMD_FETCH_ENTRIES;
+        byte[] bytes = new byte[fetch ? FETCH_SIZE : SIZE];
         ByteBuffer buffer = ByteBuffer.wrap(bytes);
         buffer.put((byte) query.getCmd());
         buffer.putShort((short) query.getPartition());
         buffer.putLong(query.getIndex());
         buffer.putInt(query.getSize());
         buffer.putLong(query.getTimestamp());
+        if (fetch) {
+            buffer.putLong(query.getMaxWaitMs());
+            buffer.putInt(query.getMinBytes());
+        }
         return bytes;
     }
 
     @Override
     public JournalStoreQuery parse(byte[] bytes) {
         ByteBuffer buffer = ByteBuffer.wrap(bytes);
-        return new JournalStoreQuery(buffer.get(), buffer.getShort(), buffer.getLong(), buffer.getInt(), buffer.getLong());
+        int cmd = buffer.get();
+        int partition = buffer.getShort();
+        long index = buffer.getLong();
+        int size = buffer.getInt();
+        long timestamp = buffer.getLong();
+        if (buffer.remaining() >= Long.BYTES + Integer.BYTES) {
+            return new JournalStoreQuery(cmd, partition, index, size, timestamp, buffer.getLong(), buffer.getInt());
+        }
+        return new JournalStoreQuery(cmd, partition, index, size, timestamp);
     }
 }
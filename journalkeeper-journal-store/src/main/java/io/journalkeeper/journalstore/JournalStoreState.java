@@ -14,25 +14,41 @@
 package io.journalkeeper.journalstore;
 
 import io.journalkeeper.base.Serializer;
+import io.journalkeeper.core.api.BatchState;
 import io.journalkeeper.core.api.EntryFuture;
+import io.journalkeeper.core.api.JournalEntry;
 import io.journalkeeper.core.api.JournalEntryParser;
 import io.journalkeeper.core.api.RaftJournal;
-import io.journalkeeper.core.api.State;
 import io.journalkeeper.core.api.StateResult;
+import io.journalkeeper.utils.threads.NamedThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Flushable;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import static io.journalkeeper.core.api.RaftJournal.RESERVED_PARTITIONS_START;
+import static io.journalkeeper.journalstore.JournalStoreQuery.CMD_FETCH_ENTRIES;
 import static io.journalkeeper.journalstore.JournalStoreQuery.CMD_QUERY_ENTRIES;
 import static io.journalkeeper.journalstore.JournalStoreQuery.CMD_QUERY_INDEX;
 import static io.journalkeeper.journalstore.JournalStoreQuery.CMD_QUERY_PARTITIONS;
@@ -41,14 +57,22 @@ import static io.journalkeeper.journalstore.JournalStoreQuery.CMD_QUERY_PARTITIO
  * @author LiYue
  * Date: 2019-05-09
  */
-public class JournalStoreState implements State, Flushable {
+public class JournalStoreState implements BatchState, Flushable {
     private static final Logger logger = LoggerFactory.getLogger(JournalStoreState.class);
     private final static String STATE_FILE_NAME = "applied_indices";
     private final Serializer<Long> appendResultSerializer;
     private final Serializer<JournalStoreQuery> querySerializer;
     private final Serializer<JournalStoreQueryResult> queryResultSerializer;
+    /**
+     * 每个分区上挂起的长轮询读取请求
+     */
+    private final Map<Integer, PendingFetches> pendingFetchesMap = new ConcurrentHashMap<>();
     private AppliedIndicesFile appliedIndices;
     private Path path;
+    /**
+     * 用于检查和超时挂起的读取请求，第一次挂起请求时创建
+     */
+    private volatile ScheduledExecutorService fetchExecutor = null;
 
     JournalStoreState(JournalEntryParser journalEntryParser) {
         this.appendResultSerializer = new LongSerializer();
@@ -90,6 +114,25 @@ public class JournalStoreState implements State, Flushable {
 
     @Override
     public StateResult execute(EntryFuture getEntryFuture, int partition, long index, int batchSize, RaftJournal journal) {
+        StateResult result = execute(partition, batchSize, journal);
+        wakeupPendingFetches(partition);
+        return result;
+    }
+
+    @Override
+    public List<StateResult> execute(List<JournalEntry> entryHeaders, List<EntryFuture> entryFutures, long index, RaftJournal journal) {
+        List<StateResult> results = new ArrayList<>(entryHeaders.size());
+        Set<Integer> partitions = new HashSet<>();
+        for (JournalEntry entry : entryHeaders) {
+            results.add(execute(entry.getPartition(), entry.getBatchSize(), journal));
+            partitions.add(entry.getPartition());
+        }
+        // 整批日志执行完之后，每个分区只检查一次挂起的读取请求
+        partitions.forEach(this::wakeupPendingFetches);
+        return results;
+    }
+
+    private StateResult execute(int partition, int batchSize, RaftJournal journal) {
         long partitionIndex = appliedIndices.getOrDefault(partition, 0L);
         appliedIndices.put(partition, partitionIndex + batchSize);
         long minIndex = journal.minIndex(partition);
@@ -102,15 +145,70 @@ public class JournalStoreState implements State, Flushable {
         return result;
     }
 
+    /**
+     * 唤醒分区上挂起的读取请求。执行日志的线程持有状态的写锁，这里只安排检查，
+     * 读取日志、序列化和完成请求都在{@link #fetchExecutor}中执行。
+     */
+    private void wakeupPendingFetches(int partition) {
+        PendingFetches pendingFetches = pendingFetchesMap.get(partition);
+        if (null != pendingFetches) {
+            pendingFetches.wakeup();
+        }
+    }
+
     @Override
     public byte[] query(byte[] query, RaftJournal journal) {
         return queryResultSerializer.serialize(query(querySerializer.parse(query), journal));
     }
 
+    /**
+     * {@link JournalStoreQuery#CMD_FETCH_ENTRIES}查询在没有足够的日志时挂起，
+     * 直到分区上新执行的日志满足条件或者等待超时后返回；其它查询直接返回。
+     * 调用方持有状态的读锁，挂起之前不会有新的日志被执行。
+     */
+    @Override
+    public CompletableFuture<byte[]> queryAsync(byte[] query, RaftJournal journal) {
+        JournalStoreQuery journalStoreQuery = querySerializer.parse(query);
+        CompletableFuture<JournalStoreQueryResult> future;
+        if (journalStoreQuery.getCmd() == CMD_FETCH_ENTRIES) {
+            future = fetch(journalStoreQuery, journal);
+        } else {
+            future = CompletableFuture.completedFuture(query(journalStoreQuery, journal));
+        }
+        return future.thenApply(queryResultSerializer::serialize);
+    }
+
+    private CompletableFuture<JournalStoreQueryResult> fetch(JournalStoreQuery query, RaftJournal journal) {
+        PendingFetch pendingFetch = new PendingFetch(query, journal);
+        if (pendingFetch.tryComplete(query.getMaxWaitMs() <= 0L)) {
+            return pendingFetch.future;
+        }
+
+        PendingFetches pendingFetches = pendingFetchesMap.computeIfAbsent(query.getPartition(), partition -> new PendingFetches());
+        pendingFetches.add(pendingFetch);
+        pendingFetch.timeoutFuture = fetchExecutor().schedule(() -> {
+            pendingFetches.remove(pendingFetch);
+            pendingFetch.timeout();
+        }, query.getMaxWaitMs(), TimeUnit.MILLISECONDS);
+        return pendingFetch.future;
+    }
+
+    private ScheduledExecutorService fetchExecutor() {
+        if (null == fetchExecutor) {
+            synchronized (this) {
+                if (null == fetchExecutor) {
+                    fetchExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("JournalStore-Fetch", true));
+                }
+            }
+        }
+        return fetchExecutor;
+    }
+
     private JournalStoreQueryResult query(JournalStoreQuery query, RaftJournal journal) {
         try {
             switch (query.getCmd()) {
                 case CMD_QUERY_ENTRIES:
+                case CMD_FETCH_ENTRIES:
                     return queryEntries(query.getPartition(), query.getIndex(), query.getSize(), journal);
                 case CMD_QUERY_PARTITIONS:
                     return queryPartitions(journal);
@@ -169,8 +267,120 @@ public class JournalStoreState implements State, Flushable {
 
     @Override
     public void close() {
+        if (null != fetchExecutor) {
+            fetchExecutor.shutdownNow();
+        }
+        pendingFetchesMap.values().forEach(PendingFetches::clear);
         if (null != appliedIndices) {
             appliedIndices.close();
         }
     }
+
+    /**
+     * 挂起的读取请求
+     */
+    private class PendingFetch {
+        private final JournalStoreQuery query;
+        private final RaftJournal journal;
+        private final CompletableFuture<JournalStoreQueryResult> future = new CompletableFuture<>();
+        private volatile ScheduledFuture<?> timeoutFuture = null;
+        /**
+         * 最近一次读到的、还不满足条件的日志，超时后返回
+         */
+        private volatile JournalStoreQueryResult partialResult = null;
+
+        PendingFetch(JournalStoreQuery query, RaftJournal journal) {
+            this.query = query;
+            this.journal = journal;
+        }
+
+        /**
+         * 读取日志，读到的日志满足条件时完成请求。
+         * 满足条件是指：读到了至少一条日志，并且日志条数达到size或者日志的总长度达到minBytes。
+         * 挂起之前在持有状态读锁的查询线程中调用，挂起之后在{@link #fetchExecutor}中调用，不持有状态锁。
+         * 分区已执行的位置只增不减，不持有锁时读到的也都是已经执行的日志。
+         * @param force 为true时不检查条件，直接返回读到的日志
+         * @return 请求是否已经完成
+         */
+        boolean tryComplete(boolean force) {
+            if (future.isDone()) {
+                return true;
+            }
+            JournalStoreQueryResult result = query(query, journal);
+            if (force || result.getCode() != JournalStoreQueryResult.CODE_SUCCESS || isEnough(result.getEntries())) {
+                future.complete(result);
+                ScheduledFuture<?> finalTimeoutFuture = timeoutFuture;
+                if (null != finalTimeoutFuture) {
+                    finalTimeoutFuture.cancel(false);
+                }
+                return true;
+            }
+            if (null != result.getEntries() && !result.getEntries().isEmpty()) {
+                partialResult = result;
+            }
+            return false;
+        }
+
+        /**
+         * 等待超时，返回最近一次读到的日志，没有读到日志时返回空结果。
+         */
+        void timeout() {
+            JournalStoreQueryResult result = partialResult;
+            future.complete(null != result ? result : new JournalStoreQueryResult(Collections.emptyList()));
+        }
+
+        private boolean isEnough(List<JournalEntry> entries) {
+            if (null == entries || entries.isEmpty()) {
+                return false;
+            }
+            if (entries.size() >= query.getSize()) {
+                return true;
+            }
+            long bytes = 0L;
+            for (JournalEntry entry : entries) {
+                bytes += entry.getLength();
+            }
+            return bytes >= query.getMinBytes();
+        }
+    }
+
+    /**
+     * 一个分区上挂起的读取请求，分区上有新的日志被执行时，在{@link #fetchExecutor}中检查所有挂起的请求。
+     * 上一次检查还没开始时，不重复安排检查。
+     */
+    private class PendingFetches {
+        private final Queue<PendingFetch> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean checkScheduled = new AtomicBoolean(false);
+
+        void add(PendingFetch pendingFetch) {
+            queue.add(pendingFetch);
+        }
+
+        void remove(PendingFetch pendingFetch) {
+            queue.remove(pendingFetch);
+        }
+
+        void wakeup() {
+            if (!queue.isEmpty() && checkScheduled.compareAndSet(false, true)) {
+                try {
+                    fetchExecutor().execute(this::check);
+                } catch (RejectedExecutionException e) {
+                    // 已经关闭
+                    checkScheduled.set(false);
+                }
+            }
+        }
+
+        private void check() {
+            checkScheduled.set(false);
+            queue.removeIf(pendingFetch -> pendingFetch.tryComplete(false));
+        }
+
+        void clear() {
+            PendingFetch pendingFetch;
+            while ((pendingFetch = queue.poll()) != null) {
+                pendingFetch.future.complete(new JournalStoreQueryResult(Collections.emptyList()));
+            }
+        }
+    }
 }
@@ -0,0 +1,67 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.journalstore;
+
+import io.journalkeeper.utils.event.Event;
+import io.journalkeeper.utils.event.EventFilter;
+import io.journalkeeper.utils.event.EventType;
+import io.journalkeeper.utils.event.EventWatcher;
+import io.journalkeeper.utils.event.FilteredEventWatcher;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * 只监听指定分区的 {@link EventType#ON_JOURNAL_CHANGE} 事件。
+ * 远程监听时分区作为过滤条件发送给服务端，服务端只返回这些分区的事件。
+ * @author agent
+ * Date: 2026-10-19
+ */
+class PartitionEventWatcher implements FilteredEventWatcher {
+    private final EventWatcher eventWatcher;
+    private final int[] partitions;
+    private final EventFilter eventFilter;
+
+    PartitionEventWatcher(EventWatcher eventWatcher, int... partitions) {
+        this.eventWatcher = eventWatcher;
+        this.partitions = partitions.clone();
+        Arrays.sort(this.partitions);
+        this.eventFilter = EventFilter.ofValues(EventType.ON_JOURNAL_CHANGE, "partition",
+                Arrays.stream(this.partitions).mapToObj(String::valueOf).toArray(String[]::new));
+    }
+
+    @Override
+    public EventFilter eventFilter() {
+        return eventFilter;
+    }
+
+    @Override
+    public void onEvent(Event event) {
+        eventWatcher.onEvent(event);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PartitionEventWatcher that = (PartitionEventWatcher) o;
+        return eventWatcher.equals(that.eventWatcher) &&
+                Arrays.equals(partitions, that.partitions);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Objects.hashCode(eventWatcher) + Arrays.hashCode(partitions);
+    }
+}
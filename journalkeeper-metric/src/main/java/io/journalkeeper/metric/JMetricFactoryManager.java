@@ -13,6 +13,7 @@
  */
 package io.journalkeeper.metric;
 
+import io.journalkeeper.metric.hdr.HdrMetricFactory;
 import io.journalkeeper.utils.spi.ServiceSupport;
 
 /**
@@ -21,8 +22,23 @@ import io.journalkeeper.utils.spi.ServiceSupport;
  * date: 2019/9/3
  */
 public class JMetricFactoryManager {
+    /**
+     * 使用内置实现以外的JMetricFactory时，通过这个系统属性指定实现类的类名，
+     * 例如：-Djournalkeeper.metric.factory=io.journalkeeper.metrics.dropwizard.MetricFactory
+     */
+    public final static String METRIC_FACTORY_PROPERTY = "journalkeeper.metric.factory";
 
+    /**
+     * 获取JMetricFactory。
+     * 默认使用内置的无锁实现 {@link HdrMetricFactory}，与classpath中是否存在其它实现无关；
+     * 设置了系统属性 {@link #METRIC_FACTORY_PROPERTY} 时使用指定的实现。
+     * @return JMetricFactory
+     */
     public static JMetricFactory getFactory() {
-        return ServiceSupport.load(JMetricFactory.class);
+        String factoryClassName = System.getProperty(METRIC_FACTORY_PROPERTY);
+        if (null != factoryClassName && !factoryClassName.isEmpty()) {
+            return ServiceSupport.load(JMetricFactory.class, factoryClassName);
+        }
+        return ServiceSupport.load(JMetricFactory.class, HdrMetricFactory.class);
     }
-}
\ No newline at end of file
+}
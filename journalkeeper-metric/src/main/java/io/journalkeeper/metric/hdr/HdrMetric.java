@@ -0,0 +1,150 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.metric.hdr;
+
+import io.journalkeeper.metric.JMetric;
+import io.journalkeeper.metric.JMetricReport;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 基于直方图的JMetric实现。
+ *
+ * 写入按照线程分散到多个分片上，每个分片有一个正在写入和一个空闲的{@link Histogram}，
+ * 写入只有原子操作，不加锁也不分配内存。
+ * 线程第一次写入时按顺序轮流分配一个分片，线程数多于分片数时多个线程共用一个分片，
+ * 这时只会增加竞争，直方图中的计数都是原子操作，不影响正确性。
+ * 读取报告时逐个分片切换正在写入的直方图，通过{@link WriterReaderPhaser}等待
+ * 切换前的写入完成后，把旧的直方图累加到汇总的直方图中，再清空用于下一次切换。
+ *
+ * {@link #start()}记录的开始时间保存在线程本地变量中，同一个线程中调用
+ * {@link #start()}和{@link #end(long)}即可，多个线程并发调用互不影响。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class HdrMetric implements JMetric {
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.95, 0.99, 0.999, 0.9999};
+    private static final int MAX_STRIPES = 8;
+    private static final AtomicInteger nextStripeHint = new AtomicInteger();
+    // 线程使用的分片序号，所有HdrMetric共用
+    private static final ThreadLocal<Integer> stripeHint = ThreadLocal.withInitial(nextStripeHint::getAndIncrement);
+    private final String name;
+    private final AtomicReferenceArray<Stripe> stripes;
+    private final int stripeMask;
+    private final ThreadLocal<long[]> startTimeNs = ThreadLocal.withInitial(() -> new long[1]);
+    // 以下变量只在读取时访问，由this保护
+    private final Histogram total = new Histogram();
+    private long resetTimeNs;
+
+    public HdrMetric(String name) {
+        this.name = name;
+        int stripeCount = Integer.highestOneBit(Math.min(MAX_STRIPES, Runtime.getRuntime().availableProcessors()));
+        this.stripes = new AtomicReferenceArray<>(stripeCount);
+        this.stripeMask = stripeCount - 1;
+        this.resetTimeNs = System.nanoTime();
+    }
+
+    @Override
+    public void start() {
+        startTimeNs.get()[0] = System.nanoTime();
+    }
+
+    @Override
+    public void end(long traffic) {
+        mark(System.nanoTime() - startTimeNs.get()[0], traffic);
+    }
+
+    @Override
+    public void mark(long latencyNs, long traffic) {
+        Stripe stripe = stripe();
+        long criticalValue = stripe.phaser.writerCriticalSectionEnter();
+        try {
+            stripe.active.record(latencyNs, traffic);
+        } finally {
+            stripe.phaser.writerCriticalSectionExit(criticalValue);
+        }
+    }
+
+    private Stripe stripe() {
+        int index = stripeHint.get() & stripeMask;
+        Stripe stripe = stripes.get(index);
+        if (null == stripe) {
+            stripes.compareAndSet(index, null, new Stripe());
+            stripe = stripes.get(index);
+        }
+        return stripe;
+    }
+
+    /**
+     * 把所有分片中的数据累加到{@link #total}中。
+     */
+    private void collect() {
+        for (int i = 0; i < stripes.length(); i++) {
+            Stripe stripe = stripes.get(i);
+            if (null != stripe) {
+                Histogram recorded = stripe.active;
+                stripe.active = stripe.inactive;
+                stripe.phaser.flipPhase();
+                recorded.addTo(total);
+                recorded.clear();
+                stripe.inactive = recorded;
+            }
+        }
+    }
+
+    private JMetricReport report(long nowNs) {
+        return new HdrMetricReport(name, total.requests(), total.traffic(),
+                total.latency(PERCENTILES), resetTimeNs, nowNs);
+    }
+
+    private void clear(long nowNs) {
+        total.clear();
+        resetTimeNs = nowNs;
+    }
+
+    @Override
+    public synchronized void reset() {
+        collect();
+        clear(System.nanoTime());
+    }
+
+    @Override
+    public synchronized JMetricReport get() {
+        collect();
+        return report(System.nanoTime());
+    }
+
+    @Override
+    public synchronized JMetricReport getAndReset() {
+        collect();
+        long nowNs = System.nanoTime();
+        JMetricReport report = report(nowNs);
+        clear(nowNs);
+        return report;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    private static class Stripe {
+        private final WriterReaderPhaser phaser = new WriterReaderPhaser();
+        private volatile Histogram active = new Histogram();
+        // 只在读取时访问
+        private Histogram inactive = new Histogram();
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.metric.hdr;
+
+import io.journalkeeper.metric.JMetric;
+import io.journalkeeper.metric.JMetricFactory;
+
+/**
+ * 内置的无锁直方图JMetric实现，见 {@link HdrMetric}。
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class HdrMetricFactory implements JMetricFactory {
+    @Override
+    public JMetric create() {
+        return create("NO_NAME");
+    }
+
+    @Override
+    public JMetric create(String name) {
+        return new HdrMetric(name);
+    }
+}
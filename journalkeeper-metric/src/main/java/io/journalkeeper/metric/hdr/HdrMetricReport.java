@@ -0,0 +1,74 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.metric.hdr;
+
+import io.journalkeeper.metric.JMetricReport;
+
+/**
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class HdrMetricReport implements JMetricReport {
+    private final String name;
+    private final long requests;
+    private final long traffic;
+    private final double[] latency;
+    private final long start, end;
+
+    public HdrMetricReport(String name, long requests, long traffic, double[] latency, long start, long end) {
+        this.name = name;
+        this.requests = requests;
+        this.traffic = traffic;
+        this.latency = latency;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public long trafficTotal() {
+        return traffic;
+    }
+
+    @Override
+    public long requestsTotal() {
+        return requests;
+    }
+
+    @Override
+    public long trafficPs() {
+        long durationNs = end - start;
+        return durationNs > 0 ? (long) (traffic * 1000000000.0 / durationNs) : 0L;
+    }
+
+    @Override
+    public long requestsPs() {
+        long durationNs = end - start;
+        return durationNs > 0 ? (long) (requests * 1000000000.0 / durationNs) : 0L;
+    }
+
+    @Override
+    public double[] latency() {
+        return latency.clone();
+    }
+
+    @Override
+    public long reportTime() {
+        return end;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+}
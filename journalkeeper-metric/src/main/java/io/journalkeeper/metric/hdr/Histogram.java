@@ -0,0 +1,150 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.metric.hdr;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定精度的时延直方图，同时记录请求数、总时延、流量和最大时延。
+ *
+ * 桶按照对数-线性的方式划分（同HdrHistogram）：小于{@link #SUB_BUCKET_COUNT}的值每个值一个桶，
+ * 之后每个2的幂区间平均划分为{@link #SUB_BUCKET_COUNT} / 2个桶，相对误差不超过1 / 64。
+ * 可以记录的最大时延为2^{@link #MAX_VALUE_BITS}纳秒（约18分钟），超过的值记录在最后一个桶中。
+ *
+ * 记录时只有原子操作，不分配内存。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+class Histogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+    private static final int MAX_VALUE_BITS = 40;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong requests = new AtomicLong(0L);
+    private final AtomicLong latencyTotal = new AtomicLong(0L);
+    private final AtomicLong traffic = new AtomicLong(0L);
+    private final AtomicLong maxLatency = new AtomicLong(0L);
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return value < 0 ? 0 : (int) value;
+        }
+        if (value > MAX_VALUE) {
+            value = MAX_VALUE;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_HALF_COUNT;
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT + subBucket;
+    }
+
+    /**
+     * 桶中的最大值
+     */
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF_COUNT + 1;
+        long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT;
+        return (subBucket << shift) + (1L << shift) - 1;
+    }
+
+    void record(long latencyNs, long traffic) {
+        counts.incrementAndGet(indexOf(latencyNs));
+        requests.incrementAndGet();
+        latencyTotal.addAndGet(latencyNs);
+        if (traffic != 0L) {
+            this.traffic.addAndGet(traffic);
+        }
+        long max;
+        while (latencyNs > (max = maxLatency.get())) {
+            if (maxLatency.compareAndSet(max, latencyNs)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 把当前直方图的数据累加到{@code target}上。
+     * 调用时当前直方图不能有并发的写入。
+     */
+    void addTo(Histogram target) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = counts.get(i);
+            if (count > 0) {
+                target.counts.addAndGet(i, count);
+            }
+        }
+        target.requests.addAndGet(requests.get());
+        target.latencyTotal.addAndGet(latencyTotal.get());
+        target.traffic.addAndGet(traffic.get());
+        if (maxLatency.get() > target.maxLatency.get()) {
+            target.maxLatency.set(maxLatency.get());
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.lazySet(i, 0L);
+        }
+        requests.set(0L);
+        latencyTotal.set(0L);
+        traffic.set(0L);
+        maxLatency.set(0L);
+    }
+
+    long requests() {
+        return requests.get();
+    }
+
+    long traffic() {
+        return traffic.get();
+    }
+
+    /**
+     * 计算平均时延和时延百分位
+     * @param percentiles 升序排列的百分位，取值范围(0, 1]
+     * @return 第一个元素为平均时延，之后依次为每个百分位的时延，最后一个元素为最大时延。单位同记录的时延。
+     */
+    double[] latency(double[] percentiles) {
+        double[] latency = new double[percentiles.length + 2];
+        long requests = this.requests.get();
+        long max = maxLatency.get();
+        if (requests == 0L) {
+            return latency;
+        }
+        latency[0] = (double) latencyTotal.get() / requests;
+        latency[latency.length - 1] = max;
+
+        int p = 0;
+        long cumulative = 0L;
+        for (int i = 0; i < BUCKET_COUNT && p < percentiles.length; i++) {
+            cumulative += counts.get(i);
+            while (p < percentiles.length && cumulative >= Math.max(1L, (long) Math.ceil(percentiles[p] * requests))) {
+                latency[p + 1] = Math.min(highestValueOf(i), max);
+                p++;
+            }
+        }
+        for (; p < percentiles.length; p++) {
+            latency[p + 1] = max;
+        }
+        return latency;
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.metric.hdr;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 写者无锁的读写同步器，用于在不阻塞写者的情况下切换写入的直方图。
+ *
+ * 写者在写入前后分别调用 {@link #writerCriticalSectionEnter()} 和
+ * {@link #writerCriticalSectionExit(long)}，只有一次原子加操作，不会阻塞。
+ * 读者替换写入的直方图之后调用 {@link #flipPhase()}，
+ * 等待所有在替换之前进入临界区的写者退出，之后旧的直方图不会再被修改。
+ *
+ * 同一时刻只允许一个读者调用 {@link #flipPhase()}，由调用方保证。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+class WriterReaderPhaser {
+    // 符号位表示当前的阶段：非负数为偶数阶段，负数为奇数阶段
+    private final AtomicLong startEpoch = new AtomicLong(0L);
+    private final AtomicLong evenEndEpoch = new AtomicLong(0L);
+    private final AtomicLong oddEndEpoch = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * 写者进入临界区
+     * @return 进入时的计数，退出时传给 {@link #writerCriticalSectionExit(long)}
+     */
+    long writerCriticalSectionEnter() {
+        return startEpoch.getAndIncrement();
+    }
+
+    /**
+     * 写者退出临界区
+     * @param criticalValueAtEnter {@link #writerCriticalSectionEnter()}的返回值
+     */
+    void writerCriticalSectionExit(long criticalValueAtEnter) {
+        (criticalValueAtEnter < 0 ? oddEndEpoch : evenEndEpoch).getAndIncrement();
+    }
+
+    /**
+     * 切换阶段，并等待上一个阶段进入临界区的写者全部退出。
+     */
+    void flipPhase() {
+        boolean nextPhaseIsEven = startEpoch.get() < 0;
+        long initialStartValue = nextPhaseIsEven ? 0L : Long.MIN_VALUE;
+        (nextPhaseIsEven ? evenEndEpoch : oddEndEpoch).set(initialStartValue);
+        long startValueAtFlip = startEpoch.getAndSet(initialStartValue);
+        AtomicLong previousEndEpoch = nextPhaseIsEven ? oddEndEpoch : evenEndEpoch;
+        while (previousEndEpoch.get() != startValueAtFlip) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.metric;
+
+import io.journalkeeper.metric.hdr.HdrMetricFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class JMetricFactoryManagerTest {
+
+    /**
+     * classpath中同时存在内置的和其它的实现时，默认使用内置的实现
+     */
+    @Test
+    public void defaultFactoryTest() {
+        JMetricFactory factory = JMetricFactoryManager.getFactory();
+        Assert.assertTrue(factory instanceof HdrMetricFactory);
+    }
+
+    /**
+     * 通过系统属性指定其它的实现
+     */
+    @Test
+    public void specifiedFactoryTest() {
+        System.setProperty(JMetricFactoryManager.METRIC_FACTORY_PROPERTY, TestMetricFactory.class.getName());
+        try {
+            JMetricFactory factory = JMetricFactoryManager.getFactory();
+            Assert.assertTrue(factory instanceof TestMetricFactory);
+        } finally {
+            System.clearProperty(JMetricFactoryManager.METRIC_FACTORY_PROPERTY);
+        }
+    }
+
+    public static class TestMetricFactory implements JMetricFactory {
+        private final HdrMetricFactory delegate = new HdrMetricFactory();
+
+        @Override
+        public JMetric create() {
+            return delegate.create();
+        }
+
+        @Override
+        public JMetric create(String name) {
+            return delegate.create(name);
+        }
+    }
+}
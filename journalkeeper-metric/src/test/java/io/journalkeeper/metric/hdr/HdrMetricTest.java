@@ -0,0 +1,149 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.metric.hdr;
+
+import io.journalkeeper.metric.JMetricReport;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class HdrMetricTest {
+
+    @Test
+    public void startEndTest() throws Exception {
+        HdrMetric metric = new HdrMetric("test");
+        metric.start();
+        Thread.sleep(10L);
+        metric.end(100L);
+        metric.mark(1000L, 1L);
+
+        JMetricReport report = metric.get();
+        Assert.assertEquals("test", report.name());
+        Assert.assertEquals(2L, report.requestsTotal());
+        Assert.assertEquals(101L, report.trafficTotal());
+        Assert.assertTrue(report.latency()[JMetricReport.TP_MAX] >= 10000000.0);
+
+        // get不清空数据
+        Assert.assertEquals(2L, metric.get().requestsTotal());
+        Assert.assertEquals(2L, metric.getAndReset().requestsTotal());
+        Assert.assertEquals(0L, metric.get().requestsTotal());
+
+        metric.mark(1000L, 1L);
+        metric.reset();
+        Assert.assertEquals(0L, metric.get().requestsTotal());
+    }
+
+    /**
+     * 多个线程并发写入的同时不断读取并清空，所有写入都被统计且只统计一次
+     */
+    @Test
+    public void concurrentRecordAndCollectTest() throws Exception {
+        HdrMetric metric = new HdrMetric("test");
+        int threads = 8;
+        int marksPerThread = 200000;
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Thread> writers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread writer = new Thread(() -> {
+                try {
+                    startLatch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int j = 0; j < marksPerThread; j++) {
+                    metric.mark(j % 1000 + 1, 3L);
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+
+        AtomicBoolean stopped = new AtomicBoolean(false);
+        AtomicLong requests = new AtomicLong(0L);
+        AtomicLong traffic = new AtomicLong(0L);
+        AtomicLong maxLatency = new AtomicLong(0L);
+        Thread reader = new Thread(() -> {
+            while (!stopped.get()) {
+                collect(metric, requests, traffic, maxLatency);
+            }
+        });
+        reader.start();
+        startLatch.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        stopped.set(true);
+        reader.join();
+        collect(metric, requests, traffic, maxLatency);
+
+        Assert.assertEquals((long) threads * marksPerThread, requests.get());
+        Assert.assertEquals(3L * threads * marksPerThread, traffic.get());
+        Assert.assertEquals(1000L, maxLatency.get());
+    }
+
+    private static void collect(HdrMetric metric, AtomicLong requests, AtomicLong traffic, AtomicLong maxLatency) {
+        JMetricReport report = metric.getAndReset();
+        requests.addAndGet(report.requestsTotal());
+        traffic.addAndGet(report.trafficTotal());
+        maxLatency.accumulateAndGet((long) report.latency()[JMetricReport.TP_MAX], Math::max);
+        if (report.requestsTotal() > 0) {
+            // 每次读到的都是完整的写入，平均值不会超出记录的范围
+            double avg = report.latency()[JMetricReport.TP_AVG];
+            Assert.assertTrue(avg >= 1.0 && avg <= 1000.0);
+        }
+    }
+
+    /**
+     * 写者在临界区内时，切换阶段需要等待写者退出
+     */
+    @Test
+    public void phaserTest() throws Exception {
+        WriterReaderPhaser phaser = new WriterReaderPhaser();
+        // 没有写者时直接返回，连续切换也不会阻塞
+        phaser.flipPhase();
+        phaser.flipPhase();
+
+        long criticalValue = phaser.writerCriticalSectionEnter();
+        AtomicBoolean flipped = new AtomicBoolean(false);
+        Thread flipper = new Thread(() -> {
+            phaser.flipPhase();
+            flipped.set(true);
+        });
+        flipper.start();
+        Thread.sleep(100L);
+        Assert.assertFalse(flipped.get());
+
+        // 切换之后进入的写者不影响这次切换
+        long newCriticalValue = phaser.writerCriticalSectionEnter();
+        Thread.sleep(100L);
+        Assert.assertFalse(flipped.get());
+
+        phaser.writerCriticalSectionExit(criticalValue);
+        flipper.join(1000L);
+        Assert.assertTrue(flipped.get());
+
+        phaser.writerCriticalSectionExit(newCriticalValue);
+        phaser.flipPhase();
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.metric.hdr;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class HistogramTest {
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 1.0};
+
+    @Test
+    public void bucketTest() {
+        // 小于子桶数量的值精确记录
+        for (long value = 0; value < 128; value++) {
+            Assert.assertEquals(value, Histogram.indexOf(value));
+            Assert.assertEquals(value, Histogram.highestValueOf((int) value));
+        }
+        Assert.assertEquals(0, Histogram.indexOf(-1L));
+
+        // 桶连续且不重叠：每个桶的最大值落在这个桶里，加1落在下一个桶里
+        for (int index = 0; index < Histogram.BUCKET_COUNT - 1; index++) {
+            long highest = Histogram.highestValueOf(index);
+            Assert.assertEquals(index, Histogram.indexOf(highest));
+            Assert.assertEquals(index + 1, Histogram.indexOf(highest + 1));
+        }
+
+        // 超过最大值的记录在最后一个桶
+        Assert.assertEquals(Histogram.BUCKET_COUNT - 1, Histogram.indexOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void relativeErrorTest() {
+        Random random = new Random(0L);
+        for (int i = 0; i < 100000; i++) {
+            long value = random.nextLong() >>> (24 + random.nextInt(40));
+            long highest = Histogram.highestValueOf(Histogram.indexOf(value));
+            Assert.assertTrue(highest >= value);
+            Assert.assertTrue("value: " + value + ", bucket: " + highest, highest - value <= value / 64);
+        }
+    }
+
+    @Test
+    public void latencyTest() {
+        Histogram histogram = new Histogram();
+        double[] latency = histogram.latency(PERCENTILES);
+        Assert.assertArrayEquals(new double[PERCENTILES.length + 2], latency, 0.0);
+
+        for (long value = 1; value <= 10000; value++) {
+            histogram.record(value, 2L);
+        }
+        Assert.assertEquals(10000L, histogram.requests());
+        Assert.assertEquals(20000L, histogram.traffic());
+
+        latency = histogram.latency(PERCENTILES);
+        Assert.assertEquals(5000.5, latency[0], 0.0);
+        assertPercentile(5000, latency[1]);
+        assertPercentile(9000, latency[2]);
+        assertPercentile(9900, latency[3]);
+        // 100%和最大值都是记录的最大值，不是桶的最大值
+        Assert.assertEquals(10000.0, latency[4], 0.0);
+        Assert.assertEquals(10000.0, latency[5], 0.0);
+    }
+
+    @Test
+    public void singleValueTest() {
+        Histogram histogram = new Histogram();
+        histogram.record(1000000L, 0L);
+        double[] latency = histogram.latency(PERCENTILES);
+        for (double value : latency) {
+            Assert.assertEquals(1000000.0, value, 0.0);
+        }
+    }
+
+    @Test
+    public void addToAndClearTest() {
+        Histogram first = new Histogram();
+        Histogram second = new Histogram();
+        for (long value = 1; value <= 100; value++) {
+            first.record(value, 1L);
+            second.record(value + 100, 1L);
+        }
+        Histogram total = new Histogram();
+        first.addTo(total);
+        second.addTo(total);
+        Assert.assertEquals(200L, total.requests());
+        Assert.assertEquals(200L, total.traffic());
+        double[] latency = total.latency(PERCENTILES);
+        Assert.assertEquals(100.5, latency[0], 0.0);
+        Assert.assertEquals(100.0, latency[1], 0.0);
+        Assert.assertEquals(200.0, latency[5], 0.0);
+
+        total.clear();
+        Assert.assertEquals(0L, total.requests());
+        Assert.assertEquals(0L, total.traffic());
+        Assert.assertArrayEquals(new double[PERCENTILES.length + 2], total.latency(PERCENTILES), 0.0);
+    }
+
+    private static void assertPercentile(long expected, double actual) {
+        Assert.assertTrue("expected: " + expected + ", actual: " + actual,
+                actual >= expected && actual - expected <= expected / 64.0);
+    }
+}
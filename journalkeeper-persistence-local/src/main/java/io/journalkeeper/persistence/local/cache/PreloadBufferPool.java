@@ -13,6 +13,7 @@
  */
 package io.journalkeeper.persistence.local.cache;
 
+import io.journalkeeper.utils.buffer.DirectBufferUtils;
 import io.journalkeeper.utils.format.Format;
 import io.journalkeeper.utils.spi.Singleton;
 import io.journalkeeper.utils.threads.AsyncLoopThread;
@@ -21,11 +22,8 @@ import io.journalkeeper.utils.threads.Threads;
 import io.journalkeeper.utils.threads.ThreadsFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import sun.misc.Cleaner;
 import sun.misc.VM;
-import sun.nio.ch.DirectBuffer;
 
-import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -232,7 +230,7 @@ public class PreloadBufferPool implements MemoryCacheManager {
 
     private void destroyOne(ByteBuffer byteBuffer) {
         usedSize.getAndAdd(-1 * byteBuffer.capacity());
-        releaseIfDirect(byteBuffer);
+        DirectBufferUtils.releaseIfDirect(byteBuffer);
     }
 
     private void preLoadBuffer() {
@@ -304,20 +302,6 @@ public class PreloadBufferPool implements MemoryCacheManager {
         }
     }
 
-    private void releaseIfDirect(ByteBuffer byteBuffer) {
-        if (byteBuffer instanceof DirectBuffer) {
-            try {
-                Method getCleanerMethod;
-                getCleanerMethod = byteBuffer.getClass().getMethod("cleaner");
-                getCleanerMethod.setAccessible(true);
-                Cleaner cleaner = (Cleaner) getCleanerMethod.invoke(byteBuffer, new Object[0]);
-                cleaner.clean();
-            } catch (Exception e) {
-                logger.warn("Exception: ", e);
-            }
-        }
-    }
-
     @Override
     public void allocateMMap(BufferHolder bufferHolder) {
         reserveMemory(bufferHolder.size());
@@ -0,0 +1,28 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.persistence.local.journal;
+
+import java.nio.file.Path;
+
+/**
+ * 脏数据超过上限时，append等待刷盘超时抛出
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class FlushTimeoutException extends RuntimeException {
+    public FlushTimeoutException(long dirtySize, long maxDirtySize, long timeoutMs, Path path) {
+        super(String.format("Wait for flush timeout after %d ms, dirty size: %d, max dirty size: %d, path: %s.",
+                timeoutMs, dirtySize, maxDirtySize, path.toString()));
+    }
+}
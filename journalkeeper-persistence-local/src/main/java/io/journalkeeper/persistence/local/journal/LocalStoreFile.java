@@ -14,6 +14,7 @@
 package io.journalkeeper.persistence.local.journal;
 
 
+import io.journalkeeper.persistence.BufferView;
 import io.journalkeeper.persistence.local.cache.BufferHolder;
 import io.journalkeeper.persistence.local.cache.MemoryCacheManager;
 import io.journalkeeper.utils.locks.CasLock;
@@ -31,6 +32,7 @@ import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.FileChannel;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.StampedLock;
 
 /**
@@ -60,6 +62,8 @@ public class LocalStoreFile implements StoreFile, BufferHolder {
     // 缓存页
     private ByteBuffer pageBuffer = null;
     private int bufferType = NO_BUFFER;
+    // 缓存页的引用计数，存在只读视图时缓存页不能被释放
+    private PageReference pageReference = null;
 
     private MemoryCacheManager bufferPool;
     private final int capacity;
@@ -109,6 +113,7 @@ public class LocalStoreFile implements StoreFile, BufferHolder {
             bufferType = MAPPED_BUFFER;
             pageBuffer.clear();
             forced.set(true);
+            pageReference = new PageReference(loadBuffer, MAPPED_BUFFER);
         } catch (ClosedByInterruptException cie) {
             throw cie;
         } catch (Throwable t) {
@@ -153,6 +158,7 @@ public class LocalStoreFile implements StoreFile, BufferHolder {
         }
         this.pageBuffer = buffer;
         bufferType = DIRECT_BUFFER;
+        pageReference = new PageReference(buffer, DIRECT_BUFFER);
     }
 
     public long timestamp() {
@@ -193,7 +199,7 @@ public class LocalStoreFile implements StoreFile, BufferHolder {
     public boolean unload() {
         long stamp = bufferLock.writeLock();
         try {
-            if (isClean()) {
+            if (isClean() && !isViewed()) {
                 unloadUnsafe();
                 return true;
             } else {
@@ -256,6 +262,42 @@ public class LocalStoreFile implements StoreFile, BufferHolder {
         }
     }
 
+    @Override
+    public BufferView readView(int position, int length) throws IOException {
+        touch();
+        long stamp = bufferLock.readLock();
+        try {
+            while (!hasPage()) {
+                long ws = bufferLock.tryConvertToWriteLock(stamp);
+                if (ws != 0L) {
+                    // 升级成写锁成功
+                    stamp = ws;
+                    loadRoUnsafe();
+                } else {
+                    bufferLock.unlockRead(stamp);
+                    stamp = bufferLock.writeLock();
+                }
+            }
+            long rs = bufferLock.tryConvertToReadLock(stamp);
+            if (rs != 0L) {
+                stamp = rs;
+            }
+            ByteBuffer byteBuffer = pageBuffer.asReadOnlyBuffer();
+            byteBuffer.position(position);
+            byteBuffer.limit(writePosition);
+            if (length < byteBuffer.remaining()) {
+                byteBuffer.limit(byteBuffer.position() + length);
+            }
+            // 持有锁期间缓存页不会被卸载，在这里增加引用，视图关闭时释放
+            PageReference page = pageReference;
+            page.retain();
+            return new PageBufferView(byteBuffer.slice(), page);
+
+        } finally {
+            bufferLock.unlock(stamp);
+        }
+    }
+
     @Override
     public Long readLong(int position) throws IOException{
         touch();
@@ -469,10 +511,13 @@ public class LocalStoreFile implements StoreFile, BufferHolder {
 
 
     private void unloadUnsafe() {
-        if (MAPPED_BUFFER == this.bufferType) {
-            unloadMappedBuffer();
-        } else if (DIRECT_BUFFER == this.bufferType) {
-            unloadDirectBuffer();
+        final PageReference page = pageReference;
+        pageReference = null;
+        pageBuffer = null;
+        this.bufferType = NO_BUFFER;
+        if (null != page) {
+            // 如果还有存活的只读视图，缓存页延迟到最后一个视图关闭时释放
+            page.release();
         }
         try {
             closeFileChannel();
@@ -482,19 +527,13 @@ public class LocalStoreFile implements StoreFile, BufferHolder {
         writeClosed = true;
     }
 
-    private void unloadDirectBuffer() {
-        final ByteBuffer direct = pageBuffer;
-        pageBuffer = null;
-        this.bufferType = NO_BUFFER;
+    private void unloadDirectBuffer(ByteBuffer direct) {
         if (null != direct) bufferPool.releaseDirect(direct, this);
 
     }
 
-    private void unloadMappedBuffer() {
+    private void unloadMappedBuffer(Buffer mapped) {
         try {
-            final Buffer mapped = pageBuffer;
-            pageBuffer = null;
-            this.bufferType = NO_BUFFER;
             if (null != mapped) {
                 Method getCleanerMethod;
                 getCleanerMethod = mapped.getClass().getMethod("cleaner");
@@ -515,7 +554,15 @@ public class LocalStoreFile implements StoreFile, BufferHolder {
 
     @Override
     public boolean isFree() {
-        return isClean();
+        return isClean() && !isViewed();
+    }
+
+    /**
+     * 是否存在未关闭的只读视图
+     */
+    private boolean isViewed() {
+        final PageReference page = pageReference;
+        return null != page && page.isShared();
     }
 
     @Override
@@ -558,4 +605,60 @@ public class LocalStoreFile implements StoreFile, BufferHolder {
         }
     }
 
+
+    /**
+     * 缓存页的引用计数。
+     * 文件自身持有一个引用，每个未关闭的只读视图各持有一个引用，引用计数归零时才真正释放缓存页。
+     */
+    private class PageReference {
+        private final ByteBuffer buffer;
+        private final int type;
+        private final AtomicInteger referenceCount = new AtomicInteger(1);
+
+        PageReference(ByteBuffer buffer, int type) {
+            this.buffer = buffer;
+            this.type = type;
+        }
+
+        void retain() {
+            referenceCount.incrementAndGet();
+        }
+
+        void release() {
+            if (referenceCount.decrementAndGet() == 0) {
+                if (MAPPED_BUFFER == type) {
+                    unloadMappedBuffer(buffer);
+                } else if (DIRECT_BUFFER == type) {
+                    unloadDirectBuffer(buffer);
+                }
+            }
+        }
+
+        boolean isShared() {
+            return referenceCount.get() > 1;
+        }
+    }
+
+    private static class PageBufferView implements BufferView {
+        private final ByteBuffer buffer;
+        private final PageReference page;
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+
+        PageBufferView(ByteBuffer buffer, PageReference page) {
+            this.buffer = buffer;
+            this.page = page;
+        }
+
+        @Override
+        public ByteBuffer buffer() {
+            return buffer;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                page.release();
+            }
+        }
+    }
 }
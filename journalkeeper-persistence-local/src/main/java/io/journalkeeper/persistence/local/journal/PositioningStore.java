@@ -14,6 +14,7 @@
 package io.journalkeeper.persistence.local.journal;
 
 
+import io.journalkeeper.persistence.BufferView;
 import io.journalkeeper.persistence.local.cache.MemoryCacheManager;
 import io.journalkeeper.persistence.JournalPersistence;
 import io.journalkeeper.persistence.MonitoredPersistence;
@@ -26,6 +27,7 @@ import org.slf4j.LoggerFactory;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -37,7 +39,12 @@ import java.util.NavigableMap;
 import java.util.Properties;
 import java.util.SortedMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 带缓存的、无锁、高性能、多文件、基于位置的、Append Only的日志存储存储。
@@ -45,6 +52,7 @@ import java.util.concurrent.atomic.AtomicLong;
  * Date: 2018/8/14
  */
 public class PositioningStore implements JournalPersistence, MonitoredPersistence, Closeable {
+    private static final long FLUSH_WAIT_CHECK_INTERVAL_NS = TimeUnit.MILLISECONDS.toNanos(10L);
     private final Logger logger = LoggerFactory.getLogger(PositioningStore.class);
     private final MemoryCacheManager bufferPool;
     private final NavigableMap<Long, StoreFile> storeFileMap = new ConcurrentSkipListMap<>();
@@ -56,6 +64,12 @@ public class PositioningStore implements JournalPersistence, MonitoredPersistenc
     private final AtomicLong leftPosition = new AtomicLong(0L);
     private StoreFile writeStoreFile = null;
     private Config config = null;
+    // 脏数据超过上限时，append在这个条件上等待刷盘线程的进度通知
+    private final Lock flushLock = new ReentrantLock();
+    private final Condition flushCondition = flushLock.newCondition();
+    private final AtomicInteger flushWaiters = new AtomicInteger(0);
+    private final AtomicLong flushWaitCount = new AtomicLong(0L);
+    private final AtomicLong flushWaitTimeNs = new AtomicLong(0L);
 
     public PositioningStore() {
         this.bufferPool = ServiceSupport.load(MemoryCacheManager.class);
@@ -201,6 +215,11 @@ public class PositioningStore implements JournalPersistence, MonitoredPersistenc
                         Config.MAX_DIRTY_SIZE_KEY,
                         String.valueOf(Config.DEFAULT_MAX_DIRTY_SIZE))));
 
+        config.setFlushWaitTimeoutMs(Long.parseLong(
+                properties.getProperty(
+                        Config.FLUSH_WAIT_TIMEOUT_MS_KEY,
+                        String.valueOf(Config.DEFAULT_FLUSH_WAIT_TIMEOUT_MS))));
+
         return config;
     }
 
@@ -281,9 +300,54 @@ public class PositioningStore implements JournalPersistence, MonitoredPersistenc
     }
 
 
-    private void maybeWaitForFlush() {
-        while (config.getMaxDirtySize() > 0 && max() - flushed() > config.getMaxDirtySize()) {
-            Thread.yield();
+    private boolean isDirtyOverflow() {
+        return config.getMaxDirtySize() > 0 && max() - flushed() > config.getMaxDirtySize();
+    }
+
+    /**
+     * 脏数据超过上限时，阻塞等待刷盘线程的进度通知，直到脏数据回落到上限以内或者超时。
+     */
+    private void maybeWaitForFlush() throws IOException {
+        if (!isDirtyOverflow()) {
+            return;
+        }
+        long start = System.nanoTime();
+        long timeoutNs = TimeUnit.MILLISECONDS.toNanos(config.getFlushWaitTimeoutMs());
+        flushWaiters.incrementAndGet();
+        flushLock.lock();
+        try {
+            while (isDirtyOverflow()) {
+                // 定期醒来重新检查，避免错过通知
+                long waitNs = FLUSH_WAIT_CHECK_INTERVAL_NS;
+                if (timeoutNs > 0) {
+                    long remainingNs = timeoutNs - (System.nanoTime() - start);
+                    if (remainingNs <= 0) {
+                        throw new FlushTimeoutException(max() - flushed(), config.getMaxDirtySize(),
+                                config.getFlushWaitTimeoutMs(), base.toPath());
+                    }
+                    waitNs = Math.min(waitNs, remainingNs);
+                }
+                flushCondition.awaitNanos(waitNs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for flush, path: " + base.toPath());
+        } finally {
+            flushLock.unlock();
+            flushWaiters.decrementAndGet();
+            flushWaitCount.incrementAndGet();
+            flushWaitTimeNs.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private void signalFlushed() {
+        if (flushWaiters.get() > 0) {
+            flushLock.lock();
+            try {
+                flushCondition.signalAll();
+            } finally {
+                flushLock.unlock();
+            }
         }
     }
 
@@ -326,6 +390,7 @@ public class PositioningStore implements JournalPersistence, MonitoredPersistenc
             }
             if (flushPosition.get() < storeFile.position() + storeFile.flushPosition()) {
                 flushPosition.set(storeFile.position() + storeFile.flushPosition());
+                signalFlushed();
             }
         }
     }
@@ -358,6 +423,18 @@ public class PositioningStore implements JournalPersistence, MonitoredPersistenc
         return storeFile.read(relPosition, length).array();
     }
 
+    @Override
+    public BufferView readView(long position, int length) throws IOException {
+        if (length == 0) return BufferView.wrap(ByteBuffer.allocate(0));
+        checkReadPosition(position);
+        StoreFile storeFile = getStoreFile(position);
+        if(null == storeFile) {
+            return null;
+        }
+        int relPosition = (int) (position - storeFile.position());
+        return storeFile.readView(relPosition, length);
+    }
+
     public Long readLong(long position) throws IOException {
         checkReadPosition(position);
         StoreFile storeFile = getStoreFile(position);
@@ -465,6 +542,16 @@ public class PositioningStore implements JournalPersistence, MonitoredPersistenc
         return base.getFreeSpace();
     }
 
+    @Override
+    public long getFlushWaitCount() {
+        return flushWaitCount.get();
+    }
+
+    @Override
+    public long getFlushWaitTimeNs() {
+        return flushWaitTimeNs.get();
+    }
+
     @Override
     public long getTotalSpace() {
         return base.getTotalSpace();
@@ -485,11 +572,13 @@ public class PositioningStore implements JournalPersistence, MonitoredPersistenc
         final static int DEFAULT_CACHED_FILE_CORE_COUNT = 0;
         final static int DEFAULT_CACHED_FILE_MAX_COUNT = 2;
         final static long DEFAULT_MAX_DIRTY_SIZE = 0L;
+        final static long DEFAULT_FLUSH_WAIT_TIMEOUT_MS = 0L;
         final static String FILE_HEADER_SIZE_KEY = "file_header_size";
         final static String FILE_DATA_SIZE_KEY = "file_data_size";
         final static String CACHED_FILE_CORE_COUNT_KEY = "cached_file_core_count";
         final static String CACHED_FILE_MAX_COUNT_KEY = "cached_file_max_count";
         final static String MAX_DIRTY_SIZE_KEY = "max_dirty_size";
+        final static String FLUSH_WAIT_TIMEOUT_MS_KEY = "flush_wait_timeout_ms";
         /**
          * 文件头长度
          */
@@ -513,6 +602,11 @@ public class PositioningStore implements JournalPersistence, MonitoredPersistenc
          */
         private long maxDirtySize;
 
+        /**
+         * 脏数据超过上限时，append等待刷盘的超时时间，超时抛出{@link FlushTimeoutException}，0表示一直等待
+         */
+        private long flushWaitTimeoutMs;
+
         int getFileHeaderSize() {
             return fileHeaderSize;
         }
@@ -552,5 +646,13 @@ public class PositioningStore implements JournalPersistence, MonitoredPersistenc
         public void setMaxDirtySize(long maxDirtySize) {
             this.maxDirtySize = maxDirtySize;
         }
+
+        public long getFlushWaitTimeoutMs() {
+            return flushWaitTimeoutMs;
+        }
+
+        public void setFlushWaitTimeoutMs(long flushWaitTimeoutMs) {
+            this.flushWaitTimeoutMs = flushWaitTimeoutMs;
+        }
     }
 }
@@ -13,6 +13,8 @@
  */
 package io.journalkeeper.persistence.local.journal;
 
+import io.journalkeeper.persistence.BufferView;
+
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -58,6 +60,16 @@ public interface StoreFile extends Timed {
      */
     ByteBuffer read(int position, int length) throws IOException;
 
+    /**
+     * 用给定的位置和长度读取数据，返回缓存页上的只读视图，不复制数据。
+     * 视图关闭之前，缓存页不会被释放。
+     * @param position 文件内的相对位置
+     * @param length 数据长度
+     * @return 数据的只读视图
+     * @throws IOException 发生IO异常时抛出
+     */
+    BufferView readView(int position, int length) throws IOException;
+
     /**
      * 写入一段ByteBuffer，保证原子性
      * @param buffer 待写入的buffer
@@ -14,8 +14,11 @@
 package io.journalkeeper.persistence.local.journal;
 
 
+import io.journalkeeper.persistence.BufferView;
 import io.journalkeeper.persistence.JournalPersistence;
+import io.journalkeeper.persistence.local.cache.MemoryCacheManager;
 import io.journalkeeper.utils.format.Format;
+import io.journalkeeper.utils.spi.ServiceSupport;
 import io.journalkeeper.utils.test.ByteUtils;
 import io.journalkeeper.utils.test.TestPathUtils;
 import io.journalkeeper.utils.threads.AsyncLoopThread;
@@ -29,6 +32,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Properties;
@@ -95,6 +99,86 @@ public class PositioningStoreTest {
 
     }
 
+    @Test
+    public void readViewTest() throws IOException, InterruptedException {
+        try (JournalPersistence store = prepareStore()) {
+            int size = 10;
+            int maxLength = 999;
+            long start = store.max();
+            List<byte[]> journals = ByteUtils.createRandomSizeByteList(maxLength, size);
+            int length = journals.stream().mapToInt(journal -> journal.length).sum();
+            store.append(journals);
+
+            try (BufferView view = store.readView(start, length)) {
+                ByteBuffer buffer = view.buffer();
+                Assert.assertTrue(buffer.isReadOnly());
+                Assert.assertEquals(length, buffer.remaining());
+                byte[] readBytes = new byte[length];
+                buffer.get(readBytes);
+                Assert.assertArrayEquals(ByteUtils.concatBytes(journals), readBytes);
+            }
+        }
+    }
+
+    @Test
+    public void pageNotEvictedWhileViewedTest() throws IOException {
+        StoreFile storeFile = new LocalStoreFile(0L, path.toFile(), 128,
+                ServiceSupport.load(MemoryCacheManager.class), 1024);
+        byte[] bytes = ByteUtils.createFixedSizeBytes(512);
+        storeFile.append(ByteBuffer.wrap(bytes));
+        storeFile.flush();
+
+        BufferView view = storeFile.readView(0, bytes.length);
+        // 存在未关闭的视图时，缓存页不能被释放
+        Assert.assertFalse(storeFile.unload());
+        byte[] readBytes = new byte[bytes.length];
+        view.buffer().get(readBytes);
+        Assert.assertArrayEquals(bytes, readBytes);
+
+        view.close();
+        Assert.assertTrue(storeFile.unload());
+        storeFile.forceUnload();
+    }
+
+    @Test
+    public void waitForFlushTest() throws IOException, InterruptedException {
+        PositioningStore store = new PositioningStore();
+        Properties properties = new Properties();
+        properties.put("max_dirty_size", "1024");
+        properties.put("flush_wait_timeout_ms", "200");
+        store.recover(path, properties);
+        try {
+            byte[] bytes = ByteUtils.createFixedSizeBytes(1024);
+            store.append(bytes);
+            store.append(bytes);
+            // 没有刷盘，脏数据超过上限，等待超时
+            try {
+                store.append(bytes);
+                Assert.fail();
+            } catch (FlushTimeoutException ignored) {
+            }
+            Assert.assertEquals(1, store.getFlushWaitCount());
+            Assert.assertTrue(store.getFlushWaitTimeNs() >= 200L * 1000 * 1000);
+
+            // 刷盘线程推进后，被阻塞的append继续执行
+            AsyncLoopThread flushThread = ThreadBuilder.builder()
+                    .doWork(store::flush)
+                    .sleepTime(50, 50)
+                    .onException(e -> logger.warn("Flush Exception: ", e))
+                    .daemon(true)
+                    .build();
+            flushThread.start();
+            try {
+                long position = store.append(bytes);
+                Assert.assertEquals(3 * 1024, position);
+            } finally {
+                flushThread.stop();
+            }
+        } finally {
+            store.close();
+        }
+    }
+
     // recover
     @Test
     public void recoverTest() throws IOException {
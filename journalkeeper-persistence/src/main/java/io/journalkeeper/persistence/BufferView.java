@@ -0,0 +1,57 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.persistence;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 持久化数据的只读视图。
+ * 视图直接引用存储的缓存页，不复制数据。视图存活期间，对应的缓存页不会被释放，
+ * 使用完毕后必须调用{@link #close()}释放引用。
+ * @author agent
+ * Date: 2026-10-19
+ */
+public interface BufferView extends AutoCloseable {
+
+    /**
+     * 只读的数据，position为0，limit为数据长度。
+     * @return 只读的ByteBuffer
+     */
+    ByteBuffer buffer();
+
+    /**
+     * 释放视图，释放后不能再访问{@link #buffer()}返回的数据。可以重复调用。
+     */
+    @Override
+    void close();
+
+    /**
+     * 用一个不需要释放的ByteBuffer构建视图
+     * @param buffer 数据
+     * @return 视图
+     */
+    static BufferView wrap(ByteBuffer buffer) {
+        final ByteBuffer readOnlyBuffer = buffer.asReadOnlyBuffer();
+        return new BufferView() {
+            @Override
+            public ByteBuffer buffer() {
+                return readOnlyBuffer;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
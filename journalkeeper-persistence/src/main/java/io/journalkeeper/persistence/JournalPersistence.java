@@ -15,6 +15,7 @@ package io.journalkeeper.persistence;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Properties;
@@ -104,6 +105,20 @@ public interface JournalPersistence extends Closeable {
      */
     byte[] read(long position, int length) throws IOException;
 
+    /**
+     * 读取数据，返回数据的只读视图，不复制数据。
+     * 视图使用完毕后必须调用{@link BufferView#close()}释放。
+     * 默认实现复制一份数据，支持零拷贝的实现需要覆盖这个方法。
+     * @param position 起始位置
+     * @param length 读取长度
+     * @return 数据的只读视图
+     * @throws IOException 发生IO异常时抛出
+     */
+    default BufferView readView(long position, int length) throws IOException {
+        byte[] bytes = read(position, length);
+        return null == bytes ? null : BufferView.wrap(ByteBuffer.wrap(bytes));
+    }
+
     /**
      * 读取long
      * @param position 起始位置
@@ -27,4 +27,20 @@ public interface MonitoredPersistence {
     long getFreeSpace();
 
     long getTotalSpace();
+
+    /**
+     * 脏数据超过上限，append阻塞等待刷盘的累计次数
+     * @return 累计次数
+     */
+    default long getFlushWaitCount() {
+        return 0L;
+    }
+
+    /**
+     * 脏数据超过上限，append阻塞等待刷盘的累计时长
+     * @return 累计时长，单位纳秒
+     */
+    default long getFlushWaitTimeNs() {
+        return 0L;
+    }
 }
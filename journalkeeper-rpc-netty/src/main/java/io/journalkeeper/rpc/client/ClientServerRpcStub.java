@@ -49,7 +49,9 @@ import io.journalkeeper.rpc.remoting.transport.TransportState;
 import io.journalkeeper.rpc.remoting.transport.exception.TransportException;
 import io.journalkeeper.rpc.utils.CommandSupport;
 import io.journalkeeper.utils.event.EventBus;
+import io.journalkeeper.utils.event.EventFilter;
 import io.journalkeeper.utils.event.EventWatcher;
+import io.journalkeeper.utils.event.PullEvent;
 import io.journalkeeper.utils.threads.AsyncLoopThread;
 import io.journalkeeper.utils.threads.ThreadBuilder;
 import org.slf4j.Logger;
@@ -57,8 +59,16 @@ import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -69,14 +79,25 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ClientServerRpcStub implements ClientServerRpc {
     private static final Logger logger = LoggerFactory.getLogger(ClientServerRpcStub.class);
+    // 两次拉取事件之间的最小间隔
+    private static final long MIN_PULL_EVENTS_INTERVAL_MS = 10L;
     protected final TransportClient transportClient;
     protected final InetSocketAddress inetSocketAddress;
     protected final URI uri;
     protected Transport transport;
     protected EventBus eventBus = null;
     protected AsyncLoopThread pullEventThread = null;
-    protected long pullWatchId = -1L;
+    protected volatile long pullWatchId = -1L;
     protected long ackSequence = -1L;
+    // 过滤条件变化后新添加的，还没有切换过去的监听
+    protected final List<Long> pendingPullWatchIds = new ArrayList<>();
+    // 最近一次请求添加的服务端监听的过滤条件，null表示不过滤
+    protected Set<EventFilter> pullWatchFilters = null;
+    // 是否已经按照pullWatchFilters请求添加了服务端监听，添加失败后为false
+    protected boolean pullWatchRequested = false;
+    // 每次请求添加服务端监听时加1，只有最近一次请求添加的监听会被使用
+    protected long pullWatchVersion = 0L;
+    protected final Object pullWatchLock = new Object();
     protected AtomicBoolean lastRequestSuccess = new AtomicBoolean(true);
     protected final int version;
 
@@ -156,6 +177,18 @@ public class ClientServerRpcStub implements ClientServerRpc {
         return sendRequest(request, RpcTypes.QUERY_SNAPSHOT_REQUEST);
     }
 
+    /**
+     * 协议版本3开始支持，使用更低的协议版本时，旧版本的服务端不支持这个请求，直接返回失败，由调用方改用其它方式读取。
+     */
+    @Override
+    public CompletableFuture<GetPartitionEntriesResponse> getPartitionEntries(GetPartitionEntriesRequest request) {
+        if (version < 3) {
+            return CompletableFuture.completedFuture(new GetPartitionEntriesResponse(new UnsupportedOperationException(
+                    String.format("GetPartitionEntries requires protocol version 3, current version: %d.", version))));
+        }
+        return sendRequest(request, RpcTypes.GET_PARTITION_ENTRIES_REQUEST);
+    }
+
     @Override
     public CompletableFuture<GetServersResponse> getServers() {
         return sendRequest(null, RpcTypes.GET_SERVERS_REQUEST);
@@ -167,8 +200,8 @@ public class ClientServerRpcStub implements ClientServerRpc {
     }
 
     @Override
-    public CompletableFuture<AddPullWatchResponse> addPullWatch() {
-        return sendRequest(null, RpcTypes.ADD_PULL_WATCH_REQUEST);
+    public CompletableFuture<AddPullWatchResponse> addPullWatch(AddPullWatchRequest request) {
+        return sendRequest(request, RpcTypes.ADD_PULL_WATCH_REQUEST);
     }
 
     @Override
@@ -218,91 +251,261 @@ public class ClientServerRpcStub implements ClientServerRpc {
 
     @Override
     public void watch(EventWatcher eventWatcher) {
-        if (null == eventBus) {
-            initPullEvent();
+        PullWatchUpdate update;
+        synchronized (pullWatchLock) {
+            if (null == eventBus) {
+                eventBus = new EventBus();
+            }
+            eventBus.watch(eventWatcher);
+            update = prepareUpdatePullWatch();
+        }
+        if (null != update) {
+            try {
+                updatePullWatch(update);
+            } catch (RpcException e) {
+                boolean noWatchers;
+                synchronized (pullWatchLock) {
+                    if (eventBus == update.eventBus) {
+                        eventBus.unWatch(eventWatcher);
+                    }
+                    noWatchers = null != eventBus && !eventBus.hasEventWatchers();
+                }
+                if (noWatchers) {
+                    destroyPullEvent(true);
+                }
+                throw e;
+            }
         }
-        eventBus.watch(eventWatcher);
     }
 
-    private void initPullEvent() {
+    /**
+     * 本地监听器的过滤条件变化后，准备按照新的过滤条件在服务端添加一个监听，需要持有pullWatchLock。
+     * @return 过滤条件没有变化时返回null
+     */
+    private PullWatchUpdate prepareUpdatePullWatch() {
+        List<EventFilter> eventFilters = eventBus.eventWatcherFilters();
+        Set<EventFilter> eventFilterSet = toSet(eventFilters);
+        if (pullWatchRequested && Objects.equals(eventFilterSet, pullWatchFilters)) {
+            return null;
+        }
+        pullWatchRequested = true;
+        pullWatchFilters = eventFilterSet;
+        return new PullWatchUpdate(eventBus, ++pullWatchVersion, eventFilters);
+    }
+
+    /**
+     * 在锁外调用RPC添加服务端监听。
+     * 第一个监听添加成功后启动拉取事件的线程，之后添加的监听由拉取事件的线程切换过去，见{@link #switchPullWatch()}。
+     * 添加期间过滤条件又发生了变化或者监听已经被销毁时，删除这次添加的服务端监听。
+     */
+    private void updatePullWatch(PullWatchUpdate update) {
+        AddPullWatchResponse addPullWatchResponse;
         try {
-            AddPullWatchResponse addPullWatchResponse = addPullWatch().get();
-            if (addPullWatchResponse.success()) {
-                eventBus = new EventBus();
-                this.pullWatchId = addPullWatchResponse.getPullWatchId();
-                this.ackSequence = -1L;
-                long pullInterval = addPullWatchResponse.getPullIntervalMs();
-                pullEventThread = buildPullEventsThread(pullInterval);
-                pullEventThread.start();
-            } else {
-                throw new RpcException(addPullWatchResponse);
-            }
+            addPullWatchResponse = addPullWatch(new AddPullWatchRequest(update.eventFilters)).get();
         } catch (Throwable t) {
+            onUpdatePullWatchFailed(update);
             throw new RpcException(t);
         }
+        if (!addPullWatchResponse.success()) {
+            onUpdatePullWatchFailed(update);
+            throw new RpcException(addPullWatchResponse);
+        }
+        boolean accepted = false;
+        synchronized (pullWatchLock) {
+            if (eventBus == update.eventBus && pullWatchVersion == update.version) {
+                accepted = true;
+                if (null == pullEventThread) {
+                    pullWatchId = addPullWatchResponse.getPullWatchId();
+                    ackSequence = -1L;
+                    pullEventThread = buildPullEventsThread(update.eventBus, addPullWatchResponse.getPullIntervalMs());
+                    pullEventThread.start();
+                } else {
+                    pendingPullWatchIds.add(addPullWatchResponse.getPullWatchId());
+                }
+            }
+        }
+        if (!accepted) {
+            removePullWatch(addPullWatchResponse.getPullWatchId());
+        }
+    }
+
+    private void onUpdatePullWatchFailed(PullWatchUpdate update) {
+        synchronized (pullWatchLock) {
+            // 下次过滤条件变化时重新添加
+            if (pullWatchVersion == update.version) {
+                pullWatchRequested = false;
+            }
+        }
+    }
 
+    private static Set<EventFilter> toSet(List<EventFilter> eventFilters) {
+        return null == eventFilters ? null : new HashSet<>(eventFilters);
     }
 
-    private AsyncLoopThread buildPullEventsThread(long pullInterval) {
+    /**
+     * 使用长轮询拉取事件：没有事件时服务端挂起请求，直到有新的事件或者等待{@code pullInterval / 2}超时，
+     * 收到响应后立即发起下一次拉取。
+     * 服务端不支持长轮询时会立即返回，这时按照{@code pullInterval}的间隔拉取。
+     */
+    private AsyncLoopThread buildPullEventsThread(EventBus eventBus, long pullInterval) {
+        long longPollTimeoutMs = pullInterval / 2;
         return ThreadBuilder.builder()
                 .name("PullEventsThread")
-                .doWork(this::pullRemoteEvents)
-                .sleepTime(pullInterval, pullInterval)
+                .doWork(() -> pullRemoteEvents(eventBus, pullInterval, longPollTimeoutMs))
+                .sleepTime(MIN_PULL_EVENTS_INTERVAL_MS, MIN_PULL_EVENTS_INTERVAL_MS)
                 .onException(e -> logger.warn("PullEventsThread Exception: ", e))
                 .daemon(true)
                 .build();
     }
 
-    private void pullRemoteEvents() {
-        pullEvents(new PullEventsRequest(pullWatchId, ackSequence))
-                .thenAccept(response -> {
-                    if (response.success()) {
-                        if (null != response.getPullEvents()) {
-                            response.getPullEvents().forEach(pullEvent -> {
-                                eventBus.fireEvent(pullEvent);
-                                ackSequence = pullEvent.getSequence();
-                            });
-                        }
-                    } else {
-                        logger.warn("Pull event error: {}", response.getError());
-                    }
-                });
+    private void pullRemoteEvents(EventBus eventBus, long pullInterval, long longPollTimeoutMs) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        boolean empty = true;
+        try {
+            switchPullWatch(eventBus);
+            List<PullEvent> pullEvents = pullEvents(pullWatchId, longPollTimeoutMs);
+            empty = !firePullEvents(pullEvents);
+        } catch (ExecutionException e) {
+            logger.warn("Pull event exception: ", e.getCause());
+        }
+        if (empty && System.currentTimeMillis() - start < longPollTimeoutMs / 2) {
+            Thread.sleep(pullInterval);
+        }
     }
 
-    @Override
-    public void unWatch(EventWatcher eventWatcher) {
-        if (null != eventBus) {
-            eventBus.unWatch(eventWatcher);
-            if (!eventBus.hasEventWatchers()) {
-                destroyPullEvent();
+    /**
+     * 切换到过滤条件变化后新添加的监听。
+     * 新的监听添加之前产生的事件只在旧的监听中，添加之后产生的事件在新的监听中，
+     * 因此先取出所有监听中的事件，按照序号排序、去重后触发，再删除旧的监听。
+     */
+    private void switchPullWatch(EventBus eventBus) throws ExecutionException, InterruptedException {
+        List<Long> pullWatchIds;
+        synchronized (pullWatchLock) {
+            if (this.eventBus != eventBus || pendingPullWatchIds.isEmpty()) {
+                return;
             }
+            pullWatchIds = new ArrayList<>(pendingPullWatchIds.size() + 1);
+            pullWatchIds.add(pullWatchId);
+            pullWatchIds.addAll(pendingPullWatchIds);
+            pendingPullWatchIds.clear();
+        }
+        long newPullWatchId = pullWatchIds.get(pullWatchIds.size() - 1);
+        List<PullEvent> pullEvents = new ArrayList<>();
+        for (long id : pullWatchIds) {
+            pullEvents.addAll(pullEvents(id, 0L));
         }
+        boolean destroyed;
+        synchronized (pullWatchLock) {
+            // 切换期间监听可能已经被销毁，不能再把新的监听设置回去
+            destroyed = this.eventBus != eventBus;
+            if (!destroyed) {
+                pullWatchId = newPullWatchId;
+            }
+        }
+        pullEvents.sort(Comparator.comparingLong(PullEvent::getSequence));
+        firePullEvents(pullEvents);
+        for (int i = 0; i < pullWatchIds.size(); i++) {
+            long id = pullWatchIds.get(i);
+            // 已经销毁时，旧的监听由destroyPullEvent删除，新添加的监听也都需要删除
+            if (destroyed ? i > 0 : id != newPullWatchId) {
+                removePullWatch(id);
+            }
+        }
+    }
 
+    private List<PullEvent> pullEvents(long pullWatchId, long longPollTimeoutMs) throws ExecutionException, InterruptedException {
+        PullEventsResponse response = pullEvents(new PullEventsRequest(pullWatchId, ackSequence, longPollTimeoutMs)).get();
+        if (!response.success()) {
+            logger.warn("Pull event error: {}", response.getError());
+        } else if (null != response.getPullEvents()) {
+            return response.getPullEvents();
+        }
+        return Collections.emptyList();
     }
 
-    private void destroyPullEvent() {
-        if (null != eventBus) {
-            eventBus.shutdown();
-            eventBus = null;
+    /**
+     * 触发拉取到的事件，忽略已经触发过的事件。
+     * @return 是否有事件
+     */
+    private boolean firePullEvents(List<PullEvent> pullEvents) {
+        EventBus finalEventBus = eventBus;
+        boolean fired = false;
+        if (null != finalEventBus) {
+            for (PullEvent pullEvent : pullEvents) {
+                if (pullEvent.getSequence() > ackSequence) {
+                    finalEventBus.fireEvent(pullEvent);
+                    ackSequence = pullEvent.getSequence();
+                    fired = true;
+                }
+            }
         }
-        if (null != pullEventThread) {
-            pullEventThread.stop();
-            eventBus = null;
+        return fired;
+    }
+
+    @Override
+    public void unWatch(EventWatcher eventWatcher) {
+        PullWatchUpdate update;
+        synchronized (pullWatchLock) {
+            if (null == eventBus) {
+                return;
+            }
+            eventBus.unWatch(eventWatcher);
+            update = eventBus.hasEventWatchers() ? prepareUpdatePullWatch() : null;
         }
-        if (pullWatchId >= 0) {
+        if (null != update) {
             try {
-                RemovePullWatchResponse response = removePullWatch(new RemovePullWatchRequest(pullWatchId))
-                        .get();
-                if (!response.success()) {
-                    throw new RpcException(response);
-                }
+                updatePullWatch(update);
             } catch (Throwable t) {
-                logger.warn("Remove pull watch exception: ", t);
-            } finally {
+                logger.warn("Update pull watch exception: ", t);
+            }
+        } else {
+            destroyPullEvent(true);
+        }
+    }
+
+    /**
+     * 销毁事件监听，删除所有服务端监听。
+     * @param onlyIfNoWatchers 为true时，如果还有本地监听器则不销毁
+     */
+    private void destroyPullEvent(boolean onlyIfNoWatchers) {
+        AsyncLoopThread pullEventThread;
+        List<Long> pullWatchIds;
+        synchronized (pullWatchLock) {
+            if (onlyIfNoWatchers && null != eventBus && eventBus.hasEventWatchers()) {
+                return;
+            }
+            if (null != eventBus) {
+                eventBus.shutdown();
+                eventBus = null;
+            }
+            pullEventThread = this.pullEventThread;
+            this.pullEventThread = null;
+            pullWatchIds = new ArrayList<>(pendingPullWatchIds);
+            pendingPullWatchIds.clear();
+            if (pullWatchId >= 0) {
+                pullWatchIds.add(pullWatchId);
                 pullWatchId = -1L;
             }
+            pullWatchFilters = null;
+            pullWatchRequested = false;
         }
+        // 拉取事件的线程可能在等待pullWatchLock，需要在锁外停止
+        if (null != pullEventThread) {
+            pullEventThread.stop();
+        }
+        pullWatchIds.forEach(this::removePullWatch);
+    }
 
+    private void removePullWatch(long pullWatchId) {
+        try {
+            RemovePullWatchResponse response = removePullWatch(new RemovePullWatchRequest(pullWatchId))
+                    .get();
+            if (!response.success()) {
+                throw new RpcException(response);
+            }
+        } catch (Throwable t) {
+            logger.warn("Remove pull watch exception: ", t);
+        }
     }
 
     private synchronized Transport createTransport() {
@@ -322,7 +525,19 @@ public class ClientServerRpcStub implements ClientServerRpc {
 
     @Override
     public void stop() {
-        destroyPullEvent();
+        destroyPullEvent(false);
         closeTransport();
     }
+
+    private static class PullWatchUpdate {
+        private final EventBus eventBus;
+        private final long version;
+        private final List<EventFilter> eventFilters;
+
+        private PullWatchUpdate(EventBus eventBus, long version, List<EventFilter> eventFilters) {
+            this.eventBus = eventBus;
+            this.version = version;
+            this.eventFilters = eventFilters;
+        }
+    }
 }
@@ -13,13 +13,49 @@
  */
 package io.journalkeeper.rpc.codec;
 
+import io.journalkeeper.rpc.client.AddPullWatchRequest;
+import io.journalkeeper.rpc.header.JournalKeeperHeader;
+import io.journalkeeper.rpc.remoting.serialize.CodecSupport;
 import io.journalkeeper.rpc.remoting.transport.command.Type;
+import io.journalkeeper.utils.event.EventFilter;
+import io.netty.buffer.ByteBuf;
+
+import java.util.HashSet;
+import java.util.List;
 
 /**
  * @author LiYue
  * Date: 2019-04-22
  */
-public class AddPullWatchRequestCodec extends VoidPayloadCodec implements Type {
+public class AddPullWatchRequestCodec extends GenericPayloadCodec<AddPullWatchRequest> implements Type {
+    @Override
+    protected void encodePayload(JournalKeeperHeader header, AddPullWatchRequest request, ByteBuf buffer) throws Exception {
+        CodecSupport.encodeList(buffer, null == request ? null : request.getEventFilters(), (obj, buffer1) -> {
+            EventFilter eventFilter = (EventFilter) obj;
+            CodecSupport.encodeCollection(buffer1, eventFilter.getEventTypes(), (type, buffer2) -> CodecSupport.encodeInt(buffer2, (Integer) type));
+            CodecSupport.encodeString(buffer1, eventFilter.getDataKey());
+            CodecSupport.encodeCollection(buffer1, eventFilter.getValues(), (value, buffer2) -> CodecSupport.encodeString(buffer2, (String) value));
+            CodecSupport.encodeCollection(buffer1, eventFilter.getPrefixes(), (prefix, buffer2) -> CodecSupport.encodeString(buffer2, (String) prefix));
+        });
+    }
+
+    @Override
+    protected AddPullWatchRequest decodePayload(JournalKeeperHeader header, ByteBuf buffer) throws Exception {
+        // 兼容不支持过滤条件的旧版本客户端，请求中没有数据
+        if (!buffer.isReadable()) {
+            return new AddPullWatchRequest();
+        }
+        List<EventFilter> eventFilters = CodecSupport.decodeList(buffer, buffer1 -> {
+            List<Integer> eventTypes = CodecSupport.decodeList(buffer1, CodecSupport::decodeInt);
+            String dataKey = CodecSupport.decodeString(buffer1);
+            List<String> values = CodecSupport.decodeList(buffer1, CodecSupport::decodeString);
+            List<String> prefixes = CodecSupport.decodeList(buffer1, CodecSupport::decodeString);
+            return new EventFilter(new HashSet<>(eventTypes), dataKey.isEmpty() ? null : dataKey,
+                    new HashSet<>(values), new HashSet<>(prefixes));
+        });
+        return new AddPullWatchRequest(eventFilters);
+    }
+
     @Override
     public int type() {
         return RpcTypes.ADD_PULL_WATCH_REQUEST;
@@ -0,0 +1,48 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.rpc.codec;
+
+import io.journalkeeper.rpc.client.GetPartitionEntriesRequest;
+import io.journalkeeper.rpc.header.JournalKeeperHeader;
+import io.journalkeeper.rpc.remoting.serialize.CodecSupport;
+import io.journalkeeper.rpc.remoting.transport.command.Type;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class GetPartitionEntriesRequestCodec extends GenericPayloadCodec<GetPartitionEntriesRequest> implements Type {
+    @Override
+    protected void encodePayload(JournalKeeperHeader header, GetPartitionEntriesRequest request, ByteBuf buffer) throws Exception {
+        // int partition, long index, int size
+        CodecSupport.encodeInt(buffer, request.getPartition());
+        CodecSupport.encodeLong(buffer, request.getIndex());
+        CodecSupport.encodeInt(buffer, request.getSize());
+    }
+
+    @Override
+    protected GetPartitionEntriesRequest decodePayload(JournalKeeperHeader header, ByteBuf buffer) throws Exception {
+        return new GetPartitionEntriesRequest(
+                CodecSupport.decodeInt(buffer),
+                CodecSupport.decodeLong(buffer),
+                CodecSupport.decodeInt(buffer)
+        );
+    }
+
+    @Override
+    public int type() {
+        return RpcTypes.GET_PARTITION_ENTRIES_REQUEST;
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.rpc.codec;
+
+import io.journalkeeper.rpc.client.GetPartitionEntriesResponse;
+import io.journalkeeper.rpc.header.JournalKeeperHeader;
+import io.journalkeeper.rpc.remoting.serialize.CodecSupport;
+import io.journalkeeper.rpc.remoting.transport.command.Type;
+import io.netty.buffer.ByteBuf;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 编码时直接把日志从存储的缓存页写入发送缓冲区，不经过中间的byte[]；
+ * 解码时每条日志只从接收缓冲区复制一次。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class GetPartitionEntriesResponseCodec extends ResponseCodec<GetPartitionEntriesResponse> implements Type {
+    @Override
+    protected void encodeResponse(JournalKeeperHeader header, GetPartitionEntriesResponse response, ByteBuf buffer) throws Exception {
+        // List<ByteBuffer> entries
+        List<ByteBuffer> entries = response.getEntries();
+        int length = 0;
+        for (ByteBuffer entry : entries) {
+            length += Integer.BYTES + entry.remaining();
+        }
+        buffer.ensureWritable(Integer.BYTES + length);
+        CodecSupport.encodeList(buffer, entries, (obj, buffer1) -> {
+            ByteBuffer entry = ((ByteBuffer) obj).duplicate();
+            buffer1.writeInt(entry.remaining());
+            buffer1.writeBytes(entry);
+        });
+    }
+
+    @Override
+    protected GetPartitionEntriesResponse decodeResponse(JournalKeeperHeader header, ByteBuf buffer) throws Exception {
+        List<ByteBuffer> entries = CodecSupport.decodeList(buffer, buffer1 -> ByteBuffer.wrap(CodecSupport.decodeBytes(buffer1)));
+        return new GetPartitionEntriesResponse(entries);
+    }
+
+    @Override
+    public int type() {
+        return RpcTypes.GET_PARTITION_ENTRIES_RESPONSE;
+    }
+}
@@ -20,6 +20,9 @@ import io.journalkeeper.rpc.server.InstallSnapshotRequest;
 import io.netty.buffer.ByteBuf;
 
 /**
+ * 协议版本3开始offset为long，之前的版本为int。
+ * 升级集群时，先把所有节点的protocol.version配置为2，全部节点升级完成后再去掉这个配置。
+ *
  * @author LiYue
  * Date: 2019-04-02
  */
@@ -30,7 +33,11 @@ public class InstallSnapshotRequestCodec extends GenericPayloadCodec<InstallSnap
         CodecSupport.encodeUri(buffer, request.getLeaderId());
         CodecSupport.encodeLong(buffer, request.getLastIncludedIndex());
         CodecSupport.encodeInt(buffer, request.getLastIncludedTerm());
-        CodecSupport.encodeInt(buffer, request.getOffset());
+        if (header.getVersion() > 2) {
+            CodecSupport.encodeLong(buffer, request.getOffset());
+        } else {
+            CodecSupport.encodeInt(buffer, Math.toIntExact(request.getOffset()));
+        }
         CodecSupport.encodeBytes(buffer, request.getData());
         CodecSupport.encodeBoolean(buffer, request.isDone());
     }
@@ -42,7 +49,7 @@ public class InstallSnapshotRequestCodec extends GenericPayloadCodec<InstallSnap
                 CodecSupport.decodeUri(buffer),
                 CodecSupport.decodeLong(buffer),
                 CodecSupport.decodeInt(buffer),
-                CodecSupport.decodeInt(buffer),
+                header.getVersion() > 2 ? CodecSupport.decodeLong(buffer) : CodecSupport.decodeInt(buffer),
                 CodecSupport.decodeBytes(buffer),
                 CodecSupport.decodeBoolean(buffer));
     }
@@ -53,6 +53,8 @@ public class PayloadCodecRegistry {
         payloadCodecFactory.register(new GetSnapshotsResponseCodec());
         payloadCodecFactory.register(new CheckLeadershipRequestCodec());
         payloadCodecFactory.register(new CheckLeadershipResponseCodec());
+        payloadCodecFactory.register(new GetPartitionEntriesRequestCodec());
+        payloadCodecFactory.register(new GetPartitionEntriesResponseCodec());
 
 
         payloadCodecFactory.register(new AsyncAppendEntriesRequestCodec());
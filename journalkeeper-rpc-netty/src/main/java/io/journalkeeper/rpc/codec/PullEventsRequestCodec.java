@@ -28,15 +28,16 @@ public class PullEventsRequestCodec extends GenericPayloadCodec<PullEventsReques
     protected void encodePayload(JournalKeeperHeader header, PullEventsRequest request, ByteBuf buffer) throws Exception {
         CodecSupport.encodeLong(buffer, request.getPullWatchId());
         CodecSupport.encodeLong(buffer, request.getAckSequence());
-
+        CodecSupport.encodeLong(buffer, request.getLongPollTimeoutMs());
     }
 
     @Override
     protected PullEventsRequest decodePayload(JournalKeeperHeader header, ByteBuf buffer) throws Exception {
-        return new PullEventsRequest(
-                CodecSupport.decodeLong(buffer),
-                CodecSupport.decodeLong(buffer)
-        );
+        long pullWatchId = CodecSupport.decodeLong(buffer);
+        long ackSequence = CodecSupport.decodeLong(buffer);
+        // 兼容不支持长轮询的旧版本客户端
+        long longPollTimeoutMs = buffer.isReadable() ? CodecSupport.decodeLong(buffer) : 0L;
+        return new PullEventsRequest(pullWatchId, ackSequence, longPollTimeoutMs);
     }
 
     @Override
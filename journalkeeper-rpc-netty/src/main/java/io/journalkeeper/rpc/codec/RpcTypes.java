@@ -59,6 +59,8 @@ public class RpcTypes {
     public static final int GET_SNAPSHOTS_RESPONSE = -17;
     public static final int CHECK_LEADERSHIP_REQUEST = 18;
     public static final int CHECK_LEADERSHIP_RESPONSE = -18;
+    public static final int GET_PARTITION_ENTRIES_REQUEST = 19;
+    public static final int GET_PARTITION_ENTRIES_RESPONSE = -19;
 
 
     // Server RPCs
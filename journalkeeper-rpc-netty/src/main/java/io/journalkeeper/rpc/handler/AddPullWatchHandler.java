@@ -13,8 +13,10 @@
  */
 package io.journalkeeper.rpc.handler;
 
+import io.journalkeeper.rpc.client.AddPullWatchRequest;
 import io.journalkeeper.rpc.client.AddPullWatchResponse;
 import io.journalkeeper.rpc.codec.RpcTypes;
+import io.journalkeeper.rpc.payload.GenericPayload;
 import io.journalkeeper.rpc.remoting.transport.Transport;
 import io.journalkeeper.rpc.remoting.transport.command.Command;
 import io.journalkeeper.rpc.remoting.transport.command.Type;
@@ -42,7 +44,8 @@ public class AddPullWatchHandler implements CommandHandler, Type {
     @Override
     public Command handle(Transport transport, Command command) {
         try {
-            serverRpc.addPullWatch()
+            AddPullWatchRequest request = GenericPayload.get(command.getPayload());
+            serverRpc.addPullWatch(null == request ? new AddPullWatchRequest() : request)
                     .exceptionally(AddPullWatchResponse::new)
                     .thenAccept(response -> CommandSupport.sendResponse(response, RpcTypes.ADD_PULL_WATCH_RESPONSE, command, transport));
         } catch (Throwable throwable) {
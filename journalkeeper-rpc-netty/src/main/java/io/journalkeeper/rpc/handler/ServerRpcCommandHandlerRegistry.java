@@ -42,6 +42,7 @@ public class ServerRpcCommandHandlerRegistry {
         factory.register(uri, new CompleteTransactionHandler(serverRpc));
         factory.register(uri, new GetSnapshotsHandler(serverRpc));
         factory.register(uri, new CheckLeadershipHandler(serverRpc));
+        factory.register(uri, new GetPartitionEntriesHandler(serverRpc));
 
         factory.register(uri, new AsyncAppendEntriesHandler(serverRpc));
         factory.register(uri, new RequestVoteHandler(serverRpc));
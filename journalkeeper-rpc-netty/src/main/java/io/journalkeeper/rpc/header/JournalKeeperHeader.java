@@ -27,7 +27,8 @@ public class JournalKeeperHeader implements Header {
 
     public final static int MAGIC = 0x3f4e93d7;
     private static final AtomicInteger requestIdGenerator = new AtomicInteger(0);
-    public final static int DEFAULT_VERSION = 2;
+    // 2: RequestVote增加preVote；3: InstallSnapshot的offset改为long，增加GetPartitionEntries
+    public final static int DEFAULT_VERSION = 3;
     private boolean oneWay;
     private int status;
     private String error;
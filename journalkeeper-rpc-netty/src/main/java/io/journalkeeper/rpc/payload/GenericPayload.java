@@ -14,12 +14,16 @@
 package io.journalkeeper.rpc.payload;
 
 import io.journalkeeper.rpc.remoting.transport.command.Payload;
+import io.journalkeeper.rpc.remoting.transport.command.Releasable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * @author LiYue
  * Date: 2019-03-29
  */
-public class GenericPayload<T> implements Payload {
+public class GenericPayload<T> implements Payload, Releasable {
+    private static final Logger logger = LoggerFactory.getLogger(GenericPayload.class);
     private T payload;
 
     public GenericPayload(T payload) {
@@ -38,4 +42,18 @@ public class GenericPayload<T> implements Payload {
     public void setPayload(T payload) {
         this.payload = payload;
     }
+
+    /**
+     * 如果负载持有需要释放的资源（实现了{@link AutoCloseable}），释放这些资源。
+     */
+    @Override
+    public void release() {
+        if (payload instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) payload).close();
+            } catch (Exception e) {
+                logger.warn("Release payload exception: ", e);
+            }
+        }
+    }
 }
@@ -13,37 +13,82 @@
  */
 package io.journalkeeper.rpc.remoting.transport;
 
+import io.journalkeeper.metric.JMetric;
+import io.journalkeeper.metric.JMetricFactoryManager;
 import io.journalkeeper.rpc.remoting.transport.config.TransportConfig;
 import io.journalkeeper.rpc.remoting.transport.exception.TransportException;
+import io.journalkeeper.utils.spi.ServiceLoadException;
+import io.journalkeeper.utils.threads.NamedThreadFactory;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.collection.IntObjectHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Iterator;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 请求并发控制
+ * 在途请求按照请求ID分段存放，每段是一个以int为键的HashMap；
+ * 请求超时由时间轮触发，不需要定时扫描所有在途请求，超时请求的回调在单独的线程池中执行。
  * Created by hexiaofeng on 16-6-23.
  */
 public class RequestBarrier {
 
     protected static Logger logger = LoggerFactory.getLogger(RequestBarrier.class);
+    // 时间轮的精度
+    private static final long TIMEOUT_TICK_MS = 10L;
+    // 所有RequestBarrier共用一个时间轮
+    private static final HashedWheelTimer timeoutTimer =
+            new HashedWheelTimer(new NamedThreadFactory("JournalKeeper-Request-Timeout", true), TIMEOUT_TICK_MS, TimeUnit.MILLISECONDS);
+    // 所有RequestBarrier共用，执行超时请求的回调，避免回调阻塞时间轮
+    private static final ExecutorService timeoutCallbackExecutor =
+            Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+                    new NamedThreadFactory("JournalKeeper-Request-Timeout-Callback", true));
+    // 在途请求的分段数，必须是2的幂
+    private static final int SEGMENTS = 16;
     // 单向信号量
     public Semaphore onewaySemaphore;
     // 异步信号量
     public Semaphore asyncSemaphore;
-    // 存放同步和异步命令应答
-    public Map<Integer, ResponseFuture> futures = new ConcurrentHashMap<Integer, ResponseFuture>(200);
+    // 存放同步和异步命令应答，每段由自己的锁保护
+    private final IntObjectHashMap<ResponseFuture>[] futures;
+    // 在途请求数量
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // 请求超时的实际触发时间与超时时间的差值，没有可用的JMetricFactory时为null
+    private final JMetric timeoutDelayMetric;
+    // 每个请求加入时的在途请求数量，没有可用的JMetricFactory时为null
+    private final JMetric inFlightMetric;
     private TransportConfig config;
 
 
+    @SuppressWarnings("unchecked")
     public RequestBarrier(TransportConfig config) {
         this.config = config;
         this.onewaySemaphore = config.getMaxOneway() > 0 ? new Semaphore(config.getMaxOneway(), true) : null;
         this.asyncSemaphore = config.getMaxAsync() > 0 ? new Semaphore(config.getMaxAsync(), true) : null;
+        this.futures = new IntObjectHashMap[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            futures[i] = new IntObjectHashMap<>();
+        }
+        this.timeoutDelayMetric = createMetric("REQUEST_TIMEOUT_DELAY");
+        this.inFlightMetric = createMetric("REQUEST_IN_FLIGHT");
+    }
+
+    private static JMetric createMetric(String name) {
+        try {
+            return JMetricFactoryManager.getFactory().create(name);
+        } catch (ServiceLoadException e) {
+            logger.warn("No JMetricFactory found, metric {} disabled.", name);
+            return null;
+        }
     }
 
     /**
@@ -62,17 +107,35 @@ public class RequestBarrier {
      * @return 异步调用
      */
     public ResponseFuture get(final int requestId) {
-        return futures.get(requestId);
+        IntObjectHashMap<ResponseFuture> segment = segment(requestId);
+        synchronized (segment) {
+            return segment.get(requestId);
+        }
     }
 
     /**
-     * 缓存异步调用
+     * 缓存异步调用，并在时间轮中登记超时
      *
      * @param requestId 请求ID
      * @param future    异步调用
      */
     public void put(final int requestId, final ResponseFuture future) {
-        futures.put(requestId, future);
+        IntObjectHashMap<ResponseFuture> segment = segment(requestId);
+        ResponseFuture previous;
+        synchronized (segment) {
+            previous = segment.put(requestId, future);
+        }
+        int count;
+        if (null == previous) {
+            count = inFlight.incrementAndGet();
+        } else {
+            count = inFlight.get();
+            cancelTimeout(previous);
+        }
+        if (null != inFlightMetric) {
+            inFlightMetric.mark(count, 0L);
+        }
+        future.setTimeoutTask(timeoutTimer.newTimeout(timeout -> timeout(future), future.getTimeout(), TimeUnit.MILLISECONDS));
     }
 
     /**
@@ -82,42 +145,98 @@ public class RequestBarrier {
      * @return 异步调用
      */
     public ResponseFuture remove(final int requestId) {
-        return futures.remove(requestId);
+        IntObjectHashMap<ResponseFuture> segment = segment(requestId);
+        ResponseFuture future;
+        synchronized (segment) {
+            future = segment.remove(requestId);
+        }
+        if (null != future) {
+            inFlight.decrementAndGet();
+            cancelTimeout(future);
+        }
+        return future;
     }
 
     /**
-     * 清理所有超时的请求
+     * 在途请求数量
+     *
+     * @return 在途请求数量
      */
-    public void evict() {
-        Iterator<Map.Entry<Integer, ResponseFuture>> iterator = futures.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<Integer, ResponseFuture> entry = iterator.next();
-            ResponseFuture future = entry.getValue();
-            long timeout = future.getBeginTime() + future.getTimeout();
-
-            if (timeout <= System.currentTimeMillis() && future.getResponse() == null) {
-                iterator.remove();
-                if (future.release()) {
-                    try {
-                        future.onFailed(TransportException.RequestTimeoutException
-                                .build(IpUtil.toAddress(future.getTransport().remoteAddress())));
-                    } catch (Throwable e) {
-                        logger.error("clear timeout response exception", e);
-                    }
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 请求超时的实际触发时间与超时时间的差值，单位ns
+     *
+     * @return 超时触发时延监控，没有可用的JMetricFactory时返回null
+     */
+    public JMetric getTimeoutDelayMetric() {
+        return timeoutDelayMetric;
+    }
+
+    /**
+     * 每个请求加入时记录一次当前的在途请求数量，
+     * 报告中latency的各项数值是在途请求数量的平均值、分位数和最大值，不是时延。
+     *
+     * @return 在途请求数量监控，没有可用的JMetricFactory时返回null
+     */
+    public JMetric getInFlightMetric() {
+        return inFlightMetric;
+    }
+
+    /**
+     * 时间轮到期时调用，清理超时的请求
+     */
+    private void timeout(final ResponseFuture future) {
+        long timeout = future.getBeginTime() + future.getTimeout();
+        if (future.getResponse() != null) {
+            return;
+        }
+        IntObjectHashMap<ResponseFuture> segment = segment(future.getRequestId());
+        synchronized (segment) {
+            if (segment.get(future.getRequestId()) != future) {
+                return;
+            }
+            segment.remove(future.getRequestId());
+        }
+        inFlight.decrementAndGet();
+        if (null != timeoutDelayMetric) {
+            timeoutDelayMetric.mark(TimeUnit.MILLISECONDS.toNanos(Math.max(0L, System.currentTimeMillis() - timeout)));
+        }
+        if (future.release()) {
+            Runnable callback = () -> {
+                try {
+                    future.onFailed(TransportException.RequestTimeoutException
+                            .build(IpUtil.toAddress(future.getTransport().remoteAddress())));
+                } catch (Throwable e) {
+                    logger.error("clear timeout response exception", e);
                 }
-                logger.info("remove timeout request id={} begin={} timeout={}", future.getRequestId(),
-                        future.getBeginTime(), timeout);
+            };
+            try {
+                timeoutCallbackExecutor.execute(callback);
+            } catch (RejectedExecutionException e) {
+                callback.run();
             }
         }
+        logger.info("remove timeout request id={} begin={} timeout={}", future.getRequestId(),
+                future.getBeginTime(), timeout);
     }
 
     /**
      * 释放所有的异步调用
      */
     public void clear() {
-        ResponseFuture future;
-        for (Map.Entry<Integer, ResponseFuture> entry : futures.entrySet()) {
-            future = entry.getValue();
+        List<ResponseFuture> cleared = new ArrayList<>();
+        for (IntObjectHashMap<ResponseFuture> segment : futures) {
+            synchronized (segment) {
+                cleared.addAll(segment.values());
+                segment.clear();
+            }
+        }
+        inFlight.addAndGet(-cleared.size());
+        for (ResponseFuture future : cleared) {
+            cancelTimeout(future);
             if (future.release()) {
                 try {
                     future.onFailed(TransportException.RequestTimeoutException
@@ -126,7 +245,17 @@ public class RequestBarrier {
                 }
             }
         }
-        futures.clear();
+    }
+
+    private IntObjectHashMap<ResponseFuture> segment(final int requestId) {
+        return futures[requestId & (SEGMENTS - 1)];
+    }
+
+    private void cancelTimeout(final ResponseFuture future) {
+        Timeout timeoutTask = future.getTimeoutTask();
+        if (null != timeoutTask) {
+            timeoutTask.cancel();
+        }
     }
 
     /**
@@ -15,6 +15,7 @@ package io.journalkeeper.rpc.remoting.transport;
 
 import io.journalkeeper.rpc.remoting.transport.command.Command;
 import io.journalkeeper.rpc.remoting.transport.command.CommandCallback;
+import io.netty.util.Timeout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -61,6 +62,8 @@ public class ResponseFuture implements Future {
     private volatile boolean isDone = false;
     // 是否取消
     private volatile boolean isCancel = false;
+    // 时间轮中的超时任务
+    private volatile Timeout timeoutTask;
 
     /**
      * 异步调用构造函数
@@ -120,6 +123,14 @@ public class ResponseFuture implements Future {
         return this.callback;
     }
 
+    Timeout getTimeoutTask() {
+        return timeoutTask;
+    }
+
+    void setTimeoutTask(Timeout timeoutTask) {
+        this.timeoutTask = timeoutTask;
+    }
+
     public long getBeginTime() {
         return beginTime;
     }
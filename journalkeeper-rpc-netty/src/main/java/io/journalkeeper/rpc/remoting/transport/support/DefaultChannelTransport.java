@@ -480,6 +480,8 @@ public class DefaultChannelTransport implements ChannelTransport {
                 }
             }
             request.release();
+            // 响应已经编码发送（或者发送失败），释放响应引用的资源
+            response.release();
         }
     }
 }
\ No newline at end of file
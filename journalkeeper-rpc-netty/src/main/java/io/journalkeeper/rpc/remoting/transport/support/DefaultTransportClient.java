@@ -13,6 +13,9 @@
  */
 package io.journalkeeper.rpc.remoting.transport.support;
 
+import io.journalkeeper.metric.JMetric;
+import io.journalkeeper.metric.JMetricReport;
+import io.journalkeeper.metric.JMetricSupport;
 import io.journalkeeper.rpc.remoting.concurrent.EventBus;
 import io.journalkeeper.rpc.remoting.concurrent.EventListener;
 import io.journalkeeper.rpc.remoting.event.TransportEvent;
@@ -53,7 +56,7 @@ public class DefaultTransportClient extends TransportClientSupport implements Tr
     private RequestHandler requestHandler;
     private ResponseHandler responseHandler;
     private EventBus<TransportEvent> transportEventBus;
-    private Timer clearTimer;
+    private Timer reportTimer;
 
     public DefaultTransportClient(ClientConfig config, Codec codec, final RequestBarrier requestBarrier, RequestHandler requestHandler, ResponseHandler responseHandler, EventBus<TransportEvent> transportEventBus) {
         super(config);
@@ -62,7 +65,7 @@ public class DefaultTransportClient extends TransportClientSupport implements Tr
         this.requestHandler = requestHandler;
         this.responseHandler = responseHandler;
         this.transportEventBus = transportEventBus;
-        this.clearTimer = new Timer("DefaultTransportClient-Clear-Timer");
+        this.reportTimer = new Timer("DefaultTransportClient-Report-Timer", true);
 
 
     }
@@ -117,19 +120,47 @@ public class DefaultTransportClient extends TransportClientSupport implements Tr
     @Override
     protected void doStart() throws Exception {
         super.doStart();
-        this.clearTimer.scheduleAtFixedRate(new TimerTask() {
+        // 超时的请求由RequestBarrier的时间轮清理，这里只定期输出超时和在途请求的统计
+        this.reportTimer.scheduleAtFixedRate(new TimerTask() {
             @Override
             public void run() {
-                requestBarrier.evict();
+                reportTimeouts();
+                reportInFlight();
             }
         }, getConfig().getSendTimeout(), getConfig().getSendTimeout());
         transportEventBus.start();
     }
 
+    private void reportTimeouts() {
+        JMetric timeoutDelayMetric = requestBarrier.getTimeoutDelayMetric();
+        if (null == timeoutDelayMetric) {
+            return;
+        }
+        JMetricReport report = timeoutDelayMetric.getAndReset();
+        if (report.requestsTotal() > 0) {
+            logger.info("Request timeouts: {}, in-flight requests: {}, timeout delay: {}.",
+                    report.requestsTotal(), requestBarrier.getInFlight(), JMetricSupport.formatNs(report));
+        }
+    }
+
+    private void reportInFlight() {
+        JMetric inFlightMetric = requestBarrier.getInFlightMetric();
+        if (null == inFlightMetric) {
+            return;
+        }
+        JMetricReport report = inFlightMetric.getAndReset();
+        if (report.requestsTotal() > 0 && logger.isDebugEnabled()) {
+            double[] inFlight = report.latency();
+            logger.debug("Requests: {}, in-flight requests avg: {}, tp99: {}, max: {}.",
+                    report.requestsTotal(), (long) inFlight[JMetricReport.TP_AVG],
+                    (long) inFlight[JMetricReport.TP_99], (long) inFlight[JMetricReport.TP_MAX]);
+        }
+    }
+
     @Override
     protected void doStop() {
         super.doStop();
-        clearTimer.cancel();
+        reportTimer.cancel();
         transportEventBus.stop(false);
         requestBarrier.clear();
         responseHandler.stop();
@@ -26,6 +26,8 @@ import io.journalkeeper.core.api.transaction.UUIDTransactionId;
 import io.journalkeeper.exceptions.IndexOverflowException;
 import io.journalkeeper.exceptions.IndexUnderflowException;
 import io.journalkeeper.exceptions.NotLeaderException;
+import io.journalkeeper.exceptions.RequestTimeoutException;
+import io.journalkeeper.rpc.client.AddPullWatchRequest;
 import io.journalkeeper.rpc.client.AddPullWatchResponse;
 import io.journalkeeper.rpc.client.CheckLeadershipResponse;
 import io.journalkeeper.rpc.client.ClientServerRpc;
@@ -37,6 +39,8 @@ import io.journalkeeper.rpc.client.ConvertRollResponse;
 import io.journalkeeper.rpc.client.CreateTransactionRequest;
 import io.journalkeeper.rpc.client.CreateTransactionResponse;
 import io.journalkeeper.rpc.client.GetOpeningTransactionsResponse;
+import io.journalkeeper.rpc.client.GetPartitionEntriesRequest;
+import io.journalkeeper.rpc.client.GetPartitionEntriesResponse;
 import io.journalkeeper.rpc.client.GetServerStatusResponse;
 import io.journalkeeper.rpc.client.GetServersResponse;
 import io.journalkeeper.rpc.client.GetSnapshotsResponse;
@@ -66,6 +70,8 @@ import io.journalkeeper.rpc.server.RequestVoteResponse;
 import io.journalkeeper.rpc.server.ServerRpc;
 import io.journalkeeper.rpc.server.ServerRpcAccessPoint;
 import io.journalkeeper.utils.event.Event;
+import io.journalkeeper.utils.event.EventFilter;
+import io.journalkeeper.utils.event.EventType;
 import io.journalkeeper.utils.event.EventWatcher;
 import io.journalkeeper.utils.event.PullEvent;
 import io.journalkeeper.utils.net.NetworkingUtils;
@@ -81,6 +87,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -100,6 +107,7 @@ import java.util.stream.IntStream;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.argThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -193,6 +201,28 @@ public class RpcTest {
         Assert.assertEquals(leaderUriStr, response.getLeader().toString());
     }
 
+    @Test
+    public void testRequestTimeout() throws InterruptedException {
+        logger.info("Running test {}.", Thread.currentThread()
+                .getStackTrace()[1]
+                .getMethodName());
+        ClientServerRpc clientServerRpc = clientServerRpcAccessPoint.getClintServerRpc(serverRpcMock.serverUri());
+
+        // 服务端永远不返回响应
+        when(serverRpcMock.lastApplied()).thenReturn(new CompletableFuture<>());
+        long start = System.currentTimeMillis();
+        try {
+            clientServerRpc.lastApplied().get();
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof RequestTimeoutException);
+        }
+        long takes = System.currentTimeMillis() - start;
+        logger.info("Request timeout takes {} ms.", takes);
+        // 默认的请求超时是1秒，上限放宽，避免机器负载高时误报
+        Assert.assertTrue(takes >= 1000L && takes < 10000L);
+    }
+
     @Test
     public void testUpdateClusterState() throws ExecutionException, InterruptedException {
         logger.info("Running test {}.", Thread.currentThread()
@@ -402,6 +432,78 @@ public class RpcTest {
 
     }
 
+    @Test
+    public void testGetPartitionEntries() throws ExecutionException, InterruptedException {
+        logger.info("Running test {}.", Thread.currentThread()
+                .getStackTrace()[1]
+                .getMethodName());
+        GetPartitionEntriesRequest request = new GetPartitionEntriesRequest(7, 6666666L, 87);
+        ClientServerRpc clientServerRpc = clientServerRpcAccessPoint.getClintServerRpc(serverRpcMock.serverUri());
+        List<byte[]> entries = ByteUtils.createRandomSizeByteList(2048, 1024);
+        AtomicBoolean released = new AtomicBoolean(false);
+        GetPartitionEntriesResponse response;
+        // Test success response, entries are read-only direct buffers like views of the store
+        when(serverRpcMock.getPartitionEntries(any(GetPartitionEntriesRequest.class)))
+                .thenReturn(CompletableFuture.supplyAsync(() -> new GetPartitionEntriesResponse(
+                        entries.stream().map(bytes -> {
+                            ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+                            buffer.put(bytes);
+                            buffer.flip();
+                            return buffer.asReadOnlyBuffer();
+                        }).collect(Collectors.toList()),
+                        () -> released.set(true))));
+        response = clientServerRpc.getPartitionEntries(request).get();
+        Assert.assertTrue(response.success());
+        Assert.assertTrue(testListOfBytesEquals(entries, response.getEntries().stream()
+                .map(ByteBuffer::array).collect(Collectors.toList())));
+
+        verify(serverRpcMock).getPartitionEntries(
+                argThat((GetPartitionEntriesRequest r) ->
+                        r.getPartition() == request.getPartition() &&
+                                r.getIndex() == request.getIndex() &&
+                                r.getSize() == request.getSize()
+                ));
+
+        // The response should be released after sent
+        long t0 = System.currentTimeMillis();
+        while (!released.get() && System.currentTimeMillis() - t0 < 1000L) {
+            Thread.sleep(10L);
+        }
+        Assert.assertTrue(released.get());
+
+        // Test index overflow
+        when(serverRpcMock.getPartitionEntries(any(GetPartitionEntriesRequest.class)))
+                .thenReturn(CompletableFuture.supplyAsync(() -> new GetPartitionEntriesResponse(new IndexOverflowException())));
+        response = clientServerRpc.getPartitionEntries(request).get();
+        Assert.assertFalse(response.success());
+        Assert.assertEquals(StatusCode.INDEX_OVERFLOW, response.getStatusCode());
+
+        // Test index underflow
+        when(serverRpcMock.getPartitionEntries(any(GetPartitionEntriesRequest.class)))
+                .thenReturn(CompletableFuture.supplyAsync(() -> new GetPartitionEntriesResponse(new IndexUnderflowException())));
+        response = clientServerRpc.getPartitionEntries(request).get();
+        Assert.assertFalse(response.success());
+        Assert.assertEquals(StatusCode.INDEX_UNDERFLOW, response.getStatusCode());
+    }
+
+    @Test
+    public void testGetPartitionEntriesProtocolVersion() throws ExecutionException, InterruptedException {
+        logger.info("Running test {}.", Thread.currentThread()
+                .getStackTrace()[1]
+                .getMethodName());
+        Properties properties = new Properties();
+        properties.setProperty("protocol.version", "2");
+        ClientServerRpcAccessPoint oldVersionAccessPoint = new JournalKeeperRpcAccessPointFactory().createClientServerRpcAccessPoint(properties);
+        ClientServerRpc clientServerRpc = oldVersionAccessPoint.getClintServerRpc(serverRpcMock.serverUri());
+
+        // 版本2的服务端不支持这个请求，不发送请求直接返回失败
+        GetPartitionEntriesResponse response = clientServerRpc.getPartitionEntries(new GetPartitionEntriesRequest(7, 0L, 10)).get();
+        Assert.assertFalse(response.success());
+        Assert.assertEquals(StatusCode.EXCEPTION, response.getStatusCode());
+        verify(serverRpcMock, never()).getPartitionEntries(any(GetPartitionEntriesRequest.class));
+        oldVersionAccessPoint.stop();
+    }
+
     @Test
     public void testGerServers() throws ExecutionException, InterruptedException {
         logger.info("Running test {}.", Thread.currentThread()
@@ -437,13 +539,19 @@ public class RpcTest {
         ClientServerRpc clientServerRpc = clientServerRpcAccessPoint.getClintServerRpc(serverRpcMock.serverUri());
         AddPullWatchResponse response;
 
-        when(serverRpcMock.addPullWatch())
+        List<EventFilter> eventFilters = Arrays.asList(
+                EventFilter.ofEventTypes(EventType.ON_LEADER_CHANGE),
+                EventFilter.ofValues(EventType.ON_STATE_CHANGE, "key", "key1", "key2"),
+                EventFilter.ofPrefixes(EventType.ON_STATE_CHANGE, "key", "prefix/"));
+
+        when(serverRpcMock.addPullWatch(any(AddPullWatchRequest.class)))
                 .thenReturn(CompletableFuture.supplyAsync(() -> new AddPullWatchResponse(pullWatchId, pullIntervalMs)));
-        response = clientServerRpc.addPullWatch().get();
+        response = clientServerRpc.addPullWatch(new AddPullWatchRequest(eventFilters)).get();
         Assert.assertTrue(response.success());
 
         Assert.assertEquals(pullWatchId, response.getPullWatchId());
         Assert.assertEquals(pullIntervalMs, response.getPullIntervalMs());
+        verify(serverRpcMock).addPullWatch(argThat((AddPullWatchRequest r) -> eventFilters.equals(r.getEventFilters())));
     }
 
     @Test
@@ -469,6 +577,7 @@ public class RpcTest {
                 .getMethodName());
         long pullWatchId = 666L;
         long ackSequence = 888888L;
+        long longPollTimeoutMs = 500L;
         Map<String, String> eventData = new HashMap<>();
         eventData.put("key1", "value1");
         eventData.put("key2", "value2");
@@ -480,7 +589,7 @@ public class RpcTest {
 
         when(serverRpcMock.pullEvents(any(PullEventsRequest.class)))
                 .thenReturn(CompletableFuture.supplyAsync(() -> new PullEventsResponse(pullEvents)));
-        response = clientServerRpc.pullEvents(new PullEventsRequest(pullWatchId, ackSequence)).get();
+        response = clientServerRpc.pullEvents(new PullEventsRequest(pullWatchId, ackSequence, longPollTimeoutMs)).get();
         Assert.assertTrue(response.success());
 
         Assert.assertEquals(pullEvents.size(), response.getPullEvents().size());
@@ -489,7 +598,8 @@ public class RpcTest {
 
         verify(serverRpcMock).pullEvents(argThat((PullEventsRequest r) ->
                 r.getPullWatchId() == pullWatchId &&
-                        r.getAckSequence() == ackSequence));
+                        r.getAckSequence() == ackSequence &&
+                        r.getLongPollTimeoutMs() == longPollTimeoutMs));
     }
 
     @Test
@@ -517,7 +627,7 @@ public class RpcTest {
                         return new PullEventsResponse(Collections.emptyList());
                     }
                 }));
-        when(serverRpcMock.addPullWatch())
+        when(serverRpcMock.addPullWatch(any(AddPullWatchRequest.class)))
                 .thenReturn(CompletableFuture.supplyAsync(() -> new AddPullWatchResponse(pullWatchId, pullIntervalMs)));
         when(serverRpcMock.removePullWatch(any(RemovePullWatchRequest.class)))
                 .thenReturn(CompletableFuture.supplyAsync(RemovePullWatchResponse::new));
@@ -817,6 +927,30 @@ public class RpcTest {
                 ));
     }
 
+    @Test
+    public void testInstallSnapshotProtocolVersion() throws ExecutionException, InterruptedException {
+        logger.info("Running test {}.", Thread.currentThread()
+                .getStackTrace()[1]
+                .getMethodName());
+        Properties properties = new Properties();
+        properties.setProperty("protocol.version", "2");
+        ServerRpcAccessPoint oldVersionAccessPoint = new JournalKeeperRpcAccessPointFactory().createServerRpcAccessPoint(properties);
+
+        // 版本2的offset为int
+        InstallSnapshotRequest request = new InstallSnapshotRequest(666, URI.create("jk://localhost:8888"),
+                -1L, -1, 8L * 1024 * 1024, ByteUtils.createFixedSizeBytes(1024), true);
+        ServerRpc serverRpc = oldVersionAccessPoint.getServerRpcAgent(serverRpcMock.serverUri());
+        when(serverRpcMock.installSnapshot(any(InstallSnapshotRequest.class)))
+                .thenReturn(CompletableFuture.supplyAsync(() -> new InstallSnapshotResponse(888)));
+        InstallSnapshotResponse response = serverRpc.installSnapshot(request).get();
+        Assert.assertTrue(response.success());
+        Assert.assertEquals(888, response.getTerm());
+        verify(serverRpcMock).installSnapshot(
+                argThat((InstallSnapshotRequest r) -> Objects.equals(request, r)
+                ));
+        oldVersionAccessPoint.stop();
+    }
+
     @Test
     public void testGetServerStatus() throws ExecutionException, InterruptedException {
         logger.info("Running test {}.", Thread.currentThread()
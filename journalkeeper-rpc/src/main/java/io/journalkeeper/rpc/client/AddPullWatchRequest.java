@@ -0,0 +1,45 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.rpc.client;
+
+import io.journalkeeper.utils.event.EventFilter;
+
+import java.util.List;
+
+/**
+ * RPC 方法
+ * {@link ClientServerRpc#addPullWatch(AddPullWatchRequest)}
+ * 请求参数
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class AddPullWatchRequest {
+    private final List<EventFilter> eventFilters;
+
+    public AddPullWatchRequest(List<EventFilter> eventFilters) {
+        this.eventFilters = eventFilters;
+    }
+
+    public AddPullWatchRequest() {
+        this(null);
+    }
+
+    /**
+     * 获取事件过滤条件
+     * @return 过滤条件，服务端只返回满足任一条件的事件。为null或者为空时返回所有事件。
+     */
+    public List<EventFilter> getEventFilters() {
+        return eventFilters;
+    }
+}
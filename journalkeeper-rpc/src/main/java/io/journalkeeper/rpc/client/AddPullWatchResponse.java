@@ -18,7 +18,7 @@ import io.journalkeeper.rpc.StatusCode;
 
 /**
  * RPC 方法
- * {@link ClientServerRpc#addPullWatch() addPullWatch()}
+ * {@link ClientServerRpc#addPullWatch(AddPullWatchRequest) addPullWatch()}
  * 返回响应。
  *
  * @author LiYue
@@ -46,8 +46,9 @@ public interface ClientServerRpc {
     CompletableFuture<UpdateClusterStateResponse> updateClusterState(UpdateClusterStateRequest request);
 
     /**
-     * 客户端调用LEADER节点查询集群当前的状态，即日志在状态机中执行完成后产生的数据。
+     * 客户端调用任意选民节点查询集群当前的状态，即日志在状态机中执行完成后产生的数据。
      * 该服务保证强一致性，保证读到的状态总是集群的最新状态。
+     * FOLLOWER节点先向LEADER获取ReadIndex，等本地状态机执行到ReadIndex之后再查询。
      *
      * @param request See {@link QueryStateRequest}
      * @return See {@link QueryStateResponse}
@@ -80,6 +81,17 @@ public interface ClientServerRpc {
      */
     CompletableFuture<QueryStateResponse> querySnapshot(QueryStateRequest request);
 
+    /**
+     * 客户端调用任意节点读取指定分区上已提交的日志，直接读取Journal，不经过状态机。
+     *
+     * @param request See {@link GetPartitionEntriesRequest}
+     * @return See {@link GetPartitionEntriesResponse}
+     * 可能的返回的状态：
+     * StatusCode.INDEX_OVERFLOW: 请求位置大于分区的最大索引序号。
+     * StatusCode.INDEX_UNDERFLOW：请求位置小于分区的最小索引序号。
+     */
+    CompletableFuture<GetPartitionEntriesResponse> getPartitionEntries(GetPartitionEntriesRequest request);
+
     /**
      * 客户端查询任意节点获取集群配置，返回集群所有节点和当前的LEADER节点。
      * 需要注意的是，只有LEADER节点上的配置是最新且准确的，在其它节点上查询到的集群配置有可能是已过期的旧配置。
@@ -98,9 +110,19 @@ public interface ClientServerRpc {
     /**
      * 添加pull模式事件监听。
      * @see EventBus
+     * @param request See {@link AddPullWatchRequest}
+     * @return See {@link AddPullWatchResponse}
+     */
+    CompletableFuture<AddPullWatchResponse> addPullWatch(AddPullWatchRequest request);
+
+    /**
+     * 添加不过滤的pull模式事件监听。
+     * @see EventBus
      * @return See {@link AddPullWatchResponse}
      */
-    CompletableFuture<AddPullWatchResponse> addPullWatch();
+    default CompletableFuture<AddPullWatchResponse> addPullWatch() {
+        return addPullWatch(new AddPullWatchRequest());
+    }
 
     /**
      * 删除pull事件监听。
@@ -0,0 +1,43 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.rpc.client;
+
+/**
+ * 读取指定分区日志的请求
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class GetPartitionEntriesRequest {
+    private final int partition;
+    private final long index;
+    private final int size;
+
+    public GetPartitionEntriesRequest(int partition, long index, int size) {
+        this.partition = partition;
+        this.index = index;
+        this.size = size;
+    }
+
+    public int getPartition() {
+        return partition;
+    }
+
+    public long getIndex() {
+        return index;
+    }
+
+    public int getSize() {
+        return size;
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.rpc.client;
+
+import io.journalkeeper.exceptions.IndexOverflowException;
+import io.journalkeeper.exceptions.IndexUnderflowException;
+import io.journalkeeper.rpc.BaseResponse;
+import io.journalkeeper.rpc.StatusCode;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 读取指定分区日志的响应。
+ *
+ * 服务端构造的响应中，每条日志都是存储缓存页上的只读视图，响应发送完成后需要调用{@link #close()}释放视图。
+ * 客户端解码得到的响应不引用存储，{@link #close()}不做任何事。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class GetPartitionEntriesResponse extends BaseResponse implements AutoCloseable {
+    private final List<ByteBuffer> entries;
+    private final Runnable releaser;
+
+    public GetPartitionEntriesResponse(Throwable exception) {
+        super(exception);
+        this.entries = Collections.emptyList();
+        this.releaser = null;
+    }
+
+    public GetPartitionEntriesResponse(List<ByteBuffer> entries) {
+        this(entries, null);
+    }
+
+    /**
+     * @param entries 未反序列化的日志，每个ByteBuffer的position到limit之间是一条完整的日志
+     * @param releaser 释放日志引用的资源，可以为null
+     */
+    public GetPartitionEntriesResponse(List<ByteBuffer> entries, Runnable releaser) {
+        this.entries = entries;
+        this.releaser = releaser;
+    }
+
+    public List<ByteBuffer> getEntries() {
+        return entries;
+    }
+
+    @Override
+    public void close() {
+        if (null != releaser) {
+            releaser.run();
+        }
+    }
+
+    @Override
+    public void onSetException(Throwable throwable) {
+        try {
+            throw throwable;
+        } catch (IndexOverflowException e) {
+            setStatusCode(StatusCode.INDEX_OVERFLOW);
+        } catch (IndexUnderflowException e) {
+            setStatusCode(StatusCode.INDEX_UNDERFLOW);
+        } catch (Throwable t) {
+            super.onSetException(throwable);
+        }
+    }
+}
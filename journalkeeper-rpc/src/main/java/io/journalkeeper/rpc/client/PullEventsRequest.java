@@ -23,10 +23,16 @@ package io.journalkeeper.rpc.client;
 public class PullEventsRequest {
     private final long pullWatchId;
     private final long ackSequence;
+    private final long longPollTimeoutMs;
 
-    public PullEventsRequest(long pullWatchId, long ackSequence) {
+    public PullEventsRequest(long pullWatchId, long ackSequence, long longPollTimeoutMs) {
         this.pullWatchId = pullWatchId;
         this.ackSequence = ackSequence;
+        this.longPollTimeoutMs = longPollTimeoutMs;
+    }
+
+    public PullEventsRequest(long pullWatchId, long ackSequence) {
+        this(pullWatchId, ackSequence, 0L);
     }
 
     /**
@@ -44,4 +50,12 @@ public class PullEventsRequest {
     public long getAckSequence() {
         return ackSequence;
     }
+
+    /**
+     * 获取长轮询的最长等待时间。
+     * @return 没有事件时服务端挂起请求的最长时间，单位毫秒。小于等于0时不等待，立即返回。
+     */
+    public long getLongPollTimeoutMs() {
+        return longPollTimeoutMs;
+    }
 }
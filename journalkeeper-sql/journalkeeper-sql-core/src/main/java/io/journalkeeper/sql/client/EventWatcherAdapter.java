@@ -15,8 +15,9 @@ package io.journalkeeper.sql.client;
 
 import io.journalkeeper.sql.client.domain.OperationTypes;
 import io.journalkeeper.utils.event.Event;
+import io.journalkeeper.utils.event.EventFilter;
 import io.journalkeeper.utils.event.EventType;
-import io.journalkeeper.utils.event.EventWatcher;
+import io.journalkeeper.utils.event.FilteredEventWatcher;
 
 import java.util.Map;
 import java.util.Objects;
@@ -27,7 +28,7 @@ import java.util.Objects;
  * date: 2019/6/11
  */
 // TODO 适配
-public class EventWatcherAdapter implements EventWatcher {
+public class EventWatcherAdapter implements FilteredEventWatcher {
 
     private byte[] key;
     private SQLEventListener listener;
@@ -41,6 +42,11 @@ public class EventWatcherAdapter implements EventWatcher {
         this.listener = listener;
     }
 
+    @Override
+    public EventFilter eventFilter() {
+        return EventFilter.ofEventTypes(EventType.ON_STATE_CHANGE);
+    }
+
     @Override
     public void onEvent(Event event) {
         if (event.getEventType() != EventType.ON_STATE_CHANGE) {
@@ -0,0 +1,111 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.coordinating;
+
+import io.journalkeeper.coordinating.state.CoordinatorStateFactory;
+import io.journalkeeper.coordinating.state.config.CoordinatingConfigs;
+import io.journalkeeper.coordinating.state.domain.ReadRequest;
+import io.journalkeeper.coordinating.state.domain.ReadResponse;
+import io.journalkeeper.coordinating.state.domain.StateTypes;
+import io.journalkeeper.coordinating.state.domain.WriteRequest;
+import io.journalkeeper.coordinating.state.domain.WriteResponse;
+import io.journalkeeper.core.api.AdminClient;
+import io.journalkeeper.core.api.SnapshotEntry;
+import io.journalkeeper.core.serialize.WrappedBootStrap;
+import io.journalkeeper.core.serialize.WrappedRaftClient;
+import io.journalkeeper.utils.net.NetworkingUtils;
+import io.journalkeeper.utils.test.TestPathUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * 使用RocksDB检查点创建和恢复快照
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class CoordinatingSnapshotTest {
+    private Path base = null;
+
+    @Before
+    public void before() throws IOException {
+        base = TestPathUtils.prepareBaseDir("CoordinatingSnapshotTest");
+    }
+
+    @After
+    public void after() {
+        TestPathUtils.destroyBaseDir(base.toFile());
+    }
+
+    @Test
+    public void checkpointSnapshotTest() throws Exception {
+        URI uri = URI.create("jk://localhost:" + NetworkingUtils.findRandomOpenPortOnAllLocalInterfaces());
+        Properties properties = new Properties();
+        properties.setProperty(CoordinatingConfigs.STATE_STORE, "rocksdb");
+        properties.setProperty("working_dir", base.toString());
+        properties.setProperty("rocksdb.options.createIfMissing", "true");
+
+        WrappedBootStrap<WriteRequest, WriteResponse, ReadRequest, ReadResponse> bootStrap =
+                new WrappedBootStrap<>(new CoordinatorStateFactory(), properties);
+        bootStrap.getServer().init(uri, Collections.singletonList(uri));
+        bootStrap.getServer().recover();
+        bootStrap.getServer().start();
+        AdminClient adminClient = bootStrap.getAdminClient();
+        adminClient.waitForClusterReady(5000L);
+        WrappedRaftClient<WriteRequest, WriteResponse, ReadRequest, ReadResponse> client = bootStrap.getClient();
+
+        set(client, "key_1", "value_1");
+        adminClient.takeSnapshot().get();
+        List<SnapshotEntry> snapshots = adminClient.getSnapshots().get().getSnapshots();
+        Assert.assertEquals(2, snapshots.size());
+        long snapshotIndex = snapshots.get(snapshots.size() - 1).getIndex();
+        // 快照中的用户状态是一个完整的RocksDB检查点
+        Assert.assertTrue(Files.isRegularFile(
+                base.resolve("snapshots").resolve(String.valueOf(snapshotIndex)).resolve("user").resolve("CURRENT")));
+
+        // 快照之后的写入不影响快照
+        set(client, "key_1", "value_2");
+        set(client, "key_2", "value_2");
+        Assert.assertEquals("value_2", get(client, "key_1"));
+
+        adminClient.recoverSnapshot(snapshotIndex).get();
+        Assert.assertEquals("value_1", get(client, "key_1"));
+        Assert.assertNull(get(client, "key_2"));
+
+        bootStrap.shutdown();
+    }
+
+    private void set(WrappedRaftClient<WriteRequest, WriteResponse, ReadRequest, ReadResponse> client,
+                     String key, String value) throws Exception {
+        client.update(new WriteRequest(StateTypes.SET.getType(),
+                key.getBytes(StandardCharsets.UTF_8), value.getBytes(StandardCharsets.UTF_8))).get();
+    }
+
+    private String get(WrappedRaftClient<WriteRequest, WriteResponse, ReadRequest, ReadResponse> client,
+                       String key) throws Exception {
+        ReadResponse response = client.query(new ReadRequest(StateTypes.GET.getType(),
+                key.getBytes(StandardCharsets.UTF_8))).get();
+        return null == response.getValue() ? null : new String(response.getValue(), StandardCharsets.UTF_8);
+    }
+}
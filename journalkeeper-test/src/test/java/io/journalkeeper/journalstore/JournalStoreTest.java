@@ -23,6 +23,8 @@ import io.journalkeeper.core.entry.DefaultJournalEntryParser;
 import io.journalkeeper.core.entry.JournalEntryParseSupport;
 import io.journalkeeper.exceptions.ServerBusyException;
 import io.journalkeeper.rpc.client.UpdateClusterStateRequest;
+import io.journalkeeper.utils.event.EventType;
+import io.journalkeeper.utils.event.EventWatcher;
 import io.journalkeeper.utils.format.Format;
 import io.journalkeeper.utils.net.NetworkingUtils;
 import io.journalkeeper.utils.test.ByteUtils;
@@ -54,6 +56,7 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -230,6 +233,143 @@ public class JournalStoreTest {
 
 
     }
+    @Test
+    public void batchApplyEventsTest() throws Exception {
+        Set<Integer> partitions = Sets.newSet(0, 1, 2, 3, 4);
+        int entriesPerPartition = 200;
+        JournalStoreServer server = createServers(1, base, partitions).get(0);
+        JournalStoreClient client = server.createLocalClient();
+        client.waitForClusterReady();
+
+        // 每个分区收到的最大的maxIndex
+        Map<Integer, Long> maxIndices = new ConcurrentHashMap<>();
+        client.watch(event -> {
+            if (event.getEventType() == EventType.ON_JOURNAL_CHANGE) {
+                maxIndices.merge(Integer.parseInt(event.getEventData().get("partition")),
+                        Long.parseLong(event.getEventData().get("maxIndex")), Math::max);
+            }
+        });
+
+        // 交替写入各分区，使每批执行的entry包含多个分区
+        byte[] rawEntries = ByteUtils.createFixedSizeBytes(128);
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < entriesPerPartition; i++) {
+            for (int partition : partitions) {
+                futures.add(client.append(partition, 1, rawEntries, ResponseConfig.REPLICATION));
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (System.currentTimeMillis() < deadline && !partitions.stream().allMatch(
+                partition -> maxIndices.getOrDefault(partition, 0L) == entriesPerPartition)) {
+            Thread.sleep(10L);
+        }
+        for (int partition : partitions) {
+            Assert.assertEquals(entriesPerPartition, maxIndices.getOrDefault(partition, 0L).longValue());
+        }
+
+        server.stop();
+    }
+
+    /**
+     * 远程客户端只监听部分分区，只收到这些分区的事件，删除监听后不再收到事件
+     */
+    @Test
+    public void partitionWatchTest() throws Exception {
+        Set<Integer> partitions = Sets.newSet(0, 1, 2, 3, 4);
+        int entriesPerPartition = 20;
+        JournalStoreServer server = createServers(1, base, partitions).get(0);
+        JournalStoreClient client = server.createClient();
+        client.waitForClusterReady();
+
+        Map<Integer, Long> maxIndices = new ConcurrentHashMap<>();
+        Set<Integer> eventTypes = ConcurrentHashMap.newKeySet();
+        EventWatcher eventWatcher = event -> {
+            eventTypes.add(event.getEventType());
+            maxIndices.merge(Integer.parseInt(event.getEventData().get("partition")),
+                    Long.parseLong(event.getEventData().get("maxIndex")), Math::max);
+        };
+        client.watch(eventWatcher, 1, 3);
+
+        byte[] rawEntries = ByteUtils.createFixedSizeBytes(128);
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < entriesPerPartition; i++) {
+            for (int partition : partitions) {
+                futures.add(client.append(partition, 1, rawEntries, ResponseConfig.REPLICATION));
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (System.currentTimeMillis() < deadline && !(
+                maxIndices.getOrDefault(1, 0L) == entriesPerPartition &&
+                maxIndices.getOrDefault(3, 0L) == entriesPerPartition)) {
+            Thread.sleep(10L);
+        }
+        Assert.assertEquals(Sets.newSet(1, 3), maxIndices.keySet());
+        Assert.assertEquals(Collections.singleton(EventType.ON_JOURNAL_CHANGE), eventTypes);
+        Assert.assertEquals(entriesPerPartition, maxIndices.get(1).longValue());
+        Assert.assertEquals(entriesPerPartition, maxIndices.get(3).longValue());
+
+        client.unWatch(eventWatcher, 1, 3);
+        client.append(1, 1, rawEntries, ResponseConfig.REPLICATION).get();
+        Thread.sleep(500L);
+        Assert.assertEquals(entriesPerPartition, maxIndices.get(1).longValue());
+
+        server.stop();
+    }
+
+    /**
+     * 挂起的长轮询读取请求在新的日志被状态机执行后返回
+     */
+    @Test
+    public void fetchWakeupTest() throws Exception {
+        JournalStoreServer server = createServers(1, base).get(0);
+        JournalStoreClient client = server.createClient();
+        client.waitForClusterReady();
+        byte[] rawEntry = ByteUtils.createFixedSizeBytes(128);
+
+        long start = System.currentTimeMillis();
+        CompletableFuture<List<JournalEntry>> future = client.fetch(0, 0L, 10, 10000L, 1);
+        Thread.sleep(500L);
+        Assert.assertFalse(future.isDone());
+
+        client.append(0, 1, rawEntry, ResponseConfig.REPLICATION).get();
+        List<JournalEntry> entries = future.get(5, TimeUnit.SECONDS);
+        Assert.assertTrue(System.currentTimeMillis() - start < 10000L);
+        Assert.assertEquals(1, entries.size());
+        Assert.assertArrayEquals(rawEntry, entries.get(0).getPayload().getBytes());
+
+        server.stop();
+    }
+
+    /**
+     * 等待超时的长轮询读取请求返回已经读到的日志，没有日志时返回空结果
+     */
+    @Test
+    public void fetchTimeoutTest() throws Exception {
+        final long maxWaitMs = 1000L;
+        JournalStoreServer server = createServers(1, base).get(0);
+        JournalStoreClient client = server.createClient();
+        client.waitForClusterReady();
+        byte[] rawEntry = ByteUtils.createFixedSizeBytes(128);
+
+        long start = System.currentTimeMillis();
+        List<JournalEntry> entries = client.fetch(0, 0L, 10, maxWaitMs, 1).get(5, TimeUnit.SECONDS);
+        Assert.assertTrue(System.currentTimeMillis() - start >= maxWaitMs);
+        Assert.assertTrue(entries.isEmpty());
+
+        // 日志的总长度达不到minBytes，等待超时后返回读到的日志
+        CompletableFuture<List<JournalEntry>> future = client.fetch(0, 0L, 10, maxWaitMs, 1024 * 1024);
+        client.append(0, 1, rawEntry, ResponseConfig.REPLICATION).get();
+        entries = future.get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(1, entries.size());
+        Assert.assertArrayEquals(rawEntry, entries.get(0).getPayload().getBytes());
+
+        server.stop();
+    }
+
     @Ignore
     @Test
     public void writePerformanceTest() throws Exception {
@@ -0,0 +1,47 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.utils.buffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sun.misc.Cleaner;
+import sun.nio.ch.DirectBuffer;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * 立即释放DirectBuffer占用的堆外内存，不等待GC。
+ * 释放之后不能再访问这个buffer。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class DirectBufferUtils {
+    private static final Logger logger = LoggerFactory.getLogger(DirectBufferUtils.class);
+
+    public static void releaseIfDirect(ByteBuffer byteBuffer) {
+        if (byteBuffer instanceof DirectBuffer) {
+            try {
+                Method getCleanerMethod;
+                getCleanerMethod = byteBuffer.getClass().getMethod("cleaner");
+                getCleanerMethod.setAccessible(true);
+                Cleaner cleaner = (Cleaner) getCleanerMethod.invoke(byteBuffer, new Object[0]);
+                cleaner.clean();
+            } catch (Exception e) {
+                logger.warn("Exception: ", e);
+            }
+        }
+    }
+}
@@ -19,13 +19,19 @@ import io.journalkeeper.utils.threads.ThreadBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
@@ -46,29 +52,44 @@ import java.util.stream.Collectors;
  *
  * 注意：客户端需要按照服务端给出的时间间隔拉取事件，如果客户端长时间不来拉取事件，服务端将认为客户端已经宕机，自动取消订阅。
  *
+ * pull模式也支持长轮询：调用 {@link #pullEvents(long, long)}，如果当前没有事件，
+ * 请求将被挂起，直到有新的事件产生或者等待超时，客户端收到响应后可以立即发起下一次拉取。
+ *
+ * 添加pull模式监听时可以指定过滤条件 {@link #addPullWatch(List)}，
+ * 监听按照过滤条件建立索引，每个事件只放入满足条件的监听的事件队列中，
+ * 也只唤醒这些监听挂起的长轮询。
+ * push模式下，实现了 {@link FilteredEventWatcher}的监听器只回调满足过滤条件的事件。
+ *
  * @author LiYue
  * Date: 2019-04-12
  */
 public class EventBus implements Watchable {
     private static final Logger logger = LoggerFactory.getLogger(EventBus.class);
-    private final NavigableMap<Long, Event> cachedEvents = new ConcurrentSkipListMap<>();
     private final AtomicLong watchIdGenerator = new AtomicLong(0L);
     private final AtomicLong nextSequence = new AtomicLong(0L);
     private final Set<EventWatcher> eventWatchers = ConcurrentHashMap.newKeySet();
     private final Map<Long, PullEventWatcher> pullEventWatchers = new ConcurrentHashMap<>();
+    private final EventFilterIndex<PullEventWatcher> pullEventWatcherIndex = new EventFilterIndex<>();
     private final long pullEventIntervalMs;
     private final long pullEventWatcherTimeout;
     private final AsyncLoopThread removeTimeoutPullWatchersThread;
     private final Collection<EventInterceptor> interceptors;
+    // 用于长轮询超时，为null时不支持长轮询
+    private final ScheduledExecutorService scheduledExecutor;
 
-    public EventBus(long pullEventIntervalMs) {
+    public EventBus(long pullEventIntervalMs, ScheduledExecutorService scheduledExecutor) {
         this.pullEventIntervalMs = pullEventIntervalMs;
         this.pullEventWatcherTimeout = 5 * pullEventIntervalMs;
+        this.scheduledExecutor = scheduledExecutor;
         interceptors = ServiceSupport.loadAll(EventInterceptor.class);
         this.removeTimeoutPullWatchersThread = buildRemoveTimeoutPullWatchersThread();
         this.removeTimeoutPullWatchersThread.start();
     }
 
+    public EventBus(long pullEventIntervalMs) {
+        this(pullEventIntervalMs, null);
+    }
+
     public EventBus() {
         this(1000L);
     }
@@ -84,7 +105,11 @@ public class EventBus implements Watchable {
     }
 
     private void removeTimeoutPullWatchers() {
-        pullEventWatchers.entrySet().removeIf(entry -> entry.getValue().lastPullTimestamp + pullEventWatcherTimeout < System.currentTimeMillis());
+        pullEventWatchers.entrySet().stream()
+                .filter(entry -> entry.getValue().lastPullTimestamp + pullEventWatcherTimeout < System.currentTimeMillis())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList())
+                .forEach(this::removePullWatch);
     }
 
     /**
@@ -100,10 +125,20 @@ public class EventBus implements Watchable {
             }
         }
         // 回调Push eventWatchers
-        eventWatchers.forEach(eventWatcher -> eventWatcher.onEvent(event));
+        eventWatchers.forEach(eventWatcher -> {
+            if (!(eventWatcher instanceof FilteredEventWatcher) ||
+                    ((FilteredEventWatcher) eventWatcher).eventFilter().accept(event)) {
+                eventWatcher.onEvent(event);
+            }
+        });
 
         if (!pullEventWatchers.isEmpty()) {
-            cachedEvents.put(nextSequence.getAndIncrement(), event);
+            long sequence = nextSequence.getAndIncrement();
+            // 只放入满足过滤条件的监听，并唤醒挂起的长轮询
+            for (PullEventWatcher pullEventWatcher : pullEventWatcherIndex.match(event)) {
+                pullEventWatcher.events.put(sequence, event);
+                wakeup(pullEventWatcher);
+            }
         }
     }
 
@@ -134,8 +169,19 @@ public class EventBus implements Watchable {
      * @return 监听ID
      */
     public long addPullWatch() {
+        return addPullWatch(null);
+    }
+
+    /**
+     * 添加pull模式事件监听，只拉取满足过滤条件的事件。
+     * @param eventFilters 过滤条件，满足任一条件的事件都会被拉取。为null或者为空时拉取所有事件。
+     * @return 监听ID
+     */
+    public long addPullWatch(List<EventFilter> eventFilters) {
         long pullWatchId = watchIdGenerator.getAndIncrement();
-        pullEventWatchers.put(pullWatchId, new PullEventWatcher(nextSequence.get()));
+        PullEventWatcher pullEventWatcher = new PullEventWatcher(nextSequence.get(), eventFilters);
+        pullEventWatchers.put(pullWatchId, pullEventWatcher);
+        pullEventWatcherIndex.add(eventFilters, pullEventWatcher);
         return pullWatchId;
     }
 
@@ -144,7 +190,14 @@ public class EventBus implements Watchable {
      * @param pullWatchId 监听ID
      */
     public void removePullWatch(long pullWatchId) {
-        pullEventWatchers.remove(pullWatchId);
+        PullEventWatcher pullEventWatcher = pullEventWatchers.remove(pullWatchId);
+        if (null != pullEventWatcher) {
+            pullEventWatcherIndex.remove(pullEventWatcher.eventFilters, pullEventWatcher);
+            CompletableFuture<List<PullEvent>> pendingPull = pullEventWatcher.unpark();
+            if (null != pendingPull) {
+                pendingPull.complete(null);
+            }
+        }
     }
 
     /**
@@ -165,20 +218,69 @@ public class EventBus implements Watchable {
     public List<PullEvent> pullEvents(long pullWatchId) {
         PullEventWatcher pullEventWatcher = pullEventWatchers.get(pullWatchId);
         if (null != pullEventWatcher) {
-            List<PullEvent> pullEvents = cachedEvents.tailMap(pullEventWatcher.sequence.get())
-                    .entrySet().stream()
-                    .map(entry ->
-                            new PullEvent(entry.getValue().getEventType(),
-                                    entry.getKey(),
-                                    entry.getValue().getEventData()
-                            ))
-                    .collect(Collectors.toList());
             pullEventWatcher.touch();
-            return pullEvents;
+            return collectEvents(pullEventWatcher);
         }
         return null;
     }
 
+    /**
+     * 长轮询拉取事件
+     * @param pullWatchId 监听ID
+     * @param maxWaitMs 没有事件时最长等待时间，单位毫秒，不超过{@link #pullIntervalMs()}。
+     *                  小于等于0时不等待，与{@link #pullEvents(long)}相同。
+     * @return 从上次ack 的序号至今的所有事件，保证事件有序。
+     * 如果等待超时仍然没有事件返回长度为0的List。
+     * 如果监听ID {@code pullWatchId} 不存在，返回null。
+     */
+    public CompletableFuture<List<PullEvent>> pullEvents(long pullWatchId, long maxWaitMs) {
+        PullEventWatcher pullEventWatcher = pullEventWatchers.get(pullWatchId);
+        if (null == pullEventWatcher) {
+            return CompletableFuture.completedFuture(null);
+        }
+        pullEventWatcher.touch();
+        List<PullEvent> pullEvents = collectEvents(pullEventWatcher);
+        if (!pullEvents.isEmpty() || maxWaitMs <= 0 || null == scheduledExecutor) {
+            return CompletableFuture.completedFuture(pullEvents);
+        }
+
+        CompletableFuture<List<PullEvent>> future = new CompletableFuture<>();
+        CompletableFuture<List<PullEvent>> replaced = pullEventWatcher.park(future);
+        if (null != replaced) {
+            replaced.complete(Collections.emptyList());
+        }
+        // 挂起之前可能已经有新的事件，再检查一次
+        if (pullEventWatcher.events.ceilingKey(pullEventWatcher.sequence.get()) != null) {
+            wakeup(pullEventWatcher);
+        }
+        scheduledExecutor.schedule(() -> {
+            if (pullEventWatcher.unpark(future)) {
+                pullEventWatcher.touch();
+                future.complete(Collections.emptyList());
+            }
+        }, Math.min(maxWaitMs, pullEventIntervalMs), TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    private void wakeup(PullEventWatcher pullEventWatcher) {
+        CompletableFuture<List<PullEvent>> pendingPull = pullEventWatcher.unpark();
+        if (null != pendingPull) {
+            pullEventWatcher.touch();
+            pendingPull.complete(collectEvents(pullEventWatcher));
+        }
+    }
+
+    private List<PullEvent> collectEvents(PullEventWatcher pullEventWatcher) {
+        return pullEventWatcher.events.tailMap(pullEventWatcher.sequence.get())
+                .entrySet().stream()
+                .map(entry ->
+                        new PullEvent(entry.getValue().getEventType(),
+                                entry.getKey(),
+                                entry.getValue().getEventData()
+                        ))
+                .collect(Collectors.toList());
+    }
+
     /**
      * 确认事件。拉取成功后，调用此方法确认。
      * @param pullWatchId 监听ID
@@ -186,28 +288,89 @@ public class EventBus implements Watchable {
      */
     public void ackPullEvents(long pullWatchId, long sequence) {
         PullEventWatcher pullEventWatcher = pullEventWatchers.get(pullWatchId);
-        if (null != pullEventWatcher && pullEventWatcher.sequence.get() > sequence) {
-            pullEventWatcher.sequence.set(sequence);
+        if (null != pullEventWatcher) {
+            long nextSequence = pullEventWatcher.sequence.accumulateAndGet(sequence + 1, Math::max);
+            pullEventWatcher.events.headMap(nextSequence).clear();
         }
     }
 
     public void shutdown() {
         removeTimeoutPullWatchersThread.stop();
+        pullEventWatchers.values().forEach(pullEventWatcher -> {
+            CompletableFuture<List<PullEvent>> pendingPull = pullEventWatcher.unpark();
+            if (null != pendingPull) {
+                pendingPull.complete(Collections.emptyList());
+            }
+        });
     }
 
     public boolean hasEventWatchers() {
         return !eventWatchers.isEmpty();
     }
 
+    /**
+     * 获取所有push模式监听器的过滤条件，用于向远端添加pull模式监听。
+     * @return 去重后的过滤条件。如果存在没有过滤条件的监听器，返回null。
+     */
+    public List<EventFilter> eventWatcherFilters() {
+        Set<EventFilter> eventFilters = new LinkedHashSet<>();
+        for (EventWatcher eventWatcher : eventWatchers) {
+            if (!(eventWatcher instanceof FilteredEventWatcher)) {
+                return null;
+            }
+            eventFilters.add(((FilteredEventWatcher) eventWatcher).eventFilter());
+        }
+        return new ArrayList<>(eventFilters);
+    }
+
     private static class PullEventWatcher {
+        // 下一个待拉取事件的序号
         private final AtomicLong sequence = new AtomicLong(0L);
-        private long lastPullTimestamp = System.currentTimeMillis();
-        PullEventWatcher(long sequence) {
+        private final List<EventFilter> eventFilters;
+        // 满足过滤条件，还没有确认的事件
+        private final NavigableMap<Long, Event> events = new ConcurrentSkipListMap<>();
+        private volatile long lastPullTimestamp = System.currentTimeMillis();
+        // 挂起的长轮询请求
+        private CompletableFuture<List<PullEvent>> pendingPull = null;
+        PullEventWatcher(long sequence, List<EventFilter> eventFilters) {
             this.sequence.set(sequence);
+            this.eventFilters = eventFilters;
         }
 
         void touch() {
             lastPullTimestamp = System.currentTimeMillis();
         }
+
+        /**
+         * 挂起长轮询请求
+         * @return 被替换的之前挂起的请求，如果没有返回null
+         */
+        synchronized CompletableFuture<List<PullEvent>> park(CompletableFuture<List<PullEvent>> future) {
+            CompletableFuture<List<PullEvent>> replaced = pendingPull;
+            pendingPull = future;
+            return replaced;
+        }
+
+        /**
+         * 取出挂起的长轮询请求
+         * @return 挂起的请求，如果没有返回null
+         */
+        synchronized CompletableFuture<List<PullEvent>> unpark() {
+            CompletableFuture<List<PullEvent>> future = pendingPull;
+            pendingPull = null;
+            return future;
+        }
+
+        /**
+         * 如果挂起的请求是{@code future}，取出
+         * @return 是否取出
+         */
+        synchronized boolean unpark(CompletableFuture<List<PullEvent>> future) {
+            if (pendingPull == future) {
+                pendingPull = null;
+                return true;
+            }
+            return false;
+        }
     }
 }
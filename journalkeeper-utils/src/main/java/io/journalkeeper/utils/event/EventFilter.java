@@ -0,0 +1,150 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.utils.event;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 事件过滤条件，用于在服务端过滤pull模式监听的事件。
+ * 过滤条件包括：
+ * 1. 事件类型 {@link #getEventTypes()}，为空时不限制事件类型；
+ * 2. 事件数据中的字段 {@link #getDataKey()}，例如："key"，为null时不过滤事件数据；
+ * 3. 字段的取值 {@link #getValues()} 或者取值的前缀 {@link #getPrefixes()}，满足其中之一即可。
+ * 如果都为空，只要求事件数据中包含这个字段。
+ *
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class EventFilter {
+    private final Set<Integer> eventTypes;
+    private final String dataKey;
+    private final Set<String> values;
+    private final Set<String> prefixes;
+
+    public EventFilter(Set<Integer> eventTypes, String dataKey, Set<String> values, Set<String> prefixes) {
+        this.eventTypes = null == eventTypes ? Collections.emptySet() : eventTypes;
+        this.dataKey = dataKey;
+        this.values = null == values ? Collections.emptySet() : values;
+        this.prefixes = null == prefixes ? Collections.emptySet() : prefixes;
+    }
+
+    /**
+     * 只按照事件类型过滤
+     * @param eventTypes 事件类型，见 {@link EventType}
+     * @return 过滤条件
+     */
+    public static EventFilter ofEventTypes(Integer... eventTypes) {
+        return new EventFilter(new HashSet<>(Arrays.asList(eventTypes)), null, null, null);
+    }
+
+    /**
+     * 按照事件类型和事件数据中字段的取值过滤
+     * @param eventType 事件类型，见 {@link EventType}
+     * @param dataKey 事件数据中的字段
+     * @param values 字段的取值
+     * @return 过滤条件
+     */
+    public static EventFilter ofValues(int eventType, String dataKey, String... values) {
+        return new EventFilter(Collections.singleton(eventType), dataKey, new HashSet<>(Arrays.asList(values)), null);
+    }
+
+    /**
+     * 按照事件类型和事件数据中字段取值的前缀过滤
+     * @param eventType 事件类型，见 {@link EventType}
+     * @param dataKey 事件数据中的字段
+     * @param prefixes 字段取值的前缀
+     * @return 过滤条件
+     */
+    public static EventFilter ofPrefixes(int eventType, String dataKey, String... prefixes) {
+        return new EventFilter(Collections.singleton(eventType), dataKey, null, new HashSet<>(Arrays.asList(prefixes)));
+    }
+
+    /**
+     * 事件是否满足过滤条件
+     * @param event 事件
+     * @return 满足过滤条件返回true，否则返回false
+     */
+    public boolean accept(Event event) {
+        if (!eventTypes.isEmpty() && !eventTypes.contains(event.getEventType())) {
+            return false;
+        }
+        if (null == dataKey) {
+            return true;
+        }
+        Map<String, String> eventData = event.getEventData();
+        String value = null == eventData ? null : eventData.get(dataKey);
+        if (null == value) {
+            return false;
+        }
+        if (values.isEmpty() && prefixes.isEmpty()) {
+            return true;
+        }
+        if (values.contains(value)) {
+            return true;
+        }
+        for (String prefix : prefixes) {
+            if (value.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Set<Integer> getEventTypes() {
+        return eventTypes;
+    }
+
+    public String getDataKey() {
+        return dataKey;
+    }
+
+    public Set<String> getValues() {
+        return values;
+    }
+
+    public Set<String> getPrefixes() {
+        return prefixes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        EventFilter that = (EventFilter) o;
+        return eventTypes.equals(that.eventTypes) &&
+                Objects.equals(dataKey, that.dataKey) &&
+                values.equals(that.values) &&
+                prefixes.equals(that.prefixes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(eventTypes, dataKey, values, prefixes);
+    }
+
+    @Override
+    public String toString() {
+        return "EventFilter{" +
+                "eventTypes=" + eventTypes +
+                ", dataKey='" + dataKey + '\'' +
+                ", values=" + values +
+                ", prefixes=" + prefixes +
+                '}';
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.utils.event;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按照过滤条件索引的监听。
+ * 指定了字段取值或者取值前缀的过滤条件，按照字段和取值建立索引，
+ * 触发事件时只需要按照事件数据查找索引，不需要逐个检查所有的监听；
+ * 其它的过滤条件，每个事件都逐个检查。
+ *
+ * @param <T> 监听的类型
+ * @author agent
+ * Date: 2026-10-19
+ */
+class EventFilterIndex<T> {
+    // dataKey -> value -> 监听
+    private final Map<String, Map<String, Set<Entry<T>>>> valueIndex = new HashMap<>();
+    // dataKey -> prefix -> 监听
+    private final Map<String, Map<String, Set<Entry<T>>>> prefixIndex = new HashMap<>();
+    // 无法建立索引的监听
+    private final Set<Entry<T>> unindexed = new HashSet<>();
+
+    /**
+     * 添加监听
+     * @param filters 过滤条件，满足任一条件即可。为null或者为空时接收所有事件。
+     * @param watcher 监听
+     */
+    synchronized void add(Collection<EventFilter> filters, T watcher) {
+        if (null == filters || filters.isEmpty()) {
+            unindexed.add(new Entry<>(null, watcher));
+            return;
+        }
+        for (EventFilter filter : filters) {
+            Entry<T> entry = new Entry<>(filter, watcher);
+            if (null == filter.getDataKey() || filter.getValues().isEmpty() && filter.getPrefixes().isEmpty()) {
+                unindexed.add(entry);
+            } else {
+                addToIndex(valueIndex, filter.getDataKey(), filter.getValues(), entry);
+                addToIndex(prefixIndex, filter.getDataKey(), filter.getPrefixes(), entry);
+            }
+        }
+    }
+
+    /**
+     * 删除监听
+     * @param filters 添加监听时的过滤条件
+     * @param watcher 监听
+     */
+    synchronized void remove(Collection<EventFilter> filters, T watcher) {
+        if (null == filters || filters.isEmpty()) {
+            unindexed.remove(new Entry<>(null, watcher));
+            return;
+        }
+        for (EventFilter filter : filters) {
+            Entry<T> entry = new Entry<>(filter, watcher);
+            if (null == filter.getDataKey() || filter.getValues().isEmpty() && filter.getPrefixes().isEmpty()) {
+                unindexed.remove(entry);
+            } else {
+                removeFromIndex(valueIndex, filter.getDataKey(), filter.getValues(), entry);
+                removeFromIndex(prefixIndex, filter.getDataKey(), filter.getPrefixes(), entry);
+            }
+        }
+    }
+
+    /**
+     * 查找关心这个事件的监听
+     * @param event 事件
+     * @return 满足过滤条件的监听，每个监听只出现一次
+     */
+    synchronized Set<T> match(Event event) {
+        Set<T> matched = new HashSet<>();
+        for (Entry<T> entry : unindexed) {
+            entry.acceptTo(event, matched);
+        }
+        Map<String, String> eventData = event.getEventData();
+        if (null == eventData || eventData.isEmpty()) {
+            return matched;
+        }
+        for (Map.Entry<String, Map<String, Set<Entry<T>>>> index : valueIndex.entrySet()) {
+            String value = eventData.get(index.getKey());
+            if (null != value) {
+                Set<Entry<T>> entries = index.getValue().get(value);
+                if (null != entries) {
+                    for (Entry<T> entry : entries) {
+                        entry.acceptTo(event, matched);
+                    }
+                }
+            }
+        }
+        for (Map.Entry<String, Map<String, Set<Entry<T>>>> index : prefixIndex.entrySet()) {
+            String value = eventData.get(index.getKey());
+            if (null != value) {
+                for (int length = 0; length <= value.length(); length++) {
+                    Set<Entry<T>> entries = index.getValue().get(value.substring(0, length));
+                    if (null != entries) {
+                        for (Entry<T> entry : entries) {
+                            entry.acceptTo(event, matched);
+                        }
+                    }
+                }
+            }
+        }
+        return matched;
+    }
+
+    private static <T> void addToIndex(Map<String, Map<String, Set<Entry<T>>>> index, String dataKey, Set<String> keys, Entry<T> entry) {
+        for (String key : keys) {
+            index.computeIfAbsent(dataKey, k -> new HashMap<>())
+                    .computeIfAbsent(key, k -> new HashSet<>())
+                    .add(entry);
+        }
+    }
+
+    private static <T> void removeFromIndex(Map<String, Map<String, Set<Entry<T>>>> index, String dataKey, Set<String> keys, Entry<T> entry) {
+        Map<String, Set<Entry<T>>> keyIndex = index.get(dataKey);
+        if (null == keyIndex) {
+            return;
+        }
+        for (String key : keys) {
+            Set<Entry<T>> entries = keyIndex.get(key);
+            if (null != entries) {
+                entries.remove(entry);
+                if (entries.isEmpty()) {
+                    keyIndex.remove(key);
+                }
+            }
+        }
+        if (keyIndex.isEmpty()) {
+            index.remove(dataKey);
+        }
+    }
+
+    private static class Entry<T> {
+        private final EventFilter filter;
+        private final T watcher;
+
+        Entry(EventFilter filter, T watcher) {
+            this.filter = filter;
+            this.watcher = watcher;
+        }
+
+        void acceptTo(Event event, Set<T> matched) {
+            if (!matched.contains(watcher) && (null == filter || filter.accept(event))) {
+                matched.add(watcher);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Entry<?> entry = (Entry<?>) o;
+            return watcher == entry.watcher && (filter == null ? entry.filter == null : filter.equals(entry.filter));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(watcher) + (filter == null ? 0 : filter.hashCode());
+        }
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.utils.event;
+
+/**
+ * 只关心部分事件的监听器。
+ * 远程监听时，过滤条件会发送给服务端，服务端只返回满足条件的事件。
+ * @author agent
+ * Date: 2026-10-19
+ */
+public interface FilteredEventWatcher extends EventWatcher {
+    /**
+     * 事件过滤条件
+     * @return 过滤条件，只有满足条件的事件才会回调 {@link #onEvent(Event)}
+     */
+    EventFilter eventFilter();
+}
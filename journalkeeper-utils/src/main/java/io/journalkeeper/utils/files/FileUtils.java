@@ -92,8 +92,16 @@ public class FileUtils {
         }
     }
 
-    public static void dump(Path srcPath, Path destPath) throws IOException {
+    /**
+     * 把srcPath下的所有文件和目录复制到destPath下
+     * @param srcPath 源目录
+     * @param destPath 目标目录
+     * @return 复制的字节数
+     * @throws IOException 发生IO异常时抛出
+     */
+    public static long dump(Path srcPath, Path destPath) throws IOException {
         List<Path> srcFiles = listAllFiles(srcPath);
+        long copiedBytes = 0L;
 
         List<Path> destFiles = srcFiles.stream()
                 .map(srcPath::relativize)
@@ -108,8 +116,10 @@ public class FileUtils {
                 Files.createDirectories(destFile);
             } else {
                 Files.copy(srcFile, destFile);
+                copiedBytes += Files.size(destFile);
             }
         }
+        return copiedBytes;
     }
 
     public static void createIfNotExists(Path path) throws IOException{
@@ -0,0 +1,219 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.utils.event;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class EventBusTest {
+    private ScheduledExecutorService scheduledExecutor;
+    private EventBus eventBus;
+
+    @Before
+    public void before() {
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        eventBus = new EventBus(10000L, scheduledExecutor);
+    }
+
+    @After
+    public void after() {
+        eventBus.shutdown();
+        scheduledExecutor.shutdownNow();
+    }
+
+    /**
+     * 没有事件时长轮询挂起，产生新的事件后立即返回
+     */
+    @Test
+    public void longPollWakeupTest() throws Exception {
+        long pullWatchId = eventBus.addPullWatch();
+        CompletableFuture<List<PullEvent>> future = eventBus.pullEvents(pullWatchId, 5000L);
+        Thread.sleep(100L);
+        Assert.assertFalse(future.isDone());
+
+        long start = System.currentTimeMillis();
+        eventBus.fireEvent(new Event(EventType.ON_STATE_CHANGE, Collections.singletonMap("key", "value")));
+        List<PullEvent> pullEvents = future.get(1000L, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000L);
+        Assert.assertEquals(1, pullEvents.size());
+        Assert.assertEquals(EventType.ON_STATE_CHANGE, pullEvents.get(0).getEventType());
+        Assert.assertEquals("value", pullEvents.get(0).getEventData().get("key"));
+    }
+
+    /**
+     * 等待超时仍然没有事件，返回空的结果
+     */
+    @Test
+    public void longPollTimeoutTest() throws Exception {
+        long pullWatchId = eventBus.addPullWatch();
+        long start = System.currentTimeMillis();
+        List<PullEvent> pullEvents = eventBus.pullEvents(pullWatchId, 200L).get(2000L, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(System.currentTimeMillis() - start >= 200L);
+        Assert.assertNotNull(pullEvents);
+        Assert.assertTrue(pullEvents.isEmpty());
+
+        // 超时之后产生的事件在下一次拉取时返回
+        eventBus.fireEvent(new Event(EventType.ON_STATE_CHANGE, null));
+        Assert.assertEquals(1, eventBus.pullEvents(pullWatchId, 200L).get().size());
+    }
+
+    /**
+     * 已有未确认的事件时不挂起，监听不存在时返回null，
+     * 同一个监听再次挂起时，之前挂起的请求返回空的结果
+     */
+    @Test
+    public void longPollParkTest() throws Exception {
+        long pullWatchId = eventBus.addPullWatch();
+        eventBus.fireEvent(new Event(EventType.ON_STATE_CHANGE, null));
+        CompletableFuture<List<PullEvent>> future = eventBus.pullEvents(pullWatchId, 5000L);
+        Assert.assertTrue(future.isDone());
+        Assert.assertEquals(1, future.get().size());
+        eventBus.ackPullEvents(pullWatchId, future.get().get(0).getSequence());
+
+        CompletableFuture<List<PullEvent>> first = eventBus.pullEvents(pullWatchId, 5000L);
+        CompletableFuture<List<PullEvent>> second = eventBus.pullEvents(pullWatchId, 5000L);
+        Assert.assertTrue(first.get(1000L, TimeUnit.MILLISECONDS).isEmpty());
+        Assert.assertFalse(second.isDone());
+
+        // 删除监听时挂起的请求返回null
+        eventBus.removePullWatch(pullWatchId);
+        Assert.assertNull(second.get(1000L, TimeUnit.MILLISECONDS));
+        Assert.assertNull(eventBus.pullEvents(pullWatchId, 5000L).get());
+    }
+
+    /**
+     * 没有确认的事件会被重复拉取，确认之后不再返回
+     */
+    @Test
+    public void ackAndRedeliveryTest() throws Exception {
+        long pullWatchId = eventBus.addPullWatch();
+        for (int i = 0; i < 3; i++) {
+            eventBus.fireEvent(new Event(EventType.ON_STATE_CHANGE, Collections.singletonMap("i", String.valueOf(i))));
+        }
+
+        List<PullEvent> pullEvents = eventBus.pullEvents(pullWatchId, 1000L).get();
+        Assert.assertEquals(3, pullEvents.size());
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(String.valueOf(i), pullEvents.get(i).getEventData().get("i"));
+        }
+
+        // 不确认，再次拉取返回相同的事件
+        List<PullEvent> redelivered = eventBus.pullEvents(pullWatchId, 1000L).get();
+        Assert.assertEquals(3, redelivered.size());
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(pullEvents.get(i).getSequence(), redelivered.get(i).getSequence());
+        }
+
+        // 确认前2条，只返回第3条
+        eventBus.ackPullEvents(pullWatchId, pullEvents.get(1).getSequence());
+        redelivered = eventBus.pullEvents(pullWatchId, 1000L).get();
+        Assert.assertEquals(1, redelivered.size());
+        Assert.assertEquals(pullEvents.get(2).getSequence(), redelivered.get(0).getSequence());
+
+        // 重复确认旧的序号不会回退
+        eventBus.ackPullEvents(pullWatchId, pullEvents.get(2).getSequence());
+        eventBus.ackPullEvents(pullWatchId, pullEvents.get(0).getSequence());
+        CompletableFuture<List<PullEvent>> future = eventBus.pullEvents(pullWatchId, 5000L);
+        Assert.assertFalse(future.isDone());
+        eventBus.fireEvent(new Event(EventType.ON_STATE_CHANGE, Collections.singletonMap("i", "3")));
+        redelivered = future.get(1000L, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(1, redelivered.size());
+        Assert.assertEquals("3", redelivered.get(0).getEventData().get("i"));
+    }
+
+    /**
+     * 每个监听只收到满足过滤条件的事件，各自确认互不影响
+     */
+    @Test
+    public void filteredPullWatchTest() throws Exception {
+        long user1 = eventBus.addPullWatch(Collections.singletonList(
+                EventFilter.ofValues(EventType.ON_STATE_CHANGE, "key", "user/1")));
+        long users = eventBus.addPullWatch(Collections.singletonList(
+                EventFilter.ofPrefixes(EventType.ON_STATE_CHANGE, "key", "user/")));
+        long all = eventBus.addPullWatch();
+
+        // 没有满足条件的事件，不会被唤醒
+        CompletableFuture<List<PullEvent>> user1Future = eventBus.pullEvents(user1, 5000L);
+        eventBus.fireEvent(new Event(EventType.ON_STATE_CHANGE, Collections.singletonMap("key", "user/2")));
+        eventBus.fireEvent(new Event(EventType.ON_LEADER_CHANGE, null));
+        Thread.sleep(100L);
+        Assert.assertFalse(user1Future.isDone());
+
+        eventBus.fireEvent(new Event(EventType.ON_STATE_CHANGE, Collections.singletonMap("key", "user/1")));
+        List<PullEvent> user1Events = user1Future.get(1000L, TimeUnit.MILLISECONDS);
+        Assert.assertEquals(1, user1Events.size());
+        Assert.assertEquals("user/1", user1Events.get(0).getEventData().get("key"));
+
+        List<PullEvent> usersEvents = eventBus.pullEvents(users);
+        Assert.assertEquals(2, usersEvents.size());
+        Assert.assertEquals("user/2", usersEvents.get(0).getEventData().get("key"));
+        Assert.assertEquals("user/1", usersEvents.get(1).getEventData().get("key"));
+        // 序号全局递增，不同监听中同一个事件的序号相同
+        Assert.assertEquals(user1Events.get(0).getSequence(), usersEvents.get(1).getSequence());
+
+        List<PullEvent> allEvents = eventBus.pullEvents(all);
+        Assert.assertEquals(3, allEvents.size());
+        Assert.assertEquals(EventType.ON_LEADER_CHANGE, allEvents.get(1).getEventType());
+
+        // 确认一个监听的事件，不影响其它监听
+        eventBus.ackPullEvents(users, usersEvents.get(1).getSequence());
+        Assert.assertTrue(eventBus.pullEvents(users).isEmpty());
+        Assert.assertEquals(1, eventBus.pullEvents(user1).size());
+        Assert.assertEquals(3, eventBus.pullEvents(all).size());
+
+        // 删除监听后，新的事件不再放入它的队列
+        eventBus.removePullWatch(users);
+        eventBus.fireEvent(new Event(EventType.ON_STATE_CHANGE, Collections.singletonMap("key", "user/3")));
+        Assert.assertNull(eventBus.pullEvents(users));
+        Assert.assertEquals(1, eventBus.pullEvents(user1).size());
+        Assert.assertEquals(4, eventBus.pullEvents(all).size());
+    }
+
+    /**
+     * 实现了{@link FilteredEventWatcher}的push监听器只回调满足过滤条件的事件
+     */
+    @Test
+    public void filteredPushWatchTest() {
+        List<Event> events = new ArrayList<>();
+        eventBus.watch(new FilteredEventWatcher() {
+            @Override
+            public EventFilter eventFilter() {
+                return EventFilter.ofValues(EventType.ON_STATE_CHANGE, "key", "user/1");
+            }
+
+            @Override
+            public void onEvent(Event event) {
+                events.add(event);
+            }
+        });
+        eventBus.fireEvent(new Event(EventType.ON_STATE_CHANGE, Collections.singletonMap("key", "user/2")));
+        eventBus.fireEvent(new Event(EventType.ON_STATE_CHANGE, Collections.singletonMap("key", "user/1")));
+        Assert.assertEquals(1, events.size());
+        Assert.assertEquals("user/1", events.get(0).getEventData().get("key"));
+    }
+}
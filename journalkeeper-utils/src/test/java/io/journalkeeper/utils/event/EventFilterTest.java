@@ -0,0 +1,137 @@
+/**
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.journalkeeper.utils.event;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @author agent
+ * Date: 2026-10-19
+ */
+public class EventFilterTest {
+
+    @Test
+    public void acceptTest() {
+        Event event = event(EventType.ON_STATE_CHANGE, "key", "user/1");
+
+        Assert.assertTrue(EventFilter.ofEventTypes(EventType.ON_STATE_CHANGE).accept(event));
+        Assert.assertTrue(EventFilter.ofEventTypes(EventType.ON_STATE_CHANGE, EventType.ON_LEADER_CHANGE).accept(event));
+        Assert.assertFalse(EventFilter.ofEventTypes(EventType.ON_LEADER_CHANGE).accept(event));
+        // 没有指定事件类型时接受所有类型
+        Assert.assertTrue(new EventFilter(null, null, null, null).accept(event));
+
+        Assert.assertTrue(EventFilter.ofValues(EventType.ON_STATE_CHANGE, "key", "user/2", "user/1").accept(event));
+        Assert.assertFalse(EventFilter.ofValues(EventType.ON_STATE_CHANGE, "key", "user/2").accept(event));
+        Assert.assertFalse(EventFilter.ofValues(EventType.ON_LEADER_CHANGE, "key", "user/1").accept(event));
+        Assert.assertFalse(EventFilter.ofValues(EventType.ON_STATE_CHANGE, "other", "user/1").accept(event));
+
+        Assert.assertTrue(EventFilter.ofPrefixes(EventType.ON_STATE_CHANGE, "key", "user/").accept(event));
+        Assert.assertTrue(EventFilter.ofPrefixes(EventType.ON_STATE_CHANGE, "key", "").accept(event));
+        Assert.assertTrue(EventFilter.ofPrefixes(EventType.ON_STATE_CHANGE, "key", "user/1").accept(event));
+        Assert.assertFalse(EventFilter.ofPrefixes(EventType.ON_STATE_CHANGE, "key", "user/10").accept(event));
+        Assert.assertFalse(EventFilter.ofPrefixes(EventType.ON_STATE_CHANGE, "key", "group/").accept(event));
+
+        // 只指定字段时，只要求事件数据中存在这个字段
+        Assert.assertTrue(new EventFilter(null, "key", null, null).accept(event));
+        Assert.assertFalse(new EventFilter(null, "other", null, null).accept(event));
+        Assert.assertFalse(new EventFilter(null, "key", null, null).accept(new Event(EventType.ON_STATE_CHANGE, null)));
+
+        // 取值和前缀满足任一即可
+        EventFilter filter = new EventFilter(null, "key",
+                Collections.singleton("group/1"), Collections.singleton("user/"));
+        Assert.assertTrue(filter.accept(event));
+        Assert.assertTrue(filter.accept(event(EventType.ON_STATE_CHANGE, "key", "group/1")));
+        Assert.assertFalse(filter.accept(event(EventType.ON_STATE_CHANGE, "key", "group/2")));
+    }
+
+    @Test
+    public void equalsTest() {
+        Assert.assertEquals(EventFilter.ofValues(EventType.ON_STATE_CHANGE, "key", "a", "b"),
+                EventFilter.ofValues(EventType.ON_STATE_CHANGE, "key", "b", "a"));
+        Assert.assertEquals(EventFilter.ofValues(EventType.ON_STATE_CHANGE, "key", "a", "b").hashCode(),
+                EventFilter.ofValues(EventType.ON_STATE_CHANGE, "key", "b", "a").hashCode());
+        Assert.assertNotEquals(EventFilter.ofValues(EventType.ON_STATE_CHANGE, "key", "a"),
+                EventFilter.ofPrefixes(EventType.ON_STATE_CHANGE, "key", "a"));
+    }
+
+    @Test
+    public void indexMatchTest() {
+        EventFilterIndex<String> index = new EventFilterIndex<>();
+        index.add(null, "all");
+        index.add(Collections.singletonList(EventFilter.ofEventTypes(EventType.ON_LEADER_CHANGE)), "leader");
+        index.add(Collections.singletonList(EventFilter.ofValues(EventType.ON_STATE_CHANGE, "key", "user/1")), "user1");
+        index.add(Collections.singletonList(EventFilter.ofPrefixes(EventType.ON_STATE_CHANGE, "key", "user/")), "users");
+        index.add(Collections.singletonList(EventFilter.ofPrefixes(EventType.ON_STATE_CHANGE, "key", "")), "anyKey");
+        // 满足多个过滤条件的监听只返回一次
+        index.add(Arrays.asList(
+                EventFilter.ofValues(EventType.ON_STATE_CHANGE, "key", "user/1"),
+                EventFilter.ofPrefixes(EventType.ON_STATE_CHANGE, "key", "user"),
+                EventFilter.ofValues(EventType.ON_STATE_CHANGE, "partition", "3")), "multi");
+        // 取值匹配但事件类型不匹配
+        index.add(Collections.singletonList(EventFilter.ofValues(EventType.ON_JOURNAL_CHANGE, "key", "user/1")), "journal");
+
+        Assert.assertEquals(set("all", "user1", "users", "anyKey", "multi"),
+                index.match(event(EventType.ON_STATE_CHANGE, "key", "user/1")));
+        Assert.assertEquals(set("all", "users", "anyKey", "multi"),
+                index.match(event(EventType.ON_STATE_CHANGE, "key", "user/2")));
+        Assert.assertEquals(set("all", "anyKey"),
+                index.match(event(EventType.ON_STATE_CHANGE, "key", "group/1")));
+        Assert.assertEquals(set("all", "multi"),
+                index.match(event(EventType.ON_STATE_CHANGE, "partition", "3")));
+        Assert.assertEquals(set("all", "journal"),
+                index.match(event(EventType.ON_JOURNAL_CHANGE, "key", "user/1")));
+        Assert.assertEquals(set("all", "leader"),
+                index.match(new Event(EventType.ON_LEADER_CHANGE, null)));
+    }
+
+    @Test
+    public void indexRemoveTest() {
+        EventFilterIndex<String> index = new EventFilterIndex<>();
+        EventFilter user1 = EventFilter.ofValues(EventType.ON_STATE_CHANGE, "key", "user/1");
+        EventFilter users = EventFilter.ofPrefixes(EventType.ON_STATE_CHANGE, "key", "user/");
+        index.add(Collections.singletonList(user1), "a");
+        index.add(Arrays.asList(user1, users), "b");
+        index.add(null, "c");
+
+        Event event = event(EventType.ON_STATE_CHANGE, "key", "user/1");
+        Assert.assertEquals(set("a", "b", "c"), index.match(event));
+
+        // 只删除指定的监听，同样过滤条件的其它监听不受影响
+        index.remove(Arrays.asList(user1, users), "b");
+        Assert.assertEquals(set("a", "c"), index.match(event));
+        Assert.assertEquals(set("c"), index.match(event(EventType.ON_STATE_CHANGE, "key", "user/2")));
+
+        index.remove(null, "c");
+        index.remove(Collections.singletonList(user1), "a");
+        Assert.assertTrue(index.match(event).isEmpty());
+    }
+
+    private static Event event(int eventType, String dataKey, String value) {
+        Map<String, String> eventData = new HashMap<>();
+        eventData.put(dataKey, value);
+        return new Event(eventType, eventData);
+    }
+
+    private static Set<String> set(String... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+}